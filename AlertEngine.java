@@ -0,0 +1,349 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Alert Engine - Evaluación incremental de reglas por tren
+ *
+ * Las reglas se agrupan por campo y operador, con los umbrales de cada
+ * grupo ordenados. Para un valor, las reglas que se cumplen en un grupo
+ * forman un tramo contiguo del array (por ejemplo, con BATTERY &lt; t son
+ * todas las de t mayor que el valor), así que el estado de un tren en el
+ * grupo es solo el límite de ese tramo.
+ *
+ * Con cada muestra se localiza el límite nuevo por búsqueda binaria y se
+ * notifica únicamente a las reglas entre el límite anterior y el nuevo:
+ * el coste por muestra es O(grupos · log reglas) más los cambios reales,
+ * sin crear objetos, aunque haya miles de reglas y cientos de trenes.
+ *
+ * Cada tren debe alimentarse desde un solo thread a la vez (el lector de
+ * su sesión). Trenes distintos pueden evaluarse en paralelo: su estado
+ * está en zonas separadas de memoria.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public final class AlertEngine {
+
+    // Ints por tren redondeados a una línea de caché (64 bytes)
+    private static final int LINE_INTS = 16;
+
+    // Por tren: muestras vistas, luego los límites de cada grupo
+    private static final int SEEN = 0;
+
+    /**
+     * Reglas de un mismo campo y operador, ordenadas por umbral
+     */
+    private static final class Group {
+        final AlertRule.Field field;
+        final AlertRule.Operator operator;
+        final double[] thresholds;
+        final AlertRule[] rules;
+        final int slot;
+        final int changeSlot;
+
+        Group(AlertRule.Field field, AlertRule.Operator operator, List<AlertRule> members,
+              int slot, int changeSlot) {
+            members.sort(Comparator.comparingDouble(AlertRule::getThreshold));
+            this.field = field;
+            this.operator = operator;
+            this.rules = members.toArray(new AlertRule[0]);
+            this.thresholds = new double[rules.length];
+            for (int i = 0; i < rules.length; i++) {
+                thresholds[i] = rules[i].getThreshold();
+            }
+            this.slot = slot;
+            this.changeSlot = changeSlot;
+        }
+    }
+
+    private final Group[] groups;
+    private final AlertRule[] rules;
+    private final AlertSink sink;
+    private final int trains;
+
+    // Límites por tren y grupo ([inicio, fin) en EQ/NE)
+    private final int[] bounds;
+    private final int intStride;
+
+    // UNCHANGED: por tren y campo, último valor y desde cuándo lo tiene
+    private final long[] changes;
+    private final int longStride;
+
+    /**
+     * Compilar las reglas para una flota
+     * @param rules Reglas
+     * @param trains Número de trenes (índices 0..trains-1)
+     * @param sink Destino de las alertas
+     */
+    public AlertEngine(List<AlertRule> rules, int trains, AlertSink sink) {
+        this.rules = rules.toArray(new AlertRule[0]);
+        this.sink = sink;
+        this.trains = trains;
+
+        List<Group> built = new ArrayList<>();
+        int slots = 1;
+        int changeSlots = 0;
+
+        for (AlertRule.Field field : AlertRule.Field.values()) {
+            for (AlertRule.Operator operator : AlertRule.Operator.values()) {
+                List<AlertRule> members = new ArrayList<>();
+                for (AlertRule rule : rules) {
+                    if (rule.getField() == field && rule.getOperator() == operator) {
+                        members.add(rule);
+                    }
+                }
+                if (members.isEmpty()) {
+                    continue;
+                }
+                int changeSlot = -1;
+                if (operator == AlertRule.Operator.UNCHANGED) {
+                    changeSlot = changeSlots;
+                    changeSlots += 2;
+                }
+                built.add(new Group(field, operator, members, slots, changeSlot));
+                slots += isRange(operator) ? 2 : 1;
+            }
+        }
+        this.groups = built.toArray(new Group[0]);
+
+        this.intStride = roundUp(slots, LINE_INTS);
+        this.bounds = new int[Math.max(1, trains) * intStride];
+        this.longStride = roundUp(Math.max(changeSlots, 1), LINE_INTS / 2);
+        this.changes = new long[Math.max(1, trains) * longStride];
+
+        for (int train = 0; train < trains; train++) {
+            reset(train);
+        }
+    }
+
+    private static boolean isRange(AlertRule.Operator operator) {
+        return operator == AlertRule.Operator.EQ || operator == AlertRule.Operator.NE;
+    }
+
+    private static int roundUp(int value, int multiple) {
+        return (value + multiple - 1) / multiple * multiple;
+    }
+
+    /**
+     * Olvidar el estado de un tren sin notificar (todas sus reglas inactivas)
+     * @param train Índice del tren
+     */
+    public void reset(int train) {
+        int base = train * intStride;
+        bounds[base + SEEN] = 0;
+        for (Group group : groups) {
+            int slot = base + group.slot;
+            int n = group.rules.length;
+            switch (group.operator) {
+                case LT:
+                case LE:
+                    bounds[slot] = n;
+                    break;
+                case EQ:
+                    bounds[slot] = 0;
+                    bounds[slot + 1] = 0;
+                    break;
+                case NE:
+                    bounds[slot] = 0;
+                    bounds[slot + 1] = n;
+                    break;
+                default:
+                    bounds[slot] = 0;
+            }
+        }
+    }
+
+    /**
+     * Evaluar una muestra de un tren (desde el thread lector de su sesión)
+     * @param train Índice del tren
+     * @param sample Muestra recibida
+     */
+    public void onTelemetry(int train, TelemetrySample sample) {
+        int base = train * intStride;
+        boolean first = bounds[base + SEEN] == 0;
+        bounds[base + SEEN] = 1;
+
+        for (Group group : groups) {
+            double value = group.field.valueOf(sample);
+            int slot = base + group.slot;
+            int to;
+
+            switch (group.operator) {
+                case LT:
+                    // Activas: umbral > v, el sufijo [upper(v), n)
+                    to = upper(group.thresholds, value);
+                    suffix(train, group, bounds[slot], to, sample);
+                    bounds[slot] = to;
+                    break;
+                case LE:
+                    to = lower(group.thresholds, value);
+                    suffix(train, group, bounds[slot], to, sample);
+                    bounds[slot] = to;
+                    break;
+                case GT:
+                    // Activas: umbral < v, el prefijo [0, lower(v))
+                    to = lower(group.thresholds, value);
+                    prefix(train, group, bounds[slot], to, sample);
+                    bounds[slot] = to;
+                    break;
+                case GE:
+                    to = upper(group.thresholds, value);
+                    prefix(train, group, bounds[slot], to, sample);
+                    bounds[slot] = to;
+                    break;
+                case EQ:
+                case NE:
+                    range(train, group, slot, lower(group.thresholds, value),
+                        upper(group.thresholds, value), sample);
+                    break;
+                default:
+                    unchanged(train, group, slot, value, first, sample);
+            }
+        }
+    }
+
+    /**
+     * Adaptar un tren a {@link TelemetryListener} para suscribirlo a su sesión
+     * @param train Índice del tren
+     * @return Listener que evalúa cada muestra
+     */
+    public TelemetryListener listener(int train) {
+        if (train < 0 || train >= trains) {
+            throw new IllegalArgumentException("Tren fuera de rango: " + train);
+        }
+        return sample -> onTelemetry(train, sample);
+    }
+
+    /**
+     * Grupos cuyo tramo activo es un sufijo [b, n): bajar el límite activa
+     */
+    private void suffix(int train, Group group, int from, int to, TelemetrySample sample) {
+        if (to < from) {
+            fire(train, group, to, from, sample);
+        } else if (to > from) {
+            clear(train, group, from, to, sample);
+        }
+    }
+
+    /**
+     * Grupos cuyo tramo activo es un prefijo [0, b): subir el límite activa
+     */
+    private void prefix(int train, Group group, int from, int to, TelemetrySample sample) {
+        if (to > from) {
+            fire(train, group, from, to, sample);
+        } else if (to < from) {
+            clear(train, group, to, from, sample);
+        }
+    }
+
+    /**
+     * EQ: activas [lo, hi). NE: activas fuera de [lo, hi)
+     */
+    private void range(int train, Group group, int slot, int lo, int hi, TelemetrySample sample) {
+        int oldLo = bounds[slot];
+        int oldHi = bounds[slot + 1];
+        if (lo == oldLo && hi == oldHi) {
+            return;
+        }
+        if (group.operator == AlertRule.Operator.EQ) {
+            difference(train, group, oldLo, oldHi, lo, hi, false, sample);
+            difference(train, group, lo, hi, oldLo, oldHi, true, sample);
+        } else {
+            difference(train, group, lo, hi, oldLo, oldHi, false, sample);
+            difference(train, group, oldLo, oldHi, lo, hi, true, sample);
+        }
+        bounds[slot] = lo;
+        bounds[slot + 1] = hi;
+    }
+
+    /**
+     * Notificar las reglas de [a0, a1) que no están en [b0, b1)
+     */
+    private void difference(int train, Group group, int a0, int a1, int b0, int b1,
+                            boolean alert, TelemetrySample sample) {
+        int end = Math.min(a1, b0);
+        int start = Math.max(a0, b1);
+        if (alert) {
+            fire(train, group, a0, end, sample);
+            fire(train, group, start, a1, sample);
+        } else {
+            clear(train, group, a0, end, sample);
+            clear(train, group, start, a1, sample);
+        }
+    }
+
+    /**
+     * UNCHANGED: activas [0, upper(duración)), la duración vuelve a 0 al cambiar el valor
+     */
+    private void unchanged(int train, Group group, int slot, double value, boolean first,
+                           TelemetrySample sample) {
+        int change = train * longStride + group.changeSlot;
+        long bits = Double.doubleToLongBits(value);
+        long now = sample.getTimestamp();
+        if (first || changes[change] != bits) {
+            changes[change] = bits;
+            changes[change + 1] = now;
+        }
+        int to = upper(group.thresholds, now - changes[change + 1]);
+        prefix(train, group, bounds[slot], to, sample);
+        bounds[slot] = to;
+    }
+
+    private void fire(int train, Group group, int from, int to, TelemetrySample sample) {
+        for (int i = from; i < to; i++) {
+            sink.onAlert(train, group.rules[i], sample);
+        }
+    }
+
+    private void clear(int train, Group group, int from, int to, TelemetrySample sample) {
+        for (int i = from; i < to; i++) {
+            sink.onClear(train, group.rules[i], sample);
+        }
+    }
+
+    /**
+     * @return Primera posición con umbral &gt;= value
+     */
+    private static int lower(double[] thresholds, double value) {
+        int lo = 0;
+        int hi = thresholds.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Double.compare(thresholds[mid], value) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return Primera posición con umbral &gt; value
+     */
+    private static int upper(double[] thresholds, double value) {
+        int lo = 0;
+        int hi = thresholds.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Double.compare(thresholds[mid], value) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return Reglas compiladas
+     */
+    public int getRuleCount() {
+        return rules.length;
+    }
+
+    public int getTrainCount() {
+        return trains;
+    }
+}
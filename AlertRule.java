@@ -0,0 +1,256 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Alert Rule - Condición compilada sobre un campo de telemetría
+ *
+ * Las condiciones usan la sintaxis de EXPECT de {@link MetroScript}:
+ * <pre>
+ *   SPEED|BATTERY|STATION|DIRECTION op valor     op: == != &lt; &lt;= &gt; &gt;=
+ *   SPEED|BATTERY|STATION|DIRECTION UNCHANGED milisegundos
+ * </pre>
+ * UNCHANGED se cumple cuando el campo lleva al menos ese tiempo sin
+ * cambiar de valor (por ejemplo, un tren que no cambia de estación).
+ *
+ * El valor se convierte una sola vez al compilar; comparar una muestra
+ * no crea objetos ni parsea texto.
+ *
+ * Archivo de reglas (una por línea, '#' = comentario):
+ * <pre>
+ *   bateria_critica   BATTERY &lt; 20
+ *   exceso_velocidad  SPEED &gt; 80
+ *   detenido          STATION UNCHANGED 60000
+ * </pre>
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public final class AlertRule {
+
+    /**
+     * Campo de telemetría evaluado
+     */
+    public enum Field {
+        SPEED, BATTERY, STATION, DIRECTION;
+
+        /**
+         * @param sample Muestra
+         * @return Valor del campo (DIRECTION como ordinal)
+         */
+        double valueOf(TelemetrySample sample) {
+            switch (this) {
+                case SPEED:
+                    return sample.getSpeed();
+                case BATTERY:
+                    return sample.getBattery();
+                case STATION:
+                    return sample.getStation();
+                default:
+                    return sample.getDirection().ordinal();
+            }
+        }
+    }
+
+    /**
+     * Operador de la condición
+     */
+    public enum Operator {
+        EQ("=="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">="), UNCHANGED("UNCHANGED");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        static Operator fromSymbol(String symbol) {
+            for (Operator operator : values()) {
+                if (operator.symbol.equalsIgnoreCase(symbol)) {
+                    return operator;
+                }
+            }
+            throw new IllegalArgumentException("operador inválido '" + symbol + "'");
+        }
+    }
+
+    private final String name;
+    private final Field field;
+    private final Operator operator;
+    private final double threshold;
+    private final String expression;
+
+    private AlertRule(String name, Field field, Operator operator, double threshold, String expression) {
+        this.name = name;
+        this.field = field;
+        this.operator = operator;
+        this.threshold = threshold;
+        this.expression = expression;
+    }
+
+    /**
+     * Compilar una condición
+     * @param name Nombre de la regla
+     * @param field Campo (SPEED, BATTERY, STATION, DIRECTION)
+     * @param op Operador (== != &lt; &lt;= &gt; &gt;= UNCHANGED)
+     * @param value Valor numérico, dirección o milisegundos (UNCHANGED)
+     * @return Regla compilada
+     * @throws IllegalArgumentException si la condición es inválida
+     */
+    public static AlertRule compile(String name, String field, String op, String value) {
+        Field parsedField;
+        try {
+            parsedField = Field.valueOf(field.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("campo desconocido '" + field + "'");
+        }
+        Operator operator = Operator.fromSymbol(op);
+        String upper = value.toUpperCase(Locale.ROOT);
+        double threshold;
+
+        if (operator == Operator.UNCHANGED) {
+            threshold = parseNumber(upper);
+            if (threshold <= 0) {
+                throw new IllegalArgumentException("UNCHANGED requiere milisegundos positivos");
+            }
+        } else if (parsedField == Field.DIRECTION) {
+            if (operator != Operator.EQ && operator != Operator.NE) {
+                throw new IllegalArgumentException("DIRECTION solo admite == y !=");
+            }
+            try {
+                threshold = Direction.valueOf(upper).ordinal();
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("dirección inválida '" + value + "'");
+            }
+        } else {
+            threshold = parseNumber(upper);
+        }
+
+        return new AlertRule(name, parsedField, operator, threshold,
+            parsedField + " " + operator.getSymbol() + " " + upper);
+    }
+
+    private static double parseNumber(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("valor numérico inválido '" + value + "'");
+        }
+    }
+
+    /**
+     * Leer un archivo de reglas
+     * @param file Archivo (nombre CAMPO op valor por línea)
+     * @return Reglas en orden
+     * @throws IOException si no se puede leer
+     * @throws IllegalArgumentException si alguna línea es inválida
+     */
+    public static List<AlertRule> load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Leer reglas de un texto
+     * @param reader Origen de las reglas
+     * @return Reglas en orden
+     * @throws IOException si no se puede leer
+     * @throws IllegalArgumentException si alguna línea es inválida
+     */
+    public static List<AlertRule> parse(Reader reader) throws IOException {
+        List<AlertRule> rules = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String text;
+        int number = 0;
+
+        while ((text = lines.readLine()) != null) {
+            number++;
+            int comment = text.indexOf('#');
+            if (comment >= 0) {
+                text = text.substring(0, comment);
+            }
+            String trimmed = text.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+
+            String[] parts = trimmed.split("\\s+");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Línea " + number + ": se esperaba 'nombre CAMPO op valor'");
+            }
+            try {
+                rules.add(compile(parts[0], parts[1], parts[2], parts[3]));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Línea " + number + ": " + e.getMessage());
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Evaluar la condición sobre una sola muestra
+     * @param sample Muestra
+     * @return true si se cumple (UNCHANGED necesita historial: siempre false)
+     */
+    public boolean test(TelemetrySample sample) {
+        int compared = Double.compare(field.valueOf(sample), threshold);
+        switch (operator) {
+            case EQ:
+                return compared == 0;
+            case NE:
+                return compared != 0;
+            case LT:
+                return compared < 0;
+            case LE:
+                return compared <= 0;
+            case GT:
+                return compared > 0;
+            case GE:
+                return compared >= 0;
+            default:
+                return false;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return Valor de comparación (ordinal para DIRECTION, milisegundos para UNCHANGED)
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @return Condición normalizada, por ejemplo "BATTERY &lt; 20"
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + expression;
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Alert Sink - Destino de las alertas de {@link AlertEngine}
+ *
+ * Recibe solo los cambios: una regla que empieza a cumplirse para un
+ * tren ({@link #onAlert}) y una que deja de cumplirse ({@link #onClear}),
+ * no cada muestra en la que sigue activa.
+ *
+ * Se invoca desde el thread lector de la sesión del tren: no debe
+ * bloquear, y la muestra solo es válida durante la llamada.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface AlertSink {
+
+    /**
+     * Una regla empieza a cumplirse
+     * @param train Índice del tren
+     * @param rule Regla
+     * @param sample Muestra que la activó
+     */
+    void onAlert(int train, AlertRule rule, TelemetrySample sample);
+
+    /**
+     * Una regla activa deja de cumplirse
+     * @param train Índice del tren
+     * @param rule Regla
+     * @param sample Muestra que la desactivó
+     */
+    default void onClear(int train, AlertRule rule, TelemetrySample sample) {
+    }
+}
@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary Frame Codec - Codificación binaria compacta ("BIN1")
+ *
+ * Cada frame lleva un prefijo de longitud y un byte de tipo (big-endian):
+ * <pre>
+ *   u16 longitud (bytes siguientes) | u8 tipo | contenido
+ *
+ *   tipo 'T' telemetría, 15 bytes de posición fija:
+ *     0  f64 velocidad
+ *     8  i32 estación (-1 = sin estación)
+ *     12 i16 batería
+ *     14 u8  dirección (ordinal de {@link Direction})
+ *
+ *   tipo 'M' cualquier otro frame: su texto CLAVE:VALOR, un byte por carácter (Latin-1)
+ * </pre>
+ *
+ * La telemetría ocupa 18 bytes en lugar de ~70 y se decodifica leyendo
+ * los campos en su posición, sin buscar separadores ni parsear números.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class BinaryFrameCodec implements FrameCodec {
+
+    public static final String NAME = "BIN1";
+
+    // Tipos de frame
+    static final byte KIND_TELEMETRY = 'T';
+    static final byte KIND_MESSAGE = 'M';
+
+    // Telemetría: cabecera (3) + campos (15)
+    private static final int HEADER_SIZE = 3;
+    private static final int TELEMETRY_BODY = 15;
+    private static final int TELEMETRY_SIZE = HEADER_SIZE + TELEMETRY_BODY;
+
+    // Longitud máxima de un frame (u16)
+    private static final int MAX_LENGTH = 0xFFFF;
+
+    private byte[] output = new byte[256];
+
+    // Último frame leído
+    private String message;
+    private int error;
+    private int frameLength;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int read(FrameInput in, TelemetrySample sample) throws IOException {
+        int pos = in.take(HEADER_SIZE);
+        if (pos < 0) {
+            return END;
+        }
+        byte[] buf = in.buffer();
+        int length = (((buf[pos] & 0xFF) << 8) | (buf[pos + 1] & 0xFF)) - 1;
+        int kind = buf[pos + 2];
+        if (length < 0) {
+            // Sin byte de tipo el stream ya está desalineado
+            throw new IOException("Frame binario de longitud 0");
+        }
+
+        // El contenido se decodifica en el propio buffer de entrada
+        pos = in.take(length);
+        if (pos < 0) {
+            throw new IOException("Frame binario incompleto");
+        }
+        buf = in.buffer();
+        frameLength = HEADER_SIZE + length;
+
+        if (kind == KIND_TELEMETRY) {
+            if (length != TELEMETRY_BODY) {
+                return malformed("telemetría de " + length + " bytes");
+            }
+            sample.setSpeed(Double.longBitsToDouble(getLong(buf, pos)));
+            sample.setStation(getInt(buf, pos + 8));
+            sample.setBattery((short) ((buf[pos + 12] << 8) | (buf[pos + 13] & 0xFF)));
+            sample.setDirection(Direction.fromOrdinal(buf[pos + 14] & 0xFF));
+            return TELEMETRY;
+        }
+        if (kind == KIND_MESSAGE) {
+            message = new String(buf, pos, length, StandardCharsets.ISO_8859_1);
+            return MESSAGE;
+        }
+        return malformed("tipo " + kind);
+    }
+
+    private int malformed(String detail) {
+        message = "BIN1[" + detail + "]";
+        error = TelemetryDecoder.BAD_FRAME;
+        return MALFORMED;
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public int getError() {
+        return error;
+    }
+
+    @Override
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    @Override
+    public void write(String frame, OutputStream out) throws IOException {
+        int length = frame.length();
+        if (length + 1 > MAX_LENGTH) {
+            throw new IOException("Frame demasiado largo: " + length + " bytes");
+        }
+        if (output.length < HEADER_SIZE + length) {
+            output = new byte[Math.max(HEADER_SIZE + length, output.length * 2)];
+        }
+        output[0] = (byte) ((length + 1) >>> 8);
+        output[1] = (byte) (length + 1);
+        output[2] = KIND_MESSAGE;
+        for (int i = 0; i < length; i++) {
+            char c = frame.charAt(i);
+            output[HEADER_SIZE + i] = c <= 0xFF ? (byte) c : (byte) '?';
+        }
+        out.write(output, 0, HEADER_SIZE + length);
+    }
+
+    @Override
+    public int encodeTelemetry(TelemetrySample sample, byte[] buf, int pos) {
+        buf[pos] = 0;
+        buf[pos + 1] = TELEMETRY_BODY + 1;
+        buf[pos + 2] = KIND_TELEMETRY;
+        putLong(buf, pos + 3, Double.doubleToLongBits(sample.getSpeed()));
+        putInt(buf, pos + 11, sample.getStation());
+        buf[pos + 15] = (byte) (sample.getBattery() >>> 8);
+        buf[pos + 16] = (byte) sample.getBattery();
+        buf[pos + 17] = (byte) sample.getDirection().ordinal();
+        return pos + TELEMETRY_SIZE;
+    }
+
+    @Override
+    public int getMaxTelemetrySize() {
+        return TELEMETRY_SIZE;
+    }
+
+    private static long getLong(byte[] buf, int pos) {
+        return ((long) getInt(buf, pos) << 32) | (getInt(buf, pos + 4) & 0xFFFFFFFFL);
+    }
+
+    private static int getInt(byte[] buf, int pos) {
+        return (buf[pos] << 24) | ((buf[pos + 1] & 0xFF) << 16)
+            | ((buf[pos + 2] & 0xFF) << 8) | (buf[pos + 3] & 0xFF);
+    }
+
+    private static void putLong(byte[] buf, int pos, long value) {
+        putInt(buf, pos, (int) (value >>> 32));
+        putInt(buf, pos + 4, (int) value);
+    }
+
+    private static void putInt(byte[] buf, int pos, int value) {
+        buf[pos] = (byte) (value >>> 24);
+        buf[pos + 1] = (byte) (value >>> 16);
+        buf[pos + 2] = (byte) (value >>> 8);
+        buf[pos + 3] = (byte) value;
+    }
+}
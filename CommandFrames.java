@@ -0,0 +1,75 @@
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+/**
+ * Command Frames - Frames de comando precodificados
+ *
+ * Tras autenticarse el token no cambia y solo hay cuatro acciones, así
+ * que los cuatro frames TYPE:CMD se construyen y codifican una vez y
+ * cada envío reutiliza sus bytes: sin formatear, sin codificar y sin
+ * crear Strings por comando.
+ *
+ * Los buffers son de solo lectura; quien los escribe usa un duplicate()
+ * para no mover su posición.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public final class CommandFrames {
+
+    // Acciones precodificadas
+    private static final String[] ACTIONS = {
+        MetroProtocol.SPEED_UP, MetroProtocol.SLOW_DOWN, MetroProtocol.STOPNOW, MetroProtocol.STARTNOW
+    };
+
+    private final String token;
+    private final String[] text = new String[ACTIONS.length];
+    private final ByteBuffer[] encoded = new ByteBuffer[ACTIONS.length];
+
+    /**
+     * Codificar los frames de comando de un token
+     * @param token Token de sesión
+     * @param encoder Codificación del transporte (frame de texto a bytes)
+     */
+    public CommandFrames(String token, Function<String, ByteBuffer> encoder) {
+        this.token = token;
+        for (int i = 0; i < ACTIONS.length; i++) {
+            text[i] = MetroProtocol.commandMessage(token, ACTIONS[i]);
+            encoded[i] = encoder.apply(text[i]);
+        }
+    }
+
+    /**
+     * Buscar una acción
+     * @param action Acción (SPEED_UP, SLOW_DOWN, STOPNOW, STARTNOW)
+     * @return Índice para {@link #text} y {@link #encoded}, o -1 si no es una de las cuatro
+     */
+    public static int indexOf(String action) {
+        for (int i = 0; i < ACTIONS.length; i++) {
+            if (ACTIONS[i].equals(action)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index Resultado de {@link #indexOf}
+     * @return Frame de texto (para trazas)
+     */
+    public String text(int index) {
+        return text[index];
+    }
+
+    /**
+     * @param index Resultado de {@link #indexOf}
+     * @return Frame codificado, de solo lectura
+     */
+    public ByteBuffer encoded(int index) {
+        return encoded[index];
+    }
+
+    public String getToken() {
+        return token;
+    }
+}
@@ -0,0 +1,299 @@
+import java.io.*;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Console Output - Salida de consola asíncrona y por niveles
+ *
+ * Los threads que generan mensajes (el lector de la conexión, el menú)
+ * solo encolan líneas; un thread escritor las vuelca a stdout/stderr en
+ * bloque y hace flush cuando la cola queda vacía. Así la escritura en
+ * terminal, archivo o pipe nunca detiene la lectura del socket.
+ *
+ * Niveles (cada uno incluye a los anteriores):
+ * - ERROR:   errores
+ * - SUMMARY: resúmenes, menús y resultados finales (modo silencioso)
+ * - INFO:    mensajes informativos y telemetría
+ * - FRAME:   frames enviados y recibidos (por defecto)
+ *
+ * Encolar nunca bloquea: los errores llegan desde los threads lectores.
+ * Las líneas INFO y FRAME solo ocupan la cola hasta dejar libre una
+ * reserva ({@link #RESERVED_FRACTION} de la capacidad) para ERROR, SUMMARY
+ * y los prompts; lo que no cabe se descarta y se informa cuántas líneas
+ * de cada tipo se perdieron.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class ConsoleOutput implements Closeable {
+
+    /**
+     * Nivel de detalle de la salida
+     */
+    public enum Level {
+        ERROR, SUMMARY, INFO, FRAME
+    }
+
+    public static final int DEFAULT_QUEUE_SIZE = 8192;
+    // Parte de la cola reservada a errores y resúmenes (1/8)
+    public static final int RESERVED_FRACTION = 8;
+    private static final int STREAM_BUFFER = 64 * 1024;
+    private static final DateTimeFormatter TIME_FORMAT =
+        DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    /**
+     * Línea encolada
+     */
+    private static final class Entry {
+        final String text;
+        final boolean error;
+        final boolean newline;
+        final CountDownLatch flushed;
+
+        Entry(String text, boolean error, boolean newline, CountDownLatch flushed) {
+            this.text = text;
+            this.error = error;
+            this.newline = newline;
+            this.flushed = flushed;
+        }
+    }
+
+    /**
+     * Timestamp formateado para un segundo concreto
+     */
+    private static final class CachedTime {
+        final long second;
+        final String text;
+
+        CachedTime(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+
+    private final Writer out;
+    private final Writer err;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writer;
+    private final int reserved;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong droppedImportant = new AtomicLong();
+    private volatile Level level = Level.FRAME;
+    private volatile boolean compact;
+    private volatile boolean closed;
+    private volatile CachedTime cachedTime = new CachedTime(Long.MIN_VALUE, "");
+
+    /**
+     * Salida sobre stdout/stderr del proceso
+     * @return Consola con la codificación de la terminal
+     */
+    public static ConsoleOutput system() {
+        String encoding = System.getProperty("stdout.encoding", System.getProperty("sun.stdout.encoding"));
+        Charset charset = Charset.defaultCharset();
+        if (encoding != null && Charset.isSupported(encoding)) {
+            charset = Charset.forName(encoding);
+        }
+        return new ConsoleOutput(new FileOutputStream(FileDescriptor.out),
+            new FileOutputStream(FileDescriptor.err), charset, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Constructor de la consola
+     * @param out Destino de la salida normal
+     * @param err Destino de los errores
+     * @param charset Codificación
+     * @param queueSize Líneas máximas pendientes de escribir
+     */
+    public ConsoleOutput(OutputStream out, OutputStream err, Charset charset, int queueSize) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, charset), STREAM_BUFFER);
+        this.err = new BufferedWriter(new OutputStreamWriter(err, charset), STREAM_BUFFER);
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.reserved = Math.max(1, queueSize / RESERVED_FRACTION);
+
+        writer = new Thread(this::writeLoop, "metro-console");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Bucle del escritor: vuelca todo lo pendiente y hace flush al vaciar la cola
+     */
+    private void writeLoop() {
+        try {
+            while (true) {
+                Entry entry = queue.take();
+                do {
+                    write(entry);
+                    entry = queue.poll();
+                } while (entry != null);
+
+                writeDropped();
+                out.flush();
+                err.flush();
+            }
+        } catch (InterruptedException e) {
+            // Cierre de la consola
+        } catch (IOException e) {
+            // La salida ya no está disponible; no hay dónde informarlo
+        }
+    }
+
+    /**
+     * Informar las líneas descartadas desde el último aviso
+     */
+    private void writeDropped() throws IOException {
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            err.write("⚠️  " + lost + " líneas de salida descartadas (consola saturada)");
+            err.write(System.lineSeparator());
+        }
+        long lostImportant = droppedImportant.getAndSet(0);
+        if (lostImportant > 0) {
+            err.write("⚠️  " + lostImportant + " errores o resúmenes descartados (consola saturada)");
+            err.write(System.lineSeparator());
+        }
+    }
+
+    private void write(Entry entry) throws IOException {
+        if (entry.flushed != null) {
+            writeDropped();
+            out.flush();
+            err.flush();
+            entry.flushed.countDown();
+            return;
+        }
+
+        Writer target = entry.error ? err : out;
+        if (entry.error) {
+            // Lo ya escrito en stdout debe aparecer antes que el error
+            out.flush();
+        }
+        target.write(entry.text);
+        if (entry.newline) {
+            target.write(System.lineSeparator());
+        }
+        if (entry.error) {
+            err.flush();
+        }
+    }
+
+    /**
+     * Encolar una línea sin bloquear; las de detalle no pueden ocupar la
+     * reserva de errores y resúmenes
+     */
+    private void enqueue(Level lineLevel, String text, boolean error, boolean newline) {
+        if (closed || lineLevel.compareTo(level) > 0) {
+            return;
+        }
+
+        Entry entry = new Entry(text, error, newline, null);
+        if (lineLevel.compareTo(Level.SUMMARY) > 0) {
+            if (queue.remainingCapacity() <= reserved || !queue.offer(entry)) {
+                dropped.incrementAndGet();
+            }
+            return;
+        }
+
+        if (!queue.offer(entry)) {
+            droppedImportant.incrementAndGet();
+        }
+    }
+
+    public void error(String text) {
+        enqueue(Level.ERROR, text, true, true);
+    }
+
+    public void summary(String text) {
+        enqueue(Level.SUMMARY, text, false, true);
+    }
+
+    public void info(String text) {
+        enqueue(Level.INFO, text, false, true);
+    }
+
+    public void frame(String text) {
+        enqueue(Level.FRAME, text, false, true);
+    }
+
+    /**
+     * Escribir un prompt sin salto de línea (se muestra en cualquier nivel)
+     * @param text Texto del prompt
+     */
+    public void prompt(String text) {
+        enqueue(Level.ERROR, text, false, false);
+    }
+
+    /**
+     * Esperar a que todo lo encolado esté escrito
+     */
+    public void flush() {
+        if (closed || !writer.isAlive()) {
+            return;
+        }
+        CountDownLatch flushed = new CountDownLatch(1);
+        try {
+            queue.put(new Entry(null, false, false, flushed));
+            flushed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Escribir lo pendiente y detener el escritor
+     */
+    @Override
+    public void close() {
+        flush();
+        closed = true;
+        writer.interrupt();
+    }
+
+    /**
+     * Hora de un timestamp con formato HH:mm:ss, cacheada por segundo
+     * @param millis Timestamp en milisegundos
+     * @return Hora formateada
+     */
+    public String timestamp(long millis) {
+        long second = Math.floorDiv(millis, 1000);
+        CachedTime current = cachedTime;
+        if (current.second != second) {
+            current = new CachedTime(second, TIME_FORMAT.format(Instant.ofEpochMilli(millis)));
+            cachedTime = current;
+        }
+        return current.text;
+    }
+
+    /**
+     * @param lineLevel Nivel a consultar
+     * @return true si las líneas de ese nivel se muestran
+     */
+    public boolean isEnabled(Level lineLevel) {
+        return lineLevel.compareTo(level) <= 0;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * @return true si la telemetría se muestra en una sola línea
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+}
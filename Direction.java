@@ -0,0 +1,27 @@
+/**
+ * Direction - Sentido de marcha reportado en la telemetría
+ *
+ * Corresponde al campo DIRECTION de TYPE:TELEMETRY. Los valores que el
+ * cliente no reconoce se mapean a {@link #UNKNOWN} en lugar de fallar.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public enum Direction {
+    FORWARD,
+    BACKWARD,
+    STOPPED,
+    UNKNOWN;
+
+    // Cache de values() para evitar copiar el arreglo en cada acceso
+    private static final Direction[] VALUES = values();
+
+    /**
+     * Obtener la dirección por ordinal (usado por formatos binarios)
+     * @param ordinal Ordinal de la dirección
+     * @return Dirección o UNKNOWN si está fuera de rango
+     */
+    public static Direction fromOrdinal(int ordinal) {
+        return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : UNKNOWN;
+    }
+}
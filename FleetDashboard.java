@@ -0,0 +1,299 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableRowSorter;
+import java.awt.*;
+import java.awt.event.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fleet Dashboard - Vista de toda la flota en una tabla
+ *
+ * Conecta las sesiones de un archivo de flota con {@link MetroFleet} y
+ * muestra una fila por tren en un {@link FleetTableModel}. La tabla se
+ * refresca a ritmo fijo ({@link #REFRESH_INTERVAL}) con las filas que
+ * cambiaron, no con cada muestra, y al ordenar por una columna las filas
+ * se reordenan cada {@link #RESORT_INTERVAL} en lugar de en cada refresco,
+ * para que la tabla no salte constantemente con cientos de trenes.
+ *
+ * Cada tren reconecta por separado si pierde la conexión. Los trenes que
+ * no llegan a autenticarse quedan desconectados en la tabla y sus errores
+ * se resumen en la línea de estado (el detalle, en su tooltip). Al cerrar
+ * la ventana las sesiones se cierran en segundo plano, sin bloquear el EDT.
+ *
+ * Uso: java MetroClientGUI --fleet flota.txt
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class FleetDashboard extends JFrame {
+
+    private static final long serialVersionUID = 1L;
+
+    // Refresco de la tabla (~10 fps) y reordenación
+    private static final int REFRESH_INTERVAL = 100;
+    private static final int RESORT_INTERVAL = 1000;
+
+    // Colores (los de MetroClientGUI)
+    private static final Color SUCCESS_COLOR = new Color(76, 175, 80);
+    private static final Color ERROR_COLOR = new Color(244, 67, 54);
+    private static final Color WARNING_COLOR = new Color(255, 152, 0);
+    private static final Color BACKGROUND_COLOR = new Color(250, 250, 250);
+
+    private final MetroFleet fleet;
+    private final FleetTableModel model;
+    private final TableRowSorter<FleetTableModel> sorter;
+    private final JLabel statusLabel;
+    private final LongAdder received = new LongAdder();
+    private javax.swing.Timer refreshTimer;
+
+    // Estado del refresco (solo EDT)
+    private String startSummary = "⏳ Conectando...";
+    private boolean unsorted;
+    private boolean stopping;
+    private long lastResort;
+    private long lastStatus;
+    private long lastReceived;
+
+    /**
+     * Crear el panel de una flota
+     * @param endpoints Sesiones de la flota
+     */
+    public FleetDashboard(List<MetroFleet.Endpoint> endpoints) {
+        this.fleet = new MetroFleet(endpoints);
+        fleet.setAutoReconnect(true);
+
+        List<String> names = new ArrayList<>();
+        for (MetroFleet.Endpoint endpoint : endpoints) {
+            names.add(endpoint.name);
+        }
+        this.model = new FleetTableModel(names);
+
+        setTitle("🚆 Metro Telemetry Client - Flota (" + endpoints.size() + " trenes)");
+        setSize(900, 700);
+        setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+        setLayout(new BorderLayout(10, 10));
+        getContentPane().setBackground(BACKGROUND_COLOR);
+
+        JTable table = new JTable(model);
+        table.setFillsViewportHeight(true);
+        table.setRowHeight(22);
+        table.setFont(new Font("Arial", Font.PLAIN, 13));
+        table.getTableHeader().setFont(new Font("Arial", Font.BOLD, 13));
+
+        // Las actualizaciones no reordenan: se reordena periódicamente
+        sorter = new TableRowSorter<>(model);
+        sorter.setSortsOnUpdates(false);
+        table.setRowSorter(sorter);
+
+        table.setDefaultRenderer(TrainState.Status.class, new StatusRenderer());
+        table.getColumnModel().getColumn(FleetTableModel.COLUMN_BATTERY).setCellRenderer(new BatteryRenderer());
+        table.getColumnModel().getColumn(FleetTableModel.COLUMN_SPEED).setCellRenderer(new SpeedRenderer());
+
+        JScrollPane scroll = new JScrollPane(table);
+        scroll.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createEmptyBorder(10, 10, 0, 10),
+            BorderFactory.createLineBorder(new Color(200, 200, 200))));
+        add(scroll, BorderLayout.CENTER);
+
+        statusLabel = new JLabel(startSummary);
+        statusLabel.setFont(new Font("Arial", Font.PLAIN, 12));
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 10));
+        add(statusLabel, BorderLayout.SOUTH);
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                stop();
+            }
+        });
+
+        setLocationRelativeTo(null);
+    }
+
+    /**
+     * Conectar la flota en segundo plano y empezar a refrescar la tabla
+     */
+    public void start() {
+        Thread starter = new Thread(() -> {
+            try {
+                long begin = System.nanoTime();
+                int authenticated = fleet.start((train, sample) -> received.increment());
+                long elapsed = (System.nanoTime() - begin) / 1_000_000;
+                int failed = 0;
+                String first = null;
+                StringBuilder details = new StringBuilder("<html>");
+                for (int i = 0; i < fleet.size(); i++) {
+                    String failure = fleet.getFailure(i);
+                    if (failure != null) {
+                        String line = fleet.getEndpoint(i) + ": " + failure;
+                        if (first == null) {
+                            first = line;
+                        }
+                        details.append(escape(line)).append("<br>");
+                        failed++;
+                    }
+                }
+                String summary = "✅ " + authenticated + "/" + fleet.size() + " sesiones autenticadas en "
+                    + elapsed + " ms" + (failed > 0 ? " · ❌ " + failed + " con error (" + first
+                    + (failed > 1 ? ", ..." : "") + ")" : "");
+                String tooltip = failed > 0 ? details.append("</html>").toString() : null;
+                SwingUtilities.invokeLater(() -> {
+                    startSummary = summary;
+                    statusLabel.setToolTipText(tooltip);
+                    if (!stopping) {
+                        lastStatus = 0;
+                        updateStatus(System.currentTimeMillis());
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "metro-fleet-start");
+        starter.setDaemon(true);
+        starter.start();
+
+        refreshTimer = new javax.swing.Timer(REFRESH_INTERVAL, e -> refresh());
+        refreshTimer.setCoalesce(true);
+        refreshTimer.start();
+    }
+
+    /**
+     * Detener el refresco y cerrar todas las sesiones en segundo plano;
+     * la aplicación termina cuando se han cerrado
+     */
+    private void stop() {
+        if (stopping) {
+            return;
+        }
+        stopping = true;
+        if (refreshTimer != null) {
+            refreshTimer.stop();
+        }
+        statusLabel.setText("⏳ Cerrando " + fleet.size() + " sesiones...");
+        Thread stopper = new Thread(() -> {
+            try {
+                fleet.shutdown();
+            } catch (InterruptedException e) {
+                fleet.close();
+            }
+            SwingUtilities.invokeLater(() -> {
+                dispose();
+                System.exit(0);
+            });
+        }, "metro-fleet-stop");
+        stopper.start();
+    }
+
+    /**
+     * Copiar los trenes que cambiaron y, a menor ritmo, reordenar y
+     * actualizar la línea de estado
+     */
+    private void refresh() {
+        if (model.refresh(this::cellOf) > 0) {
+            unsorted = true;
+        }
+
+        long now = System.currentTimeMillis();
+        if (unsorted && now - lastResort >= RESORT_INTERVAL) {
+            if (!sorter.getSortKeys().isEmpty()) {
+                sorter.sort();
+            }
+            unsorted = false;
+            lastResort = now;
+        }
+
+        if (now - lastStatus >= RESORT_INTERVAL) {
+            updateStatus(now);
+        }
+    }
+
+    private TrainStateCell cellOf(int train) {
+        MetroSession session = fleet.getSession(train);
+        return session != null ? session.getStateCell() : null;
+    }
+
+    /**
+     * Línea de estado: arranque, muestras por segundo y trenes reconectando
+     */
+    private void updateStatus(long now) {
+        long total = received.sum();
+        double rate = lastStatus > 0 ? (total - lastReceived) * 1000.0 / (now - lastStatus) : 0;
+        int reconnecting = 0;
+        for (int i = 0; i < model.getRowCount(); i++) {
+            if (model.getStatus(i) == TrainState.Status.RECONNECTING) {
+                reconnecting++;
+            }
+        }
+        statusLabel.setText(String.format("%s · 📊 %.0f muestras/s, %d en total%s", startSummary, rate, total,
+            reconnecting > 0 ? " · 🔄 " + reconnecting + " reconectando" : ""));
+        lastStatus = now;
+        lastReceived = total;
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * Estado de la conexión en color
+     */
+    private static final class StatusRenderer extends DefaultTableCellRenderer {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean selected,
+                                                       boolean focused, int row, int column) {
+            super.getTableCellRendererComponent(table, value, selected, focused, row, column);
+            if (!selected) {
+                TrainState.Status status = (TrainState.Status) value;
+                setForeground(status == TrainState.Status.AUTHENTICATED ? SUCCESS_COLOR
+                    : status == TrainState.Status.RECONNECTING || status == TrainState.Status.CONNECTED
+                    ? WARNING_COLOR : ERROR_COLOR);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Batería con los umbrales de alerta de la GUI
+     */
+    private static final class BatteryRenderer extends DefaultTableCellRenderer {
+        private static final long serialVersionUID = 1L;
+
+        BatteryRenderer() {
+            setHorizontalAlignment(SwingConstants.RIGHT);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean selected,
+                                                       boolean focused, int row, int column) {
+            super.getTableCellRendererComponent(table, value != null ? value + " %" : "--",
+                selected, focused, row, column);
+            if (!selected) {
+                int battery = value != null ? (Integer) value : -1;
+                setForeground(battery < 0 ? Color.GRAY
+                    : battery < MetroClientGUI.BATTERY_CRITICAL ? ERROR_COLOR
+                    : battery < MetroClientGUI.BATTERY_LOW ? WARNING_COLOR : table.getForeground());
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Velocidad con un decimal
+     */
+    private static final class SpeedRenderer extends DefaultTableCellRenderer {
+        private static final long serialVersionUID = 1L;
+
+        SpeedRenderer() {
+            setHorizontalAlignment(SwingConstants.RIGHT);
+        }
+
+        @Override
+        protected void setValue(Object value) {
+            setText(value != null ? String.format("%.1f", (Double) value) : "--");
+        }
+    }
+}
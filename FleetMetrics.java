@@ -0,0 +1,209 @@
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Fleet Metrics - Agregado de las métricas de todas las sesiones
+ *
+ * No registra nada por sí mismo: cada consulta suma los contadores y
+ * fusiona los histogramas de las sesiones, así que el camino de los
+ * frames no paga coste adicional por tener una vista de flota.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class FleetMetrics implements MetroMetricsMBean {
+
+    private final CopyOnWriteArrayList<MetroMetrics> sessions = new CopyOnWriteArrayList<>();
+    private final MetroMetrics.Rates rates = new MetroMetrics.Rates(3);
+
+    /**
+     * Incluir las métricas de una sesión en el agregado
+     * @param metrics Métricas de la sesión
+     */
+    public void add(MetroMetrics metrics) {
+        sessions.add(metrics);
+    }
+
+    /**
+     * @return Número de sesiones agregadas
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    private long[] latencyBuckets() {
+        long[] buckets = new long[LatencyHistogram.BUCKETS];
+        for (MetroMetrics session : sessions) {
+            session.getLatency().addTo(buckets);
+        }
+        return buckets;
+    }
+
+    private long[] intervalBuckets() {
+        long[] buckets = new long[LatencyHistogram.BUCKETS];
+        for (MetroMetrics session : sessions) {
+            session.getInterval().addTo(buckets);
+        }
+        return buckets;
+    }
+
+    @Override
+    public long getFramesSent() {
+        long total = 0;
+        for (MetroMetrics session : sessions) {
+            total += session.getFramesSent();
+        }
+        return total;
+    }
+
+    @Override
+    public long getFramesReceived() {
+        long total = 0;
+        for (MetroMetrics session : sessions) {
+            total += session.getFramesReceived();
+        }
+        return total;
+    }
+
+    @Override
+    public long getBytesSent() {
+        long total = 0;
+        for (MetroMetrics session : sessions) {
+            total += session.getBytesSent();
+        }
+        return total;
+    }
+
+    @Override
+    public long getBytesReceived() {
+        long total = 0;
+        for (MetroMetrics session : sessions) {
+            total += session.getBytesReceived();
+        }
+        return total;
+    }
+
+    @Override
+    public double getFramesSentPerSecond() {
+        return rates.perSecond(0, getFramesSent());
+    }
+
+    @Override
+    public double getFramesReceivedPerSecond() {
+        return rates.perSecond(1, getFramesReceived());
+    }
+
+    @Override
+    public double getBytesReceivedPerSecond() {
+        return rates.perSecond(2, getBytesReceived());
+    }
+
+    @Override
+    public long getReplies() {
+        long total = 0;
+        for (MetroMetrics session : sessions) {
+            total += session.getReplies();
+        }
+        return total;
+    }
+
+    @Override
+    public long getTimeouts() {
+        long total = 0;
+        for (MetroMetrics session : sessions) {
+            total += session.getTimeouts();
+        }
+        return total;
+    }
+
+    @Override
+    public long getErrorReplies() {
+        long total = 0;
+        for (MetroMetrics session : sessions) {
+            total += session.getErrorReplies();
+        }
+        return total;
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return LatencyHistogram.percentile(latencyBuckets(), 0.50) / 1000;
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return LatencyHistogram.percentile(latencyBuckets(), 0.99) / 1000;
+    }
+
+    @Override
+    public long getLatencyP999Micros() {
+        return LatencyHistogram.percentile(latencyBuckets(), 0.999) / 1000;
+    }
+
+    @Override
+    public long getLatencyMaxMicros() {
+        return LatencyHistogram.max(latencyBuckets()) / 1000;
+    }
+
+    @Override
+    public double getLatencyMeanMicros() {
+        return LatencyHistogram.mean(latencyBuckets()) / 1000;
+    }
+
+    @Override
+    public long getTelemetryFrames() {
+        long total = 0;
+        for (MetroMetrics session : sessions) {
+            total += session.getTelemetryFrames();
+        }
+        return total;
+    }
+
+    @Override
+    public long getMalformedFrames() {
+        long total = 0;
+        for (MetroMetrics session : sessions) {
+            total += session.getMalformedFrames();
+        }
+        return total;
+    }
+
+    @Override
+    public long getTelemetryIntervalP50Micros() {
+        return LatencyHistogram.percentile(intervalBuckets(), 0.50) / 1000;
+    }
+
+    @Override
+    public long getTelemetryIntervalP99Micros() {
+        return LatencyHistogram.percentile(intervalBuckets(), 0.99) / 1000;
+    }
+
+    /**
+     * @return Jitter medio de las sesiones
+     */
+    @Override
+    public double getTelemetryJitterMicros() {
+        double total = 0;
+        int count = 0;
+        for (MetroMetrics session : sessions) {
+            total += session.getTelemetryJitterMicros();
+            count++;
+        }
+        return count == 0 ? 0 : total / count;
+    }
+
+    @Override
+    public long getReconnects() {
+        long total = 0;
+        for (MetroMetrics session : sessions) {
+            total += session.getReconnects();
+        }
+        return total;
+    }
+
+    @Override
+    public void resetHistograms() {
+        for (MetroMetrics session : sessions) {
+            session.resetHistograms();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.IntFunction;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Fleet Table Model - Estado de toda la flota como tabla
+ *
+ * Una fila por tren sobre arrays planos por columna (velocidad, batería,
+ * dirección...), de modo que un {@code JTable} solo consulta las celdas
+ * visibles y la memoria no depende de cuántas muestras lleguen.
+ *
+ * Los threads lectores no tocan el modelo: cada sesión publica su último
+ * estado en su {@link TrainStateCell}. El EDT llama a {@link #refresh}
+ * a ritmo limitado (desde un timer) y copia solo los trenes cuya versión
+ * cambió, así que todas las muestras recibidas entre dos refrescos se
+ * funden en una sola actualización por tren. Las filas cambiadas se
+ * notifican agrupadas en rangos contiguos de
+ * {@code fireTableRowsUpdated}.
+ *
+ * Solo se usa desde el EDT.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class FleetTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    // Columnas
+    public static final int COLUMN_NAME = 0;
+    public static final int COLUMN_STATUS = 1;
+    public static final int COLUMN_SPEED = 2;
+    public static final int COLUMN_BATTERY = 3;
+    public static final int COLUMN_DIRECTION = 4;
+    public static final int COLUMN_STATION = 5;
+    public static final int COLUMN_SAMPLES = 6;
+    public static final int COLUMN_UPDATED = 7;
+
+    private static final String[] COLUMN_NAMES = {
+        "Tren", "Estado", "Velocidad (km/h)", "Batería (%)", "Dirección", "Estación", "Muestras", "Última"
+    };
+    private static final Class<?>[] COLUMN_CLASSES = {
+        String.class, TrainState.Status.class, Double.class, Integer.class, Direction.class,
+        Integer.class, Long.class, String.class
+    };
+
+    // Con más rangos que este se notifica uno solo que los abarca
+    private static final int MAX_RANGES = 16;
+
+    private static final DateTimeFormatter TIME_FORMAT =
+        DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    // Estado mostrado, un elemento por tren
+    private final String[] names;
+    private final TrainState.Status[] statuses;
+    private final double[] speeds;
+    private final int[] batteries;
+    private final Direction[] directions;
+    private final int[] stations;
+    private final long[] samples;
+    private final long[] updatedAt;
+    private final String[] updatedText;
+
+    // Versión copiada de cada celda
+    private final long[] versions;
+
+    // Filas cambiadas en el último refresco (reutilizado)
+    private final int[] changed;
+
+    /**
+     * Crear el modelo de una flota
+     * @param names Nombre de cada tren, en el orden de la flota
+     */
+    public FleetTableModel(List<String> names) {
+        int trains = names.size();
+        this.names = names.toArray(new String[0]);
+        this.statuses = new TrainState.Status[trains];
+        this.speeds = new double[trains];
+        this.batteries = new int[trains];
+        this.directions = new Direction[trains];
+        this.stations = new int[trains];
+        this.samples = new long[trains];
+        this.updatedAt = new long[trains];
+        this.updatedText = new String[trains];
+        this.versions = new long[trains];
+        this.changed = new int[trains];
+
+        for (int i = 0; i < trains; i++) {
+            statuses[i] = TrainState.Status.DISCONNECTED;
+            directions[i] = Direction.UNKNOWN;
+            stations[i] = TelemetrySample.NO_STATION;
+            versions[i] = -1;
+        }
+    }
+
+    /**
+     * Copiar el estado de los trenes que cambiaron y notificar sus filas
+     * @param cells Celda de estado de cada tren (null si aún no tiene sesión)
+     * @return Filas actualizadas
+     */
+    public int refresh(IntFunction<TrainStateCell> cells) {
+        int count = 0;
+        for (int train = 0; train < names.length; train++) {
+            TrainStateCell cell = cells.apply(train);
+            if (cell == null || cell.getVersion() == versions[train]) {
+                continue;
+            }
+            TrainState state = cell.snapshot();
+            versions[train] = state.getVersion();
+            statuses[train] = state.getStatus();
+            speeds[train] = state.getSpeed();
+            batteries[train] = state.getBattery();
+            directions[train] = state.getDirection();
+            stations[train] = state.getStation();
+            samples[train] = state.getSamples();
+            if (state.getUpdatedAt() != updatedAt[train]) {
+                updatedAt[train] = state.getUpdatedAt();
+                updatedText[train] = null;
+            }
+            changed[count++] = train;
+        }
+        fireRanges(count);
+        return count;
+    }
+
+    /**
+     * Notificar las filas cambiadas como rangos contiguos
+     */
+    private void fireRanges(int count) {
+        if (count == 0) {
+            return;
+        }
+
+        int ranges = 1;
+        for (int i = 1; i < count; i++) {
+            if (changed[i] != changed[i - 1] + 1) {
+                ranges++;
+            }
+        }
+        if (ranges > MAX_RANGES) {
+            fireTableRowsUpdated(changed[0], changed[count - 1]);
+            return;
+        }
+
+        int start = changed[0];
+        for (int i = 1; i <= count; i++) {
+            if (i == count || changed[i] != changed[i - 1] + 1) {
+                fireTableRowsUpdated(start, changed[i - 1]);
+                if (i < count) {
+                    start = changed[i];
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return names.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return COLUMN_CLASSES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case COLUMN_NAME:
+                return names[row];
+            case COLUMN_STATUS:
+                return statuses[row];
+            case COLUMN_SPEED:
+                return samples[row] > 0 ? speeds[row] : null;
+            case COLUMN_BATTERY:
+                return samples[row] > 0 ? batteries[row] : null;
+            case COLUMN_DIRECTION:
+                return directions[row];
+            case COLUMN_STATION:
+                return stations[row] != TelemetrySample.NO_STATION ? stations[row] : null;
+            case COLUMN_SAMPLES:
+                return samples[row];
+            default:
+                return getUpdatedText(row);
+        }
+    }
+
+    /**
+     * Hora de la última muestra, formateada solo cuando cambia
+     */
+    private String getUpdatedText(int row) {
+        if (updatedAt[row] == 0) {
+            return "--";
+        }
+        if (updatedText[row] == null) {
+            updatedText[row] = TIME_FORMAT.format(Instant.ofEpochMilli(updatedAt[row]));
+        }
+        return updatedText[row];
+    }
+
+    /**
+     * @param row Fila del modelo
+     * @return Batería del tren (-1 si aún no hay telemetría)
+     */
+    public int getBattery(int row) {
+        return samples[row] > 0 ? batteries[row] : -1;
+    }
+
+    /**
+     * @param row Fila del modelo
+     * @return Estado de la conexión del tren
+     */
+    public TrainState.Status getStatus(int row) {
+        return statuses[row];
+    }
+}
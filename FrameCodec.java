@@ -0,0 +1,115 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Frame Codec - Codificación de los frames en el socket
+ *
+ * Separa el protocolo (tipos y campos de los frames) de su representación
+ * en bytes. Hay dos codificaciones:
+ * - {@link TextFrameCodec} ("TEXT"): líneas CLAVE:VALOR terminadas en '\n'
+ *   (la original, siempre disponible)
+ * - {@link BinaryFrameCodec} ("BIN1"): frames con prefijo de longitud y
+ *   telemetría en campos de posición fija
+ *
+ * Toda conexión empieza en texto; el cliente propone otra codificación con
+ * TYPE:HELLO y ambos extremos cambian justo después de TYPE:HELLO_OK. Un
+ * servidor que no conozca HELLO responde TYPE:ERR y se sigue en texto.
+ *
+ * Una instancia guarda buffers de trabajo y el último frame leído: se usa
+ * una para leer y otra para escribir, cada una desde un solo thread (o
+ * con un lock externo).
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public interface FrameCodec {
+
+    // Resultados de read()
+    int END = -1;
+    int MESSAGE = 0;
+    int TELEMETRY = 1;
+    int MALFORMED = 2;
+
+    /**
+     * @return Nombre de la codificación en el handshake
+     */
+    String getName();
+
+    /**
+     * Leer el siguiente frame
+     * @param in Buffer de entrada del socket
+     * @param sample Muestra destino si el frame es telemetría
+     * @return TELEMETRY, MESSAGE, MALFORMED o END si el stream terminó
+     * @throws IOException si la lectura falla o el stream se corta a mitad de frame
+     */
+    int read(FrameInput in, TelemetrySample sample) throws IOException;
+
+    /**
+     * @return Texto del último frame MESSAGE o MALFORMED
+     */
+    String getMessage();
+
+    /**
+     * @return Código de {@link TelemetryDecoder} del último frame MALFORMED
+     */
+    int getError();
+
+    /**
+     * @return Bytes que ocupaba en el socket el último frame leído
+     */
+    int getFrameLength();
+
+    /**
+     * Escribir un frame de texto del protocolo (sin flush)
+     * @param frame Frame TYPE:...;CLAVE:VALOR sin terminador
+     * @param out Stream de salida
+     * @throws IOException si la escritura falla
+     */
+    void write(String frame, OutputStream out) throws IOException;
+
+    /**
+     * Codificar un frame completo, listo para escribir tal cual
+     * @param frame Frame TYPE:...;CLAVE:VALOR sin terminador
+     * @return Bytes del frame en el socket
+     * @throws IllegalArgumentException si el frame no cabe en la codificación
+     */
+    default byte[] encode(String frame) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(frame.length() + 4);
+        try {
+            write(frame, out);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Codificar una muestra de telemetría (lado servidor)
+     * @param sample Muestra a codificar
+     * @param buf Buffer destino con al menos {@link #getMaxTelemetrySize()} bytes libres
+     * @param pos Posición de escritura
+     * @return Nueva posición
+     */
+    int encodeTelemetry(TelemetrySample sample, byte[] buf, int pos);
+
+    /**
+     * @return Tamaño máximo de un frame de telemetría codificado
+     */
+    int getMaxTelemetrySize();
+
+    /**
+     * Crear un codec por nombre
+     * @param name TEXT o BIN1
+     * @return Codec nuevo, o null si el nombre no se conoce
+     */
+    static FrameCodec create(String name) {
+        if (TextFrameCodec.NAME.equals(name)) {
+            return new TextFrameCodec();
+        }
+        if (BinaryFrameCodec.NAME.equals(name)) {
+            return new BinaryFrameCodec();
+        }
+        return null;
+    }
+}
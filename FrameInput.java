@@ -0,0 +1,183 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Frame Input - Buffer de lectura para los codecs
+ *
+ * Sustituye a BufferedInputStream en el thread lector: sin
+ * sincronización por byte y con acceso directo al array, de modo que un
+ * codec puede decodificar un frame en su sitio sin copiarlo.
+ *
+ * Un frame tomado con {@link #take(int)} o {@link #takeLine(byte)} sigue
+ * válido en {@link #buffer()} hasta la siguiente lectura. No es thread-safe.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public final class FrameInput {
+
+    public static final int DEFAULT_SIZE = 16 * 1024;
+
+    // Vista de 8 bytes del buffer para buscar delimitadores
+    private static final VarHandle LONGS =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final InputStream in;
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private int lineStart;
+
+    public FrameInput(InputStream in) {
+        this(in, DEFAULT_SIZE);
+    }
+
+    /**
+     * Constructor del buffer
+     * @param in Stream del socket
+     * @param size Tamaño inicial del buffer (crece si llega un frame mayor)
+     */
+    public FrameInput(InputStream in, int size) {
+        this.in = in;
+        this.buf = new byte[size];
+    }
+
+    /**
+     * Leer un byte
+     * @return Byte (0-255) o -1 al final del stream
+     * @throws IOException si la lectura falla
+     */
+    public int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos++] & 0xFF;
+    }
+
+    /**
+     * Consumir n bytes contiguos
+     * @param n Bytes a tomar
+     * @return Posición de los bytes en {@link #buffer()}, o -1 si el stream
+     *         terminó justo en el límite de un frame
+     * @throws EOFException si el stream termina a mitad de los n bytes
+     * @throws IOException si la lectura falla
+     */
+    public int take(int n) throws IOException {
+        while (limit - pos < n) {
+            if (!fill()) {
+                if (limit == pos) {
+                    return -1;
+                }
+                throw new EOFException("Stream cortado a mitad de frame");
+            }
+        }
+        int start = pos;
+        pos += n;
+        return start;
+    }
+
+    /**
+     * Consumir una línea: los bytes hasta el delimitador (que se descarta)
+     *
+     * El delimitador se busca directamente en el buffer, sin decodificar
+     * ni copiar la línea; queda en {@link #buffer()} a partir de
+     * {@link #lineStart()}.
+     *
+     * @param delimiter Byte que termina la línea (normalmente '\n')
+     * @return Longitud de la línea sin delimitador, o -1 al final del
+     *         stream (una última línea sin delimitador se devuelve entera)
+     * @throws IOException si la lectura falla
+     */
+    public int takeLine(byte delimiter) throws IOException {
+        int scanned = 0;
+        while (true) {
+            int found = indexOf(buf, pos + scanned, limit, delimiter);
+            if (found >= 0) {
+                lineStart = pos;
+                pos = found + 1;
+                return found - lineStart;
+            }
+            scanned = limit - pos;
+            if (!fill()) {
+                if (limit == pos) {
+                    return -1;
+                }
+                lineStart = pos;
+                pos = limit;
+                return limit - lineStart;
+            }
+        }
+    }
+
+    /**
+     * Buscar un byte de 8 en 8 (SWAR): cada long se compara con el byte
+     * repetido y la primera coincidencia se localiza por su bit alto
+     * @return Posición del byte, o -1 si no está en [from, to)
+     */
+    static int indexOf(byte[] buf, int from, int to, byte value) {
+        long pattern = (value & 0xFFL) * 0x0101010101010101L;
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long word = (long) LONGS.get(buf, i) ^ pattern;
+            long zero = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+            if (zero != 0) {
+                return i + (Long.numberOfTrailingZeros(zero) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (buf[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Posición en {@link #buffer()} de la última línea tomada
+     */
+    public int lineStart() {
+        return lineStart;
+    }
+
+    /**
+     * Leer más bytes del stream, compactando o ampliando el buffer
+     * @return false al final del stream
+     */
+    private boolean fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.length) {
+            byte[] larger = new byte[buf.length * 2];
+            System.arraycopy(buf, 0, larger, 0, limit);
+            buf = larger;
+        }
+        int count = in.read(buf, limit, buf.length - limit);
+        if (count < 0) {
+            return false;
+        }
+        limit += count;
+        return true;
+    }
+
+    /**
+     * @return Array con los bytes leídos (las posiciones las da take)
+     */
+    public byte[] buffer() {
+        return buf;
+    }
+
+    /**
+     * @return Bytes que se pueden leer sin bloquear
+     * @throws IOException si el stream falla
+     */
+    public int available() throws IOException {
+        return limit - pos + in.available();
+    }
+}
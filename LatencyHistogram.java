@@ -0,0 +1,155 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency Histogram - Histograma de latencias de memoria fija
+ *
+ * Buckets log-lineales: cada potencia de 2 se divide en 16 sub-buckets,
+ * así que el error relativo de cualquier percentil es menor al 6,25% y
+ * todo el rango (1 ns a ~18 minutos) cabe en 592 contadores.
+ *
+ * Registrar un valor es un incremento atómico sin locks ni asignaciones;
+ * puede hacerse desde cualquier número de threads. Las lecturas recorren
+ * los contadores y pueden ver un registro concurrente a medias (un valor
+ * contado en el total pero no aún en su bucket), algo aceptable para
+ * métricas.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class LatencyHistogram {
+
+    // 16 sub-buckets por potencia de 2 (los valores < 32 son exactos)
+    private static final int SUB_BITS = 4;
+
+    // Valor máximo registrable (~18 minutos en nanosegundos)
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Bucket de un valor
+     */
+    static int index(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return (shift << SUB_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Mayor valor que cae en un bucket
+     */
+    static long upperBound(int index) {
+        int shift = Math.max(0, (index >> SUB_BITS) - 1);
+        long sub = index - ((long) shift << SUB_BITS);
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Registrar un valor (negativos cuentan como 0, los enormes como MAX_VALUE)
+     * @param value Valor, normalmente en nanosegundos
+     */
+    public void record(long value) {
+        counts.incrementAndGet(index(Math.min(Math.max(value, 0), MAX_VALUE)));
+    }
+
+    /**
+     * Sumar los contadores a un array (para agregar varios histogramas)
+     * @param target Array de {@link #BUCKETS} posiciones
+     */
+    void addTo(long[] target) {
+        for (int i = 0; i < BUCKETS; i++) {
+            target[i] += counts.get(i);
+        }
+    }
+
+    /**
+     * @return Copia de los contadores
+     */
+    long[] snapshot() {
+        long[] copy = new long[BUCKETS];
+        addTo(copy);
+        return copy;
+    }
+
+    /**
+     * @param q Cuantil entre 0 y 1 (0.99 = p99)
+     * @return Valor del cuantil (0 si no hay registros)
+     */
+    public long percentile(double q) {
+        return percentile(snapshot(), q);
+    }
+
+    /**
+     * @return Número de valores registrados
+     */
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @return Mayor valor registrado, redondeado al límite de su bucket
+     */
+    public long max() {
+        return max(snapshot());
+    }
+
+    /**
+     * @return Media aproximada (cada valor cuenta como el límite de su bucket)
+     */
+    public double mean() {
+        return mean(snapshot());
+    }
+
+    /**
+     * Vaciar el histograma
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    static long percentile(long[] buckets, double q) {
+        long total = 0;
+        for (long count : buckets) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return MAX_VALUE;
+    }
+
+    static long max(long[] buckets) {
+        for (int i = buckets.length - 1; i >= 0; i--) {
+            if (buckets[i] > 0) {
+                return upperBound(i);
+            }
+        }
+        return 0;
+    }
+
+    static double mean(long[] buckets) {
+        long total = 0;
+        double sum = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i];
+            sum += (double) buckets[i] * upperBound(i);
+        }
+        return total == 0 ? 0 : sum / total;
+    }
+}
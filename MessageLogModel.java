@@ -0,0 +1,112 @@
+import java.util.ArrayDeque;
+import javax.swing.AbstractListModel;
+
+/**
+ * Message Log Model - Log de mensajes acotado para la GUI
+ *
+ * Conserva solo las últimas N entradas en un buffer circular y las expone
+ * como {@link javax.swing.ListModel}, de modo que un {@code JList} pinte
+ * únicamente las filas visibles y la memoria no crezca con la duración
+ * de la sesión.
+ *
+ * Las entradas se añaden desde cualquier thread a una cola pendiente; el
+ * EDT las incorpora en lote con {@link #flush()}, con un solo evento de
+ * inserción (y uno de eliminación si se descartan las más antiguas).
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class MessageLogModel extends AbstractListModel<String> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    // Entradas visibles (solo EDT)
+    private final String[] entries;
+    private int first;
+    private int count;
+
+    // Entradas pendientes de incorporar (cualquier thread)
+    private final ArrayDeque<String> pending = new ArrayDeque<>();
+
+    public MessageLogModel() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor del modelo
+     * @param capacity Entradas máximas conservadas
+     */
+    public MessageLogModel(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacidad inválida: " + capacity);
+        }
+        this.entries = new String[capacity];
+    }
+
+    /**
+     * Añadir una entrada (thread-safe)
+     *
+     * Si el EDT no alcanza a vaciar la cola, se descartan las pendientes
+     * más antiguas: nunca llegarían a verse.
+     *
+     * @param entry Texto de la entrada
+     */
+    public void append(String entry) {
+        synchronized (pending) {
+            if (pending.size() == entries.length) {
+                pending.pollFirst();
+            }
+            pending.addLast(entry);
+        }
+    }
+
+    /**
+     * Incorporar las entradas pendientes (solo desde el EDT)
+     * @return Número de entradas incorporadas
+     */
+    public int flush() {
+        String[] batch;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            batch = pending.toArray(new String[0]);
+            pending.clear();
+        }
+
+        // La cola nunca supera la capacidad, así que solo se desplazan entradas ya visibles
+        int capacity = entries.length;
+        int removed = Math.max(0, count + batch.length - capacity);
+
+        for (String entry : batch) {
+            entries[(first + count) % capacity] = entry;
+            if (count < capacity) {
+                count++;
+            } else {
+                first = (first + 1) % capacity;
+            }
+        }
+
+        if (removed > 0) {
+            fireIntervalRemoved(this, 0, removed - 1);
+        }
+        fireIntervalAdded(this, count - batch.length, count - 1);
+        return batch.length;
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    @Override
+    public int getSize() {
+        return count;
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return entries[(first + index) % entries.length];
+    }
+}
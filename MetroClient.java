@@ -1,8 +1,27 @@
 import java.io.*;
 import java.net.*;
-import java.util.Scanner;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import javax.management.ObjectName;
 
 /**
  * Metro Telemetry Client - Java Implementation
@@ -22,30 +41,62 @@ import java.time.format.DateTimeFormatter;
 public class MetroClient {
     
     // Constantes del protocolo
-    private static final int BUFFER_SIZE = 1024;
     private static final int TIMEOUT = 5000; // 5 segundos
+    private static final String SEPARATOR_LINE = "-".repeat(50);
+    private static final long SUMMARY_INTERVAL = 10_000; // modo flota
+    private static final int DEFAULT_NIO_LOOPS =
+        Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    // Conexión + AUTH de la flota NIO, con margen: nunca se espera más
+    private static final long NIO_START_TIMEOUT = NioTransport.DEFAULT_CONNECT_TIMEOUT + 2L * TIMEOUT;
+    
+    // Salida de consola compartida por el modo interactivo, la flota y la reproducción
+    private static final ConsoleOutput console = ConsoleOutput.system();
     
     // Variables de conexión
-    private Socket socket;
-    private BufferedReader input;
-    private PrintWriter output;
+    private MetroSession session;
     private Scanner scanner;
     
     // Variables de sesión
-    private String token;
     private String username;
-    private boolean authenticated;
     private boolean running;
     
-    // Thread para telemetría
-    private Thread telemetryThread;
+    // Suscripción de telemetría activa
+    private TelemetryListener telemetryListener;
+    
+    // Historial reciente para tendencias (se alimenta siempre)
+    private final TelemetryHistory history = new TelemetryHistory();
+    
+    // Grabación de telemetría (null = desactivada), en su propio thread
+    private static final int RECORD_BUFFER = 64 * 1024;
+    private static final int FLEET_RECORD_BUFFER = 8 * 1024; // por tren
+    private TelemetryRecorder recorder;
+    private TelemetryPublisher.ListenerSubscriber recording;
+    private ExecutorService recordingExecutor;
+    
+    // Exportación columnar (null = desactivada), escrita por el lector
+    private TelemetryExporter exporter;
+    
+    // Métricas de la sesión publicadas por JMX
+    private ObjectName metricsName;
+    
+    // Codificación a proponer al servidor
+    private String preferredCodec = TextFrameCodec.NAME;
+    
+    // TCP_NODELAY y buffers del socket
+    private MetroConnection.SocketOptions socketOptions = MetroConnection.SocketOptions.DEFAULT;
+    
+    /**
+     * Llamada a la sesión que espera respuesta del servidor
+     */
+    private interface SessionCall {
+        String call() throws IOException;
+    }
     
     /**
      * Constructor del cliente Metro
      */
     public MetroClient() {
         this.scanner = new Scanner(System.in);
-        this.authenticated = false;
         this.running = true;
     }
     
@@ -57,122 +108,148 @@ public class MetroClient {
      */
     public boolean connect(String host, int port) {
         try {
-            System.out.println("\n🔗 Conectando a " + host + ":" + port + "...");
-            
-            socket = new Socket(host, port);
-            socket.setSoTimeout(TIMEOUT);
+            console.info("\n🔗 Conectando a " + host + ":" + port + "...");
             
-            input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            output = new PrintWriter(socket.getOutputStream(), true);
+            session = new MetroSession(host, port);
+            session.setTimeout(TIMEOUT);
+            session.setPreferredCodec(preferredCodec);
+            session.setSocketOptions(socketOptions);
+            if (console.isEnabled(ConsoleOutput.Level.FRAME)) {
+                session.setTrace(new MetroSession.FrameTrace() {
+                    @Override
+                    public void onSent(String frame) {
+                        console.frame("📤 Enviado: " + frame);
+                    }
+                
+                    @Override
+                    public void onReceived(String frame) {
+                        console.frame("📥 Recibido: " + frame);
+                    }
+                });
+            }
+            session.setUnsolicitedListener(message ->
+                console.frame("📥 Recibido (sin petición): " + message)
+            );
+            session.addTelemetryListener(history);
+            MetroSession current = session;
+            session.setCloseListener(e -> {
+                if (current.getState().getStatus() != TrainState.Status.CLOSED) {
+                    console.error("❌ Conexión perdida: " + e.getMessage());
+                }
+            });
+            // Un receptor que falla se aísla; se informa solo la primera vez
+            session.setListenerErrorListener(e -> {
+                if (current.getListenerErrors() == 1) {
+                    console.error("❌ Error en un receptor de telemetría: " + e);
+                }
+            });
+            session.setAutoReconnect(true);
+            session.setReconnectListener(new MetroSession.ReconnectListener() {
+                @Override
+                public void onReconnecting(int attempt, long delayMillis) {
+                    console.info("🔄 Reconectando (intento " + attempt
+                        + (delayMillis > 0 ? ", en " + delayMillis + " ms" : "") + ")...");
+                }
+                
+                @Override
+                public void onReconnected(int attempts) {
+                    console.summary("✅ Sesión restablecida tras " + attempts + " intento(s)");
+                }
+                
+                @Override
+                public void onReconnectFailed(String reason) {
+                    console.error("❌ No se pudo restablecer la sesión: " + reason);
+                }
+            });
+            session.connect();
+            metricsName = MetroMetrics.register(session.getMetrics(), "Session", host + ":" + port);
             
-            System.out.println("✅ Conectado al servidor Metro exitosamente!");
+            console.info("✅ Conectado al servidor Metro exitosamente!");
+            if (!TextFrameCodec.NAME.equals(preferredCodec)) {
+                console.info("🔧 Codificación de frames: " + session.getCodecName());
+            }
+            if (socketOptions != MetroConnection.SocketOptions.DEFAULT) {
+                console.info("🔧 Socket: " + socketOptions);
+            }
             return true;
             
         } catch (IOException e) {
-            System.err.println("❌ Error conectando al servidor: " + e.getMessage());
+            console.error("❌ Error conectando al servidor: " + e.getMessage());
             return false;
         }
     }
     
     /**
-     * Enviar mensaje al servidor
-     * @param message Mensaje a enviar
-     */
-    private void sendMessage(String message) {
-        output.println(message);
-        System.out.println("📤 Enviado: " + message);
-    }
-    
-    /**
-     * Recibir mensaje del servidor
+     * Ejecutar una llamada a la sesión y esperar su respuesta
+     * 
+     * La respuesta la entrega el lector de la conexión, que ya separó
+     * la telemetría recibida mientras tanto.
+     * 
+     * @param call Llamada a ejecutar
      * @return Mensaje recibido o null si hay error
      */
-    private String receiveMessage() {
+    private String exchange(SessionCall call) {
         try {
-            String message = input.readLine();
-            if (message != null) {
-                System.out.println("📥 Recibido: " + message);
-            }
-            return message;
+            return call.call();
         } catch (SocketTimeoutException e) {
-            System.err.println("⏱️  Timeout esperando respuesta del servidor");
+            console.error("⏱️  Timeout esperando respuesta del servidor");
             return null;
         } catch (IOException e) {
-            System.err.println("❌ Error recibiendo mensaje: " + e.getMessage());
+            console.error("❌ Error recibiendo mensaje: " + e.getMessage());
             return null;
         }
     }
     
     /**
      * Autenticación con el servidor
+     * 
+     * Si están definidas METRO_USER y METRO_PASS se usan sin preguntar.
+     * 
+     * @param nonInteractive true si no se puede leer de stdin
      * @return true si la autenticación fue exitosa
      */
-    public boolean authenticate() {
-        System.out.println("\n" + "=".repeat(50));
-        System.out.println("           AUTENTICACIÓN");
-        System.out.println("=".repeat(50));
-        
-        System.out.print("Usuario: ");
-        username = scanner.nextLine().trim();
-        
-        System.out.print("Contraseña: ");
-        String password = scanner.nextLine().trim();
-        
-        // Enviar mensaje de autenticación
-        String authMessage = String.format("TYPE:AUTH;USER:%s;PASS:%s", username, password);
-        sendMessage(authMessage);
+    public boolean authenticate(boolean nonInteractive) {
+        String password = System.getenv("METRO_PASS");
+        username = System.getenv("METRO_USER");
         
-        // Recibir respuesta (ignorar telemetría si llega antes)
-        int maxAttempts = 5;
-        String response = null;
-        
-        for (int i = 0; i < maxAttempts; i++) {
-            response = receiveMessage();
-            
-            if (response == null) {
+        if (username == null || password == null) {
+            if (nonInteractive) {
+                console.error("❌ Sin credenciales: use AUTH en el script o METRO_USER/METRO_PASS");
                 return false;
             }
             
-            // Si es telemetría, ignorarla y seguir esperando
-            if (response.startsWith("TYPE:TELEMETRY")) {
-                System.out.println("⏭️  Ignorando telemetría, esperando respuesta de autenticación...");
-                continue;
-            }
+            console.summary("\n" + "=".repeat(50));
+            console.summary("           AUTENTICACIÓN");
+            console.summary("=".repeat(50));
             
-            // Si es respuesta de autenticación, procesarla
-            if (response.startsWith("TYPE:AUTH_OK") || response.startsWith("TYPE:ERR")) {
-                break;
-            }
+            console.prompt("Usuario: ");
+            username = scanner.nextLine().trim();
+            
+            console.prompt("Contraseña: ");
+            password = scanner.nextLine().trim();
         }
+        String user = username;
+        String pass = password;
+        
+        // Enviar mensaje de autenticación y esperar respuesta
+        String response = exchange(() -> session.authenticate(user, pass));
         
         if (response == null) {
-            System.err.println("❌ No se recibió respuesta de autenticación");
+            console.error("❌ No se recibió respuesta de autenticación");
             return false;
         }
         
         // Validar respuesta
-        if (response.startsWith("TYPE:AUTH_OK")) {
-            // Extraer token
-            String[] parts = response.split(";");
-            for (String part : parts) {
-                if (part.startsWith("TOKEN:")) {
-                    token = part.substring(6).trim();
-                    break;
-                }
-            }
-            
-            if (token != null && !token.isEmpty()) {
-                authenticated = true;
-                System.out.println("\n✅ Autenticación exitosa!");
-                System.out.println("🔑 Token: " + token);
-                System.out.println("👤 Usuario: " + username);
-                return true;
-            }
-        } else if (response.startsWith("TYPE:ERR")) {
-            System.err.println("❌ Autenticación fallida");
-            String reason = extractReason(response);
+        if (session.isAuthenticated()) {
+            console.summary("\n✅ Autenticación exitosa!");
+            console.summary("🔑 Token: " + session.getToken());
+            console.summary("👤 Usuario: " + username);
+            return true;
+        } else if (MetroProtocol.isError(response)) {
+            console.error("❌ Autenticación fallida");
+            String reason = MetroProtocol.field(response, "REASON");
             if (reason != null) {
-                System.err.println("   Razón: " + reason);
+                console.error("   Razón: " + reason);
             }
         }
         
@@ -185,52 +262,28 @@ public class MetroClient {
      * @return true si el comando fue exitoso
      */
     public boolean sendCommand(String action) {
-        if (!authenticated) {
-            System.err.println("❌ Debe autenticarse primero");
+        if (!session.isAuthenticated()) {
+            console.error("❌ Debe autenticarse primero");
             return false;
         }
         
-        // Enviar comando
-        String cmdMessage = String.format("TYPE:CMD;TOKEN:%s;ACTION:%s", token, action);
-        sendMessage(cmdMessage);
-        
-        // Recibir respuesta (ignorar telemetría si llega antes)
-        int maxAttempts = 5;
-        String response = null;
-        
-        for (int i = 0; i < maxAttempts; i++) {
-            response = receiveMessage();
-            
-            if (response == null) {
-                return false;
-            }
-            
-            // Si es telemetría, ignorarla y seguir esperando
-            if (response.startsWith("TYPE:TELEMETRY")) {
-                System.out.println("⏭️  Ignorando telemetría, esperando respuesta de comando...");
-                continue;
-            }
-            
-            // Si es respuesta de comando, procesarla
-            if (response.startsWith("TYPE:ACK") || response.startsWith("TYPE:ERR")) {
-                break;
-            }
-        }
+        // Enviar comando y esperar respuesta
+        String response = exchange(() -> session.sendCommand(action));
         
         if (response == null) {
-            System.err.println("❌ No se recibió respuesta del comando");
+            console.error("❌ No se recibió respuesta del comando");
             return false;
         }
         
         // Validar respuesta
-        if (response.startsWith("TYPE:ACK")) {
-            System.out.println("✅ Comando " + action + " ejecutado exitosamente");
+        if (MetroProtocol.isAck(response)) {
+            console.summary("✅ Comando " + action + " ejecutado exitosamente");
             return true;
-        } else if (response.startsWith("TYPE:ERR")) {
-            System.err.println("❌ Error ejecutando comando " + action);
-            String reason = extractReason(response);
+        } else if (MetroProtocol.isError(response)) {
+            console.error("❌ Error ejecutando comando " + action);
+            String reason = MetroProtocol.field(response, "REASON");
             if (reason != null) {
-                System.err.println("   Razón: " + reason);
+                console.error("   Razón: " + reason);
             }
             return false;
         }
@@ -239,135 +292,284 @@ public class MetroClient {
     }
     
     /**
-     * Extraer razón de un mensaje de error
-     * @param errorMessage Mensaje de error
-     * @return Razón del error
+     * Enviar comando sin esperar la respuesta
+     * 
+     * Varios comandos pueden estar en vuelo a la vez (hasta la ventana
+     * configurada); las respuestas se asocian en orden FIFO.
+     * 
+     * @param action Acción a ejecutar (SPEED_UP, SLOW_DOWN, STOPNOW, STARTNOW)
+     * @return Future con la respuesta del servidor (TYPE:ACK o TYPE:ERR)
      */
-    private String extractReason(String errorMessage) {
-        String[] parts = errorMessage.split(";");
-        for (String part : parts) {
-            if (part.startsWith("REASON:")) {
-                return part.substring(7).trim();
-            }
+    public CompletableFuture<String> sendCommandAsync(String action) {
+        return session.sendCommandAsync(action);
+    }
+    
+    /**
+     * Configurar el número máximo de comandos en vuelo
+     * @param window Tamaño de la ventana (1 = esperar cada respuesta)
+     */
+    public void setCommandWindow(int window) {
+        session.setMaxInFlight(window);
+    }
+    
+    /**
+     * Elegir la codificación a proponer al conectar
+     * @param codecName TEXT o BIN1 (se usa texto si el servidor no la soporta)
+     */
+    public void setPreferredCodec(String codecName) {
+        this.preferredCodec = codecName;
+    }
+    
+    /**
+     * Configurar el socket antes de conectar
+     * @param options TCP_NODELAY y tamaños de buffer
+     */
+    public void setSocketOptions(MetroConnection.SocketOptions options) {
+        this.socketOptions = options;
+    }
+    
+    /**
+     * Configurar la reconexión automática
+     * @param enabled true para reconectar y reautenticar al perder la conexión
+     * @param policy Qué hacer con los comandos en vuelo al perderla
+     */
+    public void setReconnect(boolean enabled, MetroSession.CommandPolicy policy) {
+        session.setAutoReconnect(enabled);
+        session.setCommandPolicy(policy);
+    }
+    
+    /**
+     * Mostrar una muestra de telemetría
+     * 
+     * Se llama desde el thread lector: la muestra se formatea en una sola
+     * entrada de la consola y se escribe de forma asíncrona.
+     * 
+     * @param sample Muestra ya decodificada por la conexión
+     */
+    private void showTelemetry(TelemetrySample sample) {
+        if (!console.isEnabled(ConsoleOutput.Level.INFO)) {
+            return;
+        }
+        
+        String timestamp = console.timestamp(sample.getTimestamp());
+        if (console.isCompact()) {
+            console.info(compactLine(new StringBuilder(96).append('[').append(timestamp).append("] "), sample));
+            return;
+        }
+        
+        // Crear barra de batería visual
+        int bars = Math.max(0, Math.min(10, sample.getBattery() / 10));
+        String station = sample.getStation() == TelemetrySample.NO_STATION
+            ? "N/A" : String.valueOf(sample.getStation());
+        String separator = System.lineSeparator();
+        
+        // Mostrar telemetría formateada
+        StringBuilder block = new StringBuilder(256)
+            .append(separator).append('[').append(timestamp).append("] 📊 TELEMETRÍA").append(separator)
+            .append("  🚄 Velocidad: ").append(sample.getSpeed()).append(" km/h").append(separator)
+            .append("  🔋 Batería:   ").append(sample.getBattery()).append("% [");
+        for (int i = 0; i < 10; i++) {
+            block.append(i < bars ? '█' : '░');
         }
-        return null;
+        block.append(']').append(separator)
+            .append("  🧭 Dirección: ").append(sample.getDirection()).append(separator)
+            .append("  🏢 Estación:  ").append(station).append(separator)
+            .append(SEPARATOR_LINE);
+        console.info(block.toString());
     }
     
     /**
-     * Parsear y mostrar mensaje de telemetría
-     * @param message Mensaje de telemetría
+     * Formato compacto de una muestra en una línea
+     * @param line Prefijo ya escrito (hora, tren)
+     * @param sample Muestra a formatear
+     * @return Línea completa
      */
-    private void parseTelemetry(String message) {
-        try {
-            // Parsear: TYPE:TELEMETRY;SPEED:50.0;BATTERY:85;DIRECTION:FORWARD;STATION:3
-            String[] parts = message.split(";");
-            
-            String speed = "N/A";
-            String battery = "N/A";
-            String direction = "N/A";
-            String station = "N/A";
-            
-            for (String part : parts) {
-                if (part.startsWith("SPEED:")) {
-                    speed = part.substring(6).trim();
-                } else if (part.startsWith("BATTERY:")) {
-                    battery = part.substring(8).trim();
-                } else if (part.startsWith("DIRECTION:")) {
-                    direction = part.substring(10).trim();
-                } else if (part.startsWith("STATION:")) {
-                    station = part.substring(8).trim();
-                }
-            }
-            
-            // Crear barra de batería visual
-            int batteryInt = Integer.parseInt(battery);
-            int bars = batteryInt / 10;
-            String batteryBar = "█".repeat(bars) + "░".repeat(10 - bars);
-            
-            // Mostrar telemetría formateada
-            String timestamp = LocalDateTime.now().format(
-                DateTimeFormatter.ofPattern("HH:mm:ss")
-            );
-            
-            System.out.println("\n[" + timestamp + "] 📊 TELEMETRÍA");
-            System.out.println("  🚄 Velocidad: " + speed + " km/h");
-            System.out.println("  🔋 Batería:   " + battery + "% [" + batteryBar + "]");
-            System.out.println("  🧭 Dirección: " + direction);
-            System.out.println("  🏢 Estación:  " + station);
-            System.out.println("-".repeat(50));
-            
-        } catch (Exception e) {
-            System.err.println("❌ Error parseando telemetría: " + e.getMessage());
+    private static String compactLine(StringBuilder line, TelemetrySample sample) {
+        double speed = Math.round(sample.getSpeed() * 10) / 10.0;
+        line.append("🚄 ").append(speed).append(" km/h  🔋 ").append(sample.getBattery())
+            .append("%  🧭 ").append(sample.getDirection()).append("  🏢 ");
+        if (sample.getStation() == TelemetrySample.NO_STATION) {
+            line.append("N/A");
+        } else {
+            line.append(sample.getStation());
         }
+        return line.toString();
     }
     
     /**
-     * Escuchar telemetría en tiempo real (thread separado)
+     * Escuchar telemetría en tiempo real
+     * 
+     * Suscribe el parser al lector de la conexión; los frames se
+     * procesan en el thread lector a medida que llegan.
      */
     public void startTelemetryListener() {
-        telemetryThread = new Thread(() -> {
-            System.out.println("\n📡 Iniciando escucha de telemetría...");
-            System.out.println("   (Presione Enter para volver al menú)\n");
+        if (telemetryListener != null) {
+            return;
+        }
+        
+        console.info("\n📡 Iniciando escucha de telemetría...");
+        console.info("   (Presione Enter para volver al menú)\n");
+        
+        telemetryListener = new TelemetryListener() {
+            @Override
+            public void onTelemetry(TelemetrySample sample) {
+                showTelemetry(sample);
+            }
             
-            try {
-                socket.setSoTimeout(1000); // 1 segundo timeout para permitir cancelación
-                
-                while (running) {
-                    try {
-                        String message = input.readLine();
-                        if (message != null && message.startsWith("TYPE:TELEMETRY")) {
-                            parseTelemetry(message);
-                        }
-                    } catch (SocketTimeoutException e) {
-                        // Timeout normal, continuar
-                        continue;
-                    }
-                }
-                
-                // Restaurar timeout original
-                socket.setSoTimeout(TIMEOUT);
-                
-            } catch (IOException e) {
-                if (running) {
-                    System.err.println("❌ Error en telemetría: " + e.getMessage());
-                }
+            @Override
+            public void onMalformed(String frame, int error) {
+                console.error("❌ Error parseando telemetría: "
+                    + TelemetryDecoder.describe(error) + " (" + frame + ")");
             }
-        });
-        
-        telemetryThread.start();
+        };
+        session.addTelemetryListener(telemetryListener);
     }
     
     /**
      * Detener escucha de telemetría
      */
     public void stopTelemetryListener() {
-        if (telemetryThread != null && telemetryThread.isAlive()) {
-            running = false;
-            try {
-                telemetryThread.join(2000); // Esperar máximo 2 segundos
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+        if (telemetryListener != null) {
+            session.removeTelemetryListener(telemetryListener);
+            telemetryListener = null;
+        }
+    }
+    
+    /**
+     * Mostrar agregados de la telemetría reciente
+     */
+    public void showTrends() {
+        console.summary("\n📈 Tendencias (últimos " + history.getWindowMillis() / 1000 + " s)");
+        if (history.size() == 0) {
+            console.summary("   Sin telemetría recibida todavía");
+            return;
+        }
+        
+        double drain = history.batteryDrainRate();
+        console.summary(String.format("   📊 Muestras:   %d en %.1f s", history.size(), history.span() / 1000.0));
+        console.summary(String.format("   🚄 Velocidad:  mín %.1f / media %.1f / máx %.1f km/h",
+            history.minSpeed(), history.averageSpeed(), history.maxSpeed()));
+        console.summary("   🔋 Batería:    " + (Double.isNaN(drain)
+            ? "--" : String.format("%.2f %%/min de descarga", drain)));
+    }
+    
+    /**
+     * Ejecutar un script de control y mostrar el informe de latencias
+     * @param script Script ya validado
+     * @return true si todos los comandos y comprobaciones tuvieron éxito
+     * @throws InterruptedException si se interrumpe la ejecución
+     */
+    public boolean runScript(MetroScript script) throws InterruptedException {
+        console.summary("\n📜 Ejecutando script: " + script.size() + " pasos");
+        MetroScript.Report report = script.run(session);
+        
+        if (console.isEnabled(ConsoleOutput.Level.INFO)) {
+            for (MetroScript.CommandResult result : report.getCommands()) {
+                console.info(String.format("   línea %-4d %-10s %9.3f ms  %s", result.line, result.action,
+                    result.latencyNanos / 1e6, result.isOk() ? "✅ ACK" : "❌ " + result.failure));
             }
-            running = true;
+        }
+        
+        console.summary("\n⏱️  Latencia por comando (" + report.getCommands().size() + " comandos en "
+            + report.getElapsedNanos() / 1_000_000 + " ms)");
+        if (!report.getCommands().isEmpty()) {
+            for (String line : report.latencyTable()) {
+                console.summary("   " + line);
+            }
+        }
+        
+        for (String failure : report.getFailures()) {
+            console.error("❌ " + failure);
+        }
+        console.summary(report.isSuccess() ? "✅ Script completado sin fallos"
+            : "❌ Script con " + report.getFailures().size() + " fallos");
+        
+        logout();
+        return report.isSuccess();
+    }
+    
+    /**
+     * Grabar toda la telemetría recibida mientras dure la sesión
+     * 
+     * El recorder se suscribe al publicador de la sesión con buffer
+     * acotado y escribe en su propio thread, de modo que graba también
+     * las muestras que no se muestran en pantalla sin que un cambio de
+     * segmento retrase al lector. Si el disco no da abasto la grabación
+     * se detiene con error en lugar de perder muestras en silencio.
+     * 
+     * @param directory Directorio de segmentos
+     * @return true si la grabación quedó activa
+     */
+    public boolean startRecording(String directory) {
+        try {
+            recorder = new TelemetryRecorder(Paths.get(directory), 0);
+            recorder.setErrorListener(e -> console.error("❌ Error grabando telemetría: " + e.getMessage()));
+            recording = new TelemetryPublisher.ListenerSubscriber(recorder);
+            recordingExecutor = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "metro-recorder");
+                thread.setDaemon(true);
+                return thread;
+            });
+            recording.getCompletion().whenComplete((done, error) -> {
+                if (error != null) {
+                    console.error("❌ Grabación detenida: " + error.getMessage());
+                }
+            });
+            session.getTelemetryPublisher().subscribe(recording, TelemetryPublisher.Overflow.BUFFER,
+                RECORD_BUFFER, recordingExecutor);
+            console.summary("💾 Grabando telemetría en " + directory);
+            return true;
+        } catch (IOException e) {
+            console.error("❌ No se pudo iniciar la grabación: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Exportar la telemetría en formato columnar mientras dure la sesión
+     * 
+     * El exporter acumula cada bloque en memoria y lo escribe de una vez,
+     * así que se alimenta directamente desde el lector de la sesión.
+     * 
+     * @param directory Directorio de exportación
+     * @return true si la exportación quedó activa
+     */
+    public boolean startExport(String directory) {
+        try {
+            exporter = new TelemetryExporter(TelemetryExporter.newFile(Paths.get(directory), "session"), 0);
+            exporter.setErrorListener(e ->
+                console.error("❌ Error exportando telemetría, exportación detenida: " + e.getMessage()));
+            session.addTelemetryListener(exporter);
+            console.summary("📦 Exportando telemetría en " + exporter.getFile());
+            return true;
+        } catch (IOException e) {
+            console.error("❌ No se pudo iniciar la exportación: " + e.getMessage());
+            return false;
         }
     }
     
+    /**
+     * Evaluar reglas de alerta sobre cada muestra de la sesión
+     * @param rules Reglas compiladas
+     */
+    public void startAlerts(List<AlertRule> rules) {
+        AlertEngine engine = new AlertEngine(rules, 1, consoleAlerts(train -> {
+            String user = session.getUsername();
+            return user != null ? user : "sesión";
+        }));
+        session.addTelemetryListener(engine.listener(0));
+    }
+    
     /**
      * Cerrar sesión (logout)
      */
     public void logout() {
-        if (authenticated && token != null) {
-            String logoutMessage = String.format("TYPE:LOGOUT;TOKEN:%s", token);
-            sendMessage(logoutMessage);
-            
-            String response = receiveMessage();
+        if (session != null && session.isAuthenticated()) {
+            String response = exchange(session::logout);
             if (response != null) {
-                System.out.println("✅ Sesión cerrada correctamente");
+                console.summary("✅ Sesión cerrada correctamente");
             }
         }
-        
-        authenticated = false;
-        token = null;
     }
     
     /**
@@ -375,46 +577,107 @@ public class MetroClient {
      */
     public void close() {
         try {
-            if (input != null) input.close();
-            if (output != null) output.close();
-            if (socket != null) socket.close();
+            running = false;
+            if (session != null) session.close();
             if (scanner != null) scanner.close();
+            MetroMetrics.unregister(metricsName);
+            metricsName = null;
+            
+            console.summary("\n🔌 Conexión cerrada");
+            
+            if (recorder != null) {
+                stopRecording();
+                recorder.close();
+                console.summary("💾 " + recorder.getTotalRecords() + " muestras grabadas en "
+                    + recorder.getDirectory() + describeDropped(recorder.getDroppedRecords()));
+                recorder = null;
+            }
             
-            System.out.println("\n🔌 Conexión cerrada");
+            if (exporter != null) {
+                exporter.close();
+                console.summary("📦 " + exporter.getTotalRows() + " muestras exportadas en "
+                    + exporter.getFile() + " (" + exporter.getBytesWritten() + " bytes)"
+                    + describeDropped(exporter.getDroppedRows()));
+                exporter = null;
+            }
             
         } catch (IOException e) {
-            System.err.println("Error cerrando conexión: " + e.getMessage());
+            console.error("Error cerrando conexión: " + e.getMessage());
         }
     }
     
+    /**
+     * Esperar a que el recorder escriba lo que quede en su buffer
+     * (la sesión ya está cerrada y su publicador completado)
+     */
+    private void stopRecording() {
+        try {
+            recording.getCompletion().get(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            recording.cancel();
+        } catch (ExecutionException e) {
+            // Ya notificado al detenerse la grabación
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            recording.cancel();
+        }
+        recordingExecutor.shutdown();
+        try {
+            recordingExecutor.awaitTermination(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        recording = null;
+        recordingExecutor = null;
+    }
+    
     /**
      * Mostrar menú principal
      */
     private void showMenu() {
-        System.out.println("\n" + "=".repeat(50));
-        System.out.println("    METRO TELEMETRY CLIENT - MENÚ PRINCIPAL");
-        System.out.println("=".repeat(50));
-        System.out.println("1. 🚀 SPEED_UP    - Incrementar velocidad +10 km/h");
-        System.out.println("2. 🐌 SLOW_DOWN   - Decrementar velocidad -10 km/h");
-        System.out.println("3. 🛑 STOPNOW     - Detener metro inmediatamente");
-        System.out.println("4. ▶️  STARTNOW    - Reanudar movimiento");
-        System.out.println("5. 📡 Escuchar telemetría en tiempo real");
-        System.out.println("6. 👋 Salir");
-        System.out.println("=".repeat(50));
+        console.summary("\n" + "=".repeat(50));
+        console.summary("    METRO TELEMETRY CLIENT - MENÚ PRINCIPAL");
+        console.summary("=".repeat(50));
+        console.summary(describeState(session.getState()));
+        console.summary("-".repeat(50));
+        console.summary("1. 🚀 SPEED_UP    - Incrementar velocidad +10 km/h");
+        console.summary("2. 🐌 SLOW_DOWN   - Decrementar velocidad -10 km/h");
+        console.summary("3. 🛑 STOPNOW     - Detener metro inmediatamente");
+        console.summary("4. ▶️  STARTNOW    - Reanudar movimiento");
+        console.summary("5. 📡 Escuchar telemetría en tiempo real");
+        console.summary("6. 📈 Ver tendencias recientes");
+        console.summary("7. 👋 Salir");
+        console.summary("=".repeat(50));
+    }
+    
+    /**
+     * Línea de estado del tren para el menú
+     * @param state Instantánea de la sesión
+     * @return Texto con la conexión y la última telemetría
+     */
+    private static String describeState(TrainState state) {
+        String connection = state.getStatus() == TrainState.Status.RECONNECTING
+            ? "🟡 Reconectando" : "🟢 " + state.getStatus();
+        if (!state.hasTelemetry()) {
+            return connection + " · sin telemetría";
+        }
+        return String.format("%s · 🚄 %.1f km/h · 🔋 %d%% · 🧭 %s · hace %d ms", connection,
+            state.getSpeed(), state.getBattery(), state.getDirection(),
+            state.getAge(System.currentTimeMillis()));
     }
     
     /**
      * Ejecutar bucle principal del cliente
      */
     public void run() {
-        if (!authenticated) {
-            System.err.println("❌ No autenticado. Cerrando...");
+        if (!session.isAuthenticated()) {
+            console.error("❌ No autenticado. Cerrando...");
             return;
         }
         
         while (running) {
             showMenu();
-            System.out.print("\nSeleccione una opción: ");
+            console.prompt("\nSeleccione una opción: ");
             String option = scanner.nextLine().trim();
             
             switch (option) {
@@ -435,8 +698,8 @@ public class MetroClient {
                     break;
                     
                 case "5":
-                    System.out.println("\n📡 Modo telemetría activo");
-                    System.out.println("   Presione Enter para volver al menú...\n");
+                    console.summary("\n📡 Modo telemetría activo");
+                    console.summary("   Presione Enter para volver al menú...\n");
                     
                     startTelemetryListener();
                     
@@ -444,16 +707,20 @@ public class MetroClient {
                     scanner.nextLine();
                     
                     stopTelemetryListener();
-                    System.out.println("\n⏸️  Telemetría detenida");
+                    console.summary("\n⏸️  Telemetría detenida");
                     break;
                     
                 case "6":
-                    System.out.println("\n👋 Cerrando sesión...");
+                    showTrends();
+                    break;
+                    
+                case "7":
+                    console.summary("\n👋 Cerrando sesión...");
                     running = false;
                     break;
                     
                 default:
-                    System.err.println("❌ Opción inválida. Intente nuevamente.");
+                    console.error("❌ Opción inválida. Intente nuevamente.");
             }
         }
         
@@ -464,102 +731,1182 @@ public class MetroClient {
      * Mostrar banner de bienvenida
      */
     private static void showBanner() {
-        System.out.println("\n" + "╔" + "═".repeat(60) + "╗");
-        System.out.println("║" + " ".repeat(10) + "METRO TELEMETRY CLIENT - Java CLI" + " ".repeat(16) + "║");
-        System.out.println("║" + " ".repeat(10) + "Sistema de Control de Metro Autónomo" + " ".repeat(12) + "║");
-        System.out.println("╚" + "═".repeat(60) + "╝");
+        console.summary("\n" + "╔" + "═".repeat(60) + "╗");
+        console.summary("║" + " ".repeat(10) + "METRO TELEMETRY CLIENT - Java CLI" + " ".repeat(16) + "║");
+        console.summary("║" + " ".repeat(10) + "Sistema de Control de Metro Autónomo" + " ".repeat(12) + "║");
+        console.summary("╚" + "═".repeat(60) + "╝");
     }
     
     /**
      * Mostrar información de uso
      */
     private static void showUsage() {
-        System.err.println("\n❌ Uso: java MetroClient [<host> <port>]");
-        System.err.println("\nOpciones:");
-        System.err.println("  1. Con argumentos:");
-        System.err.println("     java MetroClient <host> <port>");
-        System.err.println("\n  2. Con variables de entorno:");
-        System.err.println("     export METRO_SERVER_HOST=3.81.235.32");
-        System.err.println("     export METRO_SERVER_PORT=5000");
-        System.err.println("     java MetroClient");
-        System.err.println("\nEjemplos:");
-        System.err.println("  java MetroClient 3.81.235.32 5000    # Servidor AWS");
-        System.err.println("  java MetroClient localhost 5000       # Servidor local");
+        console.error("\n❌ Uso: java MetroClient [--quiet] [--compact] [--record <dir>] [--alerts <archivo>]");
+        console.error("                         [--export <dir>] [--script <archivo|->]");
+        console.error("                         [<host> <port>] | --fleet <archivo>");
+        console.error("       java MetroClient --replay <dir|segmento>");
+        console.error("       java MetroClient --scan <archivo.tlc> [COLUMNA]");
+        console.error("       java MetroClient --query <dir> [--train <n|nombre>] [--from <t>] [--to <t>]");
+        console.error("                                      [--station <n>]");
+        console.error("\nOpciones:");
+        console.error("  1. Con argumentos:");
+        console.error("     java MetroClient <host> <port>");
+        console.error("\n  2. Con variables de entorno:");
+        console.error("     export METRO_SERVER_HOST=3.81.235.32");
+        console.error("     export METRO_SERVER_PORT=5000");
+        console.error("     java MetroClient");
+        console.error("\n  3. Modo flota (sin interacción):");
+        console.error("     java MetroClient --fleet flota.txt");
+        console.error("     (una línea por tren: host:puerto usuario contraseña [nombre])");
+        console.error("     --nio atiende toda la flota con " + DEFAULT_NIO_LOOPS
+            + " event loop(s) NIO en lugar de un thread por sesión");
+        console.error("     (sin reconexión, grabación, exportación ni --binary)");
+        console.error("\n  Opcional: METRO_CMD_WINDOW=<n> comandos en vuelo (por defecto "
+            + MetroConnection.DEFAULT_WINDOW + ")");
+        console.error("  Codificación: --binary propone frames binarios (BIN1) si el servidor los soporta");
+        console.error("  Socket: --nagle desactiva TCP_NODELAY; --sndbuf/--rcvbuf <bytes> fijan los buffers");
+        console.error("  Reconexión: automática salvo con --no-reconnect; METRO_CMD_POLICY=replay|fail");
+        console.error("     decide si los comandos en vuelo se reenvían o fallan (por defecto replay)");
+        console.error("\n  Grabación: --record <dir> guarda toda la telemetría en segmentos binarios");
+        console.error("     (en modo flota, un subdirectorio por tren); --replay <dir> la reproduce");
+        console.error("     y --query <dir> consulta sus índices: muestras entre --from y --to, o con");
+        console.error("     --station las llegadas a esa estación (t: HH:mm[:ss] de hoy,");
+        console.error("     aaaa-mm-ddTHH:mm[:ss] o milisegundos epoch)");
+        console.error("\n  Exportación: --export <dir> escribe la telemetría en columnas comprimidas (.tlc,");
+        console.error("     un archivo por tren); --scan <archivo> muestra su tamaño por columna, o");
+        console.error("     recorre solo COLUMNA (TIMESTAMP, SPEED, BATTERY, DIRECTION, STATION)");
+        console.error("\n  Alertas: --alerts <archivo> evalúa reglas como 'bateria_baja BATTERY < 20' o");
+        console.error("     'detenido STATION UNCHANGED 60000' en cada muestra de cada tren");
+        console.error("\n  Script: --script <archivo|-> ejecuta comandos, WAIT y EXPECT sin menú y");
+        console.error("     muestra la latencia por comando (credenciales con AUTH o METRO_USER/METRO_PASS)");
+        console.error("\n  Salida: --quiet muestra solo errores y resúmenes; --compact una línea por muestra");
+        console.error("     (automático si la salida está redirigida a un archivo o pipe)");
+        console.error("\nEjemplos:");
+        console.error("  java MetroClient 3.81.235.32 5000    # Servidor AWS");
+        console.error("  java MetroClient localhost 5000       # Servidor local");
+    }
+    
+    /**
+     * Ejecutar el modo flota: conectar y autenticar todas las sesiones en
+     * paralelo y mostrar su telemetría agregada hasta Ctrl+C
+     * @param file Archivo con las sesiones de la flota
+     * @param recordDir Directorio de grabación (null = sin grabar)
+     * @param exportDir Directorio de exportación columnar (null = sin exportar)
+     * @param alertRules Reglas de alerta a evaluar en cada tren (null = sin alertas)
+     * @param reconnect true para reconectar cada sesión que se pierda
+     * @param codecName Codificación a proponer a cada servidor
+     * @param socketOptions Opciones del socket de cada sesión
+     */
+    private static void runFleet(String file, String recordDir, String exportDir, List<AlertRule> alertRules,
+                                 boolean reconnect, String codecName,
+                                 MetroConnection.SocketOptions socketOptions) {
+        List<MetroFleet.Endpoint> endpoints = loadFleet(file);
+        console.summary("\n🚆 Modo flota: " + endpoints.size() + " sesiones");
+        MetroFleet fleet = new MetroFleet(endpoints);
+        fleet.setAutoReconnect(reconnect);
+        fleet.setPreferredCodec(codecName);
+        fleet.setSocketOptions(socketOptions);
+        LongAdder received = new LongAdder();
+        
+        // Un recorder por tren, escrito fuera de los lectores
+        FleetRecording recording = recordDir != null ? startFleetRecording(recordDir, endpoints) : null;
+        
+        // Un exporter por tren
+        TelemetryExporter[] exporters = exportDir != null ? new TelemetryExporter[endpoints.size()] : null;
+        if (exporters != null) {
+            try {
+                for (int i = 0; i < exporters.length; i++) {
+                    String name = endpoints.get(i).name;
+                    exporters[i] = new TelemetryExporter(TelemetryExporter.newFile(Paths.get(exportDir), name), i);
+                    exporters[i].setErrorListener(e -> console.error(
+                        "❌ [" + name + "] Error exportando telemetría, exportación detenida: " + e.getMessage()));
+                }
+            } catch (IOException e) {
+                console.error("❌ No se pudo iniciar la exportación: " + e.getMessage());
+                exit(1);
+            }
+            console.summary("📦 Exportando telemetría en " + exportDir);
+        }
+        
+        // Un motor para toda la flota: cada tren lo evalúa el lector de su sesión
+        AlertEngine alerts = alertRules != null
+            ? new AlertEngine(alertRules, endpoints.size(), consoleAlerts(train -> endpoints.get(train).name))
+            : null;
+        
+        MetroFleet.Listener listener = new MetroFleet.Listener() {
+            @Override
+            public void onTelemetry(int train, TelemetrySample sample) {
+                if (recording != null) {
+                    recording.onTelemetry(train, sample);
+                }
+                if (exporters != null) {
+                    exporters[train].onTelemetry(sample);
+                }
+                if (alerts != null) {
+                    alerts.onTelemetry(train, sample);
+                }
+                received.increment();
+                showFleetSample(fleet.getEndpoint(train).name, sample);
+            }
+            
+            @Override
+            public void onMalformed(int train, String frame, int error) {
+                console.error("❌ [" + fleet.getEndpoint(train).name + "] Error parseando telemetría: "
+                    + TelemetryDecoder.describe(error));
+            }
+            
+            @Override
+            public void onSessionClosed(int train, IOException cause) {
+                console.error("❌ [" + fleet.getEndpoint(train).name + "] Conexión perdida: "
+                    + cause.getMessage());
+            }
+            
+            @Override
+            public void onSessionRestored(int train, int attempts) {
+                console.summary("✅ [" + fleet.getEndpoint(train).name + "] Sesión restablecida tras "
+                    + attempts + " intento(s)");
+            }
+            
+            @Override
+            public void onReconnectFailed(int train, String reason) {
+                console.error("❌ [" + fleet.getEndpoint(train).name + "] No se pudo restablecer: " + reason);
+            }
+            
+            @Override
+            public void onListenerError(int train, RuntimeException error) {
+                MetroSession session = fleet.getSession(train);
+                if (session == null || session.getListenerErrors() == 1) {
+                    console.error("❌ [" + fleet.getEndpoint(train).name + "] Error en un receptor de telemetría: "
+                        + error);
+                }
+            }
+        };
+        
+        try {
+            long start = System.nanoTime();
+            int authenticated = fleet.start(listener);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            
+            for (int i = 0; i < fleet.size(); i++) {
+                if (fleet.getFailure(i) != null) {
+                    console.error("❌ " + fleet.getEndpoint(i) + ": " + fleet.getFailure(i));
+                }
+            }
+            console.summary("✅ " + authenticated + "/" + fleet.size()
+                + " sesiones autenticadas en " + elapsed + " ms");
+            
+            // Una MBean por sesión y otra con el agregado de la flota
+            MetroMetrics.register(fleet.getMetrics(), "Fleet", "fleet");
+            for (int i = 0; i < fleet.size(); i++) {
+                MetroSession session = fleet.getSession(i);
+                if (session != null && session.isAuthenticated()) {
+                    MetroMetrics.register(session.getMetrics(), "Session", fleet.getEndpoint(i).name);
+                }
+            }
+            
+            if (authenticated == 0) {
+                fleet.close();
+                if (recording != null) {
+                    recording.close();
+                }
+                closeExporters(exporters);
+                exit(1);
+            }
+            
+            // Cerrar todas las sesiones al recibir Ctrl+C
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                console.summary("\n👋 Cerrando sesiones de la flota...");
+                try {
+                    fleet.shutdown();
+                } catch (InterruptedException e) {
+                    fleet.close();
+                }
+                if (recording != null) {
+                    recording.close();
+                }
+                closeExporters(exporters);
+                console.close();
+            }));
+            
+            // Resumen periódico del stream agregado (visible también en modo silencioso)
+            long last = 0;
+            while (true) {
+                Thread.sleep(SUMMARY_INTERVAL);
+                long total = received.sum();
+                console.summary(String.format("📊 %d muestras en los últimos %d s (%.0f/s), %d en total%s",
+                    total - last, SUMMARY_INTERVAL / 1000, (total - last) * 1000.0 / SUMMARY_INTERVAL, total,
+                    describeFleet(fleet)));
+                last = total;
+            }
+            
+        } catch (InterruptedException e) {
+            fleet.close();
+        }
+    }
+    
+    /**
+     * Leer el archivo de flota (termina el proceso si no es válido)
+     * @param file Archivo con las sesiones de la flota
+     * @return Sesiones de la flota (al menos una)
+     */
+    private static List<MetroFleet.Endpoint> loadFleet(String file) {
+        List<MetroFleet.Endpoint> endpoints = null;
+        try {
+            endpoints = MetroFleet.load(Paths.get(file));
+        } catch (IOException | IllegalArgumentException e) {
+            console.error("❌ Error leyendo archivo de flota: " + e.getMessage());
+            exit(1);
+        }
+        
+        if (endpoints.isEmpty()) {
+            console.error("❌ El archivo de flota no contiene sesiones");
+            exit(1);
+        }
+        return endpoints;
+    }
+    
+    /**
+     * Mostrar una muestra del stream agregado de la flota
+     * @param name Nombre del tren
+     * @param sample Muestra recibida
+     */
+    private static void showFleetSample(String name, TelemetrySample sample) {
+        if (console.isEnabled(ConsoleOutput.Level.INFO)) {
+            StringBuilder line = new StringBuilder(112).append('[')
+                .append(console.timestamp(sample.getTimestamp())).append("] ");
+            line.append(name);
+            for (int i = name.length(); i < 11; i++) {
+                line.append(' ');
+            }
+            console.info(compactLine(line, sample));
+        }
+    }
+    
+    /**
+     * Ejecutar el modo flota sobre {@link NioTransport}: todas las sesiones
+     * las atienden unos pocos event loops en lugar de un thread por sesión.
+     * No graba, no exporta ni reconecta (esas opciones usan el modo flota
+     * normal); sí evalúa alertas, que no bloquean el loop
+     * @param file Archivo con las sesiones de la flota
+     * @param loops Threads de event loop
+     * @param alertRules Reglas de alerta a evaluar en cada tren (null = sin alertas)
+     * @param socketOptions Opciones del socket de cada sesión
+     */
+    private static void runNioFleet(String file, int loops, List<AlertRule> alertRules,
+                                    MetroConnection.SocketOptions socketOptions) {
+        List<MetroFleet.Endpoint> endpoints = loadFleet(file);
+        int count = endpoints.size();
+        console.summary("\n🚆 Modo flota (NIO): " + count + " sesiones en " + loops + " event loop(s)");
+        
+        NioTransport transport;
+        try {
+            transport = new NioTransport(loops);
+        } catch (IOException e) {
+            console.error("❌ No se pudo iniciar el transporte NIO: " + e.getMessage());
+            exit(1);
+            return;
+        }
+        
+        NioSession[] sessions = new NioSession[count];
+        String[] failures = new String[count];
+        FleetMetrics metrics = new FleetMetrics();
+        LongAdder received = new LongAdder();
+        AlertEngine alerts = alertRules != null
+            ? new AlertEngine(alertRules, count, consoleAlerts(train -> endpoints.get(train).name))
+            : null;
+        
+        // Logout de todas al recibir Ctrl+C (también durante el arranque)
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            console.summary("\n👋 Cerrando sesiones de la flota...");
+            List<CompletableFuture<Void>> logouts = new ArrayList<>();
+            for (NioSession session : sessions) {
+                if (session != null) {
+                    session.setCloseListener(null);
+                    logouts.add(session.logout());
+                }
+            }
+            try {
+                CompletableFuture.allOf(logouts.toArray(new CompletableFuture<?>[0]))
+                    .get(MetroSession.DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                // Se cierra el transporte igualmente
+            }
+            transport.close();
+            console.close();
+        }));
+        
+        // Conectar y autenticar todas a la vez: cada paso continúa en el event loop
+        long start = System.nanoTime();
+        CompletableFuture<?>[] opened = new CompletableFuture<?>[count];
+        for (int i = 0; i < count; i++) {
+            int train = i;
+            MetroFleet.Endpoint endpoint = endpoints.get(i);
+            opened[i] = transport.connect(endpoint.host, endpoint.port, socketOptions)
+                .thenCompose(session -> {
+                    sessions[train] = session;
+                    MetroMetrics sessionMetrics = new MetroMetrics();
+                    sessionMetrics.connectionOpened();
+                    metrics.add(sessionMetrics);
+                    session.setMetrics(sessionMetrics);
+                    return session.authenticate(endpoint.user, endpoint.pass);
+                })
+                .handle((token, error) -> {
+                    NioSession session = sessions[train];
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        failures[train] = cause.getMessage();
+                        if (session != null) {
+                            session.close();
+                        }
+                        return null;
+                    }
+                    session.setCloseListener(cause -> console.error("❌ [" + endpoint.name
+                        + "] Conexión perdida: " + cause.getMessage()));
+                    session.setListenerErrorListener(e -> {
+                        if (session.getListenerErrors() == 1) {
+                            console.error("❌ [" + endpoint.name + "] Error en un receptor de telemetría: " + e);
+                        }
+                    });
+                    session.addTelemetryListener(sample -> {
+                        if (alerts != null) {
+                            alerts.onTelemetry(train, sample);
+                        }
+                        received.increment();
+                        showFleetSample(endpoint.name, sample);
+                    });
+                    return null;
+                });
+        }
+        try {
+            // Conexión y AUTH tienen su propio plazo: esto solo acota el arranque
+            CompletableFuture.allOf(opened).get(NIO_START_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            for (int i = 0; i < count; i++) {
+                if (!opened[i].isDone()) {
+                    failures[i] = "Sin respuesta en " + NIO_START_TIMEOUT + " ms";
+                    if (sessions[i] != null) {
+                        sessions[i].close();
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            // Los fallos de cada sesión ya quedaron en failures
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        
+        int authenticated = 0;
+        for (int i = 0; i < count; i++) {
+            if (failures[i] != null) {
+                console.error("❌ " + endpoints.get(i) + ": " + failures[i]);
+            } else {
+                authenticated++;
+            }
+        }
+        console.summary("✅ " + authenticated + "/" + count + " sesiones autenticadas en " + elapsed + " ms");
+        MetroMetrics.register(metrics, "Fleet", "fleet");
+        
+        if (authenticated == 0) {
+            transport.close();
+            exit(1);
+        }
+        
+        try {
+            long last = 0;
+            while (true) {
+                Thread.sleep(SUMMARY_INTERVAL);
+                long total = received.sum();
+                int lost = 0;
+                for (int i = 0; i < count; i++) {
+                    if (failures[i] == null && sessions[i].getState() == NioSession.State.CLOSED) {
+                        lost++;
+                    }
+                }
+                console.summary(String.format("📊 %d muestras en los últimos %d s (%.0f/s), %d en total%s",
+                    total - last, SUMMARY_INTERVAL / 1000, (total - last) * 1000.0 / SUMMARY_INTERVAL, total,
+                    lost > 0 ? " · ❌ " + lost + " perdidas" : ""));
+                last = total;
+            }
+        } catch (InterruptedException e) {
+            transport.close();
+        }
+    }
+    
+    /**
+     * Trenes reconectando o sin datos recientes, leídos sin locks del
+     * estado de cada sesión
+     * @param fleet Flota en marcha
+     * @return Texto a añadir al resumen (vacío si todos están al día)
+     */
+    private static String describeFleet(MetroFleet fleet) {
+        long now = System.currentTimeMillis();
+        int reconnecting = 0;
+        int stale = 0;
+        for (int i = 0; i < fleet.size(); i++) {
+            MetroSession session = fleet.getSession(i);
+            if (session == null) {
+                continue;
+            }
+            TrainState state = session.getState();
+            if (state.getStatus() == TrainState.Status.RECONNECTING) {
+                reconnecting++;
+            } else if (state.getStatus() == TrainState.Status.AUTHENTICATED
+                    && (!state.hasTelemetry() || state.getAge(now) > SUMMARY_INTERVAL)) {
+                stale++;
+            }
+        }
+        StringBuilder text = new StringBuilder();
+        if (reconnecting > 0) {
+            text.append(" · 🔄 ").append(reconnecting).append(" reconectando");
+        }
+        if (stale > 0) {
+            text.append(" · ⏳ ").append(stale).append(" sin datos");
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Iniciar la grabación de la flota (termina el proceso si no se puede)
+     * @param directory Directorio de grabación (un subdirectorio por tren)
+     * @param endpoints Sesiones de la flota
+     * @return Grabación activa
+     */
+    private static FleetRecording startFleetRecording(String directory, List<MetroFleet.Endpoint> endpoints) {
+        FleetRecording recording = null;
+        try {
+            recording = new FleetRecording(directory, endpoints);
+        } catch (IOException e) {
+            console.error("❌ No se pudo iniciar la grabación: " + e.getMessage());
+            exit(1);
+        }
+        console.summary("💾 Grabando telemetría en " + directory);
+        return recording;
+    }
+    
+    /**
+     * Texto de muestras descartadas para un resumen de grabación
+     * @param dropped Muestras descartadas por fallos de disco
+     * @return Texto a añadir (vacío si no se descartó ninguna)
+     */
+    private static String describeDropped(long dropped) {
+        return dropped > 0 ? " (❌ " + dropped + " descartadas por errores de disco)" : "";
+    }
+    
+    /**
+     * Escribir el último bloque de cada exportación de la flota
+     * @param exporters Exporters por tren (null = sin exportación)
+     */
+    private static void closeExporters(TelemetryExporter[] exporters) {
+        if (exporters == null) {
+            return;
+        }
+        long rows = 0;
+        long bytes = 0;
+        long dropped = 0;
+        for (TelemetryExporter exporter : exporters) {
+            try {
+                exporter.close();
+            } catch (IOException e) {
+                console.error("❌ Error cerrando " + exporter.getFile() + ": " + e.getMessage());
+            }
+            rows += exporter.getTotalRows();
+            bytes += exporter.getBytesWritten();
+            dropped += exporter.getDroppedRows();
+        }
+        console.summary("📦 " + rows + " muestras exportadas (" + bytes + " bytes)" + describeDropped(dropped));
+    }
+    
+    /**
+     * Reproducir una grabación: un segmento, el directorio de un tren o el
+     * de una flota
+     * @param path Ruta de la grabación
+     */
+    private static void runReplay(String path) {
+        List<Path> segments;
+        try {
+            segments = TelemetryRecordReader.recording(Paths.get(path));
+        } catch (IOException e) {
+            console.error("❌ Error leyendo grabación: " + e.getMessage());
+            exit(1);
+            return;
+        }
+        
+        if (segments.isEmpty()) {
+            console.error("❌ No hay segmentos de telemetría en " + path);
+            exit(1);
+        }
+        
+        TelemetrySample sample = new TelemetrySample();
+        long records = 0;
+        long start = System.nanoTime();
+        
+        for (Path segment : segments) {
+            try (TelemetryRecordReader reader = new TelemetryRecordReader(segment)) {
+                boolean show = console.isEnabled(ConsoleOutput.Level.INFO);
+                while (reader.next(sample)) {
+                    if (show) {
+                        console.info(compactLine(new StringBuilder(112).append('[')
+                            .append(console.timestamp(sample.getTimestamp())).append("] tren ")
+                            .append(reader.getRecordTrain()).append("  "), sample));
+                    }
+                    records++;
+                }
+            } catch (IOException e) {
+                console.error("❌ " + e.getMessage());
+            }
+        }
+        
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        console.summary("\n✅ " + records + " muestras de " + segments.size()
+            + " segmentos reproducidas en " + elapsed + " ms");
+    }
+    
+    /**
+     * Consultar una grabación por rango de tiempo o por llegadas a una
+     * estación usando los índices de sus segmentos
+     * @param path Grabación (segmento, directorio de un tren o de una flota)
+     * @param train Tren (número o nombre de subdirectorio; null = todos)
+     * @param from Inicio del rango (null = sin límite)
+     * @param to Fin del rango (null = sin límite)
+     * @param station Estación cuyas llegadas buscar (null = todas las muestras del rango)
+     */
+    private static void runQuery(String path, String train, String from, String to, String station) {
+        long start;
+        long end;
+        int stationNumber = 0;
+        try {
+            start = from != null ? parseTime(from) : Long.MIN_VALUE;
+            end = to != null ? parseTime(to) : Long.MAX_VALUE;
+            if (station != null) {
+                stationNumber = Integer.parseInt(station);
+            }
+        } catch (IllegalArgumentException | DateTimeException e) {
+            console.error("❌ Consulta inválida: " + e.getMessage());
+            exit(1);
+            return;
+        }
+        
+        try {
+            TelemetryQuery query = new TelemetryQuery(Paths.get(path), train);
+            if (query.getSegmentCount() == 0) {
+                console.error("❌ No hay segmentos de telemetría en " + path
+                    + (train != null ? " para el tren " + train : ""));
+                exit(1);
+            }
+            
+            boolean show = console.isEnabled(ConsoleOutput.Level.INFO);
+            StringBuilder line = new StringBuilder(112);
+            TelemetryQuery.Visitor visitor = (recordTrain, sample) -> {
+                if (show) {
+                    line.setLength(0);
+                    line.append('[').append(console.timestamp(sample.getTimestamp())).append("] tren ")
+                        .append(recordTrain).append("  ");
+                    console.info(compactLine(line, sample));
+                }
+            };
+            
+            long began = System.nanoTime();
+            long found = station != null
+                ? query.arrivals(stationNumber, start, end, visitor)
+                : query.range(start, end, visitor);
+            long elapsed = (System.nanoTime() - began) / 1_000_000;
+            
+            console.summary("\n✅ " + found + (station != null ? " llegadas a la estación " + station : " muestras")
+                + " en " + elapsed + " ms (" + query.getSegmentsRead() + "/" + query.getSegmentCount()
+                + " segmentos leídos"
+                + (query.getIndexesBuilt() > 0 ? ", " + query.getIndexesBuilt() + " índices creados" : "")
+                + ")");
+        } catch (IOException e) {
+            console.error("❌ Error leyendo grabación: " + e.getMessage());
+            exit(1);
+        }
+    }
+    
+    /**
+     * Interpretar un instante de la consulta
+     * @param text HH:mm[:ss] (hoy), aaaa-mm-ddTHH:mm[:ss] o milisegundos epoch
+     * @return Milisegundos epoch en la zona horaria local
+     */
+    private static long parseTime(String text) {
+        if (text.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(text);
+        }
+        LocalDateTime time = text.indexOf('T') >= 0
+            ? LocalDateTime.parse(text)
+            : LocalDate.now().atTime(LocalTime.parse(text));
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    /**
+     * Analizar una exportación columnar
+     * 
+     * Sin columna, compara el tamaño de cada columna con el CSV equivalente
+     * (que se calcula decodificando todas las filas). Con columna, recorre
+     * solo esa y resume sus valores.
+     * 
+     * @param path Archivo .tlc
+     * @param columnName Columna a recorrer (null = resumen del archivo)
+     */
+    private static void runScan(String path, String columnName) {
+        TelemetryExporter.Column column = null;
+        if (columnName != null) {
+            try {
+                column = TelemetryExporter.Column.valueOf(columnName.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                console.error("❌ Columna desconocida: " + columnName);
+                exit(1);
+            }
+        }
+        
+        try (TelemetryExportReader reader = new TelemetryExportReader(Paths.get(path))) {
+            console.summary("\n📦 " + path + ": tren " + reader.getTrain() + ", " + reader.getRows()
+                + " filas en " + reader.getBlocks() + " bloques, " + reader.getSize() + " bytes");
+            if (reader.getRows() == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            
+            if (column == null) {
+                for (TelemetryExporter.Column each : TelemetryExporter.Column.values()) {
+                    long bytes = reader.getColumnBytes(each);
+                    console.summary(String.format("   %-10s %10d bytes  %6.2f bytes/fila", each, bytes,
+                        (double) bytes / reader.getRows()));
+                }
+                
+                // Tamaño de las mismas filas en CSV (timestamp,velocidad,batería,dirección,estación)
+                long[] csv = {0};
+                StringBuilder line = new StringBuilder(64);
+                reader.forEach(sample -> {
+                    line.setLength(0);
+                    line.append(sample.getTimestamp()).append(',').append(sample.getSpeed()).append(',')
+                        .append(sample.getBattery()).append(',').append(sample.getDirection()).append(',')
+                        .append(sample.getStation()).append('\n');
+                    csv[0] += line.length();
+                });
+                console.summary(String.format("   CSV equivalente: %d bytes (%.1fx el tamaño exportado)",
+                    csv[0], (double) csv[0] / reader.getSize()));
+            } else {
+                console.summary("   " + describeColumn(reader, column) + " ("
+                    + reader.getColumnBytes(column) + " bytes leídos)");
+            }
+            
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            console.summary("✅ Recorrido en " + elapsed + " ms");
+        } catch (IOException e) {
+            console.error("❌ Error leyendo exportación: " + e.getMessage());
+            exit(1);
+        }
+    }
+    
+    /**
+     * Resumir una columna recorriéndola sola
+     * @param reader Exportación abierta
+     * @param column Columna
+     * @return Resumen en una línea
+     */
+    private static String describeColumn(TelemetryExportReader reader, TelemetryExporter.Column column) {
+        switch (column) {
+            case TIMESTAMP: {
+                long[] range = {Long.MAX_VALUE, Long.MIN_VALUE};
+                reader.scanTimestamps(value -> {
+                    range[0] = Math.min(range[0], value);
+                    range[1] = Math.max(range[1], value);
+                });
+                return "TIMESTAMP: " + console.timestamp(range[0]) + " → " + console.timestamp(range[1])
+                    + " (" + (range[1] - range[0]) / 1000 + " s)";
+            }
+            case SPEED: {
+                double[] stats = {Double.MAX_VALUE, -Double.MAX_VALUE, 0};
+                reader.scanSpeeds(value -> {
+                    stats[0] = Math.min(stats[0], value);
+                    stats[1] = Math.max(stats[1], value);
+                    stats[2] += value;
+                });
+                return String.format("SPEED: mín %.2f, máx %.2f, media %.2f km/h",
+                    stats[0], stats[1], stats[2] / reader.getRows());
+            }
+            case BATTERY: {
+                long[] stats = {Long.MAX_VALUE, Long.MIN_VALUE, 0};
+                reader.scanBatteries(value -> {
+                    stats[0] = Math.min(stats[0], value);
+                    stats[1] = Math.max(stats[1], value);
+                    stats[2] += value;
+                });
+                return String.format("BATTERY: mín %d%%, máx %d%%, media %.1f%%",
+                    stats[0], stats[1], (double) stats[2] / reader.getRows());
+            }
+            case DIRECTION: {
+                long[] counts = new long[Direction.values().length];
+                reader.scanDirections(value -> counts[value]++);
+                StringBuilder text = new StringBuilder("DIRECTION:");
+                for (Direction direction : Direction.values()) {
+                    if (counts[direction.ordinal()] > 0) {
+                        text.append(' ').append(direction).append('=').append(counts[direction.ordinal()]);
+                    }
+                }
+                return text.toString();
+            }
+            default: {
+                // Cambios de estación y estaciones distintas
+                long[] changes = {0};
+                int[] last = {TelemetrySample.NO_STATION};
+                BitSet seen = new BitSet();
+                reader.scanStations(value -> {
+                    if (value != last[0]) {
+                        changes[0]++;
+                        last[0] = value;
+                    }
+                    if (value >= 0) {
+                        seen.set(value);
+                    }
+                });
+                return "STATION: " + seen.cardinality() + " estaciones distintas, " + changes[0] + " cambios";
+            }
+        }
     }
     
     /**
      * Punto de entrada principal
-     * @param args Argumentos de línea de comandos: [host] [port] (opcionales si hay variables de entorno)
+     * @param args Argumentos de línea de comandos: [opciones] [host] [port] (opcionales si hay variables de entorno)
      */
     public static void main(String[] args) {
         showBanner();
         
         String host = null;
         int port = 0;
+        String fleetFile = null;
+        String recordDir = null;
+        String exportDir = null;
+        String scanPath = null;
+        String queryPath = null;
+        String queryTrain = null;
+        String queryFrom = null;
+        String queryTo = null;
+        String queryStation = null;
+        String alertsPath = null;
+        String replayPath = null;
+        String scriptPath = null;
+        boolean reconnect = true;
+        int nioLoops = 0;
+        String codecName = TextFrameCodec.NAME;
+        boolean tcpNoDelay = true;
+        int sendBuffer = 0;
+        int receiveBuffer = 0;
+        
+        // Separar opciones de los argumentos posicionales
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--fleet":
+                    fleetFile = optionValue(args, ++i);
+                    break;
+                case "--record":
+                    recordDir = optionValue(args, ++i);
+                    break;
+                case "--export":
+                    exportDir = optionValue(args, ++i);
+                    break;
+                case "--scan":
+                    scanPath = optionValue(args, ++i);
+                    break;
+                case "--query":
+                    queryPath = optionValue(args, ++i);
+                    break;
+                case "--train":
+                    queryTrain = optionValue(args, ++i);
+                    break;
+                case "--from":
+                    queryFrom = optionValue(args, ++i);
+                    break;
+                case "--to":
+                    queryTo = optionValue(args, ++i);
+                    break;
+                case "--station":
+                    queryStation = optionValue(args, ++i);
+                    break;
+                case "--replay":
+                    replayPath = optionValue(args, ++i);
+                    break;
+                case "--alerts":
+                    alertsPath = optionValue(args, ++i);
+                    break;
+                case "--script":
+                    scriptPath = optionValue(args, ++i);
+                    break;
+                case "--quiet":
+                    console.setLevel(ConsoleOutput.Level.SUMMARY);
+                    break;
+                case "--compact":
+                    console.setCompact(true);
+                    break;
+                case "--no-reconnect":
+                    reconnect = false;
+                    break;
+                case "--nio":
+                    nioLoops = DEFAULT_NIO_LOOPS;
+                    break;
+                case "--binary":
+                    codecName = BinaryFrameCodec.NAME;
+                    break;
+                case "--nagle":
+                    tcpNoDelay = false;
+                    break;
+                case "--sndbuf":
+                    sendBuffer = bufferSize(optionValue(args, ++i));
+                    break;
+                case "--rcvbuf":
+                    receiveBuffer = bufferSize(optionValue(args, ++i));
+                    break;
+                default:
+                    positional.add(args[i]);
+            }
+        }
+        
+        MetroConnection.SocketOptions socketOptions = tcpNoDelay && sendBuffer == 0 && receiveBuffer == 0
+            ? MetroConnection.SocketOptions.DEFAULT
+            : new MetroConnection.SocketOptions(tcpNoDelay, sendBuffer, receiveBuffer);
+        
+        // Con la salida redirigida, una línea por muestra
+        if (System.console() == null) {
+            console.setCompact(true);
+        }
+        
+        // Reproducción de una grabación, sin servidor
+        if (replayPath != null) {
+            runReplay(replayPath);
+            console.close();
+            return;
+        }
+        
+        // Consulta indexada de una grabación, sin servidor
+        if (queryPath != null) {
+            runQuery(queryPath, queryTrain, queryFrom, queryTo, queryStation);
+            console.close();
+            return;
+        }
+        
+        // Análisis de una exportación, sin servidor
+        if (scanPath != null) {
+            runScan(scanPath, positional.isEmpty() ? null : positional.get(0));
+            console.close();
+            return;
+        }
+        
+        List<AlertRule> alertRules = alertsPath != null ? loadRules(alertsPath) : null;
+        
+        // Modo flota sobre NIO: pocos threads para toda la flota
+        if (fleetFile != null && positional.isEmpty() && nioLoops > 0) {
+            if (recordDir != null || exportDir != null || !TextFrameCodec.NAME.equals(codecName)) {
+                console.error("❌ --nio no admite --record, --export ni --binary");
+                exit(1);
+            }
+            runNioFleet(fleetFile, nioLoops, alertRules, socketOptions);
+            return;
+        }
+        
+        // Modo flota: muchas sesiones sin interacción
+        if (fleetFile != null && positional.isEmpty()) {
+            runFleet(fleetFile, recordDir, exportDir, alertRules, reconnect, codecName, socketOptions);
+            return;
+        }
         
         // Intentar leer de argumentos de línea de comandos
-        if (args.length == 2) {
-            host = args[0];
+        if (fleetFile == null && positional.size() == 2) {
+            host = positional.get(0);
             try {
-                port = Integer.parseInt(args[1]);
+                port = Integer.parseInt(positional.get(1));
             } catch (NumberFormatException e) {
-                System.err.println("❌ Puerto inválido: " + args[1]);
-                System.exit(1);
+                console.error("❌ Puerto inválido: " + positional.get(1));
+                exit(1);
             }
         }
         // Si no hay argumentos, intentar leer variables de entorno
-        else if (args.length == 0) {
+        else if (fleetFile == null && positional.isEmpty()) {
             host = System.getenv("METRO_SERVER_HOST");
             String portEnv = System.getenv("METRO_SERVER_PORT");
             
             if (host != null && portEnv != null) {
                 try {
                     port = Integer.parseInt(portEnv);
-                    System.out.println("🔧 Usando variables de entorno:");
-                    System.out.println("   METRO_SERVER_HOST=" + host);
-                    System.out.println("   METRO_SERVER_PORT=" + port);
+                    console.info("🔧 Usando variables de entorno:");
+                    console.info("   METRO_SERVER_HOST=" + host);
+                    console.info("   METRO_SERVER_PORT=" + port);
                 } catch (NumberFormatException e) {
-                    System.err.println("❌ Variable METRO_SERVER_PORT inválida: " + portEnv);
-                    System.exit(1);
+                    console.error("❌ Variable METRO_SERVER_PORT inválida: " + portEnv);
+                    exit(1);
                 }
             } else {
-                System.err.println("\n❌ No se encontraron argumentos ni variables de entorno");
+                console.error("\n❌ No se encontraron argumentos ni variables de entorno");
                 showUsage();
-                System.exit(1);
+                exit(1);
             }
         }
         // Número incorrecto de argumentos
         else {
             showUsage();
-            System.exit(1);
+            exit(1);
+        }
+        
+        // El script se lee completo antes de conectar (puede venir de stdin)
+        MetroScript script = null;
+        if (scriptPath != null) {
+            script = loadScript(scriptPath);
         }
         
         // Crear y ejecutar cliente
         MetroClient client = new MetroClient();
+        client.setPreferredCodec(codecName);
+        client.setSocketOptions(socketOptions);
+        boolean success = true;
         
         try {
             // Conectar al servidor
             if (!client.connect(host, port)) {
-                System.exit(1);
+                exit(1);
+            }
+            
+            String windowEnv = System.getenv("METRO_CMD_WINDOW");
+            if (windowEnv != null) {
+                try {
+                    client.setCommandWindow(Integer.parseInt(windowEnv));
+                } catch (IllegalArgumentException e) {
+                    console.error("❌ Variable METRO_CMD_WINDOW inválida: " + windowEnv);
+                }
+            }
+            
+            MetroSession.CommandPolicy policy = MetroSession.CommandPolicy.REPLAY;
+            String policyEnv = System.getenv("METRO_CMD_POLICY");
+            if (policyEnv != null) {
+                try {
+                    policy = MetroSession.CommandPolicy.valueOf(policyEnv.trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    console.error("❌ Variable METRO_CMD_POLICY inválida: " + policyEnv);
+                }
+            }
+            client.setReconnect(reconnect, policy);
+            
+            if (recordDir != null && !client.startRecording(recordDir)) {
+                exit(1);
+            }
+            if (exportDir != null && !client.startExport(exportDir)) {
+                exit(1);
+            }
+            if (alertRules != null) {
+                client.startAlerts(alertRules);
             }
             
-            // Autenticar
-            if (!client.authenticate()) {
-                System.err.println("\n❌ Autenticación fallida. Cerrando...");
+            // Autenticar (un script puede hacerlo con AUTH)
+            boolean authenticated = (script != null && script.startsWithAuth())
+                || client.authenticate(script != null && scriptPath.equals("-"));
+            if (!authenticated) {
+                console.error("\n❌ Autenticación fallida. Cerrando...");
                 client.close();
-                System.exit(1);
+                exit(1);
             }
             
-            // Ejecutar bucle principal
-            client.run();
+            // Ejecutar script o bucle principal
+            if (script != null) {
+                success = client.runScript(script);
+            } else {
+                client.run();
+            }
             
         } catch (Exception e) {
-            System.err.println("\n❌ Error fatal: " + e.getMessage());
+            console.error("\n❌ Error fatal: " + e.getMessage());
             e.printStackTrace();
+            success = false;
         } finally {
             client.close();
         }
         
-        System.out.println("\n✅ Cliente finalizado correctamente");
+        console.summary("\n✅ Cliente finalizado correctamente");
+        if (!success) {
+            exit(1);
+        }
+        console.close();
+    }
+    
+    /**
+     * Leer y validar un script
+     * @param path Archivo del script o "-" para stdin
+     * @return Script listo para ejecutar
+     */
+    private static MetroScript loadScript(String path) {
+        try (Reader reader = path.equals("-")
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            return MetroScript.parse(reader);
+        } catch (IOException | IllegalArgumentException e) {
+            console.error("❌ Error leyendo script: " + e.getMessage());
+            exit(1);
+            return null;
+        }
+    }
+    
+    /**
+     * Leer un archivo de reglas de alerta o terminar con error
+     * @param path Ruta del archivo
+     * @return Reglas compiladas
+     */
+    private static List<AlertRule> loadRules(String path) {
+        try {
+            List<AlertRule> rules = AlertRule.load(Paths.get(path));
+            console.summary("🚨 " + rules.size() + " reglas de alerta cargadas de " + path);
+            return rules;
+        } catch (IOException | IllegalArgumentException e) {
+            console.error("❌ Error leyendo reglas de alerta: " + e.getMessage());
+            exit(1);
+            return null;
+        }
+    }
+    
+    /**
+     * Alertas por consola (visibles también en modo silencioso)
+     * @param trainName Nombre de cada tren para los mensajes
+     * @return Sink que informa de cada alerta y de su resolución
+     */
+    private static AlertSink consoleAlerts(IntFunction<String> trainName) {
+        return new AlertSink() {
+            @Override
+            public void onAlert(int train, AlertRule rule, TelemetrySample sample) {
+                console.summary("🚨 [" + trainName.apply(train) + "] " + rule + " · "
+                    + compactLine(new StringBuilder(64), sample));
+            }
+            
+            @Override
+            public void onClear(int train, AlertRule rule, TelemetrySample sample) {
+                console.summary("✅ [" + trainName.apply(train) + "] " + rule.getName() + " resuelta");
+            }
+        };
+    }
+    
+    /**
+     * Terminar el proceso tras escribir la salida pendiente
+     * @param status Código de salida
+     */
+    private static void exit(int status) {
+        console.close();
+        System.exit(status);
+    }
+    
+    /**
+     * Tamaño de buffer de socket de una opción (--sndbuf / --rcvbuf)
+     * @param value Valor en bytes
+     * @return Tamaño positivo
+     */
+    private static int bufferSize(String value) {
+        try {
+            int size = Integer.parseInt(value);
+            if (size > 0) {
+                return size;
+            }
+        } catch (NumberFormatException e) {
+            // Se informa abajo
+        }
+        console.error("❌ Tamaño de buffer inválido: " + value);
+        exit(1);
+        return 0;
+    }
+    
+    /**
+     * Valor de una opción de línea de comandos
+     * @param args Argumentos
+     * @param index Posición del valor
+     * @return Valor de la opción
+     */
+    private static String optionValue(String[] args, int index) {
+        if (index >= args.length) {
+            console.error("❌ Falta el valor de la opción " + args[index - 1]);
+            showUsage();
+            exit(1);
+        }
+        return args[index];
+    }
+    
+    /**
+     * Grabación de la flota: un recorder por tren, alimentado por su propio
+     * {@link TelemetryPublisher} con buffer acotado (BUFFER, como la
+     * grabación de una sesión). Los cambios de segmento, el sellado y los
+     * índices se escriben en un pool aparte, nunca en el lector de la sesión.
+     */
+    private static final class FleetRecording {
+        private final TelemetryRecorder[] recorders;
+        private final TelemetryPublisher[] feeds;
+        private final TelemetryPublisher.ListenerSubscriber[] subscribers;
+        private final ExecutorService executor;
+        
+        FleetRecording(String directory, List<MetroFleet.Endpoint> endpoints) throws IOException {
+            int count = endpoints.size();
+            recorders = new TelemetryRecorder[count];
+            feeds = new TelemetryPublisher[count];
+            subscribers = new TelemetryPublisher.ListenerSubscriber[count];
+            int threads = Math.max(1, Math.min(count, Runtime.getRuntime().availableProcessors()));
+            executor = Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "metro-recorder");
+                thread.setDaemon(true);
+                return thread;
+            });
+            
+            for (int i = 0; i < count; i++) {
+                String name = endpoints.get(i).name;
+                recorders[i] = new TelemetryRecorder(Paths.get(directory, name), i);
+                recorders[i].setErrorListener(e ->
+                    console.error("❌ [" + name + "] Error grabando telemetría: " + e.getMessage()));
+                subscribers[i] = new TelemetryPublisher.ListenerSubscriber(recorders[i]);
+                subscribers[i].getCompletion().whenComplete((done, error) -> {
+                    if (error != null) {
+                        console.error("❌ [" + name + "] Grabación detenida: " + error.getMessage());
+                    }
+                });
+                feeds[i] = new TelemetryPublisher(executor);
+                feeds[i].subscribe(subscribers[i], TelemetryPublisher.Overflow.BUFFER, FLEET_RECORD_BUFFER, executor);
+            }
+        }
+        
+        /**
+         * Encolar una muestra (desde el lector de la sesión; no bloquea)
+         */
+        void onTelemetry(int train, TelemetrySample sample) {
+            feeds[train].onTelemetry(sample);
+        }
+        
+        /**
+         * Escribir lo que quede en los buffers y sellar las grabaciones
+         */
+        void close() {
+            for (TelemetryPublisher feed : feeds) {
+                feed.complete();
+            }
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            for (TelemetryPublisher.ListenerSubscriber subscriber : subscribers) {
+                try {
+                    subscriber.getCompletion().get(Math.max(1, deadline - System.currentTimeMillis()),
+                        TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    subscriber.cancel();
+                } catch (ExecutionException e) {
+                    // Ya notificado al detenerse la grabación
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    subscriber.cancel();
+                }
+            }
+            executor.shutdown();
+            try {
+                executor.awaitTermination(TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            
+            long total = 0;
+            long dropped = 0;
+            for (TelemetryRecorder recorder : recorders) {
+                recorder.close();
+                total += recorder.getTotalRecords();
+                dropped += recorder.getDroppedRecords();
+            }
+            console.summary("💾 " + total + " muestras grabadas" + describeDropped(dropped));
+        }
     }
 }
@@ -4,9 +4,11 @@ import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
 import java.net.*;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.concurrent.*;
+import java.util.concurrent.Flow;
+import javax.management.ObjectName;
 
 /**
  * Metro Telemetry Client - GUI Implementation
@@ -20,20 +22,28 @@ import java.util.concurrent.*;
 public class MetroClientGUI extends JFrame {
     
     // Constantes del protocolo
-    private static final int BUFFER_SIZE = 1024;
     private static final int TIMEOUT = 5000;
     
     // Variables de conexión
-    private Socket socket;
-    private BufferedReader input;
-    private PrintWriter output;
-    private String token;
+    private MetroSession session;
+    private ObjectName metricsName;
     private String username;
-    private boolean authenticated = false;
-    private boolean running = true;
     
-    // Thread para telemetría
-    private ScheduledExecutorService telemetryExecutor;
+    // Suscripción de telemetría: el lector publica, el EDT refresca
+    private static final int REFRESH_INTERVAL = 16; // ~60 fps
+    private static final String TREND_EMPTY = "📈 Tendencias: --";
+    private TelemetryListener telemetryListener;
+    
+    // Alertas de batería, con los mismos umbrales que el color de la barra
+    static final int BATTERY_LOW = 50;
+    static final int BATTERY_CRITICAL = 20;
+    private static final java.util.List<AlertRule> ALERT_RULES = java.util.List.of(
+        AlertRule.compile("bateria_baja", "BATTERY", "<", String.valueOf(BATTERY_LOW)),
+        AlertRule.compile("bateria_critica", "BATTERY", "<", String.valueOf(BATTERY_CRITICAL)));
+    private Flow.Subscription panelSubscription;
+    private boolean panelRequested;
+    private final TelemetryHistory history = new TelemetryHistory();
+    private javax.swing.Timer refreshTimer;
     
     // Componentes de UI
     private JTextField hostField;
@@ -55,11 +65,21 @@ public class MetroClientGUI extends JFrame {
     private JLabel batteryLabel;
     private JLabel directionLabel;
     private JLabel stationLabel;
+    private JLabel trendLabel;
     private JProgressBar batteryBar;
     private JProgressBar speedBar;
     
-    // Log de mensajes
-    private JTextArea logArea;
+    // Gráficos de los últimos minutos (los alimenta el lector, los pinta el timer)
+    private static final double CHART_MAX_SPEED = 120;
+    private TelemetryChart speedChart;
+    private TelemetryChart batteryChart;
+    
+    // Log de mensajes: acotado y refrescado en lote
+    private static final int LOG_FLUSH_INTERVAL = 100;
+    private static final DateTimeFormatter LOG_TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private final MessageLogModel logModel = new MessageLogModel();
+    private JList<String> logList;
+    private volatile boolean logTelemetry = false;
     private JLabel statusLabel;
     
     // Colores
@@ -74,7 +94,7 @@ public class MetroClientGUI extends JFrame {
      */
     public MetroClientGUI() {
         setTitle("🚄 Metro Telemetry Client - GUI");
-        setSize(900, 700);
+        setSize(900, 860);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLayout(new BorderLayout(10, 10));
         getContentPane().setBackground(BACKGROUND_COLOR);
@@ -222,6 +242,8 @@ public class MetroClientGUI extends JFrame {
         speedBar.setString("0 km/h");
         speedBar.setForeground(PRIMARY_COLOR);
         speedPanel.add(speedBar, BorderLayout.CENTER);
+        speedChart = new TelemetryChart("Velocidad", "km/h", PRIMARY_COLOR, 0, CHART_MAX_SPEED);
+        speedPanel.add(speedChart, BorderLayout.SOUTH);
         panel.add(speedPanel);
         
         // Batería
@@ -236,6 +258,8 @@ public class MetroClientGUI extends JFrame {
         batteryBar.setString("0%");
         batteryBar.setForeground(SUCCESS_COLOR);
         batteryPanel.add(batteryBar, BorderLayout.CENTER);
+        batteryChart = new TelemetryChart("Batería", "%", SUCCESS_COLOR, 0, 100);
+        batteryPanel.add(batteryChart, BorderLayout.SOUTH);
         panel.add(batteryPanel);
         
         // Dirección
@@ -256,6 +280,15 @@ public class MetroClientGUI extends JFrame {
         stationPanel.add(stationLabel);
         panel.add(stationPanel);
         
+        // Tendencias de la ventana reciente
+        JPanel trendPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        trendPanel.setBackground(Color.WHITE);
+        trendPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 10));
+        trendLabel = new JLabel(TREND_EMPTY);
+        trendLabel.setFont(new Font("Arial", Font.PLAIN, 12));
+        trendPanel.add(trendLabel);
+        panel.add(trendPanel);
+        
         return panel;
     }
     
@@ -322,12 +355,24 @@ public class MetroClientGUI extends JFrame {
         logPanel.setBorder(createTitledBorder("📝 Log de Mensajes"));
         logPanel.setBackground(Color.WHITE);
         
-        logArea = new JTextArea(8, 50);
-        logArea.setEditable(false);
-        logArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
-        JScrollPane scrollPane = new JScrollPane(logArea);
+        // JList virtualizado: solo se pintan las filas visibles
+        Font logFont = new Font("Monospaced", Font.PLAIN, 12);
+        logList = new JList<>(logModel);
+        logList.setFont(logFont);
+        logList.setFixedCellHeight(logList.getFontMetrics(logFont).getHeight() + 2);
+        logList.setVisibleRowCount(8);
+        JScrollPane scrollPane = new JScrollPane(logList);
         logPanel.add(scrollPane, BorderLayout.CENTER);
         
+        JCheckBox telemetryBox = new JCheckBox("Incluir telemetría en el log");
+        telemetryBox.setBackground(Color.WHITE);
+        telemetryBox.addActionListener(e -> logTelemetry = telemetryBox.isSelected());
+        logPanel.add(telemetryBox, BorderLayout.SOUTH);
+        
+        javax.swing.Timer logTimer = new javax.swing.Timer(LOG_FLUSH_INTERVAL, e -> flushLog());
+        logTimer.setCoalesce(true);
+        logTimer.start();
+        
         statusLabel = new JLabel("⚪ Desconectado");
         statusLabel.setFont(new Font("Arial", Font.BOLD, 14));
         statusLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
@@ -394,11 +439,66 @@ public class MetroClientGUI extends JFrame {
             log("🔗 Conectando a " + host + ":" + port + "...");
             updateStatus("🟡 Conectando...", WARNING_COLOR);
             
-            socket = new Socket(host, port);
-            socket.setSoTimeout(TIMEOUT);
+            session = new MetroSession(host, port);
+            session.setTimeout(TIMEOUT);
+            session.setTrace(new MetroSession.FrameTrace() {
+                @Override
+                public void onSent(String frame) {
+                    log("📤 " + frame);
+                }
+                
+                @Override
+                public void onReceived(String frame) {
+                    log("📥 " + frame);
+                }
+            });
+            session.setUnsolicitedListener(message -> log("📥 " + message));
+            MetroSession current = session;
+            session.setCloseListener(e -> {
+                // La sesión ya publicó si va a reconectar
+                boolean reconnecting = current.getState().getStatus() == TrainState.Status.RECONNECTING;
+                log("⚠️ Conexión perdida: " + e.getMessage());
+                SwingUtilities.invokeLater(() -> {
+                    if (reconnecting) {
+                        updateStatus("🟡 Conexión perdida, reconectando...", WARNING_COLOR);
+                    } else {
+                        showError("Conexión perdida: " + e.getMessage());
+                    }
+                });
+            });
+            session.setListenerErrorListener(e -> {
+                if (current.getListenerErrors() == 1) {
+                    log("❌ Error en un receptor de telemetría: " + e);
+                }
+            });
             
-            input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            output = new PrintWriter(socket.getOutputStream(), true);
+            // Tras autenticarse, la sesión se restablece sola
+            session.setAutoReconnect(true);
+            session.setReconnectListener(new MetroSession.ReconnectListener() {
+                @Override
+                public void onReconnecting(int attempt, long delayMillis) {
+                    log("🔄 Reconectando (intento " + attempt + ")...");
+                    SwingUtilities.invokeLater(() ->
+                        updateStatus("🟡 Reconectando (intento " + attempt + ")...", WARNING_COLOR));
+                }
+                
+                @Override
+                public void onReconnected(int attempts) {
+                    log("✅ Sesión restablecida");
+                    SwingUtilities.invokeLater(() ->
+                        updateStatus("🟢 Autenticado como " + username, SUCCESS_COLOR));
+                }
+                
+                @Override
+                public void onReconnectFailed(String reason) {
+                    SwingUtilities.invokeLater(() -> {
+                        showError("No se pudo restablecer la sesión: " + reason);
+                        disconnect();
+                    });
+                }
+            });
+            session.connect();
+            metricsName = MetroMetrics.register(session.getMetrics(), "Session", host + ":" + port);
             
             log("✅ Conectado al servidor exitosamente");
             updateStatus("🟢 Conectado", SUCCESS_COLOR);
@@ -432,31 +532,13 @@ public class MetroClientGUI extends JFrame {
         }
         
         try {
-            // Enviar mensaje de autenticación
-            String authMessage = String.format("TYPE:AUTH;USER:%s;PASS:%s", user, pass);
-            sendMessage(authMessage);
-            
-            // Recibir respuesta (ignorar telemetría)
-            String response = null;
-            for (int i = 0; i < 5; i++) {
-                response = receiveMessage();
-                if (response != null && !response.startsWith("TYPE:TELEMETRY")) {
-                    break;
-                }
-            }
+            // Enviar mensaje de autenticación y esperar respuesta
+            String response = session.authenticate(user, pass);
             
-            if (response != null && response.startsWith("TYPE:AUTH_OK")) {
-                // Extraer token
-                String[] parts = response.split(";");
-                for (String part : parts) {
-                    if (part.startsWith("TOKEN:")) {
-                        token = part.substring(6).trim();
-                        break;
-                    }
-                }
+            if (response.startsWith(MetroProtocol.TYPE_AUTH_OK)) {
+                String token = session.getToken();
                 
-                if (token != null && !token.isEmpty()) {
-                    authenticated = true;
+                if (token != null) {
                     username = user;
                     
                     log("✅ Autenticación exitosa");
@@ -474,7 +556,7 @@ public class MetroClientGUI extends JFrame {
                     // Iniciar listener de telemetría
                     startTelemetryListener();
                 }
-            } else if (response != null && response.startsWith("TYPE:ERR")) {
+            } else if (response.startsWith(MetroProtocol.TYPE_ERR)) {
                 showError("Autenticación fallida");
                 updateStatus("🔴 Autenticación fallida", ERROR_COLOR);
             }
@@ -488,34 +570,41 @@ public class MetroClientGUI extends JFrame {
      * Enviar comando al servidor
      */
     private void sendCommand(String action) {
-        if (!authenticated) {
+        if (!isAuthenticated()) {
             showError("Debe autenticarse primero");
             return;
         }
         
-        try {
-            String cmdMessage = String.format("TYPE:CMD;TOKEN:%s;ACTION:%s", token, action);
-            sendMessage(cmdMessage);
-            
-            // Recibir respuesta
-            String response = null;
-            for (int i = 0; i < 5; i++) {
-                response = receiveMessage();
-                if (response != null && !response.startsWith("TYPE:TELEMETRY")) {
-                    break;
+        // Sin bloquear el EDT: varios clics pueden estar en vuelo a la vez
+        // Durante una reconexión el comando espera y se reenvía al restablecerse
+        session.sendCommandAsync(action).whenComplete((response, error) ->
+            SwingUtilities.invokeLater(() -> {
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    showError("Error enviando comando: " + cause.getMessage());
+                    return;
                 }
-            }
-            
-            if (response != null && response.startsWith("TYPE:ACK")) {
-                log("✅ Comando " + action + " ejecutado exitosamente");
-            } else if (response != null && response.startsWith("TYPE:ERR")) {
-                String reason = extractReason(response);
-                showError("Error en " + action + ": " + reason);
-            }
-            
-        } catch (Exception e) {
-            showError("Error enviando comando: " + e.getMessage());
+                
+                if (MetroProtocol.isAck(response)) {
+                    log("✅ Comando " + action + " ejecutado exitosamente");
+                } else if (MetroProtocol.isError(response)) {
+                    String reason = MetroProtocol.field(response, "REASON");
+                    showError("Error en " + action + ": " + (reason != null ? reason : "Error desconocido"));
+                }
+            })
+        );
+    }
+    
+    /**
+     * Sesión autenticada, o reconectando tras haberlo estado (los comandos
+     * esperan y se reenvían)
+     */
+    private boolean isAuthenticated() {
+        if (session == null) {
+            return false;
         }
+        TrainState.Status status = session.getState().getStatus();
+        return status == TrainState.Status.AUTHENTICATED || status == TrainState.Status.RECONNECTING;
     }
     
     /**
@@ -523,22 +612,27 @@ public class MetroClientGUI extends JFrame {
      */
     private void disconnect() {
         try {
-            running = false;
-            
-            if (telemetryExecutor != null) {
-                telemetryExecutor.shutdown();
+            // Un cierre pedido por el usuario no es una conexión perdida
+            if (session != null) {
+                session.setCloseListener(null);
             }
             
-            if (authenticated && token != null) {
-                String logoutMessage = String.format("TYPE:LOGOUT;TOKEN:%s", token);
-                sendMessage(logoutMessage);
-                receiveMessage();
-                log("✅ Sesión cerrada");
-            }
+            stopTelemetryListener();
             
-            if (input != null) input.close();
-            if (output != null) output.close();
-            if (socket != null) socket.close();
+            if (session != null) {
+                if (session.isAuthenticated()) {
+                    try {
+                        session.logout();
+                        log("✅ Sesión cerrada");
+                    } catch (IOException e) {
+                        log("⚠️ Logout sin respuesta: " + e.getMessage());
+                    }
+                }
+                session.close();
+                session = null;
+            }
+            MetroMetrics.unregister(metricsName);
+            metricsName = null;
             
             log("🔌 Desconectado del servidor");
             updateStatus("⚪ Desconectado", Color.GRAY);
@@ -553,114 +647,140 @@ public class MetroClientGUI extends JFrame {
     
     /**
      * Iniciar listener de telemetría
+     * 
+     * El historial, las alertas de batería y el log reciben cada muestra
+     * en el thread lector. El panel se suscribe al publicador de la
+     * sesión con política LATEST y entrega en el EDT: solo se conserva la
+     * muestra más reciente y el timer pide una (request(1)) por frame de
+     * pantalla, así el panel siempre refleja el último dato sin acumular
+     * atraso aunque el servidor envíe más rápido.
      */
     private void startTelemetryListener() {
-        telemetryExecutor = Executors.newSingleThreadScheduledExecutor();
-        telemetryExecutor.scheduleAtFixedRate(() -> {
-            try {
-                if (input.ready()) {
-                    String message = input.readLine();
-                    if (message != null && message.startsWith("TYPE:TELEMETRY")) {
-                        SwingUtilities.invokeLater(() -> updateTelemetry(message));
-                    }
-                }
-            } catch (IOException e) {
-                if (running) {
-                    SwingUtilities.invokeLater(() -> 
-                        showError("Error en telemetría: " + e.getMessage())
-                    );
-                }
+        AlertEngine alerts = new AlertEngine(ALERT_RULES, 1, new AlertSink() {
+            @Override
+            public void onAlert(int train, AlertRule rule, TelemetrySample sample) {
+                log("🚨 Alerta " + rule + " (batería " + sample.getBattery() + "%)");
             }
-        }, 0, 500, TimeUnit.MILLISECONDS);
-    }
-    
-    /**
-     * Actualizar visualización de telemetría
-     */
-    private void updateTelemetry(String message) {
-        try {
-            String[] parts = message.split(";");
-            
-            String speed = "0";
-            String battery = "0";
-            String direction = "N/A";
-            String station = "N/A";
             
-            for (String part : parts) {
-                if (part.startsWith("SPEED:")) {
-                    speed = part.substring(6).trim();
-                } else if (part.startsWith("BATTERY:")) {
-                    battery = part.substring(8).trim();
-                } else if (part.startsWith("DIRECTION:")) {
-                    direction = part.substring(10).trim();
-                } else if (part.startsWith("STATION:")) {
-                    station = part.substring(8).trim();
+            @Override
+            public void onClear(int train, AlertRule rule, TelemetrySample sample) {
+                log("✅ Alerta " + rule.getName() + " resuelta");
+            }
+        });
+        telemetryListener = new TelemetryListener() {
+            @Override
+            public void onTelemetry(TelemetrySample sample) {
+                history.add(sample);
+                speedChart.append(sample.getTimestamp(), sample.getSpeed());
+                batteryChart.append(sample.getTimestamp(), sample.getBattery());
+                alerts.onTelemetry(0, sample);
+                if (logTelemetry) {
+                    log(String.format("📊 %.1f km/h · %d%% · %s · estación %d", sample.getSpeed(),
+                        sample.getBattery(), sample.getDirection(), sample.getStation()));
                 }
             }
             
-            // Actualizar UI
-            double speedValue = Double.parseDouble(speed);
-            int batteryValue = Integer.parseInt(battery);
-            
-            speedLabel.setText(String.format("🚄 Velocidad: %.1f km/h", speedValue));
-            speedBar.setValue((int) speedValue);
-            speedBar.setString(String.format("%.0f km/h", speedValue));
-            
-            batteryLabel.setText(String.format("🔋 Batería: %d%%", batteryValue));
-            batteryBar.setValue(batteryValue);
-            batteryBar.setString(batteryValue + "%");
+            @Override
+            public void onMalformed(String frame, int error) {
+                log("⚠️ Error parseando telemetría: " + TelemetryDecoder.describe(error));
+            }
+        };
+        session.addTelemetryListener(telemetryListener);
+        
+        session.getTelemetryPublisher().subscribe(new Flow.Subscriber<TelemetrySample>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                panelSubscription = subscription;
+                panelRequested = false;
+            }
             
-            // Color de batería
-            if (batteryValue < 20) {
-                batteryBar.setForeground(ERROR_COLOR);
-            } else if (batteryValue < 50) {
-                batteryBar.setForeground(WARNING_COLOR);
-            } else {
-                batteryBar.setForeground(SUCCESS_COLOR);
+            @Override
+            public void onNext(TelemetrySample sample) {
+                panelRequested = false;
+                updateTelemetry(sample);
             }
             
-            directionLabel.setText("🧭 Dirección: " + direction);
-            stationLabel.setText("🏢 Estación: " + station);
+            @Override
+            public void onError(Throwable error) {
+                panelSubscription = null;
+                log("⚠️ Panel de telemetría detenido: " + error.getMessage());
+            }
             
-        } catch (Exception e) {
-            log("⚠️ Error parseando telemetría: " + e.getMessage());
-        }
+            @Override
+            public void onComplete() {
+                panelSubscription = null;
+            }
+        }, TelemetryPublisher.Overflow.LATEST, 1, SwingUtilities::invokeLater);
+        
+        refreshTimer = new javax.swing.Timer(REFRESH_INTERVAL, e -> refreshTelemetry());
+        refreshTimer.setCoalesce(true);
+        refreshTimer.start();
     }
     
     /**
-     * Enviar mensaje al servidor
+     * Detener listener de telemetría
      */
-    private void sendMessage(String message) {
-        output.println(message);
-        log("📤 " + message);
+    private void stopTelemetryListener() {
+        if (refreshTimer != null) {
+            refreshTimer.stop();
+            refreshTimer = null;
+        }
+        if (panelSubscription != null) {
+            panelSubscription.cancel();
+            panelSubscription = null;
+        }
+        if (telemetryListener != null && session != null) {
+            session.removeTelemetryListener(telemetryListener);
+        }
+        telemetryListener = null;
     }
     
     /**
-     * Recibir mensaje del servidor
+     * Pedir la muestra más reciente si la anterior ya se mostró y
+     * repintar lo que cambió en los gráficos
      */
-    private String receiveMessage() {
-        try {
-            String message = input.readLine();
-            if (message != null) {
-                log("📥 " + message);
-            }
-            return message;
-        } catch (IOException e) {
-            return null;
+    private void refreshTelemetry() {
+        speedChart.refresh();
+        batteryChart.refresh();
+        if (panelSubscription != null && !panelRequested) {
+            panelRequested = true;
+            panelSubscription.request(1);
         }
     }
     
     /**
-     * Extraer razón de error
+     * Actualizar visualización de telemetría
      */
-    private String extractReason(String errorMessage) {
-        String[] parts = errorMessage.split(";");
-        for (String part : parts) {
-            if (part.startsWith("REASON:")) {
-                return part.substring(7).trim();
-            }
+    private void updateTelemetry(TelemetrySample sample) {
+        double speedValue = sample.getSpeed();
+        int batteryValue = sample.getBattery();
+        String station = sample.getStation() == TelemetrySample.NO_STATION
+            ? "N/A" : String.valueOf(sample.getStation());
+        
+        speedLabel.setText(String.format("🚄 Velocidad: %.1f km/h", speedValue));
+        speedBar.setValue((int) speedValue);
+        speedBar.setString(String.format("%.0f km/h", speedValue));
+        
+        batteryLabel.setText(String.format("🔋 Batería: %d%%", batteryValue));
+        batteryBar.setValue(batteryValue);
+        batteryBar.setString(batteryValue + "%");
+        
+        // Color de batería
+        if (batteryValue < BATTERY_CRITICAL) {
+            batteryBar.setForeground(ERROR_COLOR);
+        } else if (batteryValue < BATTERY_LOW) {
+            batteryBar.setForeground(WARNING_COLOR);
+        } else {
+            batteryBar.setForeground(SUCCESS_COLOR);
         }
-        return "Error desconocido";
+        
+        directionLabel.setText("🧭 Dirección: " + sample.getDirection());
+        stationLabel.setText("🏢 Estación: " + station);
+        
+        double drain = history.batteryDrainRate();
+        trendLabel.setText(String.format("📈 Últimos %d s: %.1f–%.1f km/h (media %.1f) · 🔋 %s",
+            history.getWindowMillis() / 1000, history.minSpeed(), history.maxSpeed(),
+            history.averageSpeed(), Double.isNaN(drain) ? "--" : String.format("%.2f %%/min", drain)));
     }
     
     /**
@@ -677,10 +797,6 @@ public class MetroClientGUI extends JFrame {
      * Resetear UI
      */
     private void resetUI() {
-        authenticated = false;
-        token = null;
-        running = true;
-        
         connectButton.setEnabled(true);
         hostField.setEnabled(true);
         portField.setEnabled(true);
@@ -694,6 +810,10 @@ public class MetroClientGUI extends JFrame {
         batteryLabel.setText("🔋 Batería: -- %");
         directionLabel.setText("🧭 Dirección: --");
         stationLabel.setText("🏢 Estación: --");
+        trendLabel.setText(TREND_EMPTY);
+        history.clear();
+        speedChart.clear();
+        batteryChart.clear();
         speedBar.setValue(0);
         batteryBar.setValue(0);
     }
@@ -715,14 +835,19 @@ public class MetroClientGUI extends JFrame {
     }
     
     /**
-     * Log de mensajes
+     * Log de mensajes (puede llamarse desde cualquier thread)
      */
     private void log(String message) {
-        String timestamp = LocalDateTime.now().format(
-            DateTimeFormatter.ofPattern("HH:mm:ss")
-        );
-        logArea.append("[" + timestamp + "] " + message + "\n");
-        logArea.setCaretPosition(logArea.getDocument().getLength());
+        logModel.append("[" + LOG_TIME_FORMAT.format(LocalDateTime.now()) + "] " + message);
+    }
+    
+    /**
+     * Mostrar en el EDT las entradas acumuladas desde el último refresco
+     */
+    private void flushLog() {
+        if (logModel.flush() > 0) {
+            logList.ensureIndexIsVisible(logModel.getSize() - 1);
+        }
     }
     
     /**
@@ -736,6 +861,24 @@ public class MetroClientGUI extends JFrame {
             e.printStackTrace();
         }
         
+        // Panel de flota: java MetroClientGUI --fleet flota.txt
+        if (args.length >= 2 && args[0].equals("--fleet")) {
+            java.util.List<MetroFleet.Endpoint> endpoints;
+            try {
+                endpoints = MetroFleet.load(Paths.get(args[1]));
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("❌ No se pudo leer la flota: " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                FleetDashboard dashboard = new FleetDashboard(endpoints);
+                dashboard.setVisible(true);
+                dashboard.start();
+            });
+            return;
+        }
+        
         // Crear y mostrar GUI
         SwingUtilities.invokeLater(() -> {
             MetroClientGUI gui = new MetroClientGUI();
@@ -0,0 +1,664 @@
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Metro Connection - Conexión TCP con lector único
+ *
+ * Encapsula el socket hacia el servidor Metro y es el único punto que
+ * lee del stream de entrada. Un thread lector dedicado demultiplexa cada
+ * frame según su TYPE:
+ * - TYPE:TELEMETRY se decodifica a un {@link TelemetrySample} y se
+ *   entrega a los suscriptores de telemetría
+ * - Cualquier otro frame (AUTH_OK, ACK, ERR, ...) completa la petición
+ *   pendiente más antigua (el servidor responde en orden FIFO)
+ *
+ * Las peticiones se canalizan por un {@link RequestPipeline}, de modo que
+ * varias pueden estar en vuelo a la vez dentro de una ventana configurable.
+ *
+ * De esta forma ningún frame se descarta ni es leído por dos threads.
+ *
+ * Los frames se leen y escriben con un {@link FrameCodec}: texto por
+ * defecto, o la codificación que se acuerde con {@link #negotiate}.
+ *
+ * Escritura: los frames se acumulan como una lista de ByteBuffers que
+ * se envía con una escritura gathering en cada flush. Los frames ya
+ * codificados (los {@link CommandFrames} del token) se añaden sin
+ * copiarse; el resto se codifica en un buffer directo. El pipeline
+ * hace un flush por ráfaga, no por frame. TCP_NODELAY y los buffers del
+ * socket se configuran con {@link SocketOptions}.
+ *
+ * Quien envía una petición la escribe en su thread. Las que esperaban
+ * hueco en la ventana y lo obtienen al llegar una respuesta o vencer un
+ * timeout las escribe un thread escritor de la conexión (creado solo
+ * mientras hay envíos así pendientes): el lector nunca se bloquea
+ * escribiendo en el socket.
+ *
+ * Opcionalmente registra tráfico, latencias y llegada de telemetría en
+ * unas {@link MetroMetrics}.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class MetroConnection implements Closeable {
+
+    // Peticiones en vuelo por defecto
+    public static final int DEFAULT_WINDOW = 8;
+
+    // Buffers de la conexión
+    private static final int INPUT_BUFFER = 16 * 1024;
+    private static final int OUTPUT_BUFFER = 8 * 1024;
+
+    // El thread escritor termina tras este tiempo sin envíos pendientes
+    private static final long WRITER_KEEP_ALIVE = 1000;
+
+    /**
+     * Opciones del socket, aplicadas antes de conectar
+     */
+    public static final class SocketOptions {
+        /** TCP_NODELAY activado, buffers del sistema */
+        public static final SocketOptions DEFAULT = new SocketOptions(true, 0, 0);
+
+        private final boolean tcpNoDelay;
+        private final int sendBufferSize;
+        private final int receiveBufferSize;
+
+        /**
+         * @param tcpNoDelay false para dejar actuar al algoritmo de Nagle
+         * @param sendBufferSize SO_SNDBUF en bytes (0 = el del sistema)
+         * @param receiveBufferSize SO_RCVBUF en bytes (0 = el del sistema)
+         */
+        public SocketOptions(boolean tcpNoDelay, int sendBufferSize, int receiveBufferSize) {
+            if (sendBufferSize < 0 || receiveBufferSize < 0) {
+                throw new IllegalArgumentException("Tamaño de buffer inválido: "
+                    + sendBufferSize + "/" + receiveBufferSize);
+            }
+            this.tcpNoDelay = tcpNoDelay;
+            this.sendBufferSize = sendBufferSize;
+            this.receiveBufferSize = receiveBufferSize;
+        }
+
+        public boolean isTcpNoDelay() {
+            return tcpNoDelay;
+        }
+
+        public int getSendBufferSize() {
+            return sendBufferSize;
+        }
+
+        public int getReceiveBufferSize() {
+            return receiveBufferSize;
+        }
+
+        void applyTo(Socket socket) throws SocketException {
+            socket.setTcpNoDelay(tcpNoDelay);
+            if (sendBufferSize > 0) {
+                socket.setSendBufferSize(sendBufferSize);
+            }
+            if (receiveBufferSize > 0) {
+                // Antes de conectar, para que cuente en la ventana TCP anunciada
+                socket.setReceiveBufferSize(receiveBufferSize);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "TCP_NODELAY=" + tcpNoDelay
+                + ", SO_SNDBUF=" + (sendBufferSize > 0 ? sendBufferSize : "sistema")
+                + ", SO_RCVBUF=" + (receiveBufferSize > 0 ? receiveBufferSize : "sistema");
+        }
+    }
+
+    // Variables de conexión
+    private final SocketChannel channel;
+    private final Socket socket;
+    private final FrameInput input;
+    private final Thread readerThread;
+    private final ThreadPoolExecutor writerThread;
+    private volatile boolean running;
+
+    // Salida pendiente de flush (protegida por outputLock): los frames en
+    // orden, como buffers propios o como tramos de staging
+    private final Object outputLock = new Object();
+    private final ByteBuffer staging = ByteBuffer.allocateDirect(OUTPUT_BUFFER);
+    private ByteBuffer[] pending = new ByteBuffer[64];
+    private int pendingCount;
+
+    // Codificación: la de lectura solo la usa el thread lector; la de
+    // escritura se cambia tras el handshake
+    private FrameCodec readCodec = new TextFrameCodec();
+    private volatile FrameCodec writeCodec = new TextFrameCodec();
+    private volatile FrameCodec pendingCodec;
+
+    // Comandos precodificados del token actual
+    private volatile CommandFrames commandFrames;
+
+    // Peticiones esperando respuesta, en orden de envío
+    private final RequestPipeline pipeline;
+
+    // Muestra reutilizada por el thread lector
+    private final TelemetrySample sample = new TelemetrySample();
+
+    // Suscriptores
+    private final CopyOnWriteArrayList<TelemetryListener> telemetryListeners = new CopyOnWriteArrayList<>();
+    private volatile Consumer<String> unsolicitedListener;
+    private volatile Consumer<IOException> closeListener;
+    private volatile Consumer<RuntimeException> listenerErrorHandler;
+    private volatile boolean listenerErrorReported;
+    private volatile MetroMetrics metrics;
+
+    /**
+     * Abrir una conexión al servidor Metro e iniciar el lector
+     * @param host Dirección IP o hostname del servidor
+     * @param port Puerto del servidor
+     * @param connectTimeout Timeout de conexión en milisegundos
+     * @throws IOException si no se puede conectar
+     */
+    public MetroConnection(String host, int port, int connectTimeout) throws IOException {
+        this(host, port, connectTimeout, null);
+    }
+
+    /**
+     * Abrir una conexión con una fábrica de threads propia para el lector
+     * @param host Dirección IP o hostname del servidor
+     * @param port Puerto del servidor
+     * @param connectTimeout Timeout de conexión en milisegundos
+     * @param readerThreads Fábrica del thread lector (null = thread daemon)
+     * @throws IOException si no se puede conectar
+     */
+    public MetroConnection(String host, int port, int connectTimeout, ThreadFactory readerThreads)
+            throws IOException {
+        this(host, port, connectTimeout, readerThreads, SocketOptions.DEFAULT);
+    }
+
+    /**
+     * Abrir una conexión con opciones de socket propias
+     * @param host Dirección IP o hostname del servidor
+     * @param port Puerto del servidor
+     * @param connectTimeout Timeout de conexión en milisegundos
+     * @param readerThreads Fábrica del thread lector (null = thread daemon)
+     * @param options TCP_NODELAY y tamaños de buffer del socket
+     * @throws IOException si no se puede conectar
+     */
+    public MetroConnection(String host, int port, int connectTimeout, ThreadFactory readerThreads,
+                           SocketOptions options) throws IOException {
+        // Canal bloqueante: el lector usa su stream y las escrituras son gathering
+        channel = SocketChannel.open();
+        socket = channel.socket();
+        try {
+            options.applyTo(socket);
+            socket.connect(new InetSocketAddress(host, port), connectTimeout);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        input = new FrameInput(socket.getInputStream(), INPUT_BUFFER);
+        writerThread = new ThreadPoolExecutor(0, 1, WRITER_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), task -> {
+                Thread thread = new Thread(task, "metro-writer-" + host + ":" + port);
+                thread.setDaemon(true);
+                return thread;
+            });
+        pipeline = new RequestPipeline(DEFAULT_WINDOW, new RequestPipeline.Writer() {
+            @Override
+            public void write(String frame, ByteBuffer encoded) {
+                append(frame, encoded);
+            }
+
+            @Override
+            public void flush() {
+                flushOutput();
+            }
+
+            @Override
+            public void schedule(Runnable send) {
+                try {
+                    writerThread.execute(send);
+                } catch (RejectedExecutionException e) {
+                    // Conexión cerrada: el pipeline ya falló las peticiones
+                }
+            }
+        });
+        running = true;
+
+        if (readerThreads != null) {
+            readerThread = readerThreads.newThread(this::readLoop);
+        } else {
+            readerThread = new Thread(this::readLoop, "metro-reader-" + host + ":" + port);
+            readerThread.setDaemon(true);
+        }
+        readerThread.start();
+    }
+
+    /**
+     * Bucle del thread lector: lee cada frame una sola vez y lo enruta
+     */
+    private void readLoop() {
+        IOException failure = null;
+
+        try {
+            int kind;
+            while (running && (kind = readCodec.read(input, sample)) != FrameCodec.END) {
+                MetroMetrics current = metrics;
+                if (current != null) {
+                    current.frameReceived(readCodec.getFrameLength());
+                }
+                dispatch(kind);
+            }
+            if (running) {
+                failure = new EOFException("El servidor cerró la conexión");
+            }
+        } catch (IOException e) {
+            if (running) {
+                failure = e;
+            }
+        } catch (Throwable e) {
+            // Fallo inesperado del lector: la conexión no puede seguir sin él
+            failure = new IOException("Error en el thread lector: " + e, e);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Ya se informa el fallo original
+            }
+        }
+
+        running = false;
+        pipeline.close(failure != null ? failure : new IOException("Conexión cerrada"));
+        writerThread.shutdown();
+
+        Consumer<IOException> listener = closeListener;
+        if (failure != null && listener != null) {
+            listener.accept(failure);
+        }
+    }
+
+    /**
+     * Enrutar un frame recibido según su tipo
+     * @param kind Resultado de {@link FrameCodec#read}
+     */
+    private void dispatch(int kind) {
+        MetroMetrics current = metrics;
+        if (kind == FrameCodec.TELEMETRY) {
+            if (current != null) {
+                current.telemetryReceived(System.nanoTime());
+            }
+            sample.setTimestamp(System.currentTimeMillis());
+            for (TelemetryListener listener : telemetryListeners) {
+                try {
+                    listener.onTelemetry(sample);
+                } catch (RuntimeException e) {
+                    listenerFailed(e);
+                }
+            }
+            return;
+        }
+        if (kind == FrameCodec.MALFORMED) {
+            if (current != null) {
+                current.malformedFrame();
+            }
+            for (TelemetryListener listener : telemetryListeners) {
+                try {
+                    listener.onMalformed(readCodec.getMessage(), readCodec.getError());
+                } catch (RuntimeException e) {
+                    listenerFailed(e);
+                }
+            }
+            return;
+        }
+
+        String message = readCodec.getMessage();
+        FrameCodec pending = pendingCodec;
+        if (pending != null && message.startsWith(MetroProtocol.TYPE_HELLO_OK)
+                && pending.getName().equals(MetroProtocol.field(message, "CODEC"))) {
+            // El servidor cambia justo después de este frame: el siguiente ya llega en la nueva codificación
+            readCodec = pending;
+        }
+
+        // Si la petición ya expiró, la respuesta tardía se consume igualmente
+        // para no desalinear las siguientes
+        if (!pipeline.complete(message)) {
+            Consumer<String> listener = unsolicitedListener;
+            if (listener != null) {
+                try {
+                    listener.accept(message);
+                } catch (RuntimeException e) {
+                    listenerFailed(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Un receptor lanzó una excepción: se informa y el lector sigue
+     * con el siguiente receptor y el siguiente frame
+     * @param e Excepción del receptor
+     */
+    private void listenerFailed(RuntimeException e) {
+        Consumer<RuntimeException> handler = listenerErrorHandler;
+        if (handler != null) {
+            handler.accept(e);
+        } else if (!listenerErrorReported) {
+            // Sin manejador: se informa solo la primera para no inundar la salida
+            listenerErrorReported = true;
+            System.err.println("⚠️ Un receptor de la conexión falló: " + e);
+        }
+    }
+
+    /**
+     * Enviar un frame sin esperar respuesta
+     * @param message Frame a enviar
+     */
+    public void send(String message) {
+        synchronized (outputLock) {
+            append(message, null);
+            flushOutput();
+        }
+    }
+
+    /**
+     * Codificar un frame una vez para enviarlo muchas (con {@link #request(String, ByteBuffer, long)})
+     * @param frame Frame TYPE:...;CLAVE:VALOR sin terminador
+     * @return Buffer directo de solo lectura con el frame en la codificación actual
+     */
+    public ByteBuffer encode(String frame) {
+        byte[] bytes;
+        synchronized (outputLock) {
+            bytes = writeCodec.encode(frame);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Frames de comando de un token, codificados la primera vez que se piden
+     * @param token Token de sesión
+     * @return Frames para {@link #request(String, ByteBuffer, long)}
+     */
+    public CommandFrames commandFrames(String token) {
+        CommandFrames frames = commandFrames;
+        if (frames == null || !frames.getToken().equals(token)) {
+            frames = new CommandFrames(token, this::encode);
+            commandFrames = frames;
+        }
+        return frames;
+    }
+
+    /**
+     * Añadir un frame a la salida pendiente
+     * @param frame Frame de texto
+     * @param encoded Frame ya codificado (se envía sin copiar) o null
+     */
+    private void append(String frame, ByteBuffer encoded) {
+        synchronized (outputLock) {
+            ByteBuffer buffer;
+            if (encoded != null) {
+                // Vista propia: el mismo frame puede ir varias veces en una ráfaga
+                buffer = encoded.duplicate();
+            } else {
+                byte[] bytes = writeCodec.encode(frame);
+                if (bytes.length > staging.remaining()) {
+                    flushOutput();
+                }
+                if (bytes.length > staging.remaining()) {
+                    buffer = ByteBuffer.wrap(bytes);
+                } else {
+                    int start = staging.position();
+                    staging.put(bytes);
+                    buffer = staging.duplicate().position(start).limit(start + bytes.length).slice();
+                }
+            }
+
+            if (pendingCount == pending.length) {
+                pending = Arrays.copyOf(pending, pendingCount * 2);
+            }
+            pending[pendingCount++] = buffer;
+
+            MetroMetrics current = metrics;
+            if (current != null) {
+                current.frameSent(buffer.remaining());
+            }
+        }
+    }
+
+    /**
+     * Escribir toda la salida pendiente con escrituras gathering
+     */
+    private void flushOutput() {
+        synchronized (outputLock) {
+            try {
+                int first = 0;
+                while (first < pendingCount) {
+                    channel.write(pending, first, pendingCount - first);
+                    while (first < pendingCount && !pending[first].hasRemaining()) {
+                        first++;
+                    }
+                }
+            } catch (IOException e) {
+                // El lector detecta el cierre y falla las peticiones pendientes
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // Ya cerrado
+                }
+            } finally {
+                Arrays.fill(pending, 0, pendingCount, null);
+                pendingCount = 0;
+                staging.clear();
+            }
+        }
+    }
+
+    /**
+     * Proponer una codificación al servidor (antes de cualquier otra petición)
+     * 
+     * Si el servidor responde TYPE:HELLO_OK con esa codificación, ambos
+     * extremos la usan desde el frame siguiente. Con cualquier otra
+     * respuesta se sigue en texto. Sin respuesta a tiempo la conexión
+     * queda inservible (una respuesta tardía al HELLO se tomaría por la
+     * de la siguiente petición) y el llamante debe cerrarla.
+     * 
+     * @param codecName Codificación preferida (por ejemplo BIN1)
+     * @param timeoutMillis Tiempo máximo de espera
+     * @return Nombre de la codificación en uso
+     * @throws SocketTimeoutException si el servidor no responde al HELLO a tiempo
+     * @throws IOException si la conexión falla
+     */
+    public String negotiate(String codecName, long timeoutMillis) throws IOException {
+        FrameCodec reader = FrameCodec.create(codecName);
+        if (reader == null) {
+            throw new IllegalArgumentException("Codificación desconocida: " + codecName);
+        }
+        if (reader instanceof TextFrameCodec) {
+            return TextFrameCodec.NAME;
+        }
+
+        pendingCodec = reader;
+        try {
+            String reply = call(MetroProtocol.helloMessage(codecName, TextFrameCodec.NAME), timeoutMillis);
+            if (reply.startsWith(MetroProtocol.TYPE_HELLO_OK)
+                    && codecName.equals(MetroProtocol.field(reply, "CODEC"))) {
+                writeCodec = FrameCodec.create(codecName);
+                return codecName;
+            }
+        } finally {
+            pendingCodec = null;
+        }
+        return TextFrameCodec.NAME;
+    }
+
+    /**
+     * @return Nombre de la codificación usada para enviar
+     */
+    public String getCodecName() {
+        return writeCodec.getName();
+    }
+
+    /**
+     * Enviar un frame que espera respuesta, sin bloquear
+     * 
+     * Si la ventana de peticiones en vuelo está llena, el frame espera en
+     * cola y se envía al llegar la siguiente respuesta.
+     * 
+     * @param message Frame a enviar
+     * @param timeoutMillis Timeout de la petición en milisegundos
+     * @return Future que se completa con la respuesta del servidor, o con
+     *         TimeoutException / IOException
+     */
+    public CompletableFuture<String> request(String message, long timeoutMillis) {
+        return pipeline.submit(message, timeoutMillis);
+    }
+
+    /**
+     * Enviar un frame ya codificado que espera respuesta, sin bloquear
+     * @param message Frame de texto
+     * @param encoded Resultado de {@link #encode} con la codificación actual
+     * @param timeoutMillis Timeout de la petición en milisegundos
+     * @return Future con la respuesta del servidor
+     */
+    public CompletableFuture<String> request(String message, ByteBuffer encoded, long timeoutMillis) {
+        return pipeline.submit(message, encoded, timeoutMillis);
+    }
+
+    /**
+     * Enviar varios frames ya codificados en una sola escritura (si caben en la ventana)
+     * @param messages Frames de texto
+     * @param encoded Resultados de {@link #encode}, en el mismo orden
+     * @param timeoutMillis Timeout de cada petición en milisegundos
+     * @return Un future por frame, en el mismo orden
+     */
+    public List<CompletableFuture<String>> requestAll(String[] messages, ByteBuffer[] encoded, long timeoutMillis) {
+        return pipeline.submitAll(messages, encoded, timeoutMillis);
+    }
+
+    /**
+     * Enviar un frame y esperar su respuesta de forma bloqueante
+     * @param message Frame a enviar
+     * @param timeoutMillis Tiempo máximo de espera en milisegundos
+     * @return Respuesta del servidor
+     * @throws SocketTimeoutException si no llega respuesta a tiempo
+     * @throws IOException si la conexión falla
+     */
+    public String call(String message, long timeoutMillis) throws IOException {
+        return await(request(message, timeoutMillis));
+    }
+
+    /**
+     * Enviar un frame ya codificado y esperar su respuesta de forma bloqueante
+     * @param message Frame de texto
+     * @param encoded Resultado de {@link #encode} con la codificación actual
+     * @param timeoutMillis Tiempo máximo de espera en milisegundos
+     * @return Respuesta del servidor
+     * @throws SocketTimeoutException si no llega respuesta a tiempo
+     * @throws IOException si la conexión falla
+     */
+    public String call(String message, ByteBuffer encoded, long timeoutMillis) throws IOException {
+        return await(request(message, encoded, timeoutMillis));
+    }
+
+    /**
+     * Esperar la respuesta de una petición traduciendo sus fallos a IOException
+     */
+    private static String await(CompletableFuture<String> reply) throws IOException {
+        try {
+            return reply.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException) {
+                throw new SocketTimeoutException("Timeout esperando respuesta del servidor");
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Espera interrumpida");
+        }
+    }
+
+    /**
+     * Suscribirse a la telemetría decodificada
+     * @param listener Receptor invocado desde el thread lector
+     */
+    public void addTelemetryListener(TelemetryListener listener) {
+        telemetryListeners.add(listener);
+    }
+
+    /**
+     * Cancelar una suscripción de telemetría
+     * @param listener Receptor a eliminar
+     */
+    public void removeTelemetryListener(TelemetryListener listener) {
+        telemetryListeners.remove(listener);
+    }
+
+    /**
+     * Cambiar el número máximo de peticiones en vuelo
+     * @param window Tamaño de la ventana (1 = stop-and-wait)
+     */
+    public void setMaxInFlight(int window) {
+        pipeline.setWindow(window);
+    }
+
+    /**
+     * Instrumentar la conexión
+     * @param metrics Métricas donde registrar (null = sin instrumentar)
+     */
+    public void setMetrics(MetroMetrics metrics) {
+        this.metrics = metrics;
+        pipeline.setMetrics(metrics);
+    }
+
+    /**
+     * Registrar receptor de frames que no corresponden a ninguna petición
+     * @param listener Receptor invocado desde el thread lector
+     */
+    public void setUnsolicitedListener(Consumer<String> listener) {
+        this.unsolicitedListener = listener;
+    }
+
+    /**
+     * Registrar receptor de pérdida de conexión
+     * @param listener Receptor invocado desde el thread lector
+     */
+    public void setCloseListener(Consumer<IOException> listener) {
+        this.closeListener = listener;
+    }
+
+    /**
+     * Registrar receptor de las excepciones lanzadas por los demás receptores
+     * @param handler Receptor invocado desde el thread lector (null = informar
+     *                la primera por stderr)
+     */
+    public void setListenerErrorHandler(Consumer<RuntimeException> handler) {
+        this.listenerErrorHandler = handler;
+    }
+
+    /**
+     * @return true si la conexión sigue activa
+     */
+    public boolean isOpen() {
+        return running;
+    }
+
+    /**
+     * Cerrar la conexión y detener el lector
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            socket.close();
+        } finally {
+            pipeline.close(new IOException("Conexión cerrada"));
+            writerThread.shutdown();
+            channel.close();
+        }
+    }
+}
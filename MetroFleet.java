@@ -0,0 +1,362 @@
+import java.io.*;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metro Fleet - Muchas sesiones autenticadas en un solo proceso
+ *
+ * Conecta y autentica todas las sesiones de la flota en paralelo, un
+ * thread virtual por sesión (o un thread de plataforma si la JVM no
+ * soporta threads virtuales), de modo que el arranque de N trenes tarda
+ * aproximadamente lo mismo que un solo connect+auth.
+ *
+ * La telemetría de todas las sesiones se entrega a un único
+ * {@link Listener}, identificando cada muestra por el índice del tren.
+ * Las métricas de todas las sesiones se agregan en {@link FleetMetrics}.
+ *
+ * Formato del archivo de flota (una sesión por línea, '#' = comentario):
+ * <pre>
+ *   host:puerto usuario contraseña [nombre]
+ * </pre>
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class MetroFleet implements Closeable {
+
+    /**
+     * Receptor del stream agregado de la flota
+     *
+     * Se invoca desde los threads lectores de todas las sesiones, por lo
+     * que debe ser thread-safe y no bloquear.
+     */
+    public interface Listener {
+        void onTelemetry(int train, TelemetrySample sample);
+
+        default void onMalformed(int train, String frame, int error) {
+        }
+
+        default void onSessionClosed(int train, IOException cause) {
+        }
+
+        default void onSessionRestored(int train, int attempts) {
+        }
+
+        default void onReconnectFailed(int train, String reason) {
+        }
+
+        /**
+         * Un receptor de la sesión lanzó una excepción; la sesión la
+         * aísla y sigue leyendo (por defecto se ignora)
+         */
+        default void onListenerError(int train, RuntimeException error) {
+        }
+    }
+
+    /**
+     * Punto de conexión y credenciales de un tren
+     */
+    public static final class Endpoint {
+        public final String name;
+        public final String host;
+        public final int port;
+        public final String user;
+        public final String pass;
+
+        public Endpoint(String name, String host, int port, String user, String pass) {
+            this.name = name;
+            this.host = host;
+            this.port = port;
+            this.user = user;
+            this.pass = pass;
+        }
+
+        /**
+         * Parsear una línea "host:puerto usuario contraseña [nombre]"
+         * @param line Línea del archivo de flota
+         * @param index Índice por defecto para el nombre
+         * @return Endpoint
+         * @throws IllegalArgumentException si la línea es inválida
+         */
+        public static Endpoint parse(String line, int index) {
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length < 3) {
+                throw new IllegalArgumentException("Se esperaba 'host:puerto usuario contraseña [nombre]': " + line);
+            }
+
+            int colon = parts[0].lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Falta el puerto en: " + parts[0]);
+            }
+
+            String host = parts[0].substring(0, colon);
+            int port;
+            try {
+                port = Integer.parseInt(parts[0].substring(colon + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Puerto inválido en: " + parts[0]);
+            }
+
+            String name = parts.length > 3 ? parts[3] : "tren-" + index;
+            return new Endpoint(name, host, port, parts[1], parts[2]);
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + host + ":" + port + ")";
+        }
+    }
+
+    private final List<Endpoint> endpoints;
+    private final MetroSession[] sessions;
+    private final String[] failures;
+    private final ThreadFactory threads = sessionThreadFactory();
+    private volatile boolean autoReconnect;
+    private volatile String preferredCodec = TextFrameCodec.NAME;
+    private volatile MetroConnection.SocketOptions socketOptions = MetroConnection.SocketOptions.DEFAULT;
+    private final FleetMetrics metrics = new FleetMetrics();
+
+    /**
+     * Constructor de la flota
+     * @param endpoints Sesiones a abrir
+     */
+    public MetroFleet(List<Endpoint> endpoints) {
+        this.endpoints = Collections.unmodifiableList(new ArrayList<>(endpoints));
+        this.sessions = new MetroSession[endpoints.size()];
+        this.failures = new String[endpoints.size()];
+    }
+
+    /**
+     * Leer un archivo de flota
+     * @param file Ruta del archivo
+     * @return Lista de endpoints
+     * @throws IOException si no se puede leer
+     * @throws IllegalArgumentException si alguna línea es inválida
+     */
+    public static List<Endpoint> load(Path file) throws IOException {
+        List<Endpoint> result = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            result.add(Endpoint.parse(trimmed, result.size() + 1));
+        }
+        return result;
+    }
+
+    /**
+     * Conectar y autenticar todas las sesiones en paralelo
+     * @param listener Receptor del stream agregado de telemetría
+     * @return Número de sesiones autenticadas
+     * @throws InterruptedException si se interrumpe la espera
+     */
+    public int start(Listener listener) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(sessions.length);
+        AtomicInteger authenticated = new AtomicInteger();
+
+        for (int i = 0; i < sessions.length; i++) {
+            final int train = i;
+            threads.newThread(() -> {
+                try {
+                    if (open(train, listener)) {
+                        authenticated.incrementAndGet();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        done.await();
+        return authenticated.get();
+    }
+
+    /**
+     * Abrir una sesión: connect + auth + suscripción
+     */
+    private boolean open(int train, Listener listener) {
+        Endpoint endpoint = endpoints.get(train);
+        MetroSession session = new MetroSession(endpoint.host, endpoint.port, threads);
+        metrics.add(session.getMetrics());
+
+        try {
+            session.setCloseListener(cause -> listener.onSessionClosed(train, cause));
+            session.setListenerErrorListener(error -> listener.onListenerError(train, error));
+            session.setAutoReconnect(autoReconnect);
+            session.setPreferredCodec(preferredCodec);
+            session.setSocketOptions(socketOptions);
+            session.setReconnectListener(new MetroSession.ReconnectListener() {
+                @Override
+                public void onReconnected(int attempts) {
+                    listener.onSessionRestored(train, attempts);
+                }
+
+                @Override
+                public void onReconnectFailed(String reason) {
+                    listener.onReconnectFailed(train, reason);
+                }
+            });
+            session.connect();
+
+            String response = session.authenticate(endpoint.user, endpoint.pass);
+            sessions[train] = session;
+            if (!session.isAuthenticated()) {
+                String reason = MetroProtocol.field(response, "REASON");
+                failures[train] = "Autenticación fallida" + (reason != null ? ": " + reason : "");
+                session.close();
+                return false;
+            }
+
+            // Solo las sesiones autenticadas alimentan el stream agregado
+            session.addTelemetryListener(new TelemetryListener() {
+                @Override
+                public void onTelemetry(TelemetrySample sample) {
+                    listener.onTelemetry(train, sample);
+                }
+
+                @Override
+                public void onMalformed(String frame, int error) {
+                    listener.onMalformed(train, frame, error);
+                }
+            });
+            return true;
+
+        } catch (IOException e) {
+            failures[train] = e.getMessage();
+            try {
+                session.close();
+            } catch (IOException ignored) {
+                // La sesión no llegó a abrirse
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Cerrar sesión en todos los trenes en paralelo y cerrar conexiones
+     * @throws InterruptedException si se interrumpe la espera
+     */
+    public void shutdown() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(sessions.length);
+
+        for (MetroSession session : sessions) {
+            threads.newThread(() -> {
+                try {
+                    if (session != null && session.isAuthenticated()) {
+                        session.logout();
+                    }
+                } catch (IOException e) {
+                    // La sesión se cierra igualmente
+                } finally {
+                    closeQuietly(session);
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        done.await();
+    }
+
+    @Override
+    public void close() {
+        for (MetroSession session : sessions) {
+            closeQuietly(session);
+        }
+    }
+
+    private static void closeQuietly(MetroSession session) {
+        if (session != null) {
+            try {
+                session.close();
+            } catch (IOException e) {
+                // Nada que hacer al cerrar
+            }
+        }
+    }
+
+    /**
+     * Activar la reconexión automática de cada sesión (antes de start)
+     * @param enabled true para reconectar y reautenticar cada tren por separado
+     */
+    public void setAutoReconnect(boolean enabled) {
+        this.autoReconnect = enabled;
+    }
+
+    /**
+     * Elegir la codificación a proponer a cada servidor (antes de start)
+     * @param codecName TEXT o BIN1
+     */
+    public void setPreferredCodec(String codecName) {
+        this.preferredCodec = codecName;
+    }
+
+    /**
+     * Configurar el socket de cada sesión (antes de start)
+     * @param options TCP_NODELAY y tamaños de buffer
+     */
+    public void setSocketOptions(MetroConnection.SocketOptions options) {
+        this.socketOptions = options;
+    }
+
+    /**
+     * @return Métricas agregadas de todas las sesiones
+     */
+    public FleetMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int size() {
+        return sessions.length;
+    }
+
+    public Endpoint getEndpoint(int train) {
+        return endpoints.get(train);
+    }
+
+    /**
+     * @param train Índice del tren
+     * @return Sesión o null si no llegó a conectarse
+     */
+    public MetroSession getSession(int train) {
+        return sessions[train];
+    }
+
+    /**
+     * @param train Índice del tren
+     * @return Motivo del fallo de arranque o null si se autenticó
+     */
+    public String getFailure(int train) {
+        return failures[train];
+    }
+
+    /**
+     * Fábrica de threads para las sesiones: virtuales si la JVM los soporta
+     * (Java 21+), si no threads daemon de plataforma
+     * @return Fábrica de threads
+     */
+    static ThreadFactory sessionThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Method name = builderType.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, "metro-fleet-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return task -> {
+                Thread thread = new Thread(task, "metro-fleet-" + counter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+}
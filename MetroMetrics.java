@@ -0,0 +1,311 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Metro Metrics - Instrumentación de una sesión
+ *
+ * La conexión y el pipeline de peticiones registran cada frame enviado y
+ * recibido, la latencia de cada respuesta y la llegada de cada muestra de
+ * telemetría. Todo el registro es sin locks: contadores {@link LongAdder}
+ * e histogramas de memoria fija ({@link LatencyHistogram}).
+ *
+ * El jitter de telemetría es la variación media entre intervalos
+ * consecutivos, suavizada como en RFC 3550 (J += (|D| - J) / 16).
+ *
+ * Las métricas se conservan entre reconexiones de la sesión y se publican
+ * por JMX con {@link #register}, en el dominio {@value #JMX_DOMAIN}.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class MetroMetrics implements MetroMetricsMBean {
+
+    public static final String JMX_DOMAIN = "metro.client";
+
+    // Tráfico
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder framesReceived = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+
+    // Peticiones
+    private final LongAdder replies = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder errorReplies = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    // Telemetría (solo la escribe el thread lector de la conexión activa)
+    private final LongAdder telemetryFrames = new LongAdder();
+    private final LongAdder malformedFrames = new LongAdder();
+    private final LatencyHistogram interval = new LatencyHistogram();
+    private volatile long lastTelemetry;
+    private long lastInterval = -1;
+    private volatile double jitter;
+
+    // Conexiones abiertas por la sesión
+    private final LongAdder connections = new LongAdder();
+
+    private final Rates rates = new Rates(3);
+
+    /**
+     * Se abrió una conexión nueva (la primera o una reconexión)
+     */
+    public void connectionOpened() {
+        connections.increment();
+        // El hueco de la reconexión no es un intervalo de telemetría
+        lastTelemetry = 0;
+    }
+
+    /**
+     * @param bytes Bytes del frame, incluido el terminador
+     */
+    public void frameSent(int bytes) {
+        framesSent.increment();
+        bytesSent.add(bytes);
+    }
+
+    /**
+     * @param bytes Bytes del frame, incluido el terminador
+     */
+    public void frameReceived(int bytes) {
+        framesReceived.increment();
+        bytesReceived.add(bytes);
+    }
+
+    /**
+     * Respuesta asociada a una petición
+     * @param nanos Tiempo desde el envío de la petición
+     * @param error true si la respuesta es TYPE:ERR
+     */
+    public void reply(long nanos, boolean error) {
+        replies.increment();
+        if (error) {
+            errorReplies.increment();
+        }
+        latency.record(nanos);
+    }
+
+    public void timeout() {
+        timeouts.increment();
+    }
+
+    /**
+     * Muestra de telemetría decodificada
+     * @param nanos Instante de llegada ({@link System#nanoTime()})
+     */
+    public void telemetryReceived(long nanos) {
+        telemetryFrames.increment();
+
+        long previous = lastTelemetry;
+        lastTelemetry = nanos;
+        if (previous == 0) {
+            lastInterval = -1;
+            return;
+        }
+
+        long current = nanos - previous;
+        interval.record(current);
+        if (lastInterval >= 0) {
+            long variation = Math.abs(current - lastInterval);
+            jitter += (variation - jitter) / 16;
+        }
+        lastInterval = current;
+    }
+
+    public void malformedFrame() {
+        malformedFrames.increment();
+    }
+
+    LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    LatencyHistogram getInterval() {
+        return interval;
+    }
+
+    @Override
+    public long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    @Override
+    public long getFramesReceived() {
+        return framesReceived.sum();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public double getFramesSentPerSecond() {
+        return rates.perSecond(0, getFramesSent());
+    }
+
+    @Override
+    public double getFramesReceivedPerSecond() {
+        return rates.perSecond(1, getFramesReceived());
+    }
+
+    @Override
+    public double getBytesReceivedPerSecond() {
+        return rates.perSecond(2, getBytesReceived());
+    }
+
+    @Override
+    public long getReplies() {
+        return replies.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getErrorReplies() {
+        return errorReplies.sum();
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return latency.percentile(0.50) / 1000;
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return latency.percentile(0.99) / 1000;
+    }
+
+    @Override
+    public long getLatencyP999Micros() {
+        return latency.percentile(0.999) / 1000;
+    }
+
+    @Override
+    public long getLatencyMaxMicros() {
+        return latency.max() / 1000;
+    }
+
+    @Override
+    public double getLatencyMeanMicros() {
+        return latency.mean() / 1000;
+    }
+
+    @Override
+    public long getTelemetryFrames() {
+        return telemetryFrames.sum();
+    }
+
+    @Override
+    public long getMalformedFrames() {
+        return malformedFrames.sum();
+    }
+
+    @Override
+    public long getTelemetryIntervalP50Micros() {
+        return interval.percentile(0.50) / 1000;
+    }
+
+    @Override
+    public long getTelemetryIntervalP99Micros() {
+        return interval.percentile(0.99) / 1000;
+    }
+
+    @Override
+    public double getTelemetryJitterMicros() {
+        return jitter / 1000;
+    }
+
+    @Override
+    public long getReconnects() {
+        return Math.max(0, connections.sum() - 1);
+    }
+
+    @Override
+    public void resetHistograms() {
+        latency.reset();
+        interval.reset();
+    }
+
+    /**
+     * Publicar unas métricas en el servidor JMX de la plataforma
+     * @param metrics Métricas de una sesión o de la flota
+     * @param type Tipo (Session, Fleet)
+     * @param name Nombre de la instancia
+     * @return Nombre JMX registrado, o null si no se pudo registrar
+     */
+    public static ObjectName register(MetroMetricsMBean metrics, String type, String name) {
+        try {
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=" + type
+                + ",name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new StandardMBean(metrics, MetroMetricsMBean.class), objectName);
+            return objectName;
+        } catch (JMException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Retirar unas métricas de JMX
+     * @param objectName Nombre devuelto por {@link #register} (null = nada)
+     */
+    public static void unregister(ObjectName objectName) {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            // Ya no estaba registrado
+        }
+    }
+
+    /**
+     * Tasas por segundo desde la consulta anterior
+     *
+     * Solo se usa al consultar por JMX, nunca en el camino de los frames.
+     */
+    static final class Rates {
+        private static final long MIN_INTERVAL = 1_000_000_000L;
+
+        private final long[] lastTotals;
+        private final long[] lastTimes;
+        private final double[] lastRates;
+        private final boolean[] queried;
+
+        Rates(int slots) {
+            lastTotals = new long[slots];
+            lastTimes = new long[slots];
+            lastRates = new double[slots];
+            queried = new boolean[slots];
+            // La primera consulta da la media desde la creación
+            Arrays.fill(lastTimes, System.nanoTime());
+        }
+
+        synchronized double perSecond(int slot, long total) {
+            long now = System.nanoTime();
+            long elapsed = now - lastTimes[slot];
+            if (elapsed >= MIN_INTERVAL || !queried[slot]) {
+                queried[slot] = true;
+                lastRates[slot] = (total - lastTotals[slot]) * 1e9 / elapsed;
+                lastTimes[slot] = now;
+                lastTotals[slot] = total;
+            }
+            return lastRates[slot];
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Metro Metrics MBean - Métricas del cliente publicadas por JMX
+ *
+ * Lo implementan tanto las métricas de una sesión ({@link MetroMetrics})
+ * como el agregado de la flota ({@link FleetMetrics}). Los contadores son
+ * acumulados desde el arranque; las tasas se calculan sobre el intervalo
+ * desde la consulta anterior (mínimo un segundo; la primera consulta da
+ * la media desde el arranque).
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public interface MetroMetricsMBean {
+
+    // Tráfico
+    long getFramesSent();
+
+    long getFramesReceived();
+
+    long getBytesSent();
+
+    long getBytesReceived();
+
+    double getFramesSentPerSecond();
+
+    double getFramesReceivedPerSecond();
+
+    double getBytesReceivedPerSecond();
+
+    // Peticiones: latencia desde el envío del frame hasta su respuesta
+    long getReplies();
+
+    long getTimeouts();
+
+    long getErrorReplies();
+
+    long getLatencyP50Micros();
+
+    long getLatencyP99Micros();
+
+    long getLatencyP999Micros();
+
+    long getLatencyMaxMicros();
+
+    double getLatencyMeanMicros();
+
+    // Telemetría: tiempo entre muestras consecutivas
+    long getTelemetryFrames();
+
+    long getMalformedFrames();
+
+    long getTelemetryIntervalP50Micros();
+
+    long getTelemetryIntervalP99Micros();
+
+    double getTelemetryJitterMicros();
+
+    // Conexión
+    long getReconnects();
+
+    /**
+     * Poner a cero los histogramas (los contadores son acumulados)
+     */
+    void resetHistograms();
+}
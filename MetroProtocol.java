@@ -0,0 +1,111 @@
+/**
+ * Metro Protocol - Constantes y utilidades del protocolo de texto
+ *
+ * Formato de los frames: TYPE:&lt;tipo&gt;;CLAVE:VALOR;... terminado en '\n'
+ *
+ * Cliente → Servidor: HELLO, AUTH, CMD, LOGOUT
+ * Servidor → Cliente: HELLO_OK, AUTH_OK, ACK, ERR, TELEMETRY
+ *
+ * HELLO es opcional y negocia la codificación de los frames
+ * (ver {@link FrameCodec}).
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public final class MetroProtocol {
+
+    // Prefijos de tipo de frame
+    public static final String TYPE_TELEMETRY = "TYPE:TELEMETRY";
+    public static final String TYPE_AUTH_OK = "TYPE:AUTH_OK";
+    public static final String TYPE_ACK = "TYPE:ACK";
+    public static final String TYPE_ERR = "TYPE:ERR";
+    public static final String TYPE_HELLO_OK = "TYPE:HELLO_OK";
+
+    // Acciones de comando
+    public static final String SPEED_UP = "SPEED_UP";
+    public static final String SLOW_DOWN = "SLOW_DOWN";
+    public static final String STOPNOW = "STOPNOW";
+    public static final String STARTNOW = "STARTNOW";
+
+    private MetroProtocol() {
+    }
+
+    /**
+     * Construir mensaje de negociación de codificación
+     * @param codecs Codificaciones aceptadas, por orden de preferencia
+     * @return Frame TYPE:HELLO
+     */
+    public static String helloMessage(String... codecs) {
+        return "TYPE:HELLO;CODECS:" + String.join(",", codecs);
+    }
+
+    /**
+     * Construir mensaje de autenticación
+     * @param user Usuario
+     * @param pass Contraseña
+     * @return Frame TYPE:AUTH
+     */
+    public static String authMessage(String user, String pass) {
+        return "TYPE:AUTH;USER:" + user + ";PASS:" + pass;
+    }
+
+    /**
+     * Construir mensaje de comando
+     * @param token Token de sesión
+     * @param action Acción a ejecutar
+     * @return Frame TYPE:CMD
+     */
+    public static String commandMessage(String token, String action) {
+        return "TYPE:CMD;TOKEN:" + token + ";ACTION:" + action;
+    }
+
+    /**
+     * Construir mensaje de cierre de sesión
+     * @param token Token de sesión
+     * @return Frame TYPE:LOGOUT
+     */
+    public static String logoutMessage(String token) {
+        return "TYPE:LOGOUT;TOKEN:" + token;
+    }
+
+    /**
+     * Extraer el valor de un campo CLAVE:VALOR
+     * @param frame Frame recibido
+     * @param key Clave sin ':' (por ejemplo "TOKEN")
+     * @return Valor sin espacios o null si no está presente
+     */
+    public static String field(String frame, String key) {
+        int pos = 0;
+        int length = frame.length();
+
+        while (pos < length) {
+            int end = frame.indexOf(';', pos);
+            if (end < 0) {
+                end = length;
+            }
+            if (end - pos > key.length()
+                    && frame.startsWith(key, pos)
+                    && frame.charAt(pos + key.length()) == ':') {
+                return frame.substring(pos + key.length() + 1, end).trim();
+            }
+            pos = end + 1;
+        }
+        return null;
+    }
+
+    /**
+     * @param frame Frame recibido
+     * @return true si es TYPE:ACK
+     */
+    public static boolean isAck(String frame) {
+        return frame.startsWith(TYPE_ACK);
+    }
+
+    /**
+     * @param frame Frame recibido
+     * @return true si es TYPE:ERR
+     */
+    public static boolean isError(String frame) {
+        return frame.startsWith(TYPE_ERR);
+    }
+}
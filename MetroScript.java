@@ -0,0 +1,459 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Metro Script - Escenarios de control sin interacción
+ *
+ * Ejecuta una secuencia de pasos sobre una {@link MetroSession}. Los
+ * comandos consecutivos se envían en pipeline (hasta la ventana de la
+ * sesión) sin esperar cada respuesta; WAIT, SYNC y EXPECT esperan antes
+ * a que todos los comandos previos hayan respondido.
+ *
+ * Sintaxis (un paso por línea, '#' = comentario, sin distinguir mayúsculas):
+ * <pre>
+ *   AUTH usuario contraseña
+ *   SPEED_UP | SLOW_DOWN | STOPNOW | STARTNOW [repeticiones]
+ *   WAIT milisegundos
+ *   SYNC
+ *   EXPECT SPEED|BATTERY|STATION|DIRECTION op valor [WITHIN milisegundos]
+ * </pre>
+ * donde op es uno de {@code == != < <= > >=}. EXPECT se cumple cuando
+ * alguna muestra de telemetría recibida después de empezar el paso y
+ * dentro del plazo (15 s por defecto) satisface la condición.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class MetroScript {
+
+    // El servidor real envía telemetría cada ~10 s
+    public static final long DEFAULT_EXPECT_TIMEOUT = 15_000;
+
+    /**
+     * Tipo de paso
+     */
+    enum Kind {
+        AUTH, COMMAND, WAIT, SYNC, EXPECT
+    }
+
+    /**
+     * Paso del script
+     */
+    static final class Step {
+        final int line;
+        final Kind kind;
+        final String[] args;
+        final int repeat;
+        final long millis;
+        final AlertRule condition;
+
+        Step(int line, Kind kind, String[] args, int repeat, long millis) {
+            this(line, kind, args, repeat, millis, null);
+        }
+
+        Step(int line, Kind kind, String[] args, int repeat, long millis, AlertRule condition) {
+            this.line = line;
+            this.kind = kind;
+            this.args = args;
+            this.repeat = repeat;
+            this.millis = millis;
+            this.condition = condition;
+        }
+    }
+
+    /**
+     * Resultado de un comando enviado
+     */
+    public static final class CommandResult {
+        public final int line;
+        public final String action;
+        public final long latencyNanos;
+        public final String response;
+        public final String failure;
+
+        CommandResult(int line, String action, long latencyNanos, String response, String failure) {
+            this.line = line;
+            this.action = action;
+            this.latencyNanos = latencyNanos;
+            this.response = response;
+            this.failure = failure;
+        }
+
+        /**
+         * @return true si el servidor respondió con ACK
+         */
+        public boolean isOk() {
+            return response != null && MetroProtocol.isAck(response);
+        }
+    }
+
+    /**
+     * Resultado de la ejecución completa
+     */
+    public static final class Report {
+        private final List<CommandResult> commands = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        private long elapsedNanos;
+
+        public List<CommandResult> getCommands() {
+            return commands;
+        }
+
+        /**
+         * @return Fallos de AUTH, EXPECT y comandos sin ACK
+         */
+        public List<String> getFailures() {
+            return failures;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public boolean isSuccess() {
+            return failures.isEmpty();
+        }
+
+        /**
+         * Estadísticas de latencia por acción, en orden de aparición
+         * @return Líneas de texto de la tabla
+         */
+        public List<String> latencyTable() {
+            Map<String, List<CommandResult>> byAction = new LinkedHashMap<>();
+            synchronized (commands) {
+                for (CommandResult result : commands) {
+                    byAction.computeIfAbsent(result.action, key -> new ArrayList<>()).add(result);
+                }
+            }
+
+            List<String> lines = new ArrayList<>();
+            lines.add(String.format("%-10s %6s %6s %6s %9s %9s %9s %9s",
+                "Acción", "n", "ACK", "fallo", "mín ms", "p50 ms", "p99 ms", "máx ms"));
+            for (Map.Entry<String, List<CommandResult>> entry : byAction.entrySet()) {
+                List<CommandResult> results = entry.getValue();
+                long[] latencies = new long[results.size()];
+                int ok = 0;
+                for (int i = 0; i < latencies.length; i++) {
+                    latencies[i] = results.get(i).latencyNanos;
+                    if (results.get(i).isOk()) {
+                        ok++;
+                    }
+                }
+                Arrays.sort(latencies);
+                lines.add(String.format("%-10s %6d %6d %6d %9.3f %9.3f %9.3f %9.3f",
+                    entry.getKey(), latencies.length, ok, latencies.length - ok,
+                    latencies[0] / 1e6, percentile(latencies, 0.50) / 1e6,
+                    percentile(latencies, 0.99) / 1e6, latencies[latencies.length - 1] / 1e6));
+            }
+            return lines;
+        }
+
+        private static long percentile(long[] sorted, double quantile) {
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+    }
+
+    private final List<Step> steps;
+
+    private MetroScript(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Leer y validar un script completo
+     * @param reader Origen del script
+     * @return Script listo para ejecutar
+     * @throws IOException si no se puede leer
+     * @throws IllegalArgumentException si alguna línea es inválida
+     */
+    public static MetroScript parse(Reader reader) throws IOException {
+        List<Step> steps = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String text;
+        int number = 0;
+
+        while ((text = lines.readLine()) != null) {
+            number++;
+            int comment = text.indexOf('#');
+            if (comment >= 0) {
+                text = text.substring(0, comment);
+            }
+            String trimmed = text.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+
+            String[] parts = trimmed.split("\\s+");
+            String keyword = parts[0].toUpperCase(Locale.ROOT);
+            String[] args = Arrays.copyOfRange(parts, 1, parts.length);
+            steps.add(parseStep(number, keyword, args));
+        }
+        return new MetroScript(steps);
+    }
+
+    private static Step parseStep(int line, String keyword, String[] args) {
+        switch (keyword) {
+            case MetroProtocol.SPEED_UP:
+            case MetroProtocol.SLOW_DOWN:
+            case MetroProtocol.STOPNOW:
+            case MetroProtocol.STARTNOW: {
+                int repeat = args.length > 0 ? parsePositive(line, args[0]) : 1;
+                return new Step(line, Kind.COMMAND, new String[] {keyword}, repeat, 0);
+            }
+            case "AUTH":
+                if (args.length != 2) {
+                    throw error(line, "se esperaba 'AUTH usuario contraseña'");
+                }
+                return new Step(line, Kind.AUTH, args, 1, 0);
+            case "WAIT":
+                if (args.length != 1) {
+                    throw error(line, "se esperaba 'WAIT milisegundos'");
+                }
+                return new Step(line, Kind.WAIT, args, 1, parsePositive(line, args[0]));
+            case "SYNC":
+                return new Step(line, Kind.SYNC, args, 1, 0);
+            case "EXPECT":
+                return parseExpect(line, args);
+            default:
+                throw error(line, "paso desconocido '" + keyword + "'");
+        }
+    }
+
+    private static Step parseExpect(int line, String[] args) {
+        long within = DEFAULT_EXPECT_TIMEOUT;
+        if (args.length == 5 && args[3].equalsIgnoreCase("WITHIN")) {
+            within = parsePositive(line, args[4]);
+        } else if (args.length != 3) {
+            throw error(line, "se esperaba 'EXPECT campo op valor [WITHIN ms]'");
+        }
+
+        // La condición se compila una vez; cada muestra solo se compara
+        AlertRule condition;
+        try {
+            condition = AlertRule.compile("EXPECT", args[0], args[1], args[2]);
+        } catch (IllegalArgumentException e) {
+            throw error(line, e.getMessage());
+        }
+        if (condition.getOperator() == AlertRule.Operator.UNCHANGED) {
+            throw error(line, "UNCHANGED solo se admite en reglas de alerta");
+        }
+        String[] normalized = condition.getExpression().split(" ");
+        return new Step(line, Kind.EXPECT, normalized, 1, within, condition);
+    }
+
+    private static int parsePositive(int line, String text) {
+        try {
+            int value = Integer.parseInt(text);
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Se informa abajo
+        }
+        throw error(line, "se esperaba un entero positivo en vez de '" + text + "'");
+    }
+
+    private static IllegalArgumentException error(int line, String message) {
+        return new IllegalArgumentException("Línea " + line + ": " + message);
+    }
+
+    /**
+     * Ejecutar el script
+     * @param session Sesión conectada (y autenticada, salvo que el script use AUTH)
+     * @return Informe con latencias y fallos
+     * @throws InterruptedException si se interrumpe la ejecución
+     */
+    public Report run(MetroSession session) throws InterruptedException {
+        Report report = new Report();
+        Semaphore window = new Semaphore(session.getMaxInFlight());
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for (Step step : steps) {
+            switch (step.kind) {
+                case COMMAND:
+                    sendCommands(session, step, window, report, pending);
+                    break;
+                case AUTH:
+                    sync(pending);
+                    authenticate(session, step, report);
+                    break;
+                case WAIT:
+                    sync(pending);
+                    Thread.sleep(step.millis);
+                    break;
+                case SYNC:
+                    sync(pending);
+                    break;
+                case EXPECT:
+                    sync(pending);
+                    expect(session, step, report);
+                    break;
+            }
+        }
+        sync(pending);
+
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    /**
+     * Enviar las repeticiones de un comando en pipeline, limitadas por la
+     * ventana de la sesión
+     *
+     * Se envían en ráfagas con todos los huecos libres de la ventana: cada
+     * ráfaga sale en una sola escritura. La latencia se mide desde el envío
+     * hasta la respuesta; la espera por hueco en la ventana no cuenta.
+     */
+    private static void sendCommands(MetroSession session, Step step, Semaphore window,
+                                     Report report, List<CompletableFuture<?>> pending) throws InterruptedException {
+        String action = step.args[0];
+        int remaining = step.repeat;
+
+        while (remaining > 0) {
+            window.acquire();
+            int burst = 1;
+            if (remaining > 1) {
+                int free = window.drainPermits();
+                int used = Math.min(free, remaining - 1);
+                window.release(free - used);
+                burst += used;
+            }
+            remaining -= burst;
+
+            String[] actions = new String[burst];
+            Arrays.fill(actions, action);
+            long sent = System.nanoTime();
+            for (CompletableFuture<String> reply : session.sendCommandsAsync(actions)) {
+                pending.add(record(step, action, sent, reply, window, report));
+            }
+        }
+    }
+
+    /**
+     * Registrar el resultado de un comando al llegar su respuesta
+     */
+    private static CompletableFuture<?> record(Step step, String action, long sent, CompletableFuture<String> reply,
+                                               Semaphore window, Report report) {
+        return reply.handle((response, error) -> {
+            window.release();
+            long latency = System.nanoTime() - sent;
+            String failure = null;
+            if (error != null) {
+                failure = describe(error);
+            } else if (!MetroProtocol.isAck(response)) {
+                String reason = MetroProtocol.field(response, "REASON");
+                failure = reason != null ? reason : response;
+            }
+            report.commands.add(new CommandResult(step.line, action, latency, response, failure));
+            if (failure != null) {
+                report.failures.add("Línea " + step.line + ": " + action + " falló: " + failure);
+            }
+            return null;
+        });
+    }
+
+    private static void authenticate(MetroSession session, Step step, Report report) {
+        try {
+            String response = session.authenticate(step.args[0], step.args[1]);
+            if (!session.isAuthenticated()) {
+                String reason = MetroProtocol.field(response, "REASON");
+                report.failures.add("Línea " + step.line + ": autenticación fallida"
+                    + (reason != null ? ": " + reason : ""));
+            }
+        } catch (IOException e) {
+            report.failures.add("Línea " + step.line + ": autenticación fallida: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Esperar alguna muestra que cumpla la condición dentro del plazo
+     *
+     * La condición se evalúa en el thread lector sobre cada muestra, así
+     * que también cuentan valores que duran un solo frame. Solo cuentan
+     * muestras posteriores a las respuestas de los comandos previos: el
+     * receptor se registra después de sincronizarlos.
+     */
+    private static void expect(MetroSession session, Step step, Report report) throws InterruptedException {
+        CountDownLatch matched = new CountDownLatch(1);
+        TelemetrySample last = new TelemetrySample();
+        TelemetryListener listener = sample -> {
+            if (step.condition.test(sample)) {
+                matched.countDown();
+            }
+            synchronized (last) {
+                last.copyFrom(sample);
+            }
+        };
+
+        session.addTelemetryListener(listener);
+        try {
+            if (matched.await(step.millis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } finally {
+            session.removeTelemetryListener(listener);
+        }
+
+        String observed;
+        synchronized (last) {
+            observed = last.getTimestamp() != 0 ? " no se cumplió (último: " + last + ")" : " sin telemetría";
+        }
+        report.failures.add("Línea " + step.line + ": EXPECT " + String.join(" ", step.args)
+            + observed + " en " + step.millis + " ms");
+    }
+
+    /**
+     * Esperar las respuestas de todos los comandos enviados
+     */
+    private static void sync(List<CompletableFuture<?>> pending) {
+        if (!pending.isEmpty()) {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+            pending.clear();
+        }
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+            ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            return "timeout";
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    /**
+     * @return true si el script se autentica antes de enviar comandos
+     */
+    public boolean startsWithAuth() {
+        for (Step step : steps) {
+            if (step.kind == Kind.AUTH) {
+                return true;
+            }
+            if (step.kind == Kind.COMMAND) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Número de pasos del script
+     */
+    public int size() {
+        return steps.size();
+    }
+}
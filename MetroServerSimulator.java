@@ -0,0 +1,493 @@
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Metro Server Simulator - Servidor Metro local para pruebas de carga
+ *
+ * Sustituto en Java del servidor C que implementa el mismo protocolo
+ * que espera {@link MetroClient}:
+ * - TYPE:AUTH;USER:u;PASS:p      → TYPE:AUTH_OK;TOKEN:t | TYPE:ERR;REASON:...
+ * - TYPE:CMD;TOKEN:t;ACTION:a    → TYPE:ACK;ACTION:a    | TYPE:ERR;REASON:...
+ * - TYPE:LOGOUT;TOKEN:t          → TYPE:LOGOUT_OK
+ * - TYPE:HELLO;CODECS:BIN1,TEXT  → TYPE:HELLO_OK;CODEC:BIN1 (y cambia a binario)
+ * - TYPE:TELEMETRY;SPEED:..;BATTERY:..;DIRECTION:..;STATION:.. (servidor → cliente)
+ *
+ * Simula N trenes; cada conexión se asigna a uno en round-robin y sus
+ * comandos modifican el estado de ese tren. La telemetría se envía a la
+ * tasa configurada por conexión, en lotes, hasta cientos de miles de
+ * frames por segundo. Una fracción configurable de comandos puede
+ * responderse con TYPE:ERR para probar el manejo de errores.
+ *
+ * Uso:
+ * <pre>
+ *   java MetroServerSimulator [--port 5000] [--trains 10] [--rate 2]
+ *                             [--err-rate 0.0] [--users admin:metro123,...]
+ *                             [--auth-first] [--text-only]
+ * </pre>
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class MetroServerSimulator implements Closeable {
+
+    // Tasa especial: sin límite (tan rápido como acepte el socket)
+    public static final int UNLIMITED_RATE = -1;
+
+    // Tamaño máximo de lote de telemetría por escritura
+    private static final int MAX_BATCH = 2048;
+
+    // Respuesta a HELLO que activa la codificación binaria
+    private static final String BINARY_HELLO_OK = MetroProtocol.TYPE_HELLO_OK + ";CODEC:" + BinaryFrameCodec.NAME;
+
+    /**
+     * Configuración del simulador
+     */
+    public static final class Config {
+        public int port = 5000;
+        public int trains = 10;
+        public int rate = 2;
+        public double errorRate = 0.0;
+        public boolean authFirst = false;
+        public boolean textOnly = false;
+        public final Map<String, String> users = new HashMap<>();
+
+        public Config() {
+            users.put("admin", "metro123");
+        }
+    }
+
+    /**
+     * Estado de un tren simulado
+     */
+    private static final class Train {
+        double speed = 40.0;
+        int battery = 100;
+        Direction direction = Direction.FORWARD;
+        int station = 1;
+        long frames;
+
+        synchronized void apply(String action) {
+            switch (action) {
+                case "SPEED_UP":
+                    speed = Math.min(120.0, speed + 10.0);
+                    break;
+                case "SLOW_DOWN":
+                    speed = Math.max(0.0, speed - 10.0);
+                    break;
+                case "STOPNOW":
+                    speed = 0.0;
+                    direction = Direction.STOPPED;
+                    break;
+                case "STARTNOW":
+                    if (speed == 0.0) {
+                        speed = 20.0;
+                    }
+                    direction = Direction.FORWARD;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Acción desconocida");
+            }
+        }
+
+        /**
+         * Avanzar la simulación un frame: la batería baja y la estación
+         * cambia cada cierto número de frames
+         */
+        synchronized void step() {
+            frames++;
+            if (direction != Direction.STOPPED && frames % 50 == 0) {
+                station = station % 20 + 1;
+            }
+            if (frames % 200 == 0) {
+                battery = battery > 5 ? battery - 1 : 100;
+            }
+        }
+
+        /**
+         * Avanzar un frame y copiar el estado resultante
+         */
+        synchronized void snapshot(TelemetrySample sample) {
+            step();
+            sample.setSpeed(speed);
+            sample.setBattery(battery);
+            sample.setDirection(direction);
+            sample.setStation(station);
+        }
+    }
+
+    private final Config config;
+    private final Train[] trains;
+    private final ServerSocket serverSocket;
+    private final Map<String, Integer> tokens = new ConcurrentHashMap<>();
+    private final AtomicInteger nextTrain = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder commands = new LongAdder();
+    private volatile boolean running = true;
+
+    /**
+     * Crear e iniciar el simulador
+     * @param config Configuración
+     * @throws IOException si no se puede abrir el puerto
+     */
+    public MetroServerSimulator(Config config) throws IOException {
+        this.config = config;
+        this.trains = new Train[Math.max(1, config.trains)];
+        for (int i = 0; i < trains.length; i++) {
+            trains[i] = new Train();
+            trains[i].station = i % 20 + 1;
+        }
+
+        serverSocket = new ServerSocket(config.port);
+        Thread acceptor = new Thread(this::acceptLoop, "sim-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return Puerto en el que escucha (útil con puerto 0)
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    public long getCommands() {
+        return commands.sum();
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket client = serverSocket.accept();
+                Thread handler = new Thread(() -> new Connection(client).run(), "sim-client");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Una conexión de cliente: lector de peticiones + emisor de telemetría
+     */
+    private final class Connection {
+
+        private final Socket socket;
+        private final int trainIndex;
+        private OutputStream out;
+        private volatile boolean open = true;
+        private volatile boolean authenticated;
+
+        // Codificación de lectura (thread lector) y de escritura (bajo el lock de out)
+        private FrameCodec readCodec = new TextFrameCodec();
+        private FrameCodec writeCodec = new TextFrameCodec();
+
+        Connection(Socket socket) {
+            this.socket = socket;
+            this.trainIndex = Math.floorMod(nextTrain.getAndIncrement(), trains.length);
+        }
+
+        void run() {
+            connections.incrementAndGet();
+            try {
+                socket.setTcpNoDelay(true);
+                FrameInput in = new FrameInput(socket.getInputStream());
+                out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+
+                if (config.rate != 0) {
+                    Thread emitter = new Thread(this::emitTelemetry, "sim-telemetry");
+                    emitter.setDaemon(true);
+                    emitter.start();
+                }
+
+                TelemetrySample ignored = new TelemetrySample();
+                int kind;
+                while ((kind = readCodec.read(in, ignored)) != FrameCodec.END) {
+                    if (kind != FrameCodec.MESSAGE) {
+                        continue;
+                    }
+                    String line = readCodec.getMessage();
+                    String reply = handle(line);
+                    synchronized (out) {
+                        writeCodec.write(reply, out);
+                        if (reply.equals(BINARY_HELLO_OK)) {
+                            // Todo lo que siga a HELLO_OK, en ambos sentidos, va en binario
+                            readCodec = new BinaryFrameCodec();
+                            writeCodec = new BinaryFrameCodec();
+                        }
+                        // Agrupar respuestas si el cliente envió varias en pipeline
+                        if (in.available() == 0) {
+                            out.flush();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // Cliente desconectado
+            } finally {
+                open = false;
+                connections.decrementAndGet();
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Ya cerrado
+                }
+            }
+        }
+
+        /**
+         * Responder una petición del cliente
+         */
+        private String handle(String line) {
+            String type = MetroProtocol.field(line, "TYPE");
+            if (type == null) {
+                return "TYPE:ERR;REASON:Missing TYPE";
+            }
+
+            switch (type) {
+                case "AUTH": {
+                    String user = MetroProtocol.field(line, "USER");
+                    String pass = MetroProtocol.field(line, "PASS");
+                    if (user == null || pass == null || !pass.equals(config.users.get(user))) {
+                        return "TYPE:ERR;REASON:Invalid credentials";
+                    }
+                    String token = UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+                    tokens.put(token, trainIndex);
+                    authenticated = true;
+                    return "TYPE:AUTH_OK;TOKEN:" + token;
+                }
+                case "CMD": {
+                    commands.increment();
+                    String token = MetroProtocol.field(line, "TOKEN");
+                    String action = MetroProtocol.field(line, "ACTION");
+                    Integer train = token != null ? tokens.get(token) : null;
+                    if (train == null) {
+                        return "TYPE:ERR;REASON:Invalid token";
+                    }
+                    if (config.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < config.errorRate) {
+                        return "TYPE:ERR;REASON:Injected error";
+                    }
+                    try {
+                        trains[train].apply(action == null ? "" : action);
+                    } catch (IllegalArgumentException e) {
+                        return "TYPE:ERR;REASON:Unknown action";
+                    }
+                    return "TYPE:ACK;ACTION:" + action;
+                }
+                case "HELLO": {
+                    if (config.textOnly) {
+                        // Como un servidor anterior a HELLO
+                        return "TYPE:ERR;REASON:Unknown TYPE";
+                    }
+                    String codecs = MetroProtocol.field(line, "CODECS");
+                    if (codecs != null && Arrays.asList(codecs.split(",")).contains(BinaryFrameCodec.NAME)) {
+                        return BINARY_HELLO_OK;
+                    }
+                    return MetroProtocol.TYPE_HELLO_OK + ";CODEC:" + TextFrameCodec.NAME;
+                }
+                case "LOGOUT": {
+                    String token = MetroProtocol.field(line, "TOKEN");
+                    if (token != null) {
+                        tokens.remove(token);
+                    }
+                    authenticated = false;
+                    return "TYPE:LOGOUT_OK";
+                }
+                default:
+                    return "TYPE:ERR;REASON:Unknown TYPE";
+            }
+        }
+
+        /**
+         * Enviar telemetría a la tasa configurada, en lotes
+         * 
+         * El lote se codifica con el lock de salida tomado para que un
+         * cambio de codificación nunca quede a mitad de lote.
+         */
+        private void emitTelemetry() {
+            Train train = trains[trainIndex];
+            TelemetrySample sample = new TelemetrySample();
+            byte[] buffer = new byte[MAX_BATCH * 96];
+            long start = System.nanoTime();
+            long sent = 0;
+
+            try {
+                while (open && running) {
+                    int due;
+                    if (config.authFirst && !authenticated) {
+                        due = 0;
+                    } else if (config.rate == UNLIMITED_RATE) {
+                        due = MAX_BATCH;
+                    } else {
+                        long expected = (System.nanoTime() - start) * config.rate / 1_000_000_000L;
+                        due = (int) Math.min(MAX_BATCH, expected - sent);
+                    }
+
+                    if (due <= 0) {
+                        LockSupport.parkNanos(config.rate > 1000 ? 100_000 : 1_000_000);
+                        if (config.authFirst && !authenticated) {
+                            start = System.nanoTime();
+                            sent = 0;
+                        }
+                        continue;
+                    }
+
+                    synchronized (out) {
+                        int length = 0;
+                        for (int i = 0; i < due; i++) {
+                            train.snapshot(sample);
+                            length = writeCodec.encodeTelemetry(sample, buffer, length);
+                        }
+                        out.write(buffer, 0, length);
+                        out.flush();
+                    }
+                    sent += due;
+                    framesSent.add(due);
+                }
+            } catch (IOException e) {
+                // Cliente desconectado
+            }
+        }
+    }
+
+    /**
+     * Detener el simulador
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+
+    /**
+     * Mostrar información de uso
+     */
+    private static void showUsage() {
+        System.err.println("\n❌ Uso: java MetroServerSimulator [opciones]");
+        System.err.println("\nOpciones:");
+        System.err.println("  --port <n>          Puerto TCP (por defecto 5000)");
+        System.err.println("  --trains <n>        Trenes simulados (por defecto 10)");
+        System.err.println("  --rate <n|max>      Frames de telemetría por segundo y conexión");
+        System.err.println("                      (por defecto 2; 0 = sin telemetría)");
+        System.err.println("  --err-rate <0..1>   Fracción de comandos respondidos con TYPE:ERR");
+        System.err.println("  --users u:p,...     Credenciales válidas (por defecto admin:metro123)");
+        System.err.println("  --auth-first        Enviar telemetría solo tras autenticarse");
+        System.err.println("  --text-only         Rechazar HELLO como un servidor sin codificación binaria");
+    }
+
+    /**
+     * Parsear argumentos de línea de comandos
+     * @param args Argumentos
+     * @return Configuración
+     * @throws IllegalArgumentException si algún argumento es inválido
+     */
+    static Config parseArgs(String[] args) {
+        Config config = new Config();
+
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--auth-first")) {
+                config.authFirst = true;
+                continue;
+            }
+            if (option.equals("--text-only")) {
+                config.textOnly = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Falta el valor de " + option);
+            }
+
+            String value = args[++i];
+            switch (option) {
+                case "--port":
+                    config.port = Integer.parseInt(value);
+                    break;
+                case "--trains":
+                    config.trains = Integer.parseInt(value);
+                    break;
+                case "--rate":
+                    config.rate = value.equals("max") ? UNLIMITED_RATE : Integer.parseInt(value);
+                    break;
+                case "--err-rate":
+                    config.errorRate = Double.parseDouble(value);
+                    break;
+                case "--users":
+                    config.users.clear();
+                    for (String pair : value.split(",")) {
+                        int colon = pair.indexOf(':');
+                        if (colon <= 0) {
+                            throw new IllegalArgumentException("Usuario inválido: " + pair);
+                        }
+                        config.users.put(pair.substring(0, colon), pair.substring(colon + 1));
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opción desconocida: " + option);
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Punto de entrada principal
+     * @param args Opciones (ver showUsage)
+     */
+    public static void main(String[] args) {
+        Config config;
+        try {
+            config = parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            showUsage();
+            System.exit(1);
+            return;
+        }
+
+        try (MetroServerSimulator simulator = new MetroServerSimulator(config)) {
+            System.out.println("🚄 Simulador Metro escuchando en puerto " + simulator.getPort());
+            System.out.println("   Trenes: " + config.trains
+                + " | Telemetría: " + (config.rate == UNLIMITED_RATE ? "max" : config.rate) + " frames/s"
+                + " | Errores inyectados: " + (config.errorRate * 100) + "%");
+
+            long lastFrames = 0;
+            long lastCommands = 0;
+            while (true) {
+                Thread.sleep(1000);
+                long frames = simulator.getFramesSent();
+                long cmds = simulator.getCommands();
+                System.out.printf("📊 conexiones=%d  telemetría=%d frames/s  comandos=%d/s%n",
+                    simulator.getConnections(), frames - lastFrames, cmds - lastCommands);
+                lastFrames = frames;
+                lastCommands = cmds;
+            }
+        } catch (SocketException e) {
+            System.err.println("❌ No se pudo abrir el puerto: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("❌ Error del simulador: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,885 @@
+import java.io.*;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Metro Session - Sesión Metro sin interfaz de usuario
+ *
+ * Implementa el protocolo completo sobre un {@link MetroConnection}:
+ * - Autenticación (TYPE:AUTH) y gestión del token
+ * - Comandos (TYPE:CMD), bloqueantes o en pipeline
+ * - Telemetría (TYPE:TELEMETRY) mediante suscriptores
+ * - Logout (TYPE:LOGOUT)
+ *
+ * No escribe en consola: los clientes (CLI, GUI, flota) deciden qué
+ * mostrar a partir de las respuestas y de {@link FrameTrace}.
+ *
+ * Con reconexión automática activada, si la conexión se pierde la sesión
+ * vuelve a conectar (el primer intento sin espera, los siguientes con
+ * backoff exponencial y jitter) y se autentica de nuevo con las
+ * credenciales guardadas. Los suscriptores de telemetría continúan sin
+ * volver a registrarse y los comandos asíncronos afectados se reenvían
+ * o fallan según la {@link CommandPolicy}.
+ *
+ * Si se prefiere otra codificación de frames ({@link #setPreferredCodec}),
+ * se negocia al abrir cada conexión, antes de autenticarse.
+ *
+ * Los comandos se envían con los {@link CommandFrames} de la conexión:
+ * codificados una vez tras autenticarse y reutilizados en cada envío.
+ *
+ * Cada sesión lleva sus {@link MetroMetrics}, que sobreviven a las
+ * reconexiones y pueden publicarse por JMX.
+ *
+ * El último estado del tren (telemetría y estado de la conexión) se
+ * consulta sin locks con {@link #getState()} desde cualquier thread.
+ *
+ * La telemetría también se ofrece como {@link java.util.concurrent.Flow.Publisher}
+ * ({@link #getTelemetryPublisher}): cada suscriptor recibe las muestras
+ * en su propio executor, con demanda y política de desbordamiento
+ * propias, sin bloquear al thread lector.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class MetroSession implements Closeable {
+
+    // Timeout por defecto de conexión y respuesta
+    public static final int DEFAULT_TIMEOUT = 5000;
+
+    // Espera máxima de la respuesta al HELLO antes de seguir en texto
+    public static final int HANDSHAKE_TIMEOUT = 1000;
+
+    // Backoff de reconexión por defecto
+    public static final long DEFAULT_BACKOFF_INITIAL = 250;
+    public static final long DEFAULT_BACKOFF_MAX = 30_000;
+
+    /**
+     * Qué hacer con los comandos asíncronos pendientes cuando se pierde
+     * la conexión
+     */
+    public enum CommandPolicy {
+        /** Reenviarlos tras reconectar (pueden ejecutarse dos veces si el servidor ya los procesó) */
+        REPLAY,
+        /** Fallarlos inmediatamente con IOException */
+        FAIL
+    }
+
+    /**
+     * Observador de la reconexión automática (invocado desde el thread de reconexión)
+     */
+    public interface ReconnectListener {
+        /**
+         * @param attempt Número de intento (desde 1)
+         * @param delayMillis Espera antes del intento
+         */
+        default void onReconnecting(int attempt, long delayMillis) {
+        }
+
+        /**
+         * @param attempts Intentos necesarios
+         */
+        default void onReconnected(int attempts) {
+        }
+
+        /**
+         * La reconexión se abandona (credenciales rechazadas)
+         * @param reason Motivo
+         */
+        default void onReconnectFailed(String reason) {
+        }
+    }
+
+    /**
+     * Observador de los frames enviados y respuestas recibidas
+     */
+    public interface FrameTrace {
+        void onSent(String frame);
+
+        void onReceived(String frame);
+    }
+
+    /**
+     * Comando asíncrono pendiente de reenvío
+     */
+    private static final class Deferred {
+        final String action;
+        final CompletableFuture<String> result;
+
+        Deferred(String action, CompletableFuture<String> result) {
+            this.action = action;
+            this.result = result;
+        }
+    }
+
+    private final String host;
+    private final int port;
+    private final ThreadFactory readerThreads;
+    private final MetroMetrics metrics = new MetroMetrics();
+    private final TrainStateCell state = new TrainStateCell();
+    private int timeout = DEFAULT_TIMEOUT;
+    private int window = MetroConnection.DEFAULT_WINDOW;
+    private volatile String preferredCodec = TextFrameCodec.NAME;
+    private volatile String ignoredCodec;
+    private volatile MetroConnection.SocketOptions socketOptions = MetroConnection.SocketOptions.DEFAULT;
+
+    // Estado de la sesión
+    private volatile MetroConnection connection;
+    private volatile String token;
+    private volatile String username;
+    private volatile boolean closed;
+
+    // Reconexión automática
+    private volatile boolean autoReconnect;
+    private volatile CommandPolicy commandPolicy = CommandPolicy.REPLAY;
+    private volatile long backoffInitial = DEFAULT_BACKOFF_INITIAL;
+    private volatile long backoffMax = DEFAULT_BACKOFF_MAX;
+    private volatile String password;
+    private volatile boolean reconnecting;
+    private volatile Thread reconnectThread;
+    private volatile ReconnectListener reconnectListener;
+
+    // Comandos a reenviar tras reconectar
+    private final Object replayLock = new Object();
+    private final ArrayDeque<Deferred> replayQueue = new ArrayDeque<>();
+
+    // Observadores (se conservan entre conexiones)
+    private final CopyOnWriteArrayList<TelemetryListener> telemetryListeners = new CopyOnWriteArrayList<>();
+    private TelemetryPublisher telemetryPublisher;
+    private volatile Consumer<String> unsolicitedListener;
+    private volatile Consumer<IOException> closeListener;
+    private volatile Consumer<RuntimeException> listenerErrorListener;
+    private final AtomicLong listenerErrors = new AtomicLong();
+    private volatile FrameTrace trace;
+
+    /**
+     * Constructor de la sesión (no conecta todavía)
+     * @param host Dirección IP o hostname del servidor
+     * @param port Puerto del servidor
+     */
+    public MetroSession(String host, int port) {
+        this(host, port, null);
+    }
+
+    /**
+     * Constructor de la sesión con fábrica de threads propia
+     * @param host Dirección IP o hostname del servidor
+     * @param port Puerto del servidor
+     * @param readerThreads Fábrica para el thread lector (null = thread daemon)
+     */
+    public MetroSession(String host, int port, ThreadFactory readerThreads) {
+        this.host = host;
+        this.port = port;
+        this.readerThreads = readerThreads;
+    }
+
+    /**
+     * Conectar al servidor
+     * @throws IOException si no se puede conectar
+     */
+    public void connect() throws IOException {
+        closed = false;
+        open();
+        state.setStatus(TrainState.Status.CONNECTED);
+    }
+
+    /**
+     * Abrir una conexión nueva enlazada a los observadores de la sesión
+     */
+    private void open() throws IOException {
+        MetroConnection opened = new MetroConnection(host, port, timeout, readerThreads, socketOptions);
+        metrics.connectionOpened();
+        opened.setMetrics(metrics);
+        opened.setMaxInFlight(window);
+        opened.addTelemetryListener(new TelemetryListener() {
+            @Override
+            public void onTelemetry(TelemetrySample sample) {
+                state.onTelemetry(sample);
+                // Un receptor que falla no impide que los demás reciban la muestra
+                for (TelemetryListener listener : telemetryListeners) {
+                    try {
+                        listener.onTelemetry(sample);
+                    } catch (RuntimeException e) {
+                        listenerFailed(e);
+                    }
+                }
+            }
+
+            @Override
+            public void onMalformed(String frame, int error) {
+                for (TelemetryListener listener : telemetryListeners) {
+                    try {
+                        listener.onMalformed(frame, error);
+                    } catch (RuntimeException e) {
+                        listenerFailed(e);
+                    }
+                }
+            }
+        });
+        opened.setUnsolicitedListener(frame -> {
+            Consumer<String> listener = unsolicitedListener;
+            if (listener != null) {
+                listener.accept(frame);
+            }
+        });
+        opened.setListenerErrorHandler(this::listenerFailed);
+        String codec = preferredCodec;
+        if (!TextFrameCodec.NAME.equals(codec) && !codec.equals(ignoredCodec)) {
+            try {
+                opened.negotiate(codec, Math.min(timeout, HANDSHAKE_TIMEOUT));
+            } catch (SocketTimeoutException e) {
+                // Servidor que ignora HELLO: su respuesta tardía desalinearía
+                // las siguientes, así que se abre otra conexión en texto y no
+                // se vuelve a proponer esta codificación
+                closeQuietly(opened);
+                ignoredCodec = codec;
+                open();
+                return;
+            } catch (IOException e) {
+                closeQuietly(opened);
+                throw e;
+            }
+        }
+        opened.setCloseListener(cause -> {
+            // Marcar la reconexión antes de soltar el token: un comando enviado
+            // ahora sigue la CommandPolicy y los receptores ven isReconnecting()
+            boolean reconnect = autoReconnect && !closed && password != null;
+            boolean spawn = reconnect && beginReconnect();
+            token = null;
+            if (!closed) {
+                state.setStatus(reconnect ? TrainState.Status.RECONNECTING : TrainState.Status.DISCONNECTED);
+            }
+            Consumer<IOException> listener = closeListener;
+            if (listener != null) {
+                try {
+                    listener.accept(cause);
+                } catch (RuntimeException e) {
+                    listenerFailed(e);
+                }
+            }
+            if (spawn) {
+                startReconnect();
+            }
+        });
+        connection = opened;
+    }
+
+    /**
+     * Autenticarse con el servidor
+     * @param user Usuario
+     * @param pass Contraseña
+     * @return Respuesta del servidor (TYPE:AUTH_OK o TYPE:ERR)
+     * @throws IOException si no hay respuesta o la conexión falla
+     */
+    public String authenticate(String user, String pass) throws IOException {
+        String response = exchange(MetroProtocol.authMessage(user, pass));
+
+        if (response.startsWith(MetroProtocol.TYPE_AUTH_OK)) {
+            String value = MetroProtocol.field(response, "TOKEN");
+            if (value != null && !value.isEmpty()) {
+                token = value;
+                username = user;
+                password = pass;
+                state.setStatus(TrainState.Status.AUTHENTICATED);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Enviar comando y esperar la respuesta
+     * @param action Acción a ejecutar (SPEED_UP, SLOW_DOWN, STOPNOW, STARTNOW)
+     * @return Respuesta del servidor (TYPE:ACK o TYPE:ERR)
+     * @throws IOException si no hay respuesta o la conexión falla
+     */
+    public String sendCommand(String action) throws IOException {
+        String current = token;
+        if (current == null) {
+            if (reconnecting) {
+                throw new IOException("Conexión perdida, reconectando...");
+            }
+            throw new IllegalStateException("Debe autenticarse primero");
+        }
+        MetroConnection open = connection;
+        int index = CommandFrames.indexOf(action);
+        if (open == null || index < 0) {
+            return exchange(MetroProtocol.commandMessage(current, action));
+        }
+        CommandFrames frames = open.commandFrames(current);
+        traceSent(frames.text(index));
+        String response = open.call(frames.text(index), frames.encoded(index), timeout);
+        traceReceived(response);
+        return response;
+    }
+
+    /**
+     * Enviar comando sin esperar la respuesta (en pipeline)
+     * @param action Acción a ejecutar
+     * @return Future con la respuesta del servidor
+     */
+    public CompletableFuture<String> sendCommandAsync(String action) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        dispatch(action, result);
+        return result;
+    }
+
+    /**
+     * Enviar un comando asíncrono, o encolarlo/fallarlo si no hay sesión
+     * @param action Acción a ejecutar
+     * @param result Future del llamante
+     */
+    private void dispatch(String action, CompletableFuture<String> result) {
+        String current = token;
+        if (current == null) {
+            if (!reconnecting) {
+                result.completeExceptionally(new IllegalStateException("Debe autenticarse primero"));
+            } else if (!defer(action, result, null)) {
+                result.completeExceptionally(new IOException("Conexión perdida, reconectando..."));
+            }
+            return;
+        }
+
+        MetroConnection open = connection;
+        int index = CommandFrames.indexOf(action);
+        CompletableFuture<String> reply;
+        if (index >= 0) {
+            CommandFrames frames = open.commandFrames(current);
+            traceSent(frames.text(index));
+            reply = open.request(frames.text(index), frames.encoded(index), timeout);
+        } else {
+            String frame = MetroProtocol.commandMessage(current, action);
+            traceSent(frame);
+            reply = open.request(frame, timeout);
+        }
+        track(action, current, reply, result);
+    }
+
+    /**
+     * Enviar varios comandos asíncronos en una sola escritura
+     *
+     * Los que caben en la ventana de comandos en vuelo salen juntos en el
+     * mismo segmento TCP; el resto espera hueco como con
+     * {@link #sendCommandAsync}.
+     *
+     * @param actions Acciones a ejecutar, en orden
+     * @return Un future por acción, en el mismo orden
+     */
+    public List<CompletableFuture<String>> sendCommandsAsync(String... actions) {
+        List<CompletableFuture<String>> results = new ArrayList<>(actions.length);
+        for (int i = 0; i < actions.length; i++) {
+            results.add(new CompletableFuture<>());
+        }
+
+        String current = token;
+        MetroConnection open = connection;
+        CommandFrames frames = current != null && open != null ? open.commandFrames(current) : null;
+        String[] text = new String[actions.length];
+        ByteBuffer[] encoded = new ByteBuffer[actions.length];
+        for (int i = 0; frames != null && i < actions.length; i++) {
+            int index = CommandFrames.indexOf(actions[i]);
+            if (index < 0) {
+                frames = null;
+            } else {
+                text[i] = frames.text(index);
+                encoded[i] = frames.encoded(index);
+            }
+        }
+        if (frames == null) {
+            // Sin sesión o con acciones desconocidas: uno a uno, con su reenvío o fallo
+            for (int i = 0; i < actions.length; i++) {
+                dispatch(actions[i], results.get(i));
+            }
+            return results;
+        }
+
+        for (String frame : text) {
+            traceSent(frame);
+        }
+        List<CompletableFuture<String>> replies = open.requestAll(text, encoded, timeout);
+        for (int i = 0; i < actions.length; i++) {
+            track(actions[i], current, replies.get(i), results.get(i));
+        }
+        return results;
+    }
+
+    /**
+     * Completar el future del llamante con la respuesta de un comando enviado
+     * @param action Acción enviada
+     * @param current Token con el que se envió
+     * @param reply Future de la conexión
+     * @param result Future del llamante
+     */
+    private void track(String action, String current, CompletableFuture<String> reply,
+                       CompletableFuture<String> result) {
+        reply.whenComplete((response, error) -> {
+            if (response != null) {
+                traceReceived(response);
+                result.complete(response);
+                return;
+            }
+
+            // Perdido con la conexión (no por timeout): se reenvía tras reconectar
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+            if (!(cause instanceof IOException) || !autoReconnect || closed || !defer(action, result, current)) {
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    /**
+     * Guardar un comando para reenviarlo al reconectar
+     * @param staleToken Token con el que se envió (null si no llegó a enviarse)
+     * @return false si la política es FAIL o no hay credenciales para reconectar
+     */
+    private boolean defer(String action, CompletableFuture<String> result, String staleToken) {
+        if (commandPolicy != CommandPolicy.REPLAY || password == null) {
+            return false;
+        }
+        synchronized (replayLock) {
+            String current = token;
+            if (!reconnecting && current != null && !current.equals(staleToken)) {
+                // La sesión ya se restableció: enviar directamente
+                dispatch(action, result);
+            } else {
+                replayQueue.add(new Deferred(action, result));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reenviar los comandos guardados durante la reconexión
+     */
+    private void replayDeferred() {
+        synchronized (replayLock) {
+            reconnecting = false;
+            Deferred entry;
+            while ((entry = replayQueue.poll()) != null) {
+                dispatch(entry.action, entry.result);
+            }
+        }
+    }
+
+    /**
+     * Fallar los comandos guardados
+     */
+    private void failDeferred(IOException cause) {
+        synchronized (replayLock) {
+            Deferred entry;
+            while ((entry = replayQueue.poll()) != null) {
+                entry.result.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Un receptor de la sesión lanzó una excepción: se cuenta y se informa
+     * (solo la primera si no hay receptor de errores), sin cortar la lectura
+     */
+    private void listenerFailed(RuntimeException e) {
+        long count = listenerErrors.incrementAndGet();
+        Consumer<RuntimeException> listener = listenerErrorListener;
+        if (listener != null) {
+            listener.accept(e);
+        } else if (count == 1) {
+            System.err.println("⚠️ Un receptor de la sesión " + host + ":" + port + " falló: " + e);
+        }
+    }
+
+    /**
+     * Pasar a reconectando (una reconexión a la vez)
+     * @return false si ya había una reconexión en curso o la sesión se cerró
+     */
+    private synchronized boolean beginReconnect() {
+        if (reconnecting || closed) {
+            return false;
+        }
+        reconnecting = true;
+        return true;
+    }
+
+    /**
+     * Arrancar el thread de reconexión tras {@link #beginReconnect()}
+     */
+    private synchronized void startReconnect() {
+        Runnable task = this::reconnectLoop;
+        Thread thread = readerThreads != null ? readerThreads.newThread(task) : new Thread(task);
+        thread.setName("metro-reconnect-" + host + ":" + port);
+        thread.setDaemon(true);
+        reconnectThread = thread;
+        thread.start();
+    }
+
+    /**
+     * Reconectar y autenticar con backoff exponencial y jitter
+     */
+    private void reconnectLoop() {
+        int attempt = 0;
+        long delay = 0;
+
+        while (!closed) {
+            attempt++;
+            ReconnectListener listener = reconnectListener;
+            if (listener != null) {
+                listener.onReconnecting(attempt, delay);
+            }
+
+            try {
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+                if (closed) {
+                    break;
+                }
+
+                open();
+                String response = exchange(MetroProtocol.authMessage(username, password));
+                if (response.startsWith(MetroProtocol.TYPE_AUTH_OK)) {
+                    String value = MetroProtocol.field(response, "TOKEN");
+                    if (value != null && !value.isEmpty()) {
+                        token = value;
+                        state.setStatus(TrainState.Status.AUTHENTICATED);
+                        replayDeferred();
+                        if (listener != null) {
+                            listener.onReconnected(attempt);
+                        }
+                        return;
+                    }
+                }
+
+                // Credenciales rechazadas: reintentar no serviría de nada
+                String reason = MetroProtocol.field(response, "REASON");
+                abandonReconnect("Autenticación rechazada" + (reason != null ? ": " + reason : ""));
+                return;
+
+            } catch (InterruptedException e) {
+                break;
+            } catch (IOException e) {
+                closeQuietly(connection);
+                delay = nextDelay(attempt);
+            }
+        }
+
+        abandonReconnect("Sesión cerrada");
+    }
+
+    /**
+     * Espera antes del siguiente intento: exponencial con jitter en [base/2, base]
+     * @param attempt Intentos fallidos hasta ahora
+     * @return Milisegundos
+     */
+    private long nextDelay(int attempt) {
+        long base = backoffInitial << Math.min(attempt - 1, 20);
+        base = Math.min(backoffMax, base);
+        return base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+    }
+
+    private void abandonReconnect(String reason) {
+        reconnecting = false;
+        if (!closed) {
+            state.setStatus(TrainState.Status.DISCONNECTED);
+        }
+        failDeferred(new IOException(reason));
+        ReconnectListener listener = reconnectListener;
+        if (listener != null && !closed) {
+            listener.onReconnectFailed(reason);
+        }
+    }
+
+    private static void closeQuietly(MetroConnection current) {
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // Se descarta la conexión fallida
+            }
+        }
+    }
+
+    /**
+     * Cerrar sesión (logout)
+     * @return Respuesta del servidor o null si no estaba autenticada
+     * @throws IOException si no hay respuesta o la conexión falla
+     */
+    public String logout() throws IOException {
+        if (token == null) {
+            return null;
+        }
+
+        try {
+            return exchange(MetroProtocol.logoutMessage(token));
+        } finally {
+            token = null;
+            password = null;
+            if (!closed) {
+                state.setStatus(TrainState.Status.CONNECTED);
+            }
+        }
+    }
+
+    /**
+     * Cerrar la conexión
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        token = null;
+        state.setStatus(TrainState.Status.CLOSED);
+        Thread reconnect = reconnectThread;
+        if (reconnect != null) {
+            reconnect.interrupt();
+        }
+        failDeferred(new IOException("Sesión cerrada"));
+        MetroConnection current = connection;
+        if (current != null) {
+            current.close();
+        }
+        TelemetryPublisher publisher;
+        synchronized (this) {
+            publisher = telemetryPublisher;
+        }
+        if (publisher != null) {
+            publisher.complete();
+        }
+    }
+
+    /**
+     * Enviar un frame y esperar su respuesta, notificando al observador
+     */
+    private String exchange(String frame) throws IOException {
+        if (connection == null) {
+            throw new IOException("No conectado");
+        }
+        traceSent(frame);
+        String response = connection.call(frame, timeout);
+        traceReceived(response);
+        return response;
+    }
+
+    private void traceSent(String frame) {
+        FrameTrace current = trace;
+        if (current != null) {
+            current.onSent(frame);
+        }
+    }
+
+    private void traceReceived(String frame) {
+        FrameTrace current = trace;
+        if (current != null) {
+            current.onReceived(frame);
+        }
+    }
+
+    /**
+     * Suscribirse a la telemetría (invocado desde el thread lector)
+     * @param listener Receptor de muestras
+     */
+    public void addTelemetryListener(TelemetryListener listener) {
+        telemetryListeners.add(listener);
+    }
+
+    public void removeTelemetryListener(TelemetryListener listener) {
+        telemetryListeners.remove(listener);
+    }
+
+    /**
+     * Telemetría como Flow.Publisher (se crea con la primera llamada)
+     *
+     * Las suscripciones sobreviven a las reconexiones y terminan con
+     * onComplete al cerrar la sesión.
+     *
+     * @return Publicador de la sesión
+     */
+    public synchronized TelemetryPublisher getTelemetryPublisher() {
+        if (telemetryPublisher == null) {
+            telemetryPublisher = new TelemetryPublisher();
+            telemetryListeners.add(telemetryPublisher);
+        }
+        return telemetryPublisher;
+    }
+
+    public void setUnsolicitedListener(Consumer<String> listener) {
+        this.unsolicitedListener = listener;
+    }
+
+    /**
+     * Registrar receptor de pérdida de conexión
+     * @param listener Receptor invocado desde el thread lector
+     */
+    public void setCloseListener(Consumer<IOException> listener) {
+        this.closeListener = listener;
+    }
+
+    /**
+     * Activar la reconexión automática tras una pérdida de conexión
+     * @param enabled true para reconectar y reautenticar solo
+     */
+    public void setAutoReconnect(boolean enabled) {
+        this.autoReconnect = enabled;
+    }
+
+    /**
+     * Configurar el backoff de reconexión
+     * @param initialMillis Espera base tras el primer fallo
+     * @param maxMillis Espera máxima
+     */
+    public void setReconnectBackoff(long initialMillis, long maxMillis) {
+        if (initialMillis <= 0 || maxMillis < initialMillis) {
+            throw new IllegalArgumentException("Backoff inválido: " + initialMillis + "/" + maxMillis);
+        }
+        this.backoffInitial = initialMillis;
+        this.backoffMax = maxMillis;
+    }
+
+    public void setCommandPolicy(CommandPolicy policy) {
+        this.commandPolicy = policy;
+    }
+
+    /**
+     * Registrar receptor de las excepciones de los receptores de la sesión
+     * (telemetría, frames no solicitados, cierre)
+     * @param listener Receptor invocado desde el thread lector; no debe
+     *                 bloquear (null = informar la primera por stderr)
+     */
+    public void setListenerErrorListener(Consumer<RuntimeException> listener) {
+        this.listenerErrorListener = listener;
+    }
+
+    /**
+     * @return Excepciones lanzadas por receptores de la sesión
+     */
+    public long getListenerErrors() {
+        return listenerErrors.get();
+    }
+
+    public void setReconnectListener(ReconnectListener listener) {
+        this.reconnectListener = listener;
+    }
+
+    /**
+     * @return true mientras se intenta restablecer la sesión
+     */
+    public boolean isReconnecting() {
+        return reconnecting;
+    }
+
+    public void setTrace(FrameTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Configurar timeout de conexión y de respuesta
+     * @param timeout Timeout en milisegundos
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Configurar ventana de comandos en vuelo
+     * @param window Número máximo de comandos sin respuesta
+     */
+    public void setMaxInFlight(int window) {
+        this.window = window;
+        MetroConnection current = connection;
+        if (current != null) {
+            current.setMaxInFlight(window);
+        }
+    }
+
+    public int getMaxInFlight() {
+        return window;
+    }
+    
+    /**
+     * Elegir la codificación a proponer al servidor en cada conexión
+     * @param codecName TEXT (por defecto, sin handshake) o BIN1
+     */
+    public void setPreferredCodec(String codecName) {
+        if (FrameCodec.create(codecName) == null) {
+            throw new IllegalArgumentException("Codificación desconocida: " + codecName);
+        }
+        this.preferredCodec = codecName;
+        this.ignoredCodec = null;
+    }
+
+    /**
+     * Configurar el socket de las próximas conexiones (incluidas las reconexiones)
+     * @param options TCP_NODELAY y tamaños de buffer
+     */
+    public void setSocketOptions(MetroConnection.SocketOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("Opciones de socket nulas");
+        }
+        this.socketOptions = options;
+    }
+
+    public MetroConnection.SocketOptions getSocketOptions() {
+        return socketOptions;
+    }
+
+    /**
+     * @return Codificación acordada con el servidor (TEXT si no hay conexión)
+     */
+    public String getCodecName() {
+        MetroConnection current = connection;
+        return current != null ? current.getCodecName() : TextFrameCodec.NAME;
+    }
+
+    /**
+     * @return Métricas de la sesión (acumuladas entre reconexiones)
+     */
+    public MetroMetrics getMetrics() {
+        return metrics;
+    }
+
+    public boolean isConnected() {
+        MetroConnection current = connection;
+        return current != null && current.isOpen();
+    }
+
+    public boolean isAuthenticated() {
+        return token != null;
+    }
+
+    /**
+     * Último estado del tren, sin locks
+     * @return Instantánea inmutable (la misma instancia mientras no cambie)
+     */
+    public TrainState getState() {
+        return state.snapshot();
+    }
+
+    /**
+     * @return Celda de estado, para leer la telemetría sin crear objetos
+     */
+    public TrainStateCell getStateCell() {
+        return state;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+}
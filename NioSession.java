@@ -0,0 +1,552 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * NIO Session - Sesión Metro sobre un SocketChannel no bloqueante
+ *
+ * Mantiene el mismo protocolo que el cliente bloqueante (AUTH, CMD,
+ * TELEMETRY, LOGOUT) pero sin thread propio: toda la E/S ocurre en el
+ * event loop de {@link NioTransport} que la atiende.
+ *
+ * - Lectura: un ByteBuffer directo reutilizable; las líneas se separan
+ *   buscando '\n' y la telemetría se decodifica desde los bytes sin
+ *   crear Strings
+ * - Escritura: los frames se codifican a un ByteBuffer directo de salida
+ *   (los comandos se copian ya codificados de {@link CommandFrames}) y el
+ *   loop lo vacía una vez por ráfaga; OP_WRITE solo se activa si el
+ *   socket se llena
+ * - Respuestas: se asocian en orden FIFO mediante {@link RequestPipeline}
+ *
+ * Los receptores se invocan en el thread del event loop y no deben
+ * bloquear. Con {@link #setMetrics} se instrumenta igual que
+ * {@link MetroConnection}.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class NioSession {
+
+    /**
+     * Estado del protocolo de la sesión
+     */
+    public enum State {
+        CONNECTING,
+        CONNECTED,
+        AUTHENTICATED,
+        CLOSED
+    }
+
+    // Tamaños de buffer
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 4 * 1024;
+    private static final int MAX_LINE = 64 * 1024;
+
+    // Timeout de respuesta por defecto
+    public static final long DEFAULT_TIMEOUT = 5000;
+
+    // Conexión
+    private final NioTransport.EventLoop loop;
+    private final SocketChannel channel;
+    private final String name;
+    private SelectionKey key;
+    private CompletableFuture<NioSession> connectFuture;
+    private volatile State state = State.CONNECTING;
+
+    // Lectura (solo el thread del loop)
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private boolean discarding;
+    private final TelemetryDecoder decoder = new TelemetryDecoder();
+    private final TelemetrySample sample = new TelemetrySample();
+
+    // Escritura (protegida por writeLock)
+    private final Object writeLock = new Object();
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    // Protocolo
+    private final RequestPipeline pipeline;
+    private volatile String token;
+    private volatile CommandFrames commandFrames;
+    private long timeoutMillis = DEFAULT_TIMEOUT;
+
+    // Suscriptores
+    private final CopyOnWriteArrayList<TelemetryListener> telemetryListeners = new CopyOnWriteArrayList<>();
+    private volatile Consumer<String> unsolicitedListener;
+    private volatile Consumer<IOException> closeListener;
+    private volatile Consumer<RuntimeException> listenerErrorListener;
+    private final AtomicLong listenerErrors = new AtomicLong();
+    private volatile MetroMetrics metrics;
+
+    NioSession(NioTransport.EventLoop loop, SocketChannel channel, String name) {
+        this.loop = loop;
+        this.channel = channel;
+        this.name = name;
+        this.pipeline = new RequestPipeline(MetroConnection.DEFAULT_WINDOW, new RequestPipeline.Writer() {
+            @Override
+            public void write(String frame, ByteBuffer encoded) {
+                NioSession.this.write(frame, encoded);
+            }
+
+            @Override
+            public void flush() {
+                scheduleFlush();
+            }
+
+            @Override
+            public void schedule(Runnable send) {
+                loop.execute(send);
+            }
+        });
+    }
+
+    /**
+     * Asociar la clave de selección (en el thread del loop)
+     */
+    void attach(SelectionKey key, CompletableFuture<NioSession> connectFuture) {
+        this.key = key;
+        this.connectFuture = connectFuture;
+    }
+
+    /**
+     * Atender los eventos listos de la clave
+     */
+    void handle(SelectionKey key) {
+        try {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isConnectable()) {
+                handleConnect();
+            }
+            if (key.isValid() && key.isReadable()) {
+                handleRead();
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            // Un fallo inesperado cierra solo esta sesión, no el event loop
+            fail(new IOException("Error atendiendo la sesión: " + e, e));
+        }
+    }
+
+    /**
+     * Completar la conexión TCP
+     */
+    void handleConnect() throws IOException {
+        if (channel.isConnectionPending() && !channel.finishConnect()) {
+            return;
+        }
+
+        state = State.CONNECTED;
+        key.interestOps(SelectionKey.OP_READ);
+        connectFuture.complete(this);
+
+        // Frames encolados antes de terminar la conexión
+        flush();
+    }
+
+    /**
+     * Leer del canal y separar líneas
+     */
+    private void handleRead() throws IOException {
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            fail(new EOFException("El servidor cerró la conexión"));
+            return;
+        }
+
+        readBuffer.flip();
+        int limit = readBuffer.limit();
+        int start = readBuffer.position();
+
+        for (int i = start; i < limit; i++) {
+            if (readBuffer.get(i) == '\n') {
+                appendLine(start, i);
+                if (!discarding) {
+                    onLine(line, lineLength);
+                }
+                lineLength = 0;
+                discarding = false;
+                start = i + 1;
+            }
+        }
+
+        // Guardar el fragmento de línea incompleta y reutilizar el buffer
+        appendLine(start, limit);
+        readBuffer.clear();
+    }
+
+    /**
+     * Copiar bytes del buffer de lectura a la línea en construcción
+     */
+    private void appendLine(int from, int to) {
+        int count = to - from;
+        if (count == 0 || discarding) {
+            return;
+        }
+        if (lineLength + count > MAX_LINE) {
+            // Línea demasiado larga: se descarta hasta el próximo '\n'
+            discarding = true;
+            lineLength = 0;
+            return;
+        }
+        if (lineLength + count > line.length) {
+            byte[] larger = new byte[Math.max(line.length * 2, lineLength + count)];
+            System.arraycopy(line, 0, larger, 0, lineLength);
+            line = larger;
+        }
+        readBuffer.position(from);
+        readBuffer.get(line, lineLength, count);
+        lineLength += count;
+    }
+
+    /**
+     * Procesar una línea completa
+     */
+    private void onLine(byte[] bytes, int length) {
+        if (length > 0 && bytes[length - 1] == '\r') {
+            length--;
+        }
+        if (length == 0) {
+            return;
+        }
+
+        MetroMetrics current = metrics;
+        if (current != null) {
+            current.frameReceived(length + 1);
+        }
+
+        int result = decoder.decode(bytes, 0, length, sample);
+        if (result == TelemetryDecoder.OK) {
+            if (current != null) {
+                current.telemetryReceived(System.nanoTime());
+            }
+            sample.setTimestamp(System.currentTimeMillis());
+            for (TelemetryListener listener : telemetryListeners) {
+                try {
+                    listener.onTelemetry(sample);
+                } catch (RuntimeException e) {
+                    listenerFailed(e);
+                }
+            }
+            return;
+        }
+
+        String message = new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+        if (result != TelemetryDecoder.NOT_TELEMETRY) {
+            if (current != null) {
+                current.malformedFrame();
+            }
+            for (TelemetryListener listener : telemetryListeners) {
+                try {
+                    listener.onMalformed(message, result);
+                } catch (RuntimeException e) {
+                    listenerFailed(e);
+                }
+            }
+            return;
+        }
+
+        if (!pipeline.complete(message)) {
+            Consumer<String> listener = unsolicitedListener;
+            if (listener != null) {
+                try {
+                    listener.accept(message);
+                } catch (RuntimeException e) {
+                    listenerFailed(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Un receptor lanzó una excepción: se cuenta y se informa sin cortar
+     * la lectura (solo la primera si no hay receptor de errores)
+     */
+    private void listenerFailed(RuntimeException e) {
+        long count = listenerErrors.incrementAndGet();
+        Consumer<RuntimeException> handler = listenerErrorListener;
+        if (handler != null) {
+            handler.accept(e);
+        } else if (count == 1) {
+            System.err.println("⚠️ Un receptor de la sesión " + name + " falló: " + e);
+        }
+    }
+
+    /**
+     * Codificar un frame en el buffer de salida (lo envía {@link #scheduleFlush})
+     * @param frame Frame sin terminador
+     * @param encoded Frame ya codificado que se copia tal cual, o null
+     */
+    private void write(String frame, ByteBuffer encoded) {
+        int needed = encoded != null ? encoded.remaining() : frame.length() + 1;
+        synchronized (writeLock) {
+            if (writeBuffer.remaining() < needed) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(
+                    Math.max(writeBuffer.capacity() * 2, writeBuffer.position() + needed));
+                writeBuffer.flip();
+                larger.put(writeBuffer);
+                writeBuffer = larger;
+            }
+            if (encoded != null) {
+                writeBuffer.put(encoded.duplicate());
+            } else {
+                for (int i = 0; i < frame.length(); i++) {
+                    char c = frame.charAt(i);
+                    writeBuffer.put(c <= 0xFF ? (byte) c : (byte) '?');
+                }
+                writeBuffer.put((byte) '\n');
+            }
+        }
+        MetroMetrics current = metrics;
+        if (current != null) {
+            current.frameSent(needed);
+        }
+    }
+
+    /**
+     * Codificar un frame en texto para {@link CommandFrames}
+     */
+    private static ByteBuffer encode(String frame) {
+        byte[] bytes = new TextFrameCodec().encode(frame);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Programar el envío del buffer de salida en el event loop (una vez por ráfaga)
+     */
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(this::flushTask);
+        }
+    }
+
+    private void flushTask() {
+        try {
+            flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Escribir el buffer de salida (en el thread del loop)
+     */
+    private void flush() throws IOException {
+        if (state == State.CONNECTING || state == State.CLOSED) {
+            flushScheduled.set(false);
+            return;
+        }
+
+        synchronized (writeLock) {
+            flushScheduled.set(false);
+            writeBuffer.flip();
+            channel.write(writeBuffer);
+            boolean pending = writeBuffer.hasRemaining();
+            writeBuffer.compact();
+
+            int ops = SelectionKey.OP_READ | (pending ? SelectionKey.OP_WRITE : 0);
+            if (key.interestOps() != ops) {
+                key.interestOps(ops);
+            }
+        }
+    }
+
+    /**
+     * Cerrar la sesión por un error
+     * @param cause Causa del cierre
+     */
+    void fail(IOException cause) {
+        if (state == State.CLOSED) {
+            return;
+        }
+        boolean wasOpen = state != State.CONNECTING;
+        state = State.CLOSED;
+
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // El canal ya está inutilizable
+        }
+
+        pipeline.close(cause);
+        if (connectFuture != null) {
+            connectFuture.completeExceptionally(cause);
+        }
+
+        Consumer<IOException> listener = closeListener;
+        if (wasOpen && listener != null) {
+            try {
+                listener.accept(cause);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    /**
+     * Enviar un frame que espera respuesta
+     * @param message Frame a enviar
+     * @return Future con la respuesta del servidor
+     */
+    public CompletableFuture<String> request(String message) {
+        return pipeline.submit(message, timeoutMillis);
+    }
+
+    /**
+     * Autenticar la sesión
+     * @param user Usuario
+     * @param pass Contraseña
+     * @return Future con el token; falla si el servidor responde TYPE:ERR
+     */
+    public CompletableFuture<String> authenticate(String user, String pass) {
+        return request(MetroProtocol.authMessage(user, pass)).thenApply(response -> {
+            String value = response.startsWith(MetroProtocol.TYPE_AUTH_OK)
+                ? MetroProtocol.field(response, "TOKEN") : null;
+            if (value == null || value.isEmpty()) {
+                String reason = MetroProtocol.field(response, "REASON");
+                throw new IllegalStateException("Autenticación fallida"
+                    + (reason != null ? ": " + reason : ""));
+            }
+            token = value;
+            commandFrames = new CommandFrames(value, NioSession::encode);
+            state = State.AUTHENTICATED;
+            return value;
+        });
+    }
+
+    /**
+     * Enviar comando
+     * @param action Acción a ejecutar (SPEED_UP, SLOW_DOWN, STOPNOW, STARTNOW)
+     * @return Future con la respuesta del servidor (TYPE:ACK o TYPE:ERR)
+     */
+    public CompletableFuture<String> sendCommand(String action) {
+        if (state != State.AUTHENTICATED) {
+            return CompletableFuture.failedFuture(
+                new IllegalStateException("Debe autenticarse primero"));
+        }
+        CommandFrames frames = commandFrames;
+        int index = CommandFrames.indexOf(action);
+        if (index < 0) {
+            return request(MetroProtocol.commandMessage(token, action));
+        }
+        return pipeline.submit(frames.text(index), frames.encoded(index), timeoutMillis);
+    }
+
+    /**
+     * Cerrar sesión (logout) y luego la conexión
+     * @return Future que se completa al cerrar
+     */
+    public CompletableFuture<Void> logout() {
+        if (state != State.AUTHENTICATED) {
+            close();
+            return CompletableFuture.completedFuture(null);
+        }
+        return request(MetroProtocol.logoutMessage(token))
+            .handle((response, error) -> {
+                token = null;
+                close();
+                return null;
+            });
+    }
+
+    /**
+     * Cerrar la conexión sin logout
+     */
+    public void close() {
+        loop.execute(() -> fail(new IOException("Sesión cerrada")));
+    }
+
+    public void addTelemetryListener(TelemetryListener listener) {
+        telemetryListeners.add(listener);
+    }
+
+    public void removeTelemetryListener(TelemetryListener listener) {
+        telemetryListeners.remove(listener);
+    }
+
+    public void setUnsolicitedListener(Consumer<String> listener) {
+        this.unsolicitedListener = listener;
+    }
+
+    public void setCloseListener(Consumer<IOException> listener) {
+        this.closeListener = listener;
+    }
+
+    /**
+     * Registrar receptor de las excepciones de los demás receptores
+     * @param listener Receptor invocado en el event loop (null = informar
+     *                 la primera por stderr)
+     */
+    public void setListenerErrorListener(Consumer<RuntimeException> listener) {
+        this.listenerErrorListener = listener;
+    }
+
+    /**
+     * @return Excepciones lanzadas por receptores de la sesión
+     */
+    public long getListenerErrors() {
+        return listenerErrors.get();
+    }
+
+    /**
+     * Instrumentar la sesión
+     * @param metrics Métricas donde registrar (null = sin instrumentar)
+     */
+    public void setMetrics(MetroMetrics metrics) {
+        this.metrics = metrics;
+        pipeline.setMetrics(metrics);
+    }
+
+    /**
+     * Configurar ventana de peticiones en vuelo
+     * @param window Número máximo de peticiones sin respuesta
+     */
+    public void setMaxInFlight(int window) {
+        pipeline.setWindow(window);
+    }
+
+    /**
+     * Configurar timeout de respuesta
+     * @param timeoutMillis Timeout en milisegundos
+     */
+    public void setTimeout(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "NioSession[" + name + ", " + state + "]";
+    }
+}
@@ -0,0 +1,251 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NIO Transport - Motor de transporte no bloqueante multi-conexión
+ *
+ * Atiende muchas sesiones {@link NioSession} con uno o pocos threads de
+ * event loop, cada uno con su propio {@link Selector}. Las sesiones se
+ * reparten entre los loops en round-robin y permanecen en el mismo loop
+ * durante toda su vida, así su estado solo lo toca un thread.
+ *
+ * Uso:
+ * <pre>
+ *   NioTransport transport = new NioTransport(2);
+ *   NioSession session = transport.connect("localhost", 5000).get();
+ *   session.authenticate("admin", "metro123").get();
+ *   session.addTelemetryListener(sample -&gt; ...);
+ * </pre>
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class NioTransport implements Closeable {
+
+    // Tiempo máximo para establecer la conexión TCP
+    public static final long DEFAULT_CONNECT_TIMEOUT = 5000;
+
+    private final EventLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    /**
+     * Constructor del transporte
+     * @param loopCount Número de threads de event loop
+     * @throws IOException si no se puede abrir un selector
+     */
+    public NioTransport(int loopCount) throws IOException {
+        if (loopCount < 1) {
+            throw new IllegalArgumentException("Se requiere al menos un event loop: " + loopCount);
+        }
+
+        loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    /**
+     * Abrir una sesión no bloqueante
+     * @param host Dirección IP o hostname del servidor
+     * @param port Puerto del servidor
+     * @return Future que se completa cuando la conexión TCP está establecida
+     */
+    public CompletableFuture<NioSession> connect(String host, int port) {
+        return connect(host, port, MetroConnection.SocketOptions.DEFAULT);
+    }
+
+    /**
+     * Abrir una sesión no bloqueante con opciones de socket propias
+     * @param host Dirección IP o hostname del servidor
+     * @param port Puerto del servidor
+     * @param options TCP_NODELAY y tamaños de buffer del socket
+     * @return Future que se completa cuando la conexión TCP está establecida
+     */
+    public CompletableFuture<NioSession> connect(String host, int port, MetroConnection.SocketOptions options) {
+        return connect(host, port, options, DEFAULT_CONNECT_TIMEOUT);
+    }
+
+    /**
+     * Abrir una sesión no bloqueante con opciones de socket y plazo propios
+     * 
+     * El nombre se resuelve en el thread que llama, para que una consulta
+     * DNS lenta no detenga el event loop. Si la conexión TCP no se
+     * establece en el plazo, el canal se cierra y el future falla con
+     * SocketTimeoutException.
+     * 
+     * @param host Dirección IP o hostname del servidor
+     * @param port Puerto del servidor
+     * @param options TCP_NODELAY y tamaños de buffer del socket
+     * @param timeoutMillis Tiempo máximo para conectar
+     * @return Future que se completa cuando la conexión TCP está establecida
+     */
+    public CompletableFuture<NioSession> connect(String host, int port, MetroConnection.SocketOptions options,
+                                                 long timeoutMillis) {
+        EventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+        CompletableFuture<NioSession> connected = new CompletableFuture<>();
+
+        InetSocketAddress address;
+        try {
+            address = new InetSocketAddress(host, port);
+        } catch (IllegalArgumentException e) {
+            connected.completeExceptionally(new IOException("Dirección inválida " + host + ":" + port, e));
+            return connected;
+        }
+        if (address.isUnresolved()) {
+            connected.completeExceptionally(new UnknownHostException("Host desconocido: " + host));
+            return connected;
+        }
+
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            options.applyTo(channel.socket());
+        } catch (IOException e) {
+            closeQuietly(channel);
+            connected.completeExceptionally(e);
+            return connected;
+        }
+
+        SocketChannel opened = channel;
+        NioSession session = new NioSession(loop, opened, host + ":" + port);
+        loop.execute(() -> {
+            try {
+                boolean done = opened.connect(address);
+                SelectionKey key = opened.register(loop.selector,
+                    done ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, session);
+                session.attach(key, connected);
+                if (done) {
+                    session.handleConnect();
+                }
+            } catch (IOException e) {
+                failConnect(session, opened, connected, e);
+            } catch (RuntimeException e) {
+                failConnect(session, opened, connected,
+                    new IOException("Error conectando a " + host + ":" + port + ": " + e, e));
+            }
+        });
+
+        // OP_CONNECT no tiene plazo: se vence desde el propio loop
+        CompletableFuture.delayedExecutor(timeoutMillis, TimeUnit.MILLISECONDS, loop::execute).execute(() -> {
+            if (session.getState() == NioSession.State.CONNECTING) {
+                failConnect(session, opened, connected,
+                    new SocketTimeoutException("Timeout conectando a " + host + ":" + port));
+            }
+        });
+
+        return connected;
+    }
+
+    /**
+     * Cerrar una sesión que no llegó a conectar (en el thread del loop)
+     */
+    private static void failConnect(NioSession session, SocketChannel channel,
+                                    CompletableFuture<NioSession> connected, IOException cause) {
+        session.fail(cause);
+        closeQuietly(channel);
+        connected.completeExceptionally(cause);
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nada más que liberar
+            }
+        }
+    }
+
+    /**
+     * Detener todos los event loops y cerrar sus sesiones
+     */
+    @Override
+    public void close() {
+        for (EventLoop loop : loops) {
+            loop.shutdown();
+        }
+    }
+
+    /**
+     * Event loop: un thread, un selector y una cola de tareas
+     */
+    static final class EventLoop implements Runnable {
+
+        final Selector selector;
+        final Thread thread;
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private volatile boolean running = true;
+
+        EventLoop(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "metro-nio-" + index);
+            thread.setDaemon(true);
+        }
+
+        /**
+         * Ejecutar una tarea en el thread del loop
+         * @param task Tarea a ejecutar
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (Thread.currentThread() != thread) {
+                selector.wakeup();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    break;
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    ((NioSession) key.attachment()).handle(key);
+                }
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        // Una tarea fallida no detiene las demás sesiones del loop
+                        System.err.println("⚠️ Tarea fallida en " + thread.getName() + ": " + e);
+                    }
+                }
+            }
+
+            for (SelectionKey key : selector.keys()) {
+                ((NioSession) key.attachment()).fail(new IOException("Transporte cerrado"));
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Nada más que liberar
+            }
+        }
+
+        void shutdown() {
+            running = false;
+            selector.wakeup();
+        }
+    }
+}
@@ -0,0 +1,403 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Request Pipeline - Peticiones en vuelo con ventana FIFO
+ *
+ * Permite tener varias peticiones enviadas sin esperar la respuesta de
+ * la anterior. El protocolo no lleva identificador de petición, pero el
+ * servidor responde en orden, así que cada respuesta se asocia con la
+ * petición enviada más antigua.
+ *
+ * - Como máximo {@code window} peticiones están en vuelo; el resto
+ *   espera en cola y se envía al liberarse un hueco
+ * - Cada petición tiene su propio timeout, contado desde que se encola
+ * - Una petición que expira tras enviarse deja su lugar en la cola FIFO
+ *   para absorber la respuesta tardía sin desalinear las siguientes
+ *
+ * No es dependiente del transporte: el {@link Writer} recibido en el
+ * constructor escribe los frames en el orden en que entraron en la
+ * ventana, nunca con el lock del pipeline tomado. Cada envío hace un
+ * único flush al final, así una ráfaga sale junta en lugar de un frame
+ * por escritura.
+ *
+ * Quien encola escribe en su propio thread. Los huecos que libera una
+ * respuesta (en el thread lector) o un timeout (en el planificador de
+ * timeouts del JDK, compartido por todas las sesiones) solo pasan
+ * peticiones a la lista de envío; el envío lo hace el transporte con
+ * {@link Writer#schedule}, para que un socket lleno no bloquee la
+ * lectura ni los timeouts de otras sesiones.
+ *
+ * Con {@link MetroMetrics} asociadas, cada respuesta registra su latencia
+ * desde que el frame se escribió (no desde que se encoló).
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class RequestPipeline {
+
+    /**
+     * Escritor de frames en el transporte
+     */
+    public interface Writer {
+        /**
+         * Añadir un frame a la salida (sin enviarlo todavía)
+         * @param frame Frame de texto
+         * @param encoded Frame ya codificado, o null para codificarlo
+         */
+        void write(String frame, ByteBuffer encoded);
+
+        /**
+         * Enviar lo escrito
+         */
+        void flush();
+
+        /**
+         * Ejecutar un envío fuera del thread actual (el lector o el
+         * planificador de timeouts), por ejemplo en un thread escritor
+         * de la conexión o en su event loop
+         * @param send Envío de las peticiones listas
+         */
+        void schedule(Runnable send);
+    }
+
+    /**
+     * Petición registrada en el pipeline
+     */
+    private static final class Entry {
+        final String frame;
+        final ByteBuffer encoded;
+        final CompletableFuture<String> reply = new CompletableFuture<>();
+        boolean sent;
+        boolean released;
+        long sentAt;
+
+        Entry(String frame, ByteBuffer encoded) {
+            this.frame = frame;
+            this.encoded = encoded;
+        }
+    }
+
+    private final Object lock = new Object();
+    private final Writer writer;
+    private final ArrayDeque<Entry> inFlight = new ArrayDeque<>();
+    private final ArrayDeque<Entry> waiting = new ArrayDeque<>();
+
+    // Peticiones ya en la ventana pendientes de escribir, en orden; las
+    // escribe un solo thread a la vez (sendLock) sin el lock del pipeline
+    private final ArrayDeque<Entry> ready = new ArrayDeque<>();
+    private final Object sendLock = new Object();
+    private final AtomicBoolean sendScheduled = new AtomicBoolean();
+    private int window;
+    private int occupied;
+    private IOException closed;
+    private volatile MetroMetrics metrics;
+
+    /**
+     * Constructor del pipeline
+     * @param window Número máximo de peticiones en vuelo
+     * @param writer Escritor de los frames en el transporte
+     */
+    public RequestPipeline(int window, Writer writer) {
+        if (window < 1) {
+            throw new IllegalArgumentException("La ventana debe ser >= 1: " + window);
+        }
+        this.window = window;
+        this.writer = writer;
+    }
+
+    /**
+     * Encolar una petición
+     * @param frame Frame a enviar
+     * @param timeoutMillis Timeout de la petición en milisegundos
+     * @return Future que se completa con la respuesta del servidor
+     */
+    public CompletableFuture<String> submit(String frame, long timeoutMillis) {
+        return submit(frame, null, timeoutMillis);
+    }
+
+    /**
+     * Encolar una petición ya codificada
+     * @param frame Frame de texto (para trazas y métricas)
+     * @param encoded Frame codificado que se escribe tal cual (null = codificar frame)
+     * @param timeoutMillis Timeout de la petición en milisegundos
+     * @return Future que se completa con la respuesta del servidor
+     */
+    public CompletableFuture<String> submit(String frame, ByteBuffer encoded, long timeoutMillis) {
+        Entry entry = new Entry(frame, encoded);
+
+        synchronized (lock) {
+            if (closed != null) {
+                entry.reply.completeExceptionally(closed);
+                return entry.reply;
+            }
+            waiting.add(entry);
+            drain();
+        }
+
+        send();
+        watch(entry, timeoutMillis);
+        return entry.reply;
+    }
+
+    /**
+     * Encolar varias peticiones de una vez
+     *
+     * Las que caben en la ventana se escriben juntas y se envían con un
+     * solo flush.
+     *
+     * @param frames Frames de texto
+     * @param encoded Frames codificados (null, o null en una posición, = codificar)
+     * @param timeoutMillis Timeout de cada petición en milisegundos
+     * @return Un future por petición, en el mismo orden
+     */
+    public List<CompletableFuture<String>> submitAll(String[] frames, ByteBuffer[] encoded, long timeoutMillis) {
+        Entry[] entries = new Entry[frames.length];
+        List<CompletableFuture<String>> replies = new ArrayList<>(frames.length);
+        for (int i = 0; i < frames.length; i++) {
+            entries[i] = new Entry(frames[i], encoded != null ? encoded[i] : null);
+            replies.add(entries[i].reply);
+        }
+
+        synchronized (lock) {
+            if (closed != null) {
+                for (Entry entry : entries) {
+                    entry.reply.completeExceptionally(closed);
+                }
+                return replies;
+            }
+            for (Entry entry : entries) {
+                waiting.add(entry);
+            }
+            drain();
+        }
+
+        send();
+        for (Entry entry : entries) {
+            watch(entry, timeoutMillis);
+        }
+        return replies;
+    }
+
+    /**
+     * Programar el timeout de una petición encolada
+     */
+    private void watch(Entry entry, long timeoutMillis) {
+        entry.reply.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            .whenComplete((reply, error) -> {
+                if (error instanceof TimeoutException) {
+                    MetroMetrics current = metrics;
+                    if (current != null) {
+                        current.timeout();
+                    }
+                    expire(entry);
+                }
+            });
+    }
+
+    /**
+     * Entregar una respuesta recibida del servidor
+     * @param frame Frame de respuesta
+     * @return true si correspondía a una petición (aunque hubiera expirado)
+     */
+    public boolean complete(String frame) {
+        Entry entry;
+        boolean moved;
+
+        synchronized (lock) {
+            entry = inFlight.poll();
+            if (entry == null) {
+                return false;
+            }
+            release(entry);
+            moved = drain();
+        }
+        if (moved) {
+            scheduleSend();
+        }
+
+        // Una respuesta tardía ya contó como timeout
+        MetroMetrics current = metrics;
+        if (current != null && !entry.reply.isDone()) {
+            current.reply(System.nanoTime() - entry.sentAt, frame.startsWith(MetroProtocol.TYPE_ERR));
+        }
+
+        // Fuera del lock: los callbacks del usuario pueden enviar más peticiones
+        entry.reply.complete(frame);
+        return true;
+    }
+
+    /**
+     * Fallar todas las peticiones (en vuelo y en espera) y rechazar nuevas
+     * @param cause Causa del fallo
+     */
+    public void close(IOException cause) {
+        ArrayDeque<Entry> failed = new ArrayDeque<>();
+
+        synchronized (lock) {
+            if (closed == null) {
+                closed = cause;
+            }
+            for (Entry entry : inFlight) {
+                // Un timeout posterior no debe volver a liberar su hueco
+                entry.released = true;
+            }
+            failed.addAll(inFlight);
+            failed.addAll(waiting);
+            inFlight.clear();
+            waiting.clear();
+            ready.clear();
+            occupied = 0;
+        }
+
+        for (Entry entry : failed) {
+            entry.reply.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Cambiar el tamaño de la ventana
+     * @param window Número máximo de peticiones en vuelo
+     */
+    public void setWindow(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("La ventana debe ser >= 1: " + window);
+        }
+        synchronized (lock) {
+            this.window = window;
+            drain();
+        }
+        send();
+    }
+
+    /**
+     * Registrar latencias y timeouts en unas métricas
+     * @param metrics Métricas de la sesión (null = sin instrumentar)
+     */
+    public void setMetrics(MetroMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return Número máximo de peticiones en vuelo
+     */
+    public int getWindow() {
+        synchronized (lock) {
+            return window;
+        }
+    }
+
+    /**
+     * @return Peticiones enviadas que aún ocupan la ventana
+     */
+    public int getInFlight() {
+        synchronized (lock) {
+            return occupied;
+        }
+    }
+
+    /**
+     * Marcar una petición como expirada y liberar su hueco
+     * @param entry Petición expirada
+     */
+    private void expire(Entry entry) {
+        boolean moved;
+        synchronized (lock) {
+            if (!entry.sent) {
+                // Nunca llegó al servidor: no habrá respuesta que absorber
+                waiting.remove(entry);
+                return;
+            }
+            if (ready.remove(entry)) {
+                // En la ventana pero aún sin escribir: tampoco habrá respuesta
+                inFlight.remove(entry);
+            }
+            release(entry);
+            moved = drain();
+        }
+        if (moved) {
+            scheduleSend();
+        }
+    }
+
+    /**
+     * Liberar el hueco de una petición enviada (una sola vez)
+     * @param entry Petición a liberar
+     */
+    private void release(Entry entry) {
+        if (!entry.released) {
+            entry.released = true;
+            occupied--;
+        }
+    }
+
+    /**
+     * Pasar peticiones en espera a la ventana mientras haya hueco (con el
+     * lock tomado; se escriben después con {@link #send})
+     * @return true si alguna quedó lista para escribir
+     */
+    private boolean drain() {
+        boolean moved = false;
+        while (occupied < window && !waiting.isEmpty()) {
+            Entry entry = waiting.poll();
+            if (entry.reply.isDone()) {
+                continue;
+            }
+            entry.sent = true;
+            occupied++;
+            inFlight.add(entry);
+            ready.add(entry);
+            moved = true;
+        }
+        return moved;
+    }
+
+    /**
+     * Pedir al transporte un envío fuera del thread actual (uno pendiente a la vez)
+     */
+    private void scheduleSend() {
+        if (sendScheduled.compareAndSet(false, true)) {
+            writer.schedule(() -> {
+                sendScheduled.set(false);
+                send();
+            });
+        }
+    }
+
+    /**
+     * Escribir las peticiones listas, en orden, y hacer un solo flush
+     */
+    private void send() {
+        synchronized (lock) {
+            if (ready.isEmpty()) {
+                // Nada propio que escribir: no esperar a otro envío en curso
+                return;
+            }
+        }
+        synchronized (sendLock) {
+            boolean written = false;
+            while (true) {
+                Entry entry;
+                synchronized (lock) {
+                    entry = ready.poll();
+                    if (entry == null) {
+                        break;
+                    }
+                    entry.sentAt = System.nanoTime();
+                }
+                writer.write(entry.frame, entry.encoded);
+                written = true;
+            }
+            if (written) {
+                writer.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,324 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import javax.swing.JComponent;
+
+/**
+ * Telemetry Chart - Gráfico de una serie de telemetría que se desplaza en el tiempo
+ *
+ * El thread lector añade cada valor con {@link #append} a un buffer
+ * circular de arrays primitivos, sin locks ni asignaciones. El EDT llama
+ * a {@link #refresh()} una vez por frame (desde el timer de la GUI) y
+ * solo procesa los valores nuevos desde el frame anterior:
+ * <ul>
+ *   <li>Diezmado mínimo/máximo por columna de píxeles: cada columna cubre
+ *       ventana / ancho milisegundos y guarda el mínimo y el máximo de sus
+ *       valores, así que dibujar cuesta lo mismo con cien puntos que con
+ *       decenas de miles.</li>
+ *   <li>Regiones sucias: si no avanzó ninguna columna solo se repinta la
+ *       última; si no llegó nada no se repinta. La cabecera con el valor
+ *       actual se repinta aparte.</li>
+ *   <li>El trazo se arma en buffers de polilínea preasignados (dos puntos
+ *       por columna), recorriendo solo las columnas dentro del clip.</li>
+ * </ul>
+ * El eje de tiempo avanza con los timestamps de las muestras: sin datos
+ * nuevos el gráfico queda quieto.
+ *
+ * Un escritor a la vez. Si el EDT se retrasa más de la capacidad del
+ * buffer, se descartan los valores más antiguos.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class TelemetryChart extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    public static final long DEFAULT_WINDOW = 120_000;
+
+    private static final int HEADER_HEIGHT = 16;
+    private static final Color GRID_COLOR = new Color(230, 230, 230);
+    private static final Font HEADER_FONT = new Font("Arial", Font.PLAIN, 11);
+
+    private final String title;
+    private final String unit;
+    private final Color color;
+    private final double min;
+    private final double max;
+    private final long windowMillis;
+
+    // Buffer circular (escribe el lector; el EDT lee hasta 'written')
+    private final long[] times;
+    private final float[] values;
+    private final int mask;
+    private volatile long written;
+
+    // Columnas diezmadas (solo EDT): anillo indexado por número de columna
+    private float[] columnMin = new float[0];
+    private float[] columnMax = new float[0];
+    private int columns;
+    private long bucketMillis;
+    private long headBucket = Long.MIN_VALUE;
+    private long processed;
+    private float lastValue = Float.NaN;
+    private String header;
+
+    // Polilínea preasignada (dos puntos por columna)
+    private int[] polyX = new int[0];
+    private int[] polyY = new int[0];
+
+    /**
+     * Crear un gráfico con ventana y capacidad por defecto
+     * @param title Título de la serie
+     * @param unit Unidad del valor
+     * @param color Color del trazo
+     * @param min Valor en la base del gráfico
+     * @param max Valor en el tope del gráfico (los mayores se recortan)
+     */
+    public TelemetryChart(String title, String unit, Color color, double min, double max) {
+        this(title, unit, color, min, max, DEFAULT_WINDOW, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Crear un gráfico
+     * @param title Título de la serie
+     * @param unit Unidad del valor
+     * @param color Color del trazo
+     * @param min Valor en la base del gráfico
+     * @param max Valor en el tope del gráfico (los mayores se recortan)
+     * @param windowMillis Tiempo visible
+     * @param capacity Valores en el buffer (se redondea a potencia de 2)
+     */
+    public TelemetryChart(String title, String unit, Color color, double min, double max,
+                          long windowMillis, int capacity) {
+        if (max <= min || windowMillis < 1 || capacity < 2) {
+            throw new IllegalArgumentException("Parámetros de gráfico inválidos");
+        }
+        this.title = title;
+        this.unit = unit;
+        this.color = color;
+        this.min = min;
+        this.max = max;
+        this.windowMillis = windowMillis;
+
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.times = new long[size];
+        this.values = new float[size];
+        this.mask = size - 1;
+        this.header = title + ": --";
+
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        setPreferredSize(new Dimension(300, 90));
+    }
+
+    /**
+     * Añadir un valor (desde el thread lector, un solo escritor)
+     * @param timestamp Timestamp de la muestra
+     * @param value Valor
+     */
+    public void append(long timestamp, double value) {
+        long index = written;
+        int slot = (int) (index & mask);
+        times[slot] = timestamp;
+        values[slot] = (float) value;
+        written = index + 1;
+    }
+
+    /**
+     * Incorporar los valores nuevos y repintar lo que cambió (solo EDT)
+     */
+    public void refresh() {
+        long end = written;
+        int plotWidth = Math.max(0, getWidth());
+        if (plotWidth != columns) {
+            resize(plotWidth);
+            processed = Math.max(0, end - times.length);
+            if (end == 0) {
+                repaint();
+                return;
+            }
+        } else if (end == processed) {
+            return;
+        }
+        if (columns == 0) {
+            processed = end;
+            return;
+        }
+
+        // Si el lector dio la vuelta al buffer, los más antiguos ya no están
+        long start = Math.max(processed, end - times.length);
+        long oldHead = headBucket;
+        long firstChanged = Long.MAX_VALUE;
+
+        for (long i = start; i < end; i++) {
+            int slot = (int) (i & mask);
+            long bucket = Math.floorDiv(times[slot], bucketMillis);
+            float value = values[slot];
+
+            if (bucket > headBucket) {
+                advance(bucket);
+            } else if (bucket <= headBucket - columns) {
+                continue;
+            }
+            int column = (int) Math.floorMod(bucket, (long) columns);
+            if (Float.isNaN(columnMin[column])) {
+                columnMin[column] = value;
+                columnMax[column] = value;
+            } else {
+                columnMin[column] = Math.min(columnMin[column], value);
+                columnMax[column] = Math.max(columnMax[column], value);
+            }
+            firstChanged = Math.min(firstChanged, bucket);
+            lastValue = value;
+        }
+        processed = end;
+
+        int plotTop = HEADER_HEIGHT;
+        int plotHeight = getHeight() - plotTop;
+        if (headBucket != oldHead) {
+            // El eje se desplazó: cambia todo el trazo
+            repaint(0, plotTop, columns, plotHeight);
+        } else if (firstChanged != Long.MAX_VALUE) {
+            // Solo columnas del final (y la anterior, que conecta con ellas)
+            int x = xOf(firstChanged) - 1;
+            repaint(Math.max(0, x), plotTop, columns - Math.max(0, x), plotHeight);
+        }
+
+        String text = String.format("%s: %.1f %s", title, lastValue, unit);
+        if (!text.equals(header)) {
+            header = text;
+            repaint(0, 0, getWidth(), HEADER_HEIGHT);
+        }
+    }
+
+    /**
+     * Desplazar el anillo de columnas hasta la columna de un valor
+     */
+    private void advance(long bucket) {
+        long shift = headBucket == Long.MIN_VALUE ? columns : Math.min(columns, bucket - headBucket);
+        for (long b = bucket - shift + 1; b <= bucket; b++) {
+            int column = (int) Math.floorMod(b, (long) columns);
+            columnMin[column] = Float.NaN;
+            columnMax[column] = Float.NaN;
+        }
+        headBucket = bucket;
+    }
+
+    /**
+     * Preparar columnas y polilínea para un ancho nuevo
+     */
+    private void resize(int width) {
+        columns = width;
+        bucketMillis = Math.max(1, windowMillis / Math.max(1, width));
+        if (columnMin.length < width) {
+            columnMin = new float[width];
+            columnMax = new float[width];
+            polyX = new int[2 * width];
+            polyY = new int[2 * width];
+        }
+        for (int i = 0; i < width; i++) {
+            columnMin[i] = Float.NaN;
+            columnMax[i] = Float.NaN;
+        }
+        headBucket = Long.MIN_VALUE;
+    }
+
+    /**
+     * Vaciar el gráfico (solo EDT, sin escritor activo)
+     */
+    public void clear() {
+        written = 0;
+        processed = 0;
+        lastValue = Float.NaN;
+        header = title + ": --";
+        resize(columns);
+        repaint();
+    }
+
+    private int xOf(long bucket) {
+        return (int) (columns - 1 - (headBucket - bucket));
+    }
+
+    private int yOf(float value, int top, int height) {
+        double clamped = Math.max(min, Math.min(max, value));
+        return top + height - 1 - (int) Math.round((clamped - min) / (max - min) * (height - 1));
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        Graphics2D g = (Graphics2D) graphics;
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        int width = getWidth();
+        int top = HEADER_HEIGHT;
+        int height = getHeight() - top;
+
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        if (clip.y < top) {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(HEADER_FONT);
+            g.setColor(Color.DARK_GRAY);
+            FontMetrics metrics = g.getFontMetrics();
+            g.drawString(header, 2, metrics.getAscent());
+            String range = String.format("%.0f–%.0f · %d s", min, max, windowMillis / 1000);
+            g.drawString(range, width - metrics.stringWidth(range) - 2, metrics.getAscent());
+        }
+        if (height < 2 || columns != width || headBucket == Long.MIN_VALUE) {
+            return;
+        }
+
+        // Rejilla: base, mitad y tope
+        g.setColor(GRID_COLOR);
+        int x0 = Math.max(0, clip.x);
+        int x1 = Math.min(columns, clip.x + clip.width);
+        for (int i = 0; i <= 2; i++) {
+            int y = top + (height - 1) * i / 2;
+            g.drawLine(x0, y, x1 - 1, y);
+        }
+
+        // Columnas del clip, más una a cada lado para conectar el trazo
+        g.setColor(color);
+        int points = 0;
+        for (int x = Math.max(0, x0 - 1); x < Math.min(columns, x1 + 1); x++) {
+            long bucket = headBucket - (columns - 1 - x);
+            int column = (int) Math.floorMod(bucket, (long) columns);
+            float low = columnMin[column];
+            if (Float.isNaN(low)) {
+                points = drawPolyline(g, points);
+                continue;
+            }
+            polyX[points] = x;
+            polyY[points++] = yOf(low, top, height);
+            polyX[points] = x;
+            polyY[points++] = yOf(columnMax[column], top, height);
+        }
+        drawPolyline(g, points);
+    }
+
+    private int drawPolyline(Graphics g, int points) {
+        if (points == 2) {
+            g.drawLine(polyX[0], polyY[0], polyX[1], polyY[1]);
+        } else if (points > 2) {
+            g.drawPolyline(polyX, polyY, points);
+        }
+        return 0;
+    }
+
+    /**
+     * @return Valores añadidos desde el último {@link #clear()}
+     */
+    public long getWritten() {
+        return written;
+    }
+}
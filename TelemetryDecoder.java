@@ -0,0 +1,318 @@
+/**
+ * Telemetry Decoder - Decodificador de telemetría sin asignaciones
+ *
+ * Decodifica frames con el formato:
+ *   TYPE:TELEMETRY;SPEED:50.0;BATTERY:85;DIRECTION:FORWARD;STATION:3
+ * directamente desde los bytes ASCII recibidos hacia un
+ * {@link TelemetrySample} reutilizable, sin split, substring ni
+ * parseDouble. Los frames inválidos se reportan con un código de error
+ * en lugar de excepciones.
+ *
+ * Las claves desconocidas se ignoran; SPEED y BATTERY son obligatorios,
+ * DIRECTION y STATION toman sus valores por defecto si faltan.
+ *
+ * Una instancia no es thread-safe: se usa una por thread lector.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public final class TelemetryDecoder {
+
+    // Códigos de resultado
+    public static final int OK = 0;
+    public static final int NOT_TELEMETRY = 1;
+    public static final int MISSING_FIELD = 2;
+    public static final int BAD_NUMBER = 3;
+    public static final int BAD_FIELD = 4;
+    public static final int BAD_FRAME = 5;
+
+    // Claves del protocolo en ASCII
+    private static final byte[] TYPE_TELEMETRY = ascii("TYPE:TELEMETRY");
+    private static final byte[] KEY_SPEED = ascii("SPEED");
+    private static final byte[] KEY_BATTERY = ascii("BATTERY");
+    private static final byte[] KEY_DIRECTION = ascii("DIRECTION");
+    private static final byte[] KEY_STATION = ascii("STATION");
+    private static final byte[][] DIRECTION_NAMES = {
+        ascii("FORWARD"), ascii("BACKWARD"), ascii("REVERSE"), ascii("STOPPED"), ascii("STOP")
+    };
+    private static final Direction[] DIRECTION_VALUES = {
+        Direction.FORWARD, Direction.BACKWARD, Direction.BACKWARD, Direction.STOPPED, Direction.STOPPED
+    };
+
+    // Campos presentes en el frame
+    private static final int HAS_SPEED = 1;
+    private static final int HAS_BATTERY = 2;
+
+    // Potencias de 10 exactas en double (hasta 10^18)
+    private static final double[] POW10 = new double[19];
+    static {
+        POW10[0] = 1.0;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10.0;
+        }
+    }
+
+    // Buffer de trabajo para decodificar desde texto
+    private byte[] scratch = new byte[256];
+
+    // Resultado intermedio de parseNumber
+    private double parsedNumber;
+
+    /**
+     * Decodificar un frame desde bytes ASCII
+     * @param buf Buffer con el frame (sin terminador de línea)
+     * @param off Inicio del frame
+     * @param len Longitud del frame
+     * @param out Muestra destino (se sobrescribe; timestamp no se modifica)
+     * @return OK o un código de error
+     */
+    public int decode(byte[] buf, int off, int len, TelemetrySample out) {
+        int end = off + len;
+
+        if (!startsWith(buf, off, end, TYPE_TELEMETRY)) {
+            return NOT_TELEMETRY;
+        }
+
+        double speed = 0.0;
+        int battery = 0;
+        Direction direction = Direction.UNKNOWN;
+        int station = TelemetrySample.NO_STATION;
+        int seen = 0;
+
+        int pos = off + TYPE_TELEMETRY.length;
+        while (pos < end) {
+            // Cada campo empieza tras un ';'
+            if (buf[pos] != ';') {
+                return BAD_FIELD;
+            }
+            pos++;
+
+            int fieldEnd = indexOf(buf, pos, end, (byte) ';');
+            int colon = indexOf(buf, pos, fieldEnd, (byte) ':');
+            if (colon == fieldEnd) {
+                if (pos == fieldEnd) {
+                    // Campo vacío (por ejemplo ';' final): se ignora
+                    continue;
+                }
+                return BAD_FIELD;
+            }
+
+            int keyStart = skipSpaces(buf, pos, colon);
+            int keyEnd = trimEnd(buf, keyStart, colon);
+            int valStart = skipSpaces(buf, colon + 1, fieldEnd);
+            int valEnd = trimEnd(buf, valStart, fieldEnd);
+
+            if (equals(buf, keyStart, keyEnd, KEY_SPEED)) {
+                if (!parseNumber(buf, valStart, valEnd)) {
+                    return BAD_NUMBER;
+                }
+                speed = parsedNumber;
+                seen |= HAS_SPEED;
+            } else if (equals(buf, keyStart, keyEnd, KEY_BATTERY)) {
+                long value = parseInt(buf, valStart, valEnd);
+                if (value == Long.MIN_VALUE) {
+                    return BAD_NUMBER;
+                }
+                battery = (int) value;
+                seen |= HAS_BATTERY;
+            } else if (equals(buf, keyStart, keyEnd, KEY_DIRECTION)) {
+                direction = parseDirection(buf, valStart, valEnd);
+            } else if (equals(buf, keyStart, keyEnd, KEY_STATION)) {
+                long value = parseInt(buf, valStart, valEnd);
+                if (value == Long.MIN_VALUE) {
+                    return BAD_NUMBER;
+                }
+                station = (int) value;
+            }
+
+            pos = fieldEnd;
+        }
+
+        if ((seen & (HAS_SPEED | HAS_BATTERY)) != (HAS_SPEED | HAS_BATTERY)) {
+            return MISSING_FIELD;
+        }
+
+        out.setSpeed(speed);
+        out.setBattery(battery);
+        out.setDirection(direction);
+        out.setStation(station);
+        return OK;
+    }
+
+    /**
+     * Decodificar un frame ya convertido a texto
+     * @param frame Frame recibido
+     * @param out Muestra destino
+     * @return OK o un código de error
+     */
+    public int decode(CharSequence frame, TelemetrySample out) {
+        int len = frame.length();
+        if (scratch.length < len) {
+            scratch = new byte[Math.max(len, scratch.length * 2)];
+        }
+        for (int i = 0; i < len; i++) {
+            char c = frame.charAt(i);
+            scratch[i] = c < 0x80 ? (byte) c : (byte) '?';
+        }
+        return decode(scratch, 0, len, out);
+    }
+
+    /**
+     * Describir un código de error
+     * @param error Código devuelto por decode
+     * @return Descripción legible
+     */
+    public static String describe(int error) {
+        switch (error) {
+            case OK:
+                return "OK";
+            case NOT_TELEMETRY:
+                return "No es un frame de telemetría";
+            case MISSING_FIELD:
+                return "Falta SPEED o BATTERY";
+            case BAD_NUMBER:
+                return "Valor numérico inválido";
+            case BAD_FIELD:
+                return "Campo sin formato CLAVE:VALOR";
+            case BAD_FRAME:
+                return "Frame binario inválido";
+            default:
+                return "Error desconocido (" + error + ")";
+        }
+    }
+
+    /**
+     * Parsear un decimal simple [-]digitos[.digitos] en parsedNumber
+     *
+     * Con mantisa de hasta 18 dígitos y divisor 10^k exacto, una sola
+     * división da el double correctamente redondeado.
+     */
+    private boolean parseNumber(byte[] buf, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+
+        int pos = start;
+        boolean negative = false;
+        if (buf[pos] == '-' || buf[pos] == '+') {
+            negative = buf[pos] == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean dot = false;
+
+        for (; pos < end; pos++) {
+            byte b = buf[pos];
+            if (b >= '0' && b <= '9') {
+                if (digits == 18) {
+                    return false;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (dot) {
+                    decimals++;
+                }
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                return false;
+            }
+        }
+
+        if (digits == 0) {
+            return false;
+        }
+
+        double value = decimals == 0 ? (double) mantissa : mantissa / POW10[decimals];
+        parsedNumber = negative ? -value : value;
+        return true;
+    }
+
+    /**
+     * Parsear un entero [-]digitos
+     * @return Valor o Long.MIN_VALUE si es inválido
+     */
+    private static long parseInt(byte[] buf, int start, int end) {
+        if (start >= end || end - start > 10) {
+            return Long.MIN_VALUE;
+        }
+
+        int pos = start;
+        boolean negative = buf[pos] == '-';
+        if (negative || buf[pos] == '+') {
+            pos++;
+            if (pos == end) {
+                return Long.MIN_VALUE;
+            }
+        }
+
+        long value = 0;
+        for (; pos < end; pos++) {
+            byte b = buf[pos];
+            if (b < '0' || b > '9') {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static Direction parseDirection(byte[] buf, int start, int end) {
+        for (int i = 0; i < DIRECTION_NAMES.length; i++) {
+            if (equals(buf, start, end, DIRECTION_NAMES[i])) {
+                return DIRECTION_VALUES[i];
+            }
+        }
+        return Direction.UNKNOWN;
+    }
+
+    private static boolean startsWith(byte[] buf, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(byte[] buf, int start, int end, byte[] expected) {
+        return end - start == expected.length && startsWith(buf, start, end, expected);
+    }
+
+    private static int indexOf(byte[] buf, int start, int end, byte value) {
+        for (int i = start; i < end; i++) {
+            if (buf[i] == value) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int skipSpaces(byte[] buf, int start, int end) {
+        while (start < end && buf[start] <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(byte[] buf, int start, int end) {
+        while (end > start && buf[end - 1] <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static byte[] ascii(String text) {
+        byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,336 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Telemetry Export Reader - Lectura de archivos de {@link TelemetryExporter}
+ *
+ * Mapea el archivo en solo lectura y localiza los bloques al abrirlo
+ * leyendo solo sus cabeceras. Los recorridos de una columna saltan
+ * directamente a ella en cada bloque, sin tocar los bytes de las demás:
+ * calcular la velocidad media lee únicamente la columna SPEED.
+ *
+ * Los valores se entregan a consumidores de tipos primitivos y la
+ * decodificación completa ({@link #forEach}) reutiliza una sola
+ * {@link TelemetrySample}, así que un recorrido no crea objetos por fila.
+ *
+ * Un bloque final incompleto (proceso interrumpido durante la escritura)
+ * se ignora.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class TelemetryExportReader implements Closeable {
+
+    private static final TelemetryExporter.Column[] COLUMNS = TelemetryExporter.Column.values();
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int train;
+    private final int blockRows;
+
+    // Posición de cada bloque completo
+    private final int[] blockOffsets;
+    private final long rows;
+    private final long[] columnBytes = new long[COLUMNS.length];
+
+    // Posición de lectura de los varint y diccionario del bloque en curso
+    private int pos;
+    private final int[] entries;
+
+    /**
+     * Abrir un archivo de exportación
+     * @param file Archivo .tlc
+     * @throws IOException si no se puede leer o no es una exportación válida
+     */
+    public TelemetryExportReader(Path file) throws IOException {
+        this.file = file;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < TelemetryExporter.HEADER_SIZE) {
+                throw new IOException("Exportación demasiado corta: " + file);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Exportación demasiado grande: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if (buffer.getInt(0) != TelemetryExporter.MAGIC) {
+            throw new IOException("No es una exportación de telemetría: " + file);
+        }
+        if (buffer.getInt(4) != TelemetryExporter.VERSION) {
+            throw new IOException("Versión de exportación no soportada: " + file);
+        }
+        this.train = buffer.getInt(8);
+        this.blockRows = buffer.getInt(12);
+        if (blockRows < 1) {
+            throw new IOException("Cabecera de exportación inválida: " + file);
+        }
+        this.entries = new int[blockRows];
+
+        // Recorrer solo las cabeceras de bloque
+        int[] offsets = new int[16];
+        int blocks = 0;
+        long total = 0;
+        int offset = TelemetryExporter.HEADER_SIZE;
+        int capacity = buffer.capacity();
+
+        while (offset + TelemetryExporter.BLOCK_HEADER_SIZE <= capacity
+                && buffer.getInt(offset) == TelemetryExporter.BLOCK_MAGIC) {
+            int count = buffer.getInt(offset + 4);
+            if (count < 1 || count > blockRows) {
+                break;
+            }
+            long end = offset + (long) TelemetryExporter.BLOCK_HEADER_SIZE;
+            for (int c = 0; c < COLUMNS.length; c++) {
+                end += buffer.getInt(offset + 16 + 4 * c);
+            }
+            if (end > capacity) {
+                break;
+            }
+            for (int c = 0; c < COLUMNS.length; c++) {
+                columnBytes[c] += buffer.getInt(offset + 16 + 4 * c);
+            }
+            if (blocks == offsets.length) {
+                int[] grown = new int[blocks * 2];
+                System.arraycopy(offsets, 0, grown, 0, blocks);
+                offsets = grown;
+            }
+            offsets[blocks++] = offset;
+            total += count;
+            offset = (int) end;
+        }
+
+        this.blockOffsets = new int[blocks];
+        System.arraycopy(offsets, 0, blockOffsets, 0, blocks);
+        this.rows = total;
+    }
+
+    /**
+     * Recorrer los timestamps
+     * @param consumer Recibe cada timestamp en orden
+     */
+    public void scanTimestamps(LongConsumer consumer) {
+        for (int offset : blockOffsets) {
+            timestamps(offset, consumer);
+        }
+    }
+
+    /**
+     * Recorrer las velocidades
+     * @param consumer Recibe cada velocidad (km/h) en orden
+     */
+    public void scanSpeeds(DoubleConsumer consumer) {
+        for (int offset : blockOffsets) {
+            speeds(offset, consumer);
+        }
+    }
+
+    /**
+     * Recorrer los niveles de batería
+     * @param consumer Recibe cada nivel (%) en orden
+     */
+    public void scanBatteries(IntConsumer consumer) {
+        for (int offset : blockOffsets) {
+            batteries(offset, consumer);
+        }
+    }
+
+    /**
+     * Recorrer las direcciones
+     * @param consumer Recibe el ordinal de cada {@link Direction} en orden
+     */
+    public void scanDirections(IntConsumer consumer) {
+        for (int offset : blockOffsets) {
+            dictionary(offset, TelemetryExporter.Column.DIRECTION, consumer);
+        }
+    }
+
+    /**
+     * Recorrer las estaciones
+     * @param consumer Recibe cada estación en orden
+     */
+    public void scanStations(IntConsumer consumer) {
+        for (int offset : blockOffsets) {
+            dictionary(offset, TelemetryExporter.Column.STATION, consumer);
+        }
+    }
+
+    /**
+     * Decodificar todas las columnas y entregar las muestras en orden
+     * @param listener Recibe cada muestra (la misma instancia, reescrita)
+     */
+    public void forEach(TelemetryListener listener) {
+        long[] timestamps = new long[blockRows];
+        double[] speeds = new double[blockRows];
+        int[] batteries = new int[blockRows];
+        int[] directions = new int[blockRows];
+        int[] stations = new int[blockRows];
+        int[] cursor = new int[1];
+        TelemetrySample sample = new TelemetrySample();
+
+        LongConsumer toTimestamps = value -> timestamps[cursor[0]++] = value;
+        DoubleConsumer toSpeeds = value -> speeds[cursor[0]++] = value;
+        IntConsumer toBatteries = value -> batteries[cursor[0]++] = value;
+        IntConsumer toDirections = value -> directions[cursor[0]++] = value;
+        IntConsumer toStations = value -> stations[cursor[0]++] = value;
+
+        for (int offset : blockOffsets) {
+            cursor[0] = 0;
+            timestamps(offset, toTimestamps);
+            cursor[0] = 0;
+            speeds(offset, toSpeeds);
+            cursor[0] = 0;
+            batteries(offset, toBatteries);
+            cursor[0] = 0;
+            dictionary(offset, TelemetryExporter.Column.DIRECTION, toDirections);
+            cursor[0] = 0;
+            dictionary(offset, TelemetryExporter.Column.STATION, toStations);
+
+            int count = buffer.getInt(offset + 4);
+            for (int i = 0; i < count; i++) {
+                sample.setTimestamp(timestamps[i]);
+                sample.setSpeed(speeds[i]);
+                sample.setBattery(batteries[i]);
+                sample.setDirection(Direction.fromOrdinal(directions[i]));
+                sample.setStation(stations[i]);
+                listener.onTelemetry(sample);
+            }
+        }
+    }
+
+    private void timestamps(int offset, LongConsumer consumer) {
+        int count = buffer.getInt(offset + 4);
+        long value = buffer.getLong(offset + 8);
+        pos = columnStart(offset, TelemetryExporter.Column.TIMESTAMP);
+        for (int i = 0; i < count; i++) {
+            value += readZigzag();
+            consumer.accept(value);
+        }
+    }
+
+    private void speeds(int offset, DoubleConsumer consumer) {
+        int count = buffer.getInt(offset + 4);
+        pos = columnStart(offset, TelemetryExporter.Column.SPEED);
+        if (buffer.get(pos++) == TelemetryExporter.SPEED_RAW) {
+            for (int i = 0; i < count; i++) {
+                consumer.accept(buffer.getDouble(pos));
+                pos += 8;
+            }
+            return;
+        }
+        long centi = 0;
+        for (int i = 0; i < count; i++) {
+            centi += readZigzag();
+            consumer.accept(centi / 100.0);
+        }
+    }
+
+    private void batteries(int offset, IntConsumer consumer) {
+        int count = buffer.getInt(offset + 4);
+        pos = columnStart(offset, TelemetryExporter.Column.BATTERY);
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            value += readZigzag();
+            consumer.accept((int) value);
+        }
+    }
+
+    /**
+     * Expandir las rachas de una columna con diccionario
+     */
+    private void dictionary(int offset, TelemetryExporter.Column column, IntConsumer consumer) {
+        int count = buffer.getInt(offset + 4);
+        pos = columnStart(offset, column);
+        int size = (int) readVarLong();
+        for (int i = 0; i < size; i++) {
+            entries[i] = (int) readZigzag();
+        }
+        int done = 0;
+        while (done < count) {
+            int value = entries[(int) readVarLong()];
+            int run = (int) readVarLong();
+            for (int i = 0; i < run; i++) {
+                consumer.accept(value);
+            }
+            done += run;
+        }
+    }
+
+    private int columnStart(int offset, TelemetryExporter.Column column) {
+        int start = offset + TelemetryExporter.BLOCK_HEADER_SIZE;
+        for (int c = 0; c < column.ordinal(); c++) {
+            start += buffer.getInt(offset + 16 + 4 * c);
+        }
+        return start;
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(pos++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private long readZigzag() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @return Tren indicado en la cabecera
+     */
+    public int getTrain() {
+        return train;
+    }
+
+    /**
+     * @return Filas en bloques completos
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public int getBlocks() {
+        return blockOffsets.length;
+    }
+
+    /**
+     * @param column Columna
+     * @return Bytes que ocupa la columna en todo el archivo
+     */
+    public long getColumnBytes(TelemetryExporter.Column column) {
+        return columnBytes[column.ordinal()];
+    }
+
+    /**
+     * @return Tamaño del archivo en bytes
+     */
+    public long getSize() {
+        return buffer.capacity();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() {
+        // El mapeo se libera cuando el buffer deja de ser alcanzable
+    }
+}
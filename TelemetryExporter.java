@@ -0,0 +1,464 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Telemetry Exporter - Exportación columnar de telemetría por bloques
+ *
+ * Acumula las muestras de un tren en arrays por columna y, cada
+ * {@link #DEFAULT_BLOCK_ROWS} muestras (o cuando el bloque abarca más de
+ * {@link #DEFAULT_BLOCK_MILLIS} ms), escribe un bloque comprimido con una
+ * sola escritura. La memoria es fija mientras dure la sesión: los arrays
+ * de un bloque y su buffer de salida.
+ *
+ * Formato (little-endian):
+ * <pre>
+ *   Cabecera (32 bytes)
+ *     0  int   MAGIC "MTLC"
+ *     4  int   versión
+ *     8  int   tren
+ *    12  int   filas máximas por bloque
+ *   Bloque
+ *     0  int   BLOCK_MAGIC "BLK1"
+ *     4  int   filas
+ *     8  long  timestamp de la primera fila
+ *    16  int[5] bytes de cada columna (en el orden de {@link Column})
+ *    36  columnas, una tras otra
+ *
+ *   TIMESTAMP  delta con la fila anterior (zigzag varint)
+ *   SPEED      modo (1 byte): 0 = centésimas de km/h en delta (zigzag
+ *              varint), 1 = double crudo si alguna velocidad no es exacta
+ *   BATTERY    delta con la fila anterior (zigzag varint)
+ *   DIRECTION  diccionario del bloque (ordinales) + rachas (código, longitud)
+ *   STATION    diccionario del bloque (zigzag varint) + rachas (código, longitud)
+ * </pre>
+ *
+ * Como cada bloque indica el tamaño de sus columnas,
+ * {@link TelemetryExportReader} puede recorrer una sola columna saltando
+ * las demás sin decodificarlas. Un bloque cortado por un cierre abrupto
+ * se ignora al leer.
+ *
+ * Un exporter tiene un único escritor (el lector de su sesión); en modo
+ * flota se usa uno por tren.
+ *
+ * Si falla la escritura de un bloque, el archivo puede quedar con un
+ * bloque a medias tras el cual no se podría leer nada más: el exporter
+ * se da por fallido, se informa una vez y las muestras siguientes se
+ * descartan (y se cuentan) sin tocar el archivo.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class TelemetryExporter implements TelemetryListener, Closeable {
+
+    /**
+     * Columnas del formato, en el orden en que se escriben
+     */
+    public enum Column {
+        TIMESTAMP, SPEED, BATTERY, DIRECTION, STATION
+    }
+
+    // Formato
+    static final int MAGIC = 0x4D544C43; // "MTLC"
+    static final int BLOCK_MAGIC = 0x424C4B31; // "BLK1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int BLOCK_HEADER_SIZE = 16 + 4 * Column.values().length;
+    static final String FILE_SUFFIX = ".tlc";
+
+    // Codificación de la velocidad
+    static final byte SPEED_CENTI = 0;
+    static final byte SPEED_RAW = 1;
+
+    // Peor caso por fila: timestamp 10, velocidad 10, batería 5, dirección 10, estación 15
+    private static final int MAX_ROW_BYTES = 50;
+
+    public static final int DEFAULT_BLOCK_ROWS = 4096;
+    public static final long DEFAULT_BLOCK_MILLIS = 60_000;
+
+    private final Path file;
+    private final int train;
+    private final int blockRows;
+    private final long blockMillis;
+    private final FileChannel channel;
+    private final ByteBuffer out;
+
+    // Bloque en curso
+    private final long[] timestamps;
+    private final double[] speeds;
+    private final int[] batteries;
+    private final int[] directions;
+    private final int[] stations;
+    private final Dictionary dictionary;
+    private int rows;
+
+    private long totalRows;
+    private long blocks;
+    private long bytesWritten;
+    private long droppedRows;
+    private boolean failed;
+    private boolean closed;
+    private volatile Consumer<IOException> errorListener;
+
+    /**
+     * Crear un archivo de exportación
+     * @param file Archivo (se sobrescribe si existe)
+     * @param train Identificador del tren guardado en la cabecera
+     * @throws IOException si no se puede crear
+     */
+    public TelemetryExporter(Path file, int train) throws IOException {
+        this(file, train, DEFAULT_BLOCK_ROWS, DEFAULT_BLOCK_MILLIS);
+    }
+
+    /**
+     * Crear un archivo de exportación con bloques de tamaño propio
+     * @param file Archivo (se sobrescribe si existe)
+     * @param train Identificador del tren guardado en la cabecera
+     * @param blockRows Filas máximas por bloque
+     * @param blockMillis Tiempo máximo que abarca un bloque antes de escribirse
+     * @throws IOException si no se puede crear
+     */
+    public TelemetryExporter(Path file, int train, int blockRows, long blockMillis) throws IOException {
+        if (blockRows < 1) {
+            throw new IllegalArgumentException("Filas por bloque inválidas: " + blockRows);
+        }
+        this.file = file;
+        this.train = train;
+        this.blockRows = blockRows;
+        this.blockMillis = blockMillis;
+
+        timestamps = new long[blockRows];
+        speeds = new double[blockRows];
+        batteries = new int[blockRows];
+        directions = new int[blockRows];
+        stations = new int[blockRows];
+        dictionary = new Dictionary(blockRows);
+        out = ByteBuffer.allocate(Math.max(HEADER_SIZE, BLOCK_HEADER_SIZE + blockRows * MAX_ROW_BYTES))
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+
+        out.clear();
+        out.putInt(MAGIC).putInt(VERSION).putInt(train).putInt(blockRows);
+        out.position(HEADER_SIZE);
+        write();
+    }
+
+    /**
+     * Archivo nuevo para una exportación, con la hora de inicio en el nombre
+     * @param directory Directorio de exportación
+     * @param name Nombre de la sesión o del tren
+     * @return Ruta del archivo (no se crea)
+     */
+    public static Path newFile(Path directory, String name) {
+        return directory.resolve(name + "-" + System.currentTimeMillis() + FILE_SUFFIX);
+    }
+
+    @Override
+    public void onTelemetry(TelemetrySample sample) {
+        try {
+            append(sample);
+        } catch (IOException e) {
+            // No se interrumpe la recepción por un fallo de disco; solo
+            // puede ocurrir una vez, las muestras siguientes se descartan
+            reportError(e);
+        }
+    }
+
+    /**
+     * Añadir una muestra al bloque en curso
+     * @param sample Muestra a exportar
+     * @throws IOException si falla la escritura de un bloque completo
+     */
+    public void append(TelemetrySample sample) throws IOException {
+        if (closed) {
+            return;
+        }
+        if (failed) {
+            droppedRows++;
+            return;
+        }
+        timestamps[rows] = sample.getTimestamp();
+        speeds[rows] = sample.getSpeed();
+        batteries[rows] = sample.getBattery();
+        directions[rows] = sample.getDirection().ordinal();
+        stations[rows] = sample.getStation();
+        rows++;
+
+        if (rows == blockRows || sample.getTimestamp() - timestamps[0] >= blockMillis) {
+            flush();
+        }
+    }
+
+    /**
+     * Escribir el bloque en curso aunque no esté lleno
+     *
+     * El bloque se vacía siempre; si la escritura falla, sus filas se
+     * cuentan como descartadas y el exporter queda fallido.
+     *
+     * @throws IOException si falla la escritura
+     */
+    public void flush() throws IOException {
+        if (rows == 0 || failed) {
+            return;
+        }
+
+        try {
+            writeBlock();
+            blocks++;
+            totalRows += rows;
+        } catch (IOException e) {
+            failed = true;
+            droppedRows += rows;
+            throw e;
+        } finally {
+            rows = 0;
+        }
+    }
+
+    /**
+     * Codificar el bloque en curso y escribirlo con una sola escritura
+     */
+    private void writeBlock() throws IOException {
+        out.clear();
+        out.putInt(BLOCK_MAGIC).putInt(rows).putLong(timestamps[0]);
+        int lengths = out.position();
+        out.position(BLOCK_HEADER_SIZE);
+
+        int start = out.position();
+        long previous = timestamps[0];
+        for (int i = 0; i < rows; i++) {
+            putVarLong(zigzag(timestamps[i] - previous));
+            previous = timestamps[i];
+        }
+        out.putInt(lengths, out.position() - start);
+
+        start = out.position();
+        writeSpeeds();
+        out.putInt(lengths + 4, out.position() - start);
+
+        start = out.position();
+        previous = 0;
+        for (int i = 0; i < rows; i++) {
+            putVarLong(zigzag(batteries[i] - previous));
+            previous = batteries[i];
+        }
+        out.putInt(lengths + 8, out.position() - start);
+
+        start = out.position();
+        writeDictionary(directions);
+        out.putInt(lengths + 12, out.position() - start);
+
+        start = out.position();
+        writeDictionary(stations);
+        out.putInt(lengths + 16, out.position() - start);
+
+        write();
+    }
+
+    /**
+     * Velocidades en centésimas con delta si todas son exactas; si no, crudas
+     */
+    private void writeSpeeds() {
+        boolean exact = true;
+        for (int i = 0; i < rows && exact; i++) {
+            double centi = Math.rint(speeds[i] * 100);
+            exact = centi / 100 == speeds[i] && Math.abs(centi) < 1e15;
+        }
+
+        if (!exact) {
+            out.put(SPEED_RAW);
+            for (int i = 0; i < rows; i++) {
+                out.putDouble(speeds[i]);
+            }
+            return;
+        }
+
+        out.put(SPEED_CENTI);
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            long centi = (long) Math.rint(speeds[i] * 100);
+            putVarLong(zigzag(centi - previous));
+            previous = centi;
+        }
+    }
+
+    /**
+     * Diccionario de valores distintos del bloque y rachas de códigos
+     */
+    private void writeDictionary(int[] values) {
+        dictionary.clear();
+        for (int i = 0; i < rows; i++) {
+            dictionary.code(values[i]);
+        }
+        putVarLong(dictionary.size);
+        for (int i = 0; i < dictionary.size; i++) {
+            putVarLong(zigzag(dictionary.entries[i]));
+        }
+
+        int i = 0;
+        while (i < rows) {
+            int value = values[i];
+            int run = 1;
+            while (i + run < rows && values[i + run] == value) {
+                run++;
+            }
+            putVarLong(dictionary.code(value));
+            putVarLong(run);
+            i += run;
+        }
+    }
+
+    private void write() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            bytesWritten += channel.write(out);
+        }
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Informar un fallo al receptor de errores (stderr si no hay)
+     */
+    private void reportError(IOException e) {
+        Consumer<IOException> listener = errorListener;
+        if (listener != null) {
+            listener.accept(e);
+        } else {
+            System.err.println("❌ Error exportando telemetría: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Escribir el último bloque y cerrar el archivo
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int getTrain() {
+        return train;
+    }
+
+    /**
+     * @return Muestras escritas en el archivo (sin el bloque en curso)
+     */
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    /**
+     * @return Muestras descartadas por un fallo de escritura
+     */
+    public long getDroppedRows() {
+        return droppedRows;
+    }
+
+    /**
+     * @return true si una escritura falló y la exportación se detuvo
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Registrar receptor del fallo de escritura (se invoca una vez, desde
+     * el thread que alimenta el exporter)
+     * @param listener Receptor (null = stderr)
+     */
+    public void setErrorListener(Consumer<IOException> listener) {
+        this.errorListener = listener;
+    }
+
+    public long getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @return Bytes escritos en el archivo (sin el bloque en curso)
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Diccionario int → código reutilizable entre bloques, sin asignaciones
+     *
+     * Tabla de direccionamiento abierto; las entradas de bloques
+     * anteriores se invalidan por generación en lugar de borrarse.
+     */
+    private static final class Dictionary {
+        final int[] entries;
+        int size;
+
+        private final int[] keys;
+        private final int[] codes;
+        private final int[] generations;
+        private final int mask;
+        private int generation;
+
+        Dictionary(int capacity) {
+            int slots = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) * 2;
+            keys = new int[slots];
+            codes = new int[slots];
+            generations = new int[slots];
+            mask = slots - 1;
+            entries = new int[capacity];
+        }
+
+        void clear() {
+            size = 0;
+            generation++;
+        }
+
+        int code(int value) {
+            int slot = (value * 0x9E3779B9) >>> 16 & mask;
+            while (generations[slot] == generation) {
+                if (keys[slot] == value) {
+                    return codes[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            generations[slot] = generation;
+            keys[slot] = value;
+            codes[slot] = size;
+            entries[size] = value;
+            return size++;
+        }
+    }
+}
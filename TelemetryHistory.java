@@ -0,0 +1,230 @@
+/**
+ * Telemetry History - Historial reciente de telemetría con agregados
+ *
+ * Guarda las últimas muestras de un tren en un buffer circular de arrays
+ * primitivos (timestamp, velocidad, batería, estación) y mantiene los
+ * agregados de una ventana de tiempo fija mientras se añaden muestras:
+ * - Velocidad mínima y máxima: colas monótonas de índices, O(1) amortizado
+ * - Velocidad media: suma acumulada
+ * - Consumo de batería: primera y última muestra de la ventana
+ *
+ * No hay boxing ni asignaciones por muestra. La ventana avanza con el
+ * timestamp de cada muestra nueva; si el buffer se llena antes, se
+ * descartan las más antiguas.
+ *
+ * El escritor es el thread lector de la sesión; las consultas pueden
+ * hacerse desde cualquier thread.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class TelemetryHistory implements TelemetryListener {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final long DEFAULT_WINDOW = 60_000; // 60 segundos
+
+    private final int mask;
+    private final long windowMillis;
+
+    // Columnas del buffer circular, indexadas por secuencia & mask
+    private final long[] timestamps;
+    private final double[] speeds;
+    private final int[] batteries;
+    private final int[] stations;
+
+    // Secuencias: [oldest, next) es la ventana actual
+    private long oldest;
+    private long next;
+
+    // Agregados de la ventana
+    private double speedSum;
+    private final long[] minQueue;
+    private final long[] maxQueue;
+    private long minHead;
+    private long minTail;
+    private long maxHead;
+    private long maxTail;
+
+    /**
+     * Historial con capacidad y ventana por defecto
+     */
+    public TelemetryHistory() {
+        this(DEFAULT_CAPACITY, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Constructor del historial
+     * @param capacity Muestras máximas (se redondea a potencia de 2)
+     * @param windowMillis Ventana de los agregados en milisegundos
+     */
+    public TelemetryHistory(int capacity, long windowMillis) {
+        if (capacity < 2 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacidad inválida: " + capacity);
+        }
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("Ventana inválida: " + windowMillis);
+        }
+
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.windowMillis = windowMillis;
+        this.timestamps = new long[size];
+        this.speeds = new double[size];
+        this.batteries = new int[size];
+        this.stations = new int[size];
+        this.minQueue = new long[size];
+        this.maxQueue = new long[size];
+    }
+
+    @Override
+    public void onTelemetry(TelemetrySample sample) {
+        add(sample);
+    }
+
+    /**
+     * Añadir una muestra y desplazar la ventana
+     * @param sample Muestra recibida
+     */
+    public synchronized void add(TelemetrySample sample) {
+        if (next - oldest > mask) {
+            evictOldest();
+        }
+
+        long sequence = next;
+        int index = (int) (sequence & mask);
+        double speed = sample.getSpeed();
+        timestamps[index] = sample.getTimestamp();
+        speeds[index] = speed;
+        batteries[index] = sample.getBattery();
+        stations[index] = sample.getStation();
+        speedSum += speed;
+
+        // Las colas conservan solo candidatos a mínimo/máximo futuros
+        while (minTail > minHead && speeds[(int) (minQueue[(int) ((minTail - 1) & mask)] & mask)] >= speed) {
+            minTail--;
+        }
+        minQueue[(int) (minTail++ & mask)] = sequence;
+
+        while (maxTail > maxHead && speeds[(int) (maxQueue[(int) ((maxTail - 1) & mask)] & mask)] <= speed) {
+            maxTail--;
+        }
+        maxQueue[(int) (maxTail++ & mask)] = sequence;
+
+        next++;
+
+        long cutoff = sample.getTimestamp() - windowMillis;
+        while (next - oldest > 1 && timestamps[(int) (oldest & mask)] < cutoff) {
+            evictOldest();
+        }
+        if (next - oldest == 1) {
+            // Evita que la suma arrastre error de redondeo indefinidamente
+            speedSum = speed;
+        }
+    }
+
+    /**
+     * Sacar de la ventana la muestra más antigua
+     */
+    private void evictOldest() {
+        speedSum -= speeds[(int) (oldest & mask)];
+        if (minQueue[(int) (minHead & mask)] == oldest) {
+            minHead++;
+        }
+        if (maxQueue[(int) (maxHead & mask)] == oldest) {
+            maxHead++;
+        }
+        oldest++;
+    }
+
+    /**
+     * Vaciar el historial
+     */
+    public synchronized void clear() {
+        oldest = next;
+        minHead = minTail;
+        maxHead = maxTail;
+        speedSum = 0;
+    }
+
+    /**
+     * @return Muestras dentro de la ventana
+     */
+    public synchronized int size() {
+        return (int) (next - oldest);
+    }
+
+    /**
+     * Leer una muestra de la ventana
+     * @param position 0 = más antigua, size()-1 = más reciente
+     * @param out Muestra a rellenar (la dirección no se guarda)
+     * @return out
+     */
+    public synchronized TelemetrySample read(int position, TelemetrySample out) {
+        if (position < 0 || position >= next - oldest) {
+            throw new IndexOutOfBoundsException("Posición fuera de la ventana: " + position);
+        }
+        int index = (int) ((oldest + position) & mask);
+        out.setTimestamp(timestamps[index]);
+        out.setSpeed(speeds[index]);
+        out.setBattery(batteries[index]);
+        out.setStation(stations[index]);
+        return out;
+    }
+
+    /**
+     * @return Velocidad mínima de la ventana (NaN si está vacía)
+     */
+    public synchronized double minSpeed() {
+        return next == oldest ? Double.NaN : speeds[(int) (minQueue[(int) (minHead & mask)] & mask)];
+    }
+
+    /**
+     * @return Velocidad máxima de la ventana (NaN si está vacía)
+     */
+    public synchronized double maxSpeed() {
+        return next == oldest ? Double.NaN : speeds[(int) (maxQueue[(int) (maxHead & mask)] & mask)];
+    }
+
+    /**
+     * @return Velocidad media de la ventana (NaN si está vacía)
+     */
+    public synchronized double averageSpeed() {
+        return next == oldest ? Double.NaN : speedSum / (next - oldest);
+    }
+
+    /**
+     * Consumo de batería en la ventana
+     * @return Puntos porcentuales por minuto (positivo = descarga; NaN si
+     *         no hay al menos dos muestras separadas en el tiempo)
+     */
+    public synchronized double batteryDrainRate() {
+        if (next - oldest < 2) {
+            return Double.NaN;
+        }
+        int first = (int) (oldest & mask);
+        int last = (int) ((next - 1) & mask);
+        long elapsed = timestamps[last] - timestamps[first];
+        if (elapsed <= 0) {
+            return Double.NaN;
+        }
+        return (batteries[first] - batteries[last]) * 60_000.0 / elapsed;
+    }
+
+    /**
+     * @return Duración cubierta por la ventana en milisegundos
+     */
+    public synchronized long span() {
+        if (next == oldest) {
+            return 0;
+        }
+        return timestamps[(int) ((next - 1) & mask)] - timestamps[(int) (oldest & mask)];
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+}
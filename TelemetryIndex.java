@@ -0,0 +1,220 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Telemetry Index - Índices de tiempo y de estaciones de un segmento
+ *
+ * Acompaña a cada segmento de {@link TelemetryRecorder} con un archivo
+ * {@code segment-NNNNNN.idx} que permite consultarlo sin recorrerlo:
+ * <ul>
+ *   <li>Índice de tiempo disperso: el timestamp de uno de cada
+ *       {@link #DEFAULT_INTERVAL} registros. Como los registros son de
+ *       ancho fijo, la entrada k corresponde al registro k · intervalo.</li>
+ *   <li>Índice invertido de estaciones: cada llegada a una estación
+ *       (registro cuya estación difiere de la del anterior) como pares
+ *       (estación, registro) ordenados.</li>
+ * </ul>
+ *
+ * El recorder lo va llenando con cada registro y lo escribe al sellar el
+ * segmento. Para segmentos sin índice (abiertos o de versiones anteriores)
+ * {@link #build} lo reconstruye leyendo el segmento una vez.
+ *
+ * Formato (little-endian):
+ * <pre>
+ *   Cabecera (64 bytes)
+ *     0  int   MAGIC "MTLX"
+ *     4  int   versión
+ *     8  int   intervalo del índice de tiempo
+ *    12  int   registros del segmento
+ *    16  int   entradas de tiempo
+ *    20  int   llegadas
+ *    24  int   tren
+ *    32  long  primer timestamp
+ *    40  long  último timestamp
+ *   Entradas de tiempo: long timestamp
+ *   Llegadas: long (estación &lt;&lt; 32 | registro), ordenadas
+ * </pre>
+ *
+ * Se asume que los timestamps de un segmento no decrecen (los pone el
+ * reloj del cliente al recibir cada frame).
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public final class TelemetryIndex {
+
+    // Formato
+    static final int MAGIC = 0x4D544C58; // "MTLX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int OFFSET_INTERVAL = 8;
+    static final int OFFSET_RECORDS = 12;
+    static final int OFFSET_TIME_ENTRIES = 16;
+    static final int OFFSET_ARRIVALS = 20;
+    static final int OFFSET_TRAIN = 24;
+    static final int OFFSET_FIRST = 32;
+    static final int OFFSET_LAST = 40;
+    static final String INDEX_SUFFIX = ".idx";
+
+    public static final int DEFAULT_INTERVAL = 256;
+
+    private final int interval;
+    private final int train;
+    private long[] times;
+    private int timeEntries;
+    private long[] arrivals = new long[1024];
+    private int arrivalCount;
+    private int records;
+    private long first;
+    private long last;
+
+    // Estación del registro anterior (se mantiene entre segmentos)
+    private int lastStation = TelemetrySample.NO_STATION;
+
+    /**
+     * Crear un índice vacío
+     * @param train Tren del segmento
+     * @param capacity Registros previstos por segmento
+     * @param interval Registros entre entradas de tiempo
+     */
+    public TelemetryIndex(int train, int capacity, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Intervalo de índice inválido: " + interval);
+        }
+        this.train = train;
+        this.interval = interval;
+        this.times = new long[Math.max(1, capacity / interval + 1)];
+    }
+
+    /**
+     * Indexar un registro (en orden, desde el escritor del segmento)
+     * @param record Posición del registro en el segmento
+     * @param timestamp Timestamp del registro
+     * @param station Estación del registro
+     */
+    public void add(int record, long timestamp, int station) {
+        if (records == 0) {
+            first = timestamp;
+        }
+        last = timestamp;
+        records = record + 1;
+
+        if (record % interval == 0) {
+            if (timeEntries == times.length) {
+                times = Arrays.copyOf(times, timeEntries * 2);
+            }
+            times[timeEntries++] = timestamp;
+        }
+
+        if (station != lastStation) {
+            lastStation = station;
+            if (station != TelemetrySample.NO_STATION) {
+                if (arrivalCount == arrivals.length) {
+                    arrivals = Arrays.copyOf(arrivals, arrivalCount * 2);
+                }
+                arrivals[arrivalCount++] = (long) station << 32 | record;
+            }
+        }
+    }
+
+    /**
+     * Vaciar para el siguiente segmento
+     */
+    public void reset() {
+        timeEntries = 0;
+        arrivalCount = 0;
+        records = 0;
+        first = 0;
+        last = 0;
+    }
+
+    /**
+     * Serializar el índice con el formato del archivo
+     * @return Buffer listo para leer (little-endian)
+     */
+    public ByteBuffer toBuffer() {
+        // Las llegadas se añadieron en orden de registro: ordenar por estación
+        Arrays.sort(arrivals, 0, arrivalCount);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 8 * (timeEntries + arrivalCount))
+            .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(OFFSET_INTERVAL, interval);
+        buffer.putInt(OFFSET_RECORDS, records);
+        buffer.putInt(OFFSET_TIME_ENTRIES, timeEntries);
+        buffer.putInt(OFFSET_ARRIVALS, arrivalCount);
+        buffer.putInt(OFFSET_TRAIN, train);
+        buffer.putLong(OFFSET_FIRST, first);
+        buffer.putLong(OFFSET_LAST, last);
+        buffer.position(HEADER_SIZE);
+        for (int i = 0; i < timeEntries; i++) {
+            buffer.putLong(times[i]);
+        }
+        for (int i = 0; i < arrivalCount; i++) {
+            buffer.putLong(arrivals[i]);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Escribir el índice junto a su segmento
+     * @param file Archivo de índice
+     * @throws IOException si no se puede escribir
+     */
+    public void write(Path file) throws IOException {
+        ByteBuffer buffer = toBuffer();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Reconstruir el índice de un segmento leyéndolo entero
+     * @param reader Segmento abierto (se lee desde el principio)
+     * @param previousStation Estación del último registro del segmento
+     *                        anterior del tren ({@link TelemetrySample#NO_STATION}
+     *                        si no hay), para no contar como llegada el
+     *                        primer registro si el tren no se movió
+     * @return Índice de los registros completos del segmento
+     */
+    public static TelemetryIndex build(TelemetryRecordReader reader, int previousStation) {
+        TelemetryIndex index = new TelemetryIndex(reader.getTrain(), reader.getCapacity(), DEFAULT_INTERVAL);
+        index.lastStation = previousStation;
+        TelemetrySample sample = new TelemetrySample();
+        reader.seek(0);
+        while (reader.next(sample)) {
+            index.add(reader.getPosition() - 1, sample.getTimestamp(), sample.getStation());
+        }
+        return index;
+    }
+
+    /**
+     * Archivo de índice de un segmento
+     * @param segment Archivo de segmento
+     * @return Ruta del índice (misma base, extensión .idx)
+     */
+    public static Path indexFile(Path segment) {
+        String name = segment.getFileName().toString();
+        if (name.endsWith(TelemetryRecorder.SEGMENT_SUFFIX)) {
+            name = name.substring(0, name.length() - TelemetryRecorder.SEGMENT_SUFFIX.length());
+        }
+        return segment.resolveSibling(name + INDEX_SUFFIX);
+    }
+
+    /**
+     * @return Registros indexados
+     */
+    public int getRecords() {
+        return records;
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * Telemetry Listener - Receptor de muestras de telemetría
+ *
+ * Se invoca desde el thread lector de la conexión. La muestra recibida se
+ * reutiliza en el siguiente frame: el receptor debe copiarla si la
+ * necesita después de retornar, y no debe bloquear.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface TelemetryListener {
+
+    /**
+     * Nueva muestra decodificada
+     * @param sample Muestra (válida solo durante la llamada)
+     */
+    void onTelemetry(TelemetrySample sample);
+
+    /**
+     * Frame de telemetría que no se pudo decodificar
+     * @param frame Frame recibido
+     * @param error Código de error de {@link TelemetryDecoder}
+     */
+    default void onMalformed(String frame, int error) {
+    }
+}
@@ -0,0 +1,369 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Telemetry Publisher - Telemetría como {@link Flow.Publisher}
+ *
+ * Se registra como {@link TelemetryListener} en una sesión y reparte
+ * cada muestra a sus suscriptores. Cada suscripción tiene su propio
+ * buffer, su demanda (request(n)) y su {@link Executor} de entrega, de
+ * modo que un consumidor lento (el panel Swing, un recorder a disco) no
+ * frena nunca al thread lector ni a los demás consumidores.
+ *
+ * Qué hacer cuando el buffer de una suscripción se llena lo decide su
+ * {@link Overflow}:
+ * - BUFFER: conservar todas las muestras; si se supera la capacidad la
+ *   suscripción termina con onError (nunca se pierden en silencio)
+ * - DROP_OLDEST: descartar la muestra más antigua del buffer
+ * - LATEST: conservar solo la más reciente (capacidad 1)
+ *
+ * Las muestras del buffer son copias preasignadas: publicar no asigna
+ * memoria. La muestra entregada en onNext se reutiliza en la siguiente
+ * entrega; el suscriptor debe copiarla si la necesita después.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class TelemetryPublisher implements Flow.Publisher<TelemetrySample>, TelemetryListener {
+
+    /**
+     * Política de una suscripción cuando su buffer está lleno
+     */
+    public enum Overflow {
+        /** Fallar la suscripción con onError */
+        BUFFER,
+        /** Descartar la muestra más antigua */
+        DROP_OLDEST,
+        /** Conservar solo la más reciente */
+        LATEST
+    }
+
+    // Buffer por defecto de cada suscripción
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final Executor defaultExecutor;
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+    // Estado terminal: las suscripciones posteriores terminan tras onSubscribe
+    private volatile boolean completed;
+
+    /**
+     * Constructor con entrega en el pool común
+     */
+    public TelemetryPublisher() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param defaultExecutor Executor de entrega de las suscripciones que no indican uno
+     */
+    public TelemetryPublisher(Executor defaultExecutor) {
+        this.defaultExecutor = defaultExecutor;
+    }
+
+    /**
+     * Suscribirse con buffer acotado (BUFFER, {@link #DEFAULT_CAPACITY})
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super TelemetrySample> subscriber) {
+        subscribe(subscriber, Overflow.BUFFER, DEFAULT_CAPACITY, defaultExecutor);
+    }
+
+    /**
+     * Suscribirse con una política de desbordamiento
+     * @param subscriber Suscriptor
+     * @param overflow Política cuando el buffer está lleno
+     * @param capacity Muestras en buffer (se ignora con LATEST)
+     */
+    public void subscribe(Flow.Subscriber<? super TelemetrySample> subscriber, Overflow overflow, int capacity) {
+        subscribe(subscriber, overflow, capacity, defaultExecutor);
+    }
+
+    /**
+     * Suscribirse con una política de desbordamiento y un executor propio
+     * @param subscriber Suscriptor
+     * @param overflow Política cuando el buffer está lleno
+     * @param capacity Muestras en buffer (se ignora con LATEST)
+     * @param executor Executor donde se invoca al suscriptor (por ejemplo
+     *                 SwingUtilities::invokeLater)
+     */
+    public void subscribe(Flow.Subscriber<? super TelemetrySample> subscriber, Overflow overflow,
+                          int capacity, Executor executor) {
+        if (subscriber == null || overflow == null || executor == null) {
+            throw new NullPointerException("Suscriptor, política y executor son obligatorios");
+        }
+        if (overflow == Overflow.LATEST) {
+            capacity = 1;
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("La capacidad debe ser >= 1: " + capacity);
+        }
+
+        Subscription subscription = new Subscription(subscriber, overflow, capacity, executor);
+        subscriptions.add(subscription);
+        // Se comprueba después de añadirla: si complete() llega entre medias
+        // la termina él o aquí (complete() de la suscripción es idempotente)
+        if (completed) {
+            subscription.complete();
+        } else {
+            subscription.schedule();
+        }
+    }
+
+    /**
+     * Publicar una muestra a todos los suscriptores (desde el thread lector)
+     * @param sample Muestra; se copia en el buffer de cada suscripción
+     */
+    @Override
+    public void onTelemetry(TelemetrySample sample) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(sample);
+        }
+    }
+
+    /**
+     * Terminar todas las suscripciones con onComplete, tras entregar lo que
+     * tengan en buffer
+     *
+     * El publicador queda completado: quien se suscriba después recibe
+     * onSubscribe seguido de onComplete.
+     */
+    public void complete() {
+        completed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * @return Suscripciones activas
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * @return Muestras descartadas por DROP_OLDEST y LATEST en todas las suscripciones
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Suscripción con buffer circular propio
+     *
+     * El thread lector escribe en el buffer con el monitor tomado solo
+     * para copiar la muestra; la entrega corre en el executor y un
+     * contador de trabajo pendiente garantiza que nunca hay dos entregas
+     * a la vez (las señales al suscriptor quedan serializadas).
+     */
+    private final class Subscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super TelemetrySample> subscriber;
+        private final Overflow overflow;
+        private final Executor executor;
+        private final TelemetrySample[] ring;
+        private final TelemetrySample delivery = new TelemetrySample();
+        private final AtomicInteger pending = new AtomicInteger();
+
+        // Estado protegido por el monitor de la suscripción
+        private int head;
+        private int count;
+        private long demand;
+        private boolean completing;
+        private Throwable failure;
+
+        // Solo desde la entrega
+        private boolean started;
+        private volatile boolean cancelled;
+
+        Subscription(Flow.Subscriber<? super TelemetrySample> subscriber, Overflow overflow,
+                     int capacity, Executor executor) {
+            this.subscriber = subscriber;
+            this.overflow = overflow;
+            this.executor = executor;
+            this.ring = new TelemetrySample[capacity];
+            for (int i = 0; i < capacity; i++) {
+                ring[i] = new TelemetrySample();
+            }
+        }
+
+        void offer(TelemetrySample sample) {
+            synchronized (this) {
+                if (cancelled || completing || failure != null) {
+                    return;
+                }
+                if (count == ring.length) {
+                    if (overflow == Overflow.BUFFER) {
+                        failure = new IllegalStateException("Buffer de telemetría lleno ("
+                            + ring.length + " muestras): el suscriptor no consume a tiempo");
+                    } else {
+                        head = (head + 1) % ring.length;
+                        count--;
+                        dropped.increment();
+                    }
+                }
+                if (failure == null) {
+                    ring[(head + count) % ring.length].copyFrom(sample);
+                    count++;
+                }
+            }
+            schedule();
+        }
+
+        void complete() {
+            synchronized (this) {
+                completing = true;
+            }
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (n <= 0) {
+                    failure = new IllegalArgumentException("request(n) requiere n > 0: " + n);
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    cancel();
+                }
+            }
+        }
+
+        /**
+         * Entregar lo que permitan el buffer y la demanda
+         */
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (!started) {
+                    started = true;
+                    subscriber.onSubscribe(this);
+                }
+                drain();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            while (!cancelled) {
+                Throwable error = null;
+                boolean done = false;
+                synchronized (this) {
+                    if (failure != null) {
+                        error = failure;
+                    } else if (count > 0 && demand > 0) {
+                        delivery.copyFrom(ring[head]);
+                        head = (head + 1) % ring.length;
+                        count--;
+                        if (demand != Long.MAX_VALUE) {
+                            demand--;
+                        }
+                    } else if (completing && count == 0) {
+                        done = true;
+                    } else {
+                        return;
+                    }
+                }
+
+                if (error != null || done) {
+                    cancel();
+                    if (error != null) {
+                        subscriber.onError(error);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+
+                try {
+                    subscriber.onNext(delivery);
+                } catch (RuntimeException e) {
+                    // Un suscriptor que falla se da de baja sin afectar a los demás
+                    cancel();
+                    subscriber.onError(e);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adaptador de un {@link TelemetryListener} a suscriptor sin límite de demanda
+     *
+     * Permite mover un consumidor existente (por ejemplo un
+     * {@link TelemetryRecorder}) fuera del thread lector. Con
+     * {@link #getCompletion()} se espera a que haya procesado todo lo
+     * recibido antes de cerrarlo.
+     */
+    public static final class ListenerSubscriber implements Flow.Subscriber<TelemetrySample> {
+        private final TelemetryListener listener;
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private volatile Flow.Subscription subscription;
+
+        public ListenerSubscriber(TelemetryListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(TelemetrySample sample) {
+            listener.onTelemetry(sample);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            completion.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            completion.complete(null);
+        }
+
+        /**
+         * Darse de baja sin esperar al resto del buffer
+         */
+        public void cancel() {
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+            completion.complete(null);
+        }
+
+        /**
+         * @return Future que se completa al terminar la suscripción
+         */
+        public CompletableFuture<Void> getCompletion() {
+            return completion;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Telemetry Query - Consultas por tiempo y por estación sobre una grabación
+ *
+ * Usa el {@link TelemetryIndex} de cada segmento, mapeado en memoria:
+ * <ul>
+ *   <li>Rango de tiempo: los segmentos fuera del rango se descartan por la
+ *       cabecera del índice; en los demás, una búsqueda binaria en las
+ *       entradas de tiempo da el primer registro a leer, y se lee hasta
+ *       pasar el final del rango.</li>
+ *   <li>Llegadas a una estación: búsqueda binaria de la estación en las
+ *       llegadas ordenadas y lectura directa de esos registros.</li>
+ * </ul>
+ * Solo se tocan las páginas de los registros del resultado, así que el
+ * coste no depende de las semanas grabadas.
+ *
+ * Un segmento sin índice, o con un índice que no corresponde a su
+ * contenido, se indexa al consultarlo: si está sellado el índice se
+ * guarda para las siguientes consultas; si sigue abierto se usa solo en
+ * memoria.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public final class TelemetryQuery {
+
+    /**
+     * Destino de los registros encontrados
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * @param train Tren del registro
+         * @param sample Muestra (reutilizada: solo válida durante la llamada)
+         */
+        void onRecord(int train, TelemetrySample sample);
+    }
+
+    /**
+     * Segmento con su índice
+     */
+    private static final class Segment {
+        final Path file;
+        final Path directory;
+        ByteBuffer index;
+
+        Segment(Path file) {
+            this.file = file;
+            this.directory = file.getParent();
+        }
+    }
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final TelemetrySample sample = new TelemetrySample();
+
+    // Estadísticas: segmentos leídos en la última consulta, índices creados en total
+    private int segmentsRead;
+    private int indexesBuilt;
+
+    /**
+     * Preparar consultas sobre una grabación
+     * @param recording Segmento, directorio de un tren o directorio de flota
+     * @param train Tren a consultar: número de tren o nombre de su
+     *              subdirectorio (null = todos)
+     * @throws IOException si no se puede listar la grabación
+     */
+    public TelemetryQuery(Path recording, String train) throws IOException {
+        for (Path file : TelemetryRecordReader.recording(recording)) {
+            Segment segment = new Segment(file);
+            if (train == null || matches(segment, train)) {
+                segments.add(segment);
+            }
+        }
+    }
+
+    private boolean matches(Segment segment, String train) throws IOException {
+        if (segment.directory != null && segment.directory.getFileName() != null
+                && segment.directory.getFileName().toString().equals(train)) {
+            return true;
+        }
+        int number;
+        try {
+            number = Integer.parseInt(train);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        try (TelemetryRecordReader reader = new TelemetryRecordReader(segment.file)) {
+            return reader.getTrain() == number;
+        }
+    }
+
+    /**
+     * Registros con timestamp en [from, to]
+     * @param from Inicio (ms epoch, incluido)
+     * @param to Fin (ms epoch, incluido)
+     * @param visitor Recibe cada registro en orden de grabación
+     * @return Registros encontrados
+     * @throws IOException si no se puede leer un segmento
+     */
+    public long range(long from, long to, Visitor visitor) throws IOException {
+        segmentsRead = 0;
+        long found = 0;
+
+        for (Segment segment : segments) {
+            ByteBuffer index = loadIndex(segment);
+            if (index.getInt(TelemetryIndex.OFFSET_RECORDS) == 0
+                    || index.getLong(TelemetryIndex.OFFSET_LAST) < from
+                    || index.getLong(TelemetryIndex.OFFSET_FIRST) > to) {
+                continue;
+            }
+
+            // Última entrada anterior al rango: desde ahí puede empezar
+            int entries = index.getInt(TelemetryIndex.OFFSET_TIME_ENTRIES);
+            int lo = 0;
+            int hi = entries;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (index.getLong(TelemetryIndex.HEADER_SIZE + 8 * mid) < from) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            int start = Math.max(0, lo - 1) * index.getInt(TelemetryIndex.OFFSET_INTERVAL);
+
+            try (TelemetryRecordReader reader = new TelemetryRecordReader(segment.file)) {
+                segmentsRead++;
+                reader.seek(start);
+                while (reader.next(sample)) {
+                    long timestamp = sample.getTimestamp();
+                    if (timestamp > to) {
+                        break;
+                    }
+                    if (timestamp >= from) {
+                        visitor.onRecord(reader.getRecordTrain(), sample);
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Llegadas a una estación con timestamp en [from, to]
+     * @param station Estación
+     * @param from Inicio (ms epoch, incluido)
+     * @param to Fin (ms epoch, incluido)
+     * @param visitor Recibe el registro de cada llegada
+     * @return Llegadas encontradas
+     * @throws IOException si no se puede leer un segmento
+     */
+    public long arrivals(int station, long from, long to, Visitor visitor) throws IOException {
+        segmentsRead = 0;
+        long found = 0;
+        long key = (long) station << 32;
+
+        for (Segment segment : segments) {
+            ByteBuffer index = loadIndex(segment);
+            if (index.getInt(TelemetryIndex.OFFSET_RECORDS) == 0
+                    || index.getLong(TelemetryIndex.OFFSET_LAST) < from
+                    || index.getLong(TelemetryIndex.OFFSET_FIRST) > to) {
+                continue;
+            }
+
+            int base = TelemetryIndex.HEADER_SIZE + 8 * index.getInt(TelemetryIndex.OFFSET_TIME_ENTRIES);
+            int count = index.getInt(TelemetryIndex.OFFSET_ARRIVALS);
+            int lo = 0;
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (index.getLong(base + 8 * mid) < key) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            if (lo == count || (int) (index.getLong(base + 8 * lo) >> 32) != station) {
+                continue;
+            }
+
+            try (TelemetryRecordReader reader = new TelemetryRecordReader(segment.file)) {
+                segmentsRead++;
+                for (int i = lo; i < count; i++) {
+                    long entry = index.getLong(base + 8 * i);
+                    if ((int) (entry >> 32) != station) {
+                        break;
+                    }
+                    reader.seek((int) entry);
+                    if (!reader.next(sample)) {
+                        break;
+                    }
+                    // Llegadas en orden de registro: también de tiempo
+                    if (sample.getTimestamp() > to) {
+                        break;
+                    }
+                    if (sample.getTimestamp() >= from) {
+                        visitor.onRecord(reader.getRecordTrain(), sample);
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Índice de un segmento: el archivo mapeado si corresponde al
+     * segmento, o uno reconstruido
+     */
+    private ByteBuffer loadIndex(Segment segment) throws IOException {
+        if (segment.index != null) {
+            return segment.index;
+        }
+
+        Path file = TelemetryIndex.indexFile(segment.file);
+        if (Files.isRegularFile(file)) {
+            ByteBuffer mapped;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                mapped.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            if (isCurrent(mapped, segment)) {
+                segment.index = mapped;
+                return mapped;
+            }
+        }
+
+        try (TelemetryRecordReader reader = new TelemetryRecordReader(segment.file)) {
+            TelemetryIndex built = TelemetryIndex.build(reader, previousStation(segment));
+            indexesBuilt++;
+            if (reader.isSealed()) {
+                try {
+                    built.write(file);
+                } catch (IOException e) {
+                    // Sin permiso de escritura: se usa en memoria
+                }
+            }
+            segment.index = built.toBuffer();
+        }
+        return segment.index;
+    }
+
+    /**
+     * Estación al final del segmento anterior del mismo tren
+     */
+    private int previousStation(Segment segment) throws IOException {
+        int position = segments.indexOf(segment);
+        if (position <= 0 || !segments.get(position - 1).directory.equals(segment.directory)) {
+            return TelemetrySample.NO_STATION;
+        }
+        try (TelemetryRecordReader reader = new TelemetryRecordReader(segments.get(position - 1).file)) {
+            if (!reader.isSealed()) {
+                return TelemetrySample.NO_STATION;
+            }
+            reader.seek(reader.getRecordCount() - 1);
+            return reader.next(sample) ? sample.getStation() : TelemetrySample.NO_STATION;
+        }
+    }
+
+    /**
+     * Un índice vale si su formato es el actual y cubre todos los registros
+     * de un segmento sellado
+     */
+    private static boolean isCurrent(ByteBuffer index, Segment segment) throws IOException {
+        if (index.capacity() < TelemetryIndex.HEADER_SIZE
+                || index.getInt(0) != TelemetryIndex.MAGIC
+                || index.getInt(4) != TelemetryIndex.VERSION) {
+            return false;
+        }
+        int expected = TelemetryIndex.HEADER_SIZE + 8 * (index.getInt(TelemetryIndex.OFFSET_TIME_ENTRIES)
+            + index.getInt(TelemetryIndex.OFFSET_ARRIVALS));
+        if (index.capacity() != expected) {
+            return false;
+        }
+        try (TelemetryRecordReader reader = new TelemetryRecordReader(segment.file)) {
+            return reader.isSealed()
+                && reader.getRecordCount() == index.getInt(TelemetryIndex.OFFSET_RECORDS);
+        }
+    }
+
+    /**
+     * @return Segmentos de la grabación incluidos en la consulta
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return Segmentos cuyos registros se leyeron en la última consulta
+     */
+    public int getSegmentsRead() {
+        return segmentsRead;
+    }
+
+    /**
+     * @return Índices reconstruidos (segmentos sin índice o desactualizado)
+     */
+    public int getIndexesBuilt() {
+        return indexesBuilt;
+    }
+}
@@ -0,0 +1,204 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Telemetry Record Reader - Lectura de segmentos grabados por TelemetryRecorder
+ *
+ * Mapea un segmento en solo lectura y recorre sus registros de ancho fijo
+ * sobre una {@link TelemetrySample} reutilizada, sin asignaciones por
+ * registro.
+ *
+ * Un segmento sellado indica su número de registros en la cabecera; en
+ * uno todavía abierto (o de un proceso interrumpido) la lectura se
+ * detiene en el primer registro con timestamp 0.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class TelemetryRecordReader implements Closeable {
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int limit;
+    private final boolean sealed;
+    private final int train;
+    private int next;
+
+    /**
+     * Abrir un segmento
+     * @param file Archivo de segmento
+     * @throws IOException si no se puede leer o no es un segmento válido
+     */
+    public TelemetryRecordReader(Path file) throws IOException {
+        this.file = file;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < TelemetryRecorder.HEADER_SIZE) {
+                throw new IOException("Segmento demasiado corto: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if (buffer.getInt(0) != TelemetryRecorder.MAGIC) {
+            throw new IOException("No es un segmento de telemetría: " + file);
+        }
+        if (buffer.getInt(4) != TelemetryRecorder.VERSION
+                || buffer.getInt(8) != TelemetryRecorder.RECORD_SIZE) {
+            throw new IOException("Versión de segmento no soportada: " + file);
+        }
+
+        this.capacity = (buffer.capacity() - TelemetryRecorder.HEADER_SIZE) / TelemetryRecorder.RECORD_SIZE;
+        int count = buffer.getInt(TelemetryRecorder.OFFSET_COUNT);
+        this.sealed = count > 0;
+        this.limit = sealed ? Math.min(count, capacity) : capacity;
+        this.train = buffer.getInt(TelemetryRecorder.OFFSET_TRAIN);
+    }
+
+    /**
+     * Leer el siguiente registro
+     * @param out Muestra a rellenar
+     * @return false si no quedan registros
+     */
+    public boolean next(TelemetrySample out) {
+        if (next >= limit) {
+            return false;
+        }
+
+        int pos = TelemetryRecorder.HEADER_SIZE + next * TelemetryRecorder.RECORD_SIZE;
+        long timestamp = buffer.getLong(pos);
+        if (timestamp == 0) {
+            return false;
+        }
+
+        out.setTimestamp(timestamp);
+        out.setSpeed(buffer.getDouble(pos + 8));
+        out.setStation(buffer.getInt(pos + 16));
+        out.setBattery(buffer.getInt(pos + 24));
+        out.setDirection(Direction.fromOrdinal(buffer.get(pos + 28)));
+        next++;
+        return true;
+    }
+
+    /**
+     * Situar la lectura en un registro (acceso directo con un índice)
+     * @param record Posición del siguiente registro a leer
+     */
+    public void seek(int record) {
+        next = Math.max(0, Math.min(record, limit));
+    }
+
+    /**
+     * Tren del registro leído por última vez
+     * @return Identificador del tren
+     */
+    public int getRecordTrain() {
+        int pos = TelemetryRecorder.HEADER_SIZE + (next - 1) * TelemetryRecorder.RECORD_SIZE;
+        return buffer.getInt(pos + 20);
+    }
+
+    /**
+     * @return Tren indicado en la cabecera del segmento
+     */
+    public int getTrain() {
+        return train;
+    }
+
+    /**
+     * @return Registros leídos hasta ahora
+     */
+    public int getPosition() {
+        return next;
+    }
+
+    /**
+     * @return Registros que caben en el segmento
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Registros de un segmento sellado (su capacidad si sigue abierto)
+     */
+    public int getRecordCount() {
+        return limit;
+    }
+
+    /**
+     * @return true si el recorder cerró el segmento (su contenido ya no cambia)
+     */
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() {
+        // El mapeo se libera cuando el buffer deja de ser alcanzable
+    }
+
+    /**
+     * Segmentos de un directorio en orden de grabación
+     * @param directory Directorio de un recorder
+     * @return Segmentos ordenados (vacío si el directorio no existe)
+     * @throws IOException si no se puede listar
+     */
+    public static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+
+        List<Path> result = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(TelemetryRecorder.SEGMENT_PREFIX)
+                    && name.endsWith(TelemetryRecorder.SEGMENT_SUFFIX);
+            }).forEach(result::add);
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Segmentos de una grabación: un archivo, un directorio de tren o un
+     * directorio de flota (un subdirectorio por tren)
+     * @param path Ruta de la grabación
+     * @return Segmentos ordenados por tren y por orden de grabación
+     * @throws IOException si no se puede listar
+     */
+    public static List<Path> recording(Path path) throws IOException {
+        if (Files.isRegularFile(path)) {
+            return Collections.singletonList(path);
+        }
+
+        List<Path> result = new ArrayList<>(segments(path));
+        if (result.isEmpty() && Files.isDirectory(path)) {
+            List<Path> trains = new ArrayList<>();
+            try (Stream<Path> dirs = Files.list(path)) {
+                dirs.filter(Files::isDirectory).forEach(trains::add);
+            }
+            Collections.sort(trains);
+            for (Path train : trains) {
+                result.addAll(segments(train));
+            }
+        }
+        return result;
+    }
+}
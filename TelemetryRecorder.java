@@ -0,0 +1,374 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Telemetry Recorder - Grabación binaria de telemetría en segmentos mmap
+ *
+ * Cada muestra recibida se añade como un registro de ancho fijo a un
+ * archivo de segmento mapeado en memoria. Escribir un registro es solo
+ * una escritura en memoria: no hay syscalls ni fsync por frame, y el
+ * sistema operativo vuelca las páginas en segundo plano.
+ *
+ * Cuando un segmento se llena se pasa al siguiente, que se crea y mapea
+ * por adelantado en un thread auxiliar para no detener al lector.
+ *
+ * Junto a cada segmento sellado se escribe su {@link TelemetryIndex}
+ * (tiempo y llegadas a estaciones), que el recorder va llenando en
+ * memoria con cada registro.
+ *
+ * Formato del segmento (little-endian):
+ * <pre>
+ *   Cabecera (64 bytes)
+ *     0  int   MAGIC "MTLM"
+ *     4  int   versión
+ *     8  int   tamaño de registro
+ *    12  int   número de registros (se escribe al cerrar; 0 = abierto)
+ *    16  int   tren
+ *   Registro (32 bytes)
+ *     0  long   timestamp (ms epoch)
+ *     8  double velocidad
+ *    16  int    estación
+ *    20  int    tren
+ *    24  int    batería
+ *    28  byte   dirección (ordinal)
+ *    29  3 bytes relleno
+ * </pre>
+ *
+ * Si no se puede crear el siguiente segmento (disco lleno, permisos) las
+ * muestras se descartan y se reintenta cada {@link #RETRY_INTERVAL} ms;
+ * el fallo se informa una vez por episodio con {@link #setErrorListener}.
+ *
+ * Un recorder tiene un único escritor (el thread que lo alimenta); en modo
+ * flota se usa uno por tren.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class TelemetryRecorder implements TelemetryListener, Closeable {
+
+    // Formato
+    static final int MAGIC = 0x4D544C4D; // "MTLM"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 32;
+    static final int OFFSET_COUNT = 12;
+    static final int OFFSET_TRAIN = 16;
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".tlm";
+
+    // Tamaño de segmento por defecto: 2M registros (64 MiB)
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 2 * 1024 * 1024;
+
+    // Espera entre intentos de crear un segmento tras un fallo
+    public static final long RETRY_INTERVAL = 1000;
+
+    private final Path directory;
+    private final int train;
+    private final int recordsPerSegment;
+
+    // Segmento actual (solo lo usa el thread escritor)
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private int records;
+    private long totalRecords;
+    private final TelemetryIndex recordIndex;
+    private boolean sealed;
+
+    // Fallos de disco: muestras descartadas y siguiente intento
+    private long droppedRecords;
+    private long retryAt;
+    private boolean failing;
+    private volatile Consumer<IOException> errorListener;
+
+    // Preparación del siguiente segmento en segundo plano
+    private final ExecutorService allocator;
+    private CompletableFuture<MappedByteBuffer> nextSegment;
+    private volatile boolean closed;
+
+    /**
+     * Abrir un recorder en un directorio
+     * @param directory Directorio de segmentos (se crea si no existe)
+     * @param train Identificador del tren guardado en cada registro
+     * @throws IOException si no se puede crear el primer segmento
+     */
+    public TelemetryRecorder(Path directory, int train) throws IOException {
+        this(directory, train, DEFAULT_RECORDS_PER_SEGMENT);
+    }
+
+    /**
+     * Abrir un recorder con tamaño de segmento propio
+     * @param directory Directorio de segmentos (se crea si no existe)
+     * @param train Identificador del tren guardado en cada registro
+     * @param recordsPerSegment Registros por segmento
+     * @throws IOException si no se puede crear el primer segmento
+     */
+    public TelemetryRecorder(Path directory, int train, int recordsPerSegment) throws IOException {
+        if (recordsPerSegment < 1) {
+            throw new IllegalArgumentException("Registros por segmento inválidos: " + recordsPerSegment);
+        }
+        this.directory = directory;
+        this.train = train;
+        this.recordsPerSegment = recordsPerSegment;
+        this.recordIndex = new TelemetryIndex(train, recordsPerSegment, TelemetryIndex.DEFAULT_INTERVAL);
+
+        Files.createDirectories(directory);
+        segmentIndex = lastSegmentIndex(directory) + 1;
+        segment = createSegment(segmentIndex);
+
+        allocator = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "metro-recorder-alloc");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void onTelemetry(TelemetrySample sample) {
+        try {
+            append(sample);
+        } catch (IOException e) {
+            // No se interrumpe la recepción por un fallo de disco
+            droppedRecords++;
+            if (!failing) {
+                failing = true;
+                reportError(e);
+            }
+        }
+    }
+
+    /**
+     * Añadir una muestra
+     * @param sample Muestra a grabar
+     * @throws IOException si no se puede abrir el siguiente segmento
+     */
+    public void append(TelemetrySample sample) throws IOException {
+        if (closed) {
+            return;
+        }
+        if (records == recordsPerSegment && !roll()) {
+            droppedRecords++;
+            return;
+        }
+
+        int pos = HEADER_SIZE + records * RECORD_SIZE;
+        segment.putDouble(pos + 8, sample.getSpeed());
+        segment.putInt(pos + 16, sample.getStation());
+        segment.putInt(pos + 20, train);
+        segment.putInt(pos + 24, sample.getBattery());
+        segment.put(pos + 28, (byte) sample.getDirection().ordinal());
+        // El timestamp va al final: un registro con timestamp 0 no está completo
+        segment.putLong(pos, sample.getTimestamp());
+        recordIndex.add(records, sample.getTimestamp(), sample.getStation());
+        records++;
+        totalRecords++;
+
+        // Preparar el siguiente segmento con antelación (al 75 %)
+        if (nextSegment == null && records >= recordsPerSegment - recordsPerSegment / 4) {
+            int index = segmentIndex + 1;
+            nextSegment = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return createSegment(index);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, allocator);
+        }
+    }
+
+    /**
+     * Sellar el segmento actual (una sola vez) y pasar al siguiente
+     * @return false si aún no toca reintentar tras un fallo
+     * @throws IOException si no se puede crear el siguiente segmento
+     */
+    private boolean roll() throws IOException {
+        if (!sealed) {
+            seal(segment, records);
+            writeIndex();
+            sealed = true;
+        }
+        if (nextSegment == null && System.currentTimeMillis() < retryAt) {
+            return false;
+        }
+
+        MappedByteBuffer created;
+        try {
+            created = nextSegment != null ? nextSegment.get() : createSegment(segmentIndex + 1);
+        } catch (ExecutionException | IOException e) {
+            // Se descarta el intento fallido: el siguiente vuelve a crear el segmento
+            nextSegment = null;
+            retryAt = System.currentTimeMillis() + RETRY_INTERVAL;
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw new IOException("No se pudo crear el segmento: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrumpido creando segmento");
+        }
+
+        segment = created;
+        nextSegment = null;
+        segmentIndex++;
+        records = 0;
+        sealed = false;
+        failing = false;
+        return true;
+    }
+
+    /**
+     * Crear y mapear un segmento vacío
+     */
+    private MappedByteBuffer createSegment(int index) throws IOException {
+        Path file = directory.resolve(segmentName(index));
+        long size = HEADER_SIZE + (long) recordsPerSegment * RECORD_SIZE;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, RECORD_SIZE);
+            buffer.putInt(OFFSET_COUNT, 0);
+            buffer.putInt(OFFSET_TRAIN, train);
+            return buffer;
+        }
+    }
+
+    /**
+     * Escribir el número de registros en la cabecera del segmento
+     */
+    private static void seal(MappedByteBuffer buffer, int count) {
+        buffer.putInt(OFFSET_COUNT, count);
+    }
+
+    /**
+     * Escribir el índice del segmento actual y empezar uno vacío
+     */
+    private void writeIndex() {
+        try {
+            recordIndex.write(directory.resolve(indexName(segmentIndex)));
+        } catch (IOException e) {
+            // El segmento es válido sin índice: la consulta lo reconstruye
+            reportError(new IOException("No se pudo escribir el índice: " + e.getMessage(), e));
+        }
+        recordIndex.reset();
+    }
+
+    /**
+     * Informar un fallo al receptor de errores (stderr si no hay)
+     */
+    private void reportError(IOException e) {
+        Consumer<IOException> listener = errorListener;
+        if (listener != null) {
+            listener.accept(e);
+        } else {
+            System.err.println("❌ Error grabando telemetría: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forzar el volcado a disco del segmento actual (no se usa por frame)
+     */
+    public void flush() {
+        segment.force();
+    }
+
+    /**
+     * Cerrar el recorder sellando el segmento actual
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!sealed) {
+            seal(segment, records);
+            writeIndex();
+        }
+        segment.force();
+        allocator.shutdown();
+
+        // Un segmento preparado que no llegó a usarse se elimina
+        if (nextSegment != null) {
+            nextSegment.thenRun(() -> {
+                try {
+                    Files.deleteIfExists(directory.resolve(segmentName(segmentIndex + 1)));
+                } catch (IOException e) {
+                    // Quedará un segmento vacío, que el lector ignora
+                }
+            });
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getTotalRecords() {
+        return totalRecords;
+    }
+
+    /**
+     * @return Muestras descartadas por no poder crear un segmento
+     */
+    public long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    /**
+     * Registrar receptor de fallos de disco (uno por episodio, más los de
+     * índice); se invoca desde el thread escritor
+     * @param listener Receptor (null = stderr)
+     */
+    public void setErrorListener(Consumer<IOException> listener) {
+        this.errorListener = listener;
+    }
+
+    /**
+     * Nombre de archivo de un segmento
+     * @param index Índice del segmento
+     * @return Nombre con relleno de ceros para ordenar alfabéticamente
+     */
+    static String segmentName(int index) {
+        return String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Nombre de archivo del índice de un segmento
+     * @param index Índice del segmento
+     * @return Nombre con la misma base que el segmento
+     */
+    static String indexName(int index) {
+        return String.format("%s%06d%s", SEGMENT_PREFIX, index, TelemetryIndex.INDEX_SUFFIX);
+    }
+
+    /**
+     * Índice del último segmento existente en el directorio
+     */
+    private static int lastSegmentIndex(Path directory) throws IOException {
+        int last = 0;
+        for (Path file : TelemetryRecordReader.segments(directory)) {
+            String name = file.getFileName().toString();
+            try {
+                int index = Integer.parseInt(name.substring(
+                    SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                last = Math.max(last, index);
+            } catch (NumberFormatException e) {
+                // Nombre ajeno al formato: se ignora
+            }
+        }
+        return last;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Telemetry Sample - Muestra de telemetría reutilizable
+ *
+ * Contenedor mutable con campos primitivos para una muestra
+ * TYPE:TELEMETRY. El decodificador escribe sobre la misma instancia en
+ * cada frame, por lo que quien necesite conservar una muestra más allá
+ * del callback debe copiarla con {@link #copyFrom(TelemetrySample)}.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public final class TelemetrySample {
+
+    // Valor de estación cuando el frame no la incluye
+    public static final int NO_STATION = -1;
+
+    private long timestamp;
+    private double speed;
+    private int battery;
+    private Direction direction = Direction.UNKNOWN;
+    private int station = NO_STATION;
+
+    /**
+     * Restablecer todos los campos a sus valores por defecto
+     */
+    public void reset() {
+        timestamp = 0L;
+        speed = 0.0;
+        battery = 0;
+        direction = Direction.UNKNOWN;
+        station = NO_STATION;
+    }
+
+    /**
+     * Copiar los valores de otra muestra
+     * @param other Muestra de origen
+     * @return Esta misma muestra
+     */
+    public TelemetrySample copyFrom(TelemetrySample other) {
+        timestamp = other.timestamp;
+        speed = other.speed;
+        battery = other.battery;
+        direction = other.direction;
+        station = other.station;
+        return this;
+    }
+
+    /**
+     * @return Instante de recepción en milisegundos epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @return Velocidad en km/h
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * @return Batería en porcentaje (0-100)
+     */
+    public int getBattery() {
+        return battery;
+    }
+
+    public void setBattery(int battery) {
+        this.battery = battery;
+    }
+
+    /**
+     * @return Sentido de marcha
+     */
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public void setDirection(Direction direction) {
+        this.direction = direction;
+    }
+
+    /**
+     * @return Número de estación o {@link #NO_STATION}
+     */
+    public int getStation() {
+        return station;
+    }
+
+    public void setStation(int station) {
+        this.station = station;
+    }
+
+    @Override
+    public String toString() {
+        return "TelemetrySample[speed=" + speed + ", battery=" + battery
+            + ", direction=" + direction + ", station=" + station
+            + ", timestamp=" + timestamp + "]";
+    }
+}
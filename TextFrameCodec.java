@@ -0,0 +1,149 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Text Frame Codec - Codificación de texto original del protocolo
+ *
+ * Un frame por línea: TYPE:&lt;tipo&gt;;CLAVE:VALOR;... terminado en '\n'
+ * (se acepta también "\r\n"). Las líneas se separan buscando '\n' en
+ * el buffer de entrada y la telemetría se decodifica en el sitio con
+ * {@link TelemetryDecoder}; solo los demás frames se convierten a String.
+ *
+ * El protocolo es ASCII: los bytes se leen y escriben como Latin-1 (un
+ * byte por carácter, sin decodificar), así el resultado no depende del
+ * charset por defecto ni del locale de la máquina.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class TextFrameCodec implements FrameCodec {
+
+    public static final String NAME = "TEXT";
+
+    // Frame de telemetría más largo que puede generar encodeTelemetry
+    private static final int MAX_TELEMETRY_SIZE = 96;
+
+    private final TelemetryDecoder decoder = new TelemetryDecoder();
+
+    // Frame en escritura
+    private byte[] output = new byte[256];
+
+    // Último frame leído
+    private String message;
+    private int error;
+    private int frameLength;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int read(FrameInput in, TelemetrySample sample) throws IOException {
+        int length = in.takeLine((byte) '\n');
+        if (length < 0) {
+            return END;
+        }
+        frameLength = length + 1;
+
+        byte[] buf = in.buffer();
+        int start = in.lineStart();
+        if (length > 0 && buf[start + length - 1] == '\r') {
+            length--;
+        }
+
+        // La línea se decodifica en el propio buffer de entrada
+        int result = decoder.decode(buf, start, length, sample);
+        if (result == TelemetryDecoder.OK) {
+            return TELEMETRY;
+        }
+
+        message = new String(buf, start, length, StandardCharsets.ISO_8859_1);
+        if (result == TelemetryDecoder.NOT_TELEMETRY) {
+            return MESSAGE;
+        }
+        error = result;
+        return MALFORMED;
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public int getError() {
+        return error;
+    }
+
+    @Override
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    @Override
+    public void write(String frame, OutputStream out) throws IOException {
+        int length = frame.length();
+        if (output.length < length + 1) {
+            output = new byte[Math.max(length + 1, output.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            char c = frame.charAt(i);
+            output[i] = c <= 0xFF ? (byte) c : (byte) '?';
+        }
+        output[length] = '\n';
+        out.write(output, 0, length + 1);
+    }
+
+    @Override
+    public int encodeTelemetry(TelemetrySample sample, byte[] buf, int pos) {
+        pos = putAscii(buf, pos, "TYPE:TELEMETRY;SPEED:");
+        long tenths = Math.round(sample.getSpeed() * 10);
+        if (tenths < 0) {
+            buf[pos++] = '-';
+            tenths = -tenths;
+        }
+        pos = putLong(buf, pos, tenths / 10);
+        buf[pos++] = '.';
+        buf[pos++] = (byte) ('0' + tenths % 10);
+        pos = putAscii(buf, pos, ";BATTERY:");
+        pos = putLong(buf, pos, sample.getBattery());
+        pos = putAscii(buf, pos, ";DIRECTION:");
+        pos = putAscii(buf, pos, sample.getDirection().name());
+        if (sample.getStation() != TelemetrySample.NO_STATION) {
+            pos = putAscii(buf, pos, ";STATION:");
+            pos = putLong(buf, pos, sample.getStation());
+        }
+        buf[pos++] = '\n';
+        return pos;
+    }
+
+    @Override
+    public int getMaxTelemetrySize() {
+        return MAX_TELEMETRY_SIZE;
+    }
+
+    private static int putAscii(byte[] buf, int pos, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buf[pos++] = (byte) text.charAt(i);
+        }
+        return pos;
+    }
+
+    private static int putLong(byte[] buf, int pos, long value) {
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            buf[pos + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+}
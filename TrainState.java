@@ -0,0 +1,126 @@
+/**
+ * Train State - Estado de un tren en un instante
+ *
+ * Instantánea inmutable de lo último que se sabe de una sesión: la
+ * telemetría más reciente, cuándo llegó y el estado de la conexión. La
+ * publica {@link TrainStateCell}; se puede compartir entre threads y
+ * guardar sin copiarla.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public final class TrainState {
+
+    /**
+     * Estado de la conexión de la sesión
+     */
+    public enum Status {
+        /** Sin conexión abierta */
+        DISCONNECTED,
+        /** Conectada, sin autenticar */
+        CONNECTED,
+        /** Autenticada: recibe telemetría y acepta comandos */
+        AUTHENTICATED,
+        /** Conexión perdida; la sesión intenta restablecerla */
+        RECONNECTING,
+        /** Cerrada por el cliente */
+        CLOSED
+    }
+
+    // Estado antes de la primera conexión
+    public static final TrainState INITIAL = new TrainState(0L, Status.DISCONNECTED, 0.0, 0,
+        Direction.UNKNOWN, TelemetrySample.NO_STATION, 0L, 0L);
+
+    private final long version;
+    private final Status status;
+    private final double speed;
+    private final int battery;
+    private final Direction direction;
+    private final int station;
+    private final long updatedAt;
+    private final long samples;
+
+    TrainState(long version, Status status, double speed, int battery, Direction direction,
+               int station, long updatedAt, long samples) {
+        this.version = version;
+        this.status = status;
+        this.speed = speed;
+        this.battery = battery;
+        this.direction = direction;
+        this.station = station;
+        this.updatedAt = updatedAt;
+        this.samples = samples;
+    }
+
+    /**
+     * @return Versión del estado; crece con cada muestra o cambio de estado
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return Velocidad en km/h de la última muestra
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return Batería en porcentaje de la última muestra
+     */
+    public int getBattery() {
+        return battery;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return Estación de la última muestra, o {@link TelemetrySample#NO_STATION}
+     */
+    public int getStation() {
+        return station;
+    }
+
+    /**
+     * @return Instante de la última muestra en milisegundos epoch (0 = ninguna)
+     */
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * @return Muestras recibidas por la sesión
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return true si ya llegó alguna muestra
+     */
+    public boolean hasTelemetry() {
+        return samples > 0;
+    }
+
+    /**
+     * Antigüedad de la telemetría
+     * @param now Instante de referencia en milisegundos epoch
+     * @return Milisegundos desde la última muestra, o -1 si no hay ninguna
+     */
+    public long getAge(long now) {
+        return samples > 0 ? Math.max(0, now - updatedAt) : -1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %.1f km/h %d%% %s estación %d (v%d)",
+            status, speed, battery, direction, station, version);
+    }
+}
@@ -0,0 +1,164 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Train State Cell - Estado más reciente de un tren, sin locks (seqlock)
+ *
+ * El thread lector escribe cada muestra sobre campos primitivos, sin
+ * asignar memoria ni tomar locks: incrementa la secuencia a impar,
+ * escribe y la deja par. Los lectores leen los campos entre dos lecturas
+ * de la secuencia y repiten si cambió por medio, así que nunca ven una
+ * mezcla de dos muestras ni frenan al escritor.
+ *
+ * {@link #snapshot()} devuelve un {@link TrainState} inmutable y
+ * reutiliza el último mientras no haya cambios, de modo que cualquier
+ * número de lectores (UI, métricas, alertas, exportación) puede
+ * consultarlo a menudo sin coste para la red.
+ *
+ * Los cambios de estado de la conexión también pasan por la secuencia,
+ * desde cualquier thread: la escritura se reserva con un CAS.
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public final class TrainStateCell implements TelemetryListener {
+
+    private static final VarHandle SEQUENCE;
+
+    static {
+        try {
+            SEQUENCE = MethodHandles.lookup().findVarHandle(TrainStateCell.class, "sequence", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Impar mientras hay una escritura en curso
+    @SuppressWarnings("unused")
+    private long sequence;
+
+    // Campos protegidos por la secuencia
+    private TrainState.Status status = TrainState.Status.DISCONNECTED;
+    private double speed;
+    private int battery;
+    private Direction direction = Direction.UNKNOWN;
+    private int station = TelemetrySample.NO_STATION;
+    private long updatedAt;
+    private long samples;
+
+    // Última instantánea publicada (carrera benigna: es inmutable)
+    private volatile TrainState cached = TrainState.INITIAL;
+
+    /**
+     * Registrar una muestra (desde el thread lector)
+     * @param sample Muestra recibida; se copian sus valores
+     */
+    @Override
+    public void onTelemetry(TelemetrySample sample) {
+        long seq = beginWrite();
+        speed = sample.getSpeed();
+        battery = sample.getBattery();
+        direction = sample.getDirection();
+        station = sample.getStation();
+        updatedAt = sample.getTimestamp();
+        samples++;
+        endWrite(seq);
+    }
+
+    /**
+     * Cambiar el estado de la conexión
+     * @param status Nuevo estado
+     */
+    public void setStatus(TrainState.Status status) {
+        long seq = beginWrite();
+        this.status = status;
+        endWrite(seq);
+    }
+
+    /**
+     * Reservar la escritura: secuencia par a impar
+     * @return Secuencia impar reservada
+     */
+    private long beginWrite() {
+        while (true) {
+            long seq = (long) SEQUENCE.getVolatile(this);
+            if ((seq & 1) == 0 && SEQUENCE.compareAndSet(this, seq, seq + 1)) {
+                VarHandle.storeStoreFence();
+                return seq + 1;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private void endWrite(long seq) {
+        SEQUENCE.setRelease(this, seq + 1);
+    }
+
+    /**
+     * Leer el estado actual
+     * @return Instantánea consistente (la misma instancia si no hubo cambios)
+     */
+    public TrainState snapshot() {
+        while (true) {
+            long seq = (long) SEQUENCE.getAcquire(this);
+            TrainState last = cached;
+            if (last.getVersion() == seq) {
+                return last;
+            }
+            if ((seq & 1) == 0) {
+                TrainState.Status currentStatus = status;
+                double currentSpeed = speed;
+                int currentBattery = battery;
+                Direction currentDirection = direction;
+                int currentStation = station;
+                long currentUpdatedAt = updatedAt;
+                long currentSamples = samples;
+                VarHandle.loadLoadFence();
+                if ((long) SEQUENCE.getAcquire(this) == seq) {
+                    TrainState state = new TrainState(seq, currentStatus, currentSpeed, currentBattery,
+                        currentDirection, currentStation, currentUpdatedAt, currentSamples);
+                    cached = state;
+                    return state;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Leer la telemetría actual sin crear objetos
+     * @param into Muestra destino
+     * @return Versión leída (para saber si cambió desde la lectura anterior)
+     */
+    public long read(TelemetrySample into) {
+        while (true) {
+            long seq = (long) SEQUENCE.getAcquire(this);
+            if ((seq & 1) == 0) {
+                into.setSpeed(speed);
+                into.setBattery(battery);
+                into.setDirection(direction);
+                into.setStation(station);
+                into.setTimestamp(updatedAt);
+                VarHandle.loadLoadFence();
+                if ((long) SEQUENCE.getAcquire(this) == seq) {
+                    return seq;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * @return Estado de la conexión
+     */
+    public TrainState.Status getStatus() {
+        return snapshot().getStatus();
+    }
+
+    /**
+     * @return Versión actual (cambia con cada escritura)
+     */
+    public long getVersion() {
+        return (long) SEQUENCE.getAcquire(this) & ~1L;
+    }
+}
@@ -0,0 +1,638 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metro Benchmark - Microbenchmarks del protocolo y pruebas extremo a extremo
+ *
+ * Arnés autocontenido al estilo JMH (el proyecto no usa Maven/Gradle):
+ * cada benchmark se calienta, luego se mide en varias iteraciones de
+ * tiempo fijo y reporta ns/op, ops/s y bytes asignados por operación en
+ * el thread que mide.
+ *
+ * Benchmarks:
+ * - parse.*     Telemetría: split original vs TelemetryDecoder
+ * - encode.*    Frame de comando copiado a un buffer directo de envío:
+ *               String.format vs concatenación vs {@link CommandFrames}
+ *               precodificados (ns/op por frame)
+ * - framing.*   Separación de líneas: BufferedReader vs escaneo de bytes
+ *               vs {@link FrameInput}
+ *               (ns/op por línea)
+ * - codec.*     Lectura de telemetría con cada {@link FrameCodec}
+ *               (ns/op por frame)
+ * - alerts.*    1000 reglas sobre 200 trenes: evaluación una a una vs
+ *               {@link AlertEngine} incremental (ns/op por muestra)
+ * - export.*    Exportación a archivo: CSV vs {@link TelemetryExporter}
+ *               columnar, y recorrido de la columna SPEED exportada
+ *               (ns/op por fila)
+ * - e2e.*       RTT de comandos y throughput de telemetría contra
+ *               {@link MetroServerSimulator} en proceso; arranque de una
+ *               flota con un thread por sesión ({@link MetroFleet}) vs
+ *               event loops ({@link NioTransport}) (ns/op por sesión)
+ *
+ * Uso: ./run_bench.sh [filtro] [--quick]
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class MetroBenchmark {
+
+    // Frame de referencia
+    private static final String TELEMETRY_FRAME =
+        "TYPE:TELEMETRY;SPEED:50.0;BATTERY:85;DIRECTION:FORWARD;STATION:3";
+    private static final String TOKEN = "a1b2c3d4e5f6";
+
+    // Parámetros de medición
+    private static int warmupIterations = 3;
+    private static int measureIterations = 5;
+    private static long iterationMillis = 1000;
+
+    // Evita que el JIT elimine resultados no usados
+    private static volatile long sink;
+
+    /**
+     * Operación medida: ejecuta un lote y devuelve un valor a consumir
+     */
+    private interface Op {
+        long run(int batch) throws Exception;
+    }
+
+    /**
+     * Benchmark registrado
+     */
+    private static final class Bench {
+        final String name;
+        final Op op;
+        final int batch;
+
+        Bench(String name, int batch, Op op) {
+            this.name = name;
+            this.batch = batch;
+            this.op = op;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String filter = null;
+        for (String arg : args) {
+            if (arg.equals("--quick")) {
+                warmupIterations = 1;
+                measureIterations = 2;
+                iterationMillis = 300;
+            } else {
+                filter = arg;
+            }
+        }
+
+        List<Bench> benches = new ArrayList<>();
+        registerParse(benches);
+        registerEncode(benches);
+        registerFraming(benches);
+        registerCodec(benches);
+        registerAlerts(benches);
+        registerExport(benches);
+
+        List<Closeable> servers = new ArrayList<>();
+        if (filter == null || "e2e".startsWith(filter) || filter.startsWith("e2e")) {
+            registerEndToEnd(benches, servers);
+        }
+
+        System.out.printf("%-36s %14s %14s %12s%n", "Benchmark", "ns/op", "ops/s", "B/op");
+        System.out.println("-".repeat(80));
+
+        try {
+            for (Bench bench : benches) {
+                if (filter == null || bench.name.startsWith(filter)) {
+                    measure(bench);
+                }
+            }
+        } finally {
+            for (Closeable server : servers) {
+                server.close();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Parseo de telemetría
+    // ------------------------------------------------------------------
+
+    private static void registerParse(List<Bench> benches) {
+        benches.add(new Bench("parse.split", 1024, batch -> {
+            long acc = 0;
+            for (int i = 0; i < batch; i++) {
+                acc += legacyParse(TELEMETRY_FRAME);
+            }
+            return acc;
+        }));
+
+        TelemetryDecoder decoder = new TelemetryDecoder();
+        TelemetrySample sample = new TelemetrySample();
+        benches.add(new Bench("parse.decoder.string", 1024, batch -> {
+            long acc = 0;
+            for (int i = 0; i < batch; i++) {
+                decoder.decode(TELEMETRY_FRAME, sample);
+                acc += sample.getBattery();
+            }
+            return acc;
+        }));
+
+        byte[] bytes = TELEMETRY_FRAME.getBytes(StandardCharsets.US_ASCII);
+        benches.add(new Bench("parse.decoder.bytes", 1024, batch -> {
+            long acc = 0;
+            for (int i = 0; i < batch; i++) {
+                decoder.decode(bytes, 0, bytes.length, sample);
+                acc += sample.getBattery();
+            }
+            return acc;
+        }));
+    }
+
+    /**
+     * Copia del parseo original de MetroClient.parseTelemetry (línea base)
+     */
+    private static long legacyParse(String message) {
+        String[] parts = message.split(";");
+
+        String speed = "N/A";
+        String battery = "N/A";
+        String direction = "N/A";
+        String station = "N/A";
+
+        for (String part : parts) {
+            if (part.startsWith("SPEED:")) {
+                speed = part.substring(6).trim();
+            } else if (part.startsWith("BATTERY:")) {
+                battery = part.substring(8).trim();
+            } else if (part.startsWith("DIRECTION:")) {
+                direction = part.substring(10).trim();
+            } else if (part.startsWith("STATION:")) {
+                station = part.substring(8).trim();
+            }
+        }
+
+        double speedValue = Double.parseDouble(speed);
+        int batteryValue = Integer.parseInt(battery);
+        return (long) speedValue + batteryValue + direction.length() + station.length();
+    }
+
+    // ------------------------------------------------------------------
+    // Codificación de comandos
+    // ------------------------------------------------------------------
+
+    private static final String[] COMMANDS = { "SPEED_UP", "SLOW_DOWN", "STOPNOW", "STARTNOW" };
+
+    /**
+     * Cada variante deja el frame en un buffer directo reutilizable, como
+     * el staging de {@link MetroConnection} antes de la escritura al
+     * socket, alternando los cuatro comandos
+     */
+    private static void registerEncode(List<Bench> benches) {
+        ByteBuffer out = ByteBuffer.allocateDirect(128 * 1024);
+
+        benches.add(new Bench("encode.format", 1024, batch -> {
+            out.clear();
+            for (int i = 0; i < batch; i++) {
+                String frame = String.format("TYPE:CMD;TOKEN:%s;ACTION:%s%n", TOKEN, COMMANDS[i & 3]);
+                out.put(frame.getBytes(StandardCharsets.US_ASCII));
+            }
+            return out.position();
+        }));
+
+        benches.add(new Bench("encode.protocol", 1024, batch -> {
+            out.clear();
+            for (int i = 0; i < batch; i++) {
+                String frame = MetroProtocol.commandMessage(TOKEN, COMMANDS[i & 3]);
+                out.put(frame.getBytes(StandardCharsets.US_ASCII)).put((byte) '\n');
+            }
+            return out.position();
+        }));
+
+        benches.add(new Bench("encode.concat", 1024, batch -> {
+            out.clear();
+            for (int i = 0; i < batch; i++) {
+                String frame = "TYPE:CMD;TOKEN:" + TOKEN + ";ACTION:" + COMMANDS[i & 3] + "\n";
+                out.put(frame.getBytes(StandardCharsets.US_ASCII));
+            }
+            return out.position();
+        }));
+
+        // Frames ya codificados: el envío es una copia de bytes
+        CommandFrames frames = new CommandFrames(TOKEN,
+            frame -> ByteBuffer.wrap(new TextFrameCodec().encode(frame)).asReadOnlyBuffer());
+        benches.add(new Bench("encode.commandFrames", 1024, batch -> {
+            out.clear();
+            for (int i = 0; i < batch; i++) {
+                out.put(frames.encoded(CommandFrames.indexOf(COMMANDS[i & 3])).duplicate());
+            }
+            return out.position();
+        }));
+    }
+
+    // ------------------------------------------------------------------
+    // Separación de líneas
+    // ------------------------------------------------------------------
+
+    private static void registerFraming(List<Bench> benches) {
+        final int lines = 1024;
+        byte[] stream = buildStream(lines);
+
+        benches.add(new Bench("framing.bufferedReader", lines, batch -> {
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(stream)));
+            long acc = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                acc += line.length();
+            }
+            return acc;
+        }));
+
+        benches.add(new Bench("framing.frameInput", lines, batch -> {
+            FrameInput in = new FrameInput(new ByteArrayInputStream(stream));
+            long acc = 0;
+            int length;
+            while ((length = in.takeLine((byte) '\n')) >= 0) {
+                acc += length;
+            }
+            return acc;
+        }));
+
+        byte[] lineBuf = new byte[256];
+        benches.add(new Bench("framing.byteScan", lines, batch -> {
+            long acc = 0;
+            int start = 0;
+            for (int i = 0; i < stream.length; i++) {
+                if (stream[i] == '\n') {
+                    int length = i - start;
+                    System.arraycopy(stream, start, lineBuf, 0, length);
+                    acc += length;
+                    start = i + 1;
+                }
+            }
+            return acc;
+        }));
+    }
+
+    private static byte[] buildStream(int lines) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            builder.append("TYPE:TELEMETRY;SPEED:").append(i % 120).append(".5;BATTERY:")
+                .append(100 - i % 100).append(";DIRECTION:FORWARD;STATION:").append(i % 12).append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // ------------------------------------------------------------------
+    // Codecs de frames
+    // ------------------------------------------------------------------
+
+    private static void registerCodec(List<Bench> benches) {
+        final int frames = 1024;
+        for (String name : new String[] { TextFrameCodec.NAME, BinaryFrameCodec.NAME }) {
+            byte[] stream = buildCodecStream(FrameCodec.create(name), frames);
+            FrameCodec codec = FrameCodec.create(name);
+            TelemetrySample sample = new TelemetrySample();
+            benches.add(new Bench("codec." + name.toLowerCase(), frames, batch -> {
+                FrameInput in = new FrameInput(new ByteArrayInputStream(stream));
+                long acc = 0;
+                while (codec.read(in, sample) != FrameCodec.END) {
+                    acc += sample.getBattery();
+                }
+                return acc;
+            }));
+        }
+    }
+
+    private static byte[] buildCodecStream(FrameCodec codec, int frames) {
+        byte[] stream = new byte[frames * codec.getMaxTelemetrySize()];
+        TelemetrySample sample = new TelemetrySample();
+        int pos = 0;
+        for (int i = 0; i < frames; i++) {
+            sample.setSpeed(i % 120 + 0.5);
+            sample.setBattery(100 - i % 100);
+            sample.setDirection(Direction.FORWARD);
+            sample.setStation(i % 12);
+            pos = codec.encodeTelemetry(sample, stream, pos);
+        }
+        return Arrays.copyOf(stream, pos);
+    }
+
+    // ------------------------------------------------------------------
+    // Reglas de alerta
+    // ------------------------------------------------------------------
+
+    private static void registerAlerts(List<Bench> benches) {
+        final int trains = 200;
+        final String[] fields = { "SPEED", "BATTERY", "STATION" };
+        final String[] operators = { "<", "<=", ">", ">=" };
+        List<AlertRule> rules = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            rules.add(AlertRule.compile("r" + i, fields[i % fields.length],
+                operators[i % operators.length], String.valueOf(i % 100)));
+        }
+
+        // Telemetría que varía poco entre muestras consecutivas de un tren
+        TelemetrySample[] samples = new TelemetrySample[4096];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = new TelemetrySample();
+            samples[i].setSpeed(50 + Math.sin(i / 50.0) * 20);
+            samples[i].setBattery(100 - i * 100 / samples.length);
+            samples[i].setStation(i / 400);
+            samples[i].setDirection(Direction.FORWARD);
+            samples[i].setTimestamp(i * 100L);
+        }
+
+        final AlertRule[] ruleArray = rules.toArray(new AlertRule[0]);
+        benches.add(new Bench("alerts.naive", trains, batch -> {
+            long hits = 0;
+            for (int k = 0; k < batch; k++) {
+                TelemetrySample sample = samples[k % samples.length];
+                for (AlertRule rule : ruleArray) {
+                    if (rule.test(sample)) {
+                        hits++;
+                    }
+                }
+            }
+            return hits;
+        }));
+
+        long[] hits = new long[1];
+        AlertEngine engine = new AlertEngine(rules, trains, (train, rule, sample) -> hits[0]++);
+        int[] cursor = new int[1];
+        benches.add(new Bench("alerts.engine", trains, batch -> {
+            TelemetrySample sample = samples[cursor[0]++ % samples.length];
+            for (int train = 0; train < batch; train++) {
+                engine.onTelemetry(train, sample);
+            }
+            return hits[0];
+        }));
+    }
+
+    // ------------------------------------------------------------------
+    // Exportación columnar
+    // ------------------------------------------------------------------
+
+    private static void registerExport(List<Bench> benches) throws IOException {
+        final int rows = TelemetryExporter.DEFAULT_BLOCK_ROWS;
+        final long rotateRows = 1 << 20;
+
+        // Un tren circulando: velocidad con dos decimales, batería que baja despacio
+        TelemetrySample[] samples = new TelemetrySample[rows];
+        for (int i = 0; i < rows; i++) {
+            samples[i] = new TelemetrySample();
+            samples[i].setSpeed(Math.round((50 + Math.sin(i / 50.0) * 20) * 100) / 100.0);
+            samples[i].setBattery(100 - i * 20 / rows);
+            samples[i].setStation(i / 400);
+            samples[i].setDirection(i % 400 < 40 ? Direction.STOPPED : Direction.FORWARD);
+            samples[i].setTimestamp(1_700_000_000_000L + i * 100L);
+        }
+
+        // Los archivos se rehacen cada ~1M filas para no llenar el disco
+        Path csvFile = Files.createTempFile("bench-export", ".csv");
+        csvFile.toFile().deleteOnExit();
+        Writer[] csv = { Files.newBufferedWriter(csvFile) };
+        long[] csvRows = {0};
+        StringBuilder line = new StringBuilder(64);
+        benches.add(new Bench("export.csv", rows, batch -> {
+            if (csvRows[0] >= rotateRows) {
+                csv[0].close();
+                csv[0] = Files.newBufferedWriter(csvFile);
+                csvRows[0] = 0;
+            }
+            for (int i = 0; i < batch; i++) {
+                TelemetrySample sample = samples[i];
+                line.setLength(0);
+                line.append(sample.getTimestamp()).append(',').append(sample.getSpeed()).append(',')
+                    .append(sample.getBattery()).append(',').append(sample.getDirection()).append(',')
+                    .append(sample.getStation()).append('\n');
+                csv[0].append(line);
+            }
+            csvRows[0] += batch;
+            return line.length();
+        }));
+
+        Path tlcFile = Files.createTempFile("bench-export", TelemetryExporter.FILE_SUFFIX);
+        tlcFile.toFile().deleteOnExit();
+        TelemetryExporter[] exporter = { new TelemetryExporter(tlcFile, 0) };
+        benches.add(new Bench("export.columnar", rows, batch -> {
+            if (exporter[0].getTotalRows() >= rotateRows) {
+                exporter[0].close();
+                exporter[0] = new TelemetryExporter(tlcFile, 0);
+            }
+            for (int i = 0; i < batch; i++) {
+                exporter[0].append(samples[i]);
+            }
+            return exporter[0].getBytesWritten();
+        }));
+
+        // Recorrido de una sola columna sobre 64 bloques ya escritos
+        Path scanFile = Files.createTempFile("bench-scan", TelemetryExporter.FILE_SUFFIX);
+        scanFile.toFile().deleteOnExit();
+        try (TelemetryExporter writer = new TelemetryExporter(scanFile, 0)) {
+            for (int block = 0; block < 64; block++) {
+                for (TelemetrySample sample : samples) {
+                    writer.append(sample);
+                }
+            }
+        }
+        TelemetryExportReader reader = new TelemetryExportReader(scanFile);
+        double[] total = new double[1];
+        benches.add(new Bench("export.scan.speed", (int) reader.getRows(), batch -> {
+            total[0] = 0;
+            reader.scanSpeeds(speed -> total[0] += speed);
+            return (long) total[0];
+        }));
+    }
+
+    // ------------------------------------------------------------------
+    // Extremo a extremo contra servidor en proceso
+    // ------------------------------------------------------------------
+
+    private static void registerEndToEnd(List<Bench> benches, List<Closeable> servers) throws IOException {
+        // Servidor sin telemetría para medir solo el RTT de comandos
+        MetroServerSimulator.Config quiet = new MetroServerSimulator.Config();
+        quiet.port = 0;
+        quiet.rate = 0;
+        MetroServerSimulator commandServer = new MetroServerSimulator(quiet);
+        servers.add(commandServer);
+
+        MetroSession session = new MetroSession("127.0.0.1", commandServer.getPort());
+        session.connect();
+        session.authenticate("admin", "metro123");
+        session.setMaxInFlight(64);
+
+        benches.add(new Bench("e2e.command.stopAndWait", 1, batch -> {
+            return session.sendCommand(MetroProtocol.SPEED_UP).length();
+        }));
+
+        CompletableFuture<?>[] inFlight = new CompletableFuture<?>[64];
+        benches.add(new Bench("e2e.command.pipelined", inFlight.length, batch -> {
+            for (int i = 0; i < batch; i++) {
+                inFlight[i] = session.sendCommandAsync(MetroProtocol.SPEED_UP);
+            }
+            CompletableFuture.allOf(inFlight).join();
+            return batch;
+        }));
+
+        String[] burst = new String[64];
+        Arrays.fill(burst, MetroProtocol.SPEED_UP);
+        benches.add(new Bench("e2e.command.burst", burst.length, batch -> {
+            CompletableFuture.allOf(session.sendCommandsAsync(burst).toArray(new CompletableFuture<?>[0])).join();
+            return batch;
+        }));
+
+        // Arranque de flota: connect + auth de 32 sesiones, y cierre
+        List<MetroFleet.Endpoint> endpoints = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            endpoints.add(new MetroFleet.Endpoint("t" + i, "127.0.0.1", commandServer.getPort(), "admin", "metro123"));
+        }
+        benches.add(new Bench("e2e.fleet.connect.threads", endpoints.size(), batch -> {
+            MetroFleet fleet = new MetroFleet(endpoints);
+            int authenticated = fleet.start((train, sample) -> { });
+            fleet.close();
+            return authenticated;
+        }));
+
+        NioTransport transport = new NioTransport(1);
+        servers.add(transport);
+        CompletableFuture<?>[] opening = new CompletableFuture<?>[endpoints.size()];
+        NioSession[] opened = new NioSession[endpoints.size()];
+        benches.add(new Bench("e2e.fleet.connect.nio", endpoints.size(), batch -> {
+            for (int i = 0; i < batch; i++) {
+                int train = i;
+                opening[i] = transport.connect("127.0.0.1", commandServer.getPort())
+                    .thenCompose(nio -> {
+                        opened[train] = nio;
+                        return nio.authenticate("admin", "metro123");
+                    });
+            }
+            CompletableFuture.allOf(opening).join();
+            for (NioSession nio : opened) {
+                nio.close();
+            }
+            return batch;
+        }));
+
+        // Servidor que envía telemetría tan rápido como acepte el socket
+        MetroServerSimulator.Config flood = new MetroServerSimulator.Config();
+        flood.port = 0;
+        flood.rate = MetroServerSimulator.UNLIMITED_RATE;
+        flood.authFirst = true;
+        MetroServerSimulator telemetryServer = new MetroServerSimulator(flood);
+        servers.add(telemetryServer);
+
+        for (String codec : new String[] { TextFrameCodec.NAME, BinaryFrameCodec.NAME }) {
+            MetroSession stream = new MetroSession("127.0.0.1", telemetryServer.getPort());
+            LongAdder received = new LongAdder();
+            stream.addTelemetryListener(sample -> received.increment());
+            stream.setPreferredCodec(codec);
+            stream.connect();
+
+            String name = codec.equals(TextFrameCodec.NAME) ? "e2e.telemetry.frame" : "e2e.telemetry.frame.bin1";
+            benches.add(new Bench(name, 4096, batch -> {
+                // El flujo empieza al autenticarse, para no cargar la CPU en los demás benchmarks
+                if (!stream.isAuthenticated()) {
+                    stream.authenticate("admin", "metro123");
+                }
+                long target = received.sum() + batch;
+                while (received.sum() < target) {
+                    Thread.onSpinWait();
+                }
+                return target;
+            }));
+        }
+
+        // El mismo flujo de texto leído desde un event loop NIO
+        LongAdder nioReceived = new LongAdder();
+        NioSession nioStream = transport.connect("127.0.0.1", telemetryServer.getPort()).join();
+        nioStream.addTelemetryListener(sample -> nioReceived.increment());
+        benches.add(new Bench("e2e.telemetry.frame.nio", 4096, batch -> {
+            if (nioStream.getState() != NioSession.State.AUTHENTICATED) {
+                nioStream.authenticate("admin", "metro123").join();
+            }
+            long target = nioReceived.sum() + batch;
+            while (nioReceived.sum() < target) {
+                Thread.onSpinWait();
+            }
+            return target;
+        }));
+    }
+
+    // ------------------------------------------------------------------
+    // Medición
+    // ------------------------------------------------------------------
+
+    private static void measure(Bench bench) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(bench);
+        }
+
+        double[] nsPerOp = new double[measureIterations];
+        double bytesPerOp = 0;
+        for (int i = 0; i < measureIterations; i++) {
+            double[] result = runIteration(bench);
+            nsPerOp[i] = result[0];
+            bytesPerOp += result[1];
+        }
+        bytesPerOp /= measureIterations;
+
+        double mean = 0;
+        for (double value : nsPerOp) {
+            mean += value;
+        }
+        mean /= nsPerOp.length;
+
+        double variance = 0;
+        for (double value : nsPerOp) {
+            variance += (value - mean) * (value - mean);
+        }
+        double stddev = Math.sqrt(variance / nsPerOp.length);
+
+        System.out.printf("%-36s %9.1f ±%4.0f%% %14.0f %12.1f%n",
+            bench.name, mean, mean > 0 ? 100 * stddev / mean : 0, 1e9 / mean, bytesPerOp);
+    }
+
+    /**
+     * Ejecutar lotes durante iterationMillis
+     * @return {ns/op, bytes asignados/op}
+     */
+    private static double[] runIteration(Bench bench) throws Exception {
+        long deadline = System.nanoTime() + iterationMillis * 1_000_000;
+        long ops = 0;
+        long acc = 0;
+
+        long allocStart = allocatedBytes();
+        long start = System.nanoTime();
+        long now;
+        do {
+            acc += bench.op.run(bench.batch);
+            ops += bench.batch;
+            now = System.nanoTime();
+        } while (now < deadline);
+        long allocated = allocatedBytes() - allocStart;
+
+        sink += acc;
+        return new double[] {(double) (now - start) / ops, (double) allocated / ops};
+    }
+
+    /**
+     * Bytes asignados por el thread actual (HotSpot)
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
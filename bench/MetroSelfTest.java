@@ -0,0 +1,446 @@
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Metro Self Test - Autocomprobación de las estructuras optimizadas
+ *
+ * Compara con datos aleatorios cada estructura incremental o compacta
+ * con una versión directa y obvia del mismo cálculo:
+ * - alerts      Transiciones de {@link AlertEngine} frente a evaluar cada
+ *               regla con {@link AlertRule#test} en cada muestra
+ * - export      Muestras escritas con {@link TelemetryExporter} y leídas
+ *               con {@link TelemetryExportReader}, fila a fila y por
+ *               columna, también con el último bloque cortado
+ * - histogram   Buckets log-lineales de {@link LatencyHistogram}: cubren
+ *               todo el rango sin huecos, con el error relativo
+ *               documentado, y los percentiles coinciden con ordenar
+ *
+ * La semilla se imprime al empezar; con --seed se repite una ejecución.
+ *
+ * Uso: ./run_bench.sh --selftest [--seed n]
+ *
+ * @author Sistema de Telemetría Metro Autónomo
+ * @version 1.0
+ */
+public class MetroSelfTest {
+
+    // Fallos a mostrar por comprobación antes de resumir
+    private static final int MAX_REPORTED = 5;
+
+    /**
+     * Comprobación registrada: devuelve una descripción de lo comprobado
+     */
+    private interface Check {
+        String run(Random random, List<String> failures) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long seed = System.nanoTime();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--seed") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            }
+        }
+
+        System.out.println("🔍 Autocomprobación (semilla " + seed + ")");
+        System.out.println("");
+
+        int failed = 0;
+        failed += run("alerts", MetroSelfTest::checkAlerts, seed);
+        failed += run("export", MetroSelfTest::checkExport, seed);
+        failed += run("histogram", MetroSelfTest::checkHistogram, seed);
+
+        System.out.println("");
+        if (failed > 0) {
+            System.out.println("❌ " + failed + " comprobaciones fallaron (repetir con --seed " + seed + ")");
+            System.exit(1);
+        }
+        System.out.println("✅ Todas las comprobaciones pasaron");
+    }
+
+    /**
+     * Ejecutar una comprobación y mostrar su resultado
+     * @return 1 si falló, 0 si pasó
+     */
+    private static int run(String name, Check check, long seed) throws Exception {
+        List<String> failures = new ArrayList<>();
+        long start = System.nanoTime();
+        String summary = check.run(new Random(seed), failures);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        if (failures.isEmpty()) {
+            System.out.printf("✅ %-10s %s (%d ms)%n", name, summary, elapsed);
+            return 0;
+        }
+        System.out.printf("❌ %-10s %d diferencias%n", name, failures.size());
+        for (String failure : failures.subList(0, Math.min(MAX_REPORTED, failures.size()))) {
+            System.out.println("      " + failure);
+        }
+        return 1;
+    }
+
+    // ------------------------------------------------------------------
+    // Motor de alertas
+    // ------------------------------------------------------------------
+
+    private static final String[] OPERATORS = { "==", "!=", "<", "<=", ">", ">=", "UNCHANGED" };
+
+    /**
+     * Conjuntos de reglas con umbrales repetidos (varias reglas por límite
+     * y grupos de una sola regla) sobre muestras que caen justo en los
+     * umbrales, entre ellos y fuera de todos; el motor debe notificar
+     * exactamente los cambios de {@link AlertRule#test} (UNCHANGED, con el
+     * tiempo desde el último cambio del campo)
+     */
+    private static String checkAlerts(Random random, List<String> failures) {
+        final int sets = 40;
+        final int samples = 4000;
+        final int trains = 4;
+        final int range = 12;
+        long transitions = 0;
+        Direction[] directions = Direction.values();
+        AlertRule.Field[] fields = AlertRule.Field.values();
+
+        for (int set = 0; set < sets && failures.size() < MAX_REPORTED; set++) {
+            List<AlertRule> rules = new ArrayList<>();
+            int count = 1 + random.nextInt(set % 4 == 0 ? 4 : 300);
+            for (int i = 0; i < count; i++) {
+                String op = OPERATORS[random.nextInt(OPERATORS.length)];
+                AlertRule.Field field = fields[random.nextInt(fields.length)];
+                String value;
+                if (op.equals("UNCHANGED")) {
+                    value = String.valueOf(1 + random.nextInt(400));
+                } else if (field == AlertRule.Field.DIRECTION) {
+                    op = random.nextBoolean() ? "==" : "!=";
+                    value = directions[random.nextInt(directions.length)].name();
+                } else {
+                    value = String.valueOf(random.nextInt(range) - 1 + (random.nextInt(4) == 0 ? 0.5 : 0));
+                }
+                rules.add(AlertRule.compile("r" + i, field.name(), op, value));
+            }
+
+            Map<AlertRule, Integer> positions = new HashMap<>();
+            for (int i = 0; i < rules.size(); i++) {
+                positions.put(rules.get(i), i);
+            }
+            boolean[][] active = new boolean[trains][rules.size()];
+            List<String> sinkErrors = new ArrayList<>();
+            long[] notified = { 0 };
+            AlertEngine engine = new AlertEngine(rules, trains, new AlertSink() {
+                @Override
+                public void onAlert(int train, AlertRule rule, TelemetrySample sample) {
+                    notify(train, rule, sample, true);
+                }
+
+                @Override
+                public void onClear(int train, AlertRule rule, TelemetrySample sample) {
+                    notify(train, rule, sample, false);
+                }
+
+                private void notify(int train, AlertRule rule, TelemetrySample sample, boolean alert) {
+                    int i = positions.get(rule);
+                    if (active[train][i] == alert) {
+                        sinkErrors.add((alert ? "alerta repetida " : "fin sin alerta ") + rule + " con " + sample);
+                    }
+                    active[train][i] = alert;
+                    notified[0]++;
+                }
+            });
+
+            // UNCHANGED de referencia: último valor de cada campo y desde cuándo
+            double[][] last = new double[trains][fields.length];
+            long[][] since = new long[trains][fields.length];
+            boolean[] seen = new boolean[trains];
+            TelemetrySample sample = new TelemetrySample();
+            long now = 0;
+
+            for (int step = 0; step < samples && failures.size() < MAX_REPORTED; step++) {
+                int train = random.nextInt(trains);
+                if (random.nextInt(500) == 0) {
+                    engine.reset(train);
+                    active[train] = new boolean[rules.size()];
+                    seen[train] = false;
+                }
+
+                now += random.nextInt(60);
+                sample.setTimestamp(now);
+                if (!seen[train] || random.nextInt(3) == 0) {
+                    sample.setSpeed(random.nextInt(range + 2) - 2 + (random.nextBoolean() ? 0.5 : 0));
+                    sample.setBattery(random.nextInt(range + 2) - 2);
+                    sample.setStation(random.nextInt(range + 2) - 2);
+                    sample.setDirection(directions[random.nextInt(directions.length)]);
+                }
+                for (int f = 0; f < fields.length; f++) {
+                    double value = fields[f].valueOf(sample);
+                    if (!seen[train] || Double.compare(value, last[train][f]) != 0) {
+                        last[train][f] = value;
+                        since[train][f] = now;
+                    }
+                }
+                seen[train] = true;
+
+                engine.onTelemetry(train, sample);
+                for (String error : sinkErrors) {
+                    failures.add("conjunto " + set + ", tren " + train + ": " + error);
+                }
+                sinkErrors.clear();
+
+                for (int i = 0; i < rules.size(); i++) {
+                    AlertRule rule = rules.get(i);
+                    boolean expected = rule.getOperator() == AlertRule.Operator.UNCHANGED
+                        ? now - since[train][rule.getField().ordinal()] >= rule.getThreshold()
+                        : rule.test(sample);
+                    if (expected != active[train][i]) {
+                        failures.add("conjunto " + set + ", tren " + train + ": " + rule
+                            + (expected ? " debería estar activa" : " no debería estar activa") + " con " + sample);
+                        active[train][i] = expected;
+                    }
+                }
+            }
+            transitions += notified[0];
+        }
+
+        return sets + " conjuntos de reglas, " + sets * samples + " muestras, " + transitions + " transiciones";
+    }
+
+    // ------------------------------------------------------------------
+    // Exportación columnar
+    // ------------------------------------------------------------------
+
+    /**
+     * Archivos con tamaños de bloque y cortes por tiempo variados, rachas
+     * largas y cambios frecuentes (diccionario), deltas negativos y
+     * valores extremos (zigzag/varint), y velocidades exactas en
+     * centésimas o no (los dos modos de la columna SPEED)
+     */
+    private static String checkExport(Random random, List<String> failures) throws Exception {
+        final int files = 60;
+        long total = 0;
+        long bytes = 0;
+        Direction[] directions = Direction.values();
+
+        for (int file = 0; file < files && failures.size() < MAX_REPORTED; file++) {
+            int n = file == 0 ? 0 : random.nextInt(12_000);
+            int blockRows = 1 + random.nextInt(file % 3 == 0 ? 16 : 5000);
+            long blockMillis = random.nextBoolean() ? Long.MAX_VALUE : 1 + random.nextInt(20_000);
+            boolean raw = random.nextInt(4) == 0;
+
+            long[] timestamps = new long[n];
+            double[] speeds = new double[n];
+            int[] batteries = new int[n];
+            int[] stations = new int[n];
+            Direction[] heading = new Direction[n];
+            long time = random.nextLong() >> 20;
+            for (int i = 0; i < n; i++) {
+                time += random.nextInt(10) == 0 ? random.nextInt(2000) - 1000 : 100;
+                timestamps[i] = time;
+                speeds[i] = raw && random.nextInt(50) == 0 ? random.nextDouble() * 90
+                    : (random.nextInt(200_000) - 1000) / 100.0;
+                batteries[i] = i > 0 && random.nextInt(8) != 0 ? batteries[i - 1] : randomInt(random, 101);
+                stations[i] = i > 0 && random.nextInt(30) != 0 ? stations[i - 1] : randomInt(random, 2000) - 1;
+                heading[i] = i > 0 && random.nextInt(20) != 0 ? heading[i - 1]
+                    : directions[random.nextInt(directions.length)];
+            }
+
+            Path path = Files.createTempFile("selftest", TelemetryExporter.FILE_SUFFIX);
+            try {
+                TelemetryExporter exporter = new TelemetryExporter(path, file, blockRows, blockMillis);
+                TelemetrySample sample = new TelemetrySample();
+                for (int i = 0; i < n; i++) {
+                    sample.setTimestamp(timestamps[i]);
+                    sample.setSpeed(speeds[i]);
+                    sample.setBattery(batteries[i]);
+                    sample.setStation(stations[i]);
+                    sample.setDirection(heading[i]);
+                    exporter.append(sample);
+                }
+                exporter.close();
+                total += n;
+                bytes += exporter.getBytesWritten();
+
+                String where = "archivo " + file + " (" + n + " filas, bloques de " + blockRows + ")";
+                try (TelemetryExportReader reader = new TelemetryExportReader(path)) {
+                    if (reader.getTrain() != file || reader.getRows() != n) {
+                        failures.add(where + ": cabecera con tren " + reader.getTrain()
+                            + " y " + reader.getRows() + " filas");
+                        continue;
+                    }
+                    compareRows(reader, n, where, failures, timestamps, speeds, batteries, stations, heading);
+                    compareColumns(reader, where, failures, timestamps, speeds, batteries, stations, heading);
+                }
+
+                // Un cierre abrupto deja el último bloque a medias: se leen los anteriores
+                long size = Files.size(path);
+                if (n > 0 && size > TelemetryExporter.HEADER_SIZE + 1) {
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                        channel.truncate(size - 1 - random.nextInt((int) Math.min(64, size - TelemetryExporter.HEADER_SIZE - 1)));
+                    }
+                    try (TelemetryExportReader reader = new TelemetryExportReader(path)) {
+                        if (reader.getRows() >= n) {
+                            failures.add(where + ": cortado y aún tiene " + reader.getRows() + " filas");
+                        } else {
+                            compareRows(reader, (int) reader.getRows(), where + " cortado", failures,
+                                timestamps, speeds, batteries, stations, heading);
+                        }
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(path);
+            }
+        }
+
+        return files + " archivos, " + total + " filas, " + bytes + " bytes";
+    }
+
+    /**
+     * Entero en [0, bound) o, de vez en cuando, un extremo de int
+     */
+    private static int randomInt(Random random, int bound) {
+        switch (random.nextInt(40)) {
+            case 0:
+                return Integer.MIN_VALUE + 1;
+            case 1:
+                return Integer.MAX_VALUE;
+            default:
+                return random.nextInt(bound);
+        }
+    }
+
+    private static void compareRows(TelemetryExportReader reader, int rows, String where, List<String> failures,
+                                    long[] timestamps, double[] speeds, int[] batteries, int[] stations,
+                                    Direction[] heading) {
+        int[] row = { 0 };
+        reader.forEach(sample -> {
+            int i = row[0]++;
+            if (i >= rows) {
+                return;
+            }
+            if (sample.getTimestamp() != timestamps[i] || sample.getSpeed() != speeds[i]
+                    || sample.getBattery() != batteries[i] || sample.getStation() != stations[i]
+                    || sample.getDirection() != heading[i]) {
+                failures.add(where + ", fila " + i + ": leída " + sample + ", escrita timestamp="
+                    + timestamps[i] + " speed=" + speeds[i] + " battery=" + batteries[i]
+                    + " direction=" + heading[i] + " station=" + stations[i]);
+            }
+        });
+        if (row[0] != rows) {
+            failures.add(where + ": " + row[0] + " filas recorridas de " + rows);
+        }
+    }
+
+    private static void compareColumns(TelemetryExportReader reader, String where, List<String> failures,
+                                       long[] timestamps, double[] speeds, int[] batteries, int[] stations,
+                                       Direction[] heading) {
+        int[] row = new int[5];
+        int[] wrong = new int[5];
+        reader.scanTimestamps(value -> wrong[0] += value != timestamps[row[0]++] ? 1 : 0);
+        reader.scanSpeeds(value -> wrong[1] += value != speeds[row[1]++] ? 1 : 0);
+        reader.scanBatteries(value -> wrong[2] += value != batteries[row[2]++] ? 1 : 0);
+        reader.scanDirections(value -> wrong[3] += value != heading[row[3]++].ordinal() ? 1 : 0);
+        reader.scanStations(value -> wrong[4] += value != stations[row[4]++] ? 1 : 0);
+
+        TelemetryExporter.Column[] columns = TelemetryExporter.Column.values();
+        for (int c = 0; c < columns.length; c++) {
+            if (wrong[c] > 0 || row[c] != timestamps.length) {
+                failures.add(where + ": columna " + columns[c] + " con " + wrong[c]
+                    + " valores distintos en " + row[c] + " filas");
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Histograma de latencias
+    // ------------------------------------------------------------------
+
+    /**
+     * Los buckets son contiguos y crecientes, cada valor cae en el bucket
+     * cuyo rango lo contiene, los menores de 32 son exactos y el resto
+     * tiene un error relativo menor a 1/16; los percentiles de valores
+     * aleatorios coinciden con el límite del bucket del valor ordenado
+     */
+    private static String checkHistogram(Random random, List<String> failures) {
+        final int buckets = LatencyHistogram.BUCKETS;
+
+        // Límites: [upperBound(i - 1) + 1, upperBound(i)] sin huecos ni solapes
+        long previous = -1;
+        for (int i = 0; i < buckets; i++) {
+            long upper = LatencyHistogram.upperBound(i);
+            long lower = previous + 1;
+            if (upper < lower || LatencyHistogram.index(lower) != i || LatencyHistogram.index(upper) != i) {
+                failures.add("bucket " + i + ": [" + lower + ", " + upper + "] con índices "
+                    + LatencyHistogram.index(lower) + " y " + LatencyHistogram.index(upper));
+            }
+            if (upper != lower && lower < 32) {
+                failures.add("bucket " + i + ": [" + lower + ", " + upper + "] no es exacto");
+            }
+            if (lower >= 32 && (upper - lower) * 16 >= lower) {
+                failures.add("bucket " + i + ": [" + lower + ", " + upper + "] supera el 6,25% de error");
+            }
+            previous = upper;
+        }
+        if (LatencyHistogram.index(LatencyHistogram.MAX_VALUE) != buckets - 1
+                || previous != LatencyHistogram.MAX_VALUE) {
+            failures.add("el último bucket termina en " + previous + ", no en MAX_VALUE");
+        }
+
+        // Valores aleatorios en todas las magnitudes
+        final int values = 200_000;
+        for (int i = 0; i < values && failures.size() < MAX_REPORTED; i++) {
+            long value = randomLatency(random);
+            int index = LatencyHistogram.index(value);
+            if (value > LatencyHistogram.upperBound(index)
+                    || (index > 0 && value <= LatencyHistogram.upperBound(index - 1))) {
+                failures.add(value + " cae en el bucket " + index + " (hasta " + LatencyHistogram.upperBound(index) + ")");
+            }
+        }
+
+        // Percentiles, máximo y media frente a los valores ordenados
+        final int rounds = 50;
+        for (int round = 0; round < rounds && failures.size() < MAX_REPORTED; round++) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            long[] recorded = new long[1 + random.nextInt(5000)];
+            double sum = 0;
+            for (int i = 0; i < recorded.length; i++) {
+                long value = random.nextInt(50) == 0 ? -random.nextInt(1000) : randomLatency(random);
+                histogram.record(value);
+                recorded[i] = Math.max(0, value);
+                sum += LatencyHistogram.upperBound(LatencyHistogram.index(recorded[i]));
+            }
+            Arrays.sort(recorded);
+
+            for (double q : new double[] { 0, 0.5, 0.9, 0.99, 0.999, 1 }) {
+                long rank = Math.max(1, (long) Math.ceil(q * recorded.length));
+                long expected = LatencyHistogram.upperBound(LatencyHistogram.index(recorded[(int) rank - 1]));
+                if (histogram.percentile(q) != expected) {
+                    failures.add("p" + q * 100 + " de " + recorded.length + " valores: "
+                        + histogram.percentile(q) + " en lugar de " + expected);
+                }
+            }
+            long max = LatencyHistogram.upperBound(LatencyHistogram.index(recorded[recorded.length - 1]));
+            if (histogram.count() != recorded.length || histogram.max() != max
+                    || Math.abs(histogram.mean() - sum / recorded.length) > 1e-6 * Math.max(1, max)) {
+                failures.add(recorded.length + " valores: count=" + histogram.count() + " max=" + histogram.max()
+                    + " mean=" + histogram.mean() + " en lugar de max=" + max + " mean=" + sum / recorded.length);
+            }
+        }
+
+        return buckets + " buckets, " + values + " valores, " + rounds + " histogramas";
+    }
+
+    /**
+     * Latencia con magnitud uniforme entre 1 ns y más de MAX_VALUE (se recorta)
+     */
+    private static long randomLatency(Random random) {
+        int bits = random.nextInt(43);
+        long value = bits == 0 ? 0 : (1L << (bits - 1)) + (random.nextLong() & ((1L << (bits - 1)) - 1));
+        return Math.min(value, LatencyHistogram.MAX_VALUE);
+    }
+}
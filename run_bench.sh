@@ -0,0 +1,44 @@
+#!/bin/bash
+
+# Script para compilar y ejecutar los benchmarks del Metro Client
+# Uso: ./run_bench.sh [filtro] [--quick]
+#   filtro: prefijo del benchmark (parse, encode, framing, e2e, ...)
+#        ./run_bench.sh --selftest [--seed n]
+#   compara las estructuras optimizadas con su versión directa
+
+echo "========================================="
+echo "  Metro Client - Benchmarks"
+echo "========================================="
+echo ""
+
+if ! command -v javac &> /dev/null; then
+    echo "❌ Error: javac no está disponible"
+    exit 1
+fi
+
+OUT_DIR=bench/classes
+mkdir -p "$OUT_DIR"
+
+if [ "$1" = "--selftest" ]; then
+    echo "🔨 Compilando autocomprobación..."
+    javac -encoding UTF-8 -d "$OUT_DIR" -sourcepath . bench/MetroSelfTest.java
+    if [ $? -ne 0 ]; then
+        echo "❌ Error compilando autocomprobación"
+        exit 1
+    fi
+    echo ""
+    shift
+    java -cp "$OUT_DIR" MetroSelfTest "$@"
+    exit $?
+fi
+
+echo "🔨 Compilando benchmarks..."
+javac -encoding UTF-8 -d "$OUT_DIR" -sourcepath . bench/MetroBenchmark.java
+if [ $? -ne 0 ]; then
+    echo "❌ Error compilando benchmarks"
+    exit 1
+fi
+
+echo "🚀 Ejecutando..."
+echo ""
+java -Xms256m -Xmx256m -XX:+UseParallelGC -cp "$OUT_DIR" MetroBenchmark "$@"